@@ -0,0 +1,121 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.service.ImageFilters;
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.ParallelResampler;
+import com.imageresizer.service.PixelBufferPool;
+import com.imageresizer.service.ProcessingScheduler;
+
+import javax.imageio.ImageIO;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+/**
+ * Imagens sintéticas e determinísticas usadas pelos benchmarks.
+ *
+ * Combinam gradiente, formas e ruído para que os codecs e filtros trabalhem com
+ * conteúdo parecido com fotos, e não com áreas lisas que comprimem de graça.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Resolução no formato "LARGURAxALTURA"
+     */
+    static BufferedImage image(String resolution) {
+        String[] parts = resolution.split("x");
+        return image(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+    }
+
+    static BufferedImage image(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setPaint(new GradientPaint(0, 0, new Color(30, 80, 160), width, height, new Color(230, 170, 60)));
+        g.fillRect(0, 0, width, height);
+
+        Random random = new Random(42);
+        int shapes = Math.max(50, width * height / 20_000);
+        for (int i = 0; i < shapes; i++) {
+            g.setColor(new Color(random.nextInt(256), random.nextInt(256), random.nextInt(256), 160));
+            g.setStroke(new BasicStroke(1 + random.nextInt(6)));
+            int size = 8 + random.nextInt(Math.max(16, width / 12));
+            if (random.nextBoolean()) {
+                g.fillOval(random.nextInt(width), random.nextInt(height), size, size);
+            } else {
+                g.drawLine(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height));
+            }
+        }
+        g.dispose();
+
+        // Ruído leve, como o de sensor
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(9) - 4;
+                int rgb = image.getRGB(x, y);
+                int r = clamp(((rgb >> 16) & 0xFF) + noise);
+                int gr = clamp(((rgb >> 8) & 0xFF) + noise);
+                int b = clamp((rgb & 0xFF) + noise);
+                image.setRGB(x, y, (r << 16) | (gr << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Pipeline com o resize separável e os filtros numa thread só, para comparar com as bibliotecas
+     */
+    static ImageTransformPipeline pipeline(PixelBufferPool bufferPool) {
+        ProcessingScheduler scheduler = new ProcessingScheduler(1, 1, 64, 1000, 1);
+        return new ImageTransformPipeline(bufferPool, new ParallelResampler(bufferPool, scheduler, 1, 64, 0),
+                new ImageFilters(bufferPool, scheduler, 1, 64, 0), "thumbnailator");
+    }
+
+    static byte[] encode(BufferedImage image, ImageFormat format) {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            if (!ImageIO.write(image, format.getExtension(), output)) {
+                throw new IllegalStateException("No encoder for " + format);
+            }
+            return output.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Relação sinal-ruído de pico entre duas imagens do mesmo tamanho, em dB
+     */
+    static double psnr(BufferedImage expected, BufferedImage actual) {
+        double squaredError = 0;
+        long samples = 0;
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int p = expected.getRGB(x, y);
+                int q = actual.getRGB(x, y);
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int diff = ((p >> shift) & 0xFF) - ((q >> shift) & 0xFF);
+                    squaredError += diff * diff;
+                    samples++;
+                }
+            }
+        }
+        double mse = squaredError / samples;
+        return mse == 0 ? Double.POSITIVE_INFINITY : 10 * Math.log10(255.0 * 255.0 / mse);
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,81 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.service.DecodePlan;
+import com.imageresizer.service.DecodePlanner;
+import com.imageresizer.service.ImageProbe;
+import com.imageresizer.service.PixelBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodificação por formato: {@code ImageIO.read} completo, a mesma leitura num destino
+ * do {@link PixelBufferPool}, e a leitura planejada (subamostrada) usada em pedidos de
+ * miniatura.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DecodeBenchmark {
+
+    private static final ResizeRequest FULL = new ResizeRequest();
+
+    @Param({"640x480", "1920x1080", "4000x3000"})
+    public String resolution;
+
+    @Param({"JPG", "PNG", "WEBP", "GIF", "BMP"})
+    public ImageFormat format;
+
+    private byte[] data;
+    private DecodePlanner planner;
+    private PixelBufferPool bufferPool;
+    private ResizeRequest thumbnail;
+
+    @Setup
+    public void setUp() {
+        data = BenchmarkFixtures.encode(BenchmarkFixtures.image(resolution), format);
+        planner = new DecodePlanner(new ImageProbe(0));
+        bufferPool = new PixelBufferPool(true, 256, 256);
+        thumbnail = ResizeRequest.builder().percentage(10).keepAspectRatio(true).build();
+    }
+
+    @Benchmark
+    public BufferedImage fullDecode() throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(data));
+    }
+
+    @Benchmark
+    public BufferedImage pooledFullDecode() throws IOException {
+        try (DecodePlan plan = planner.plan(data, FULL)) {
+            BufferedImage image = plan.decode(bufferPool);
+            bufferPool.release(image);
+            return image;
+        }
+    }
+
+    @Benchmark
+    public BufferedImage plannedThumbnailDecode() throws IOException {
+        try (DecodePlan plan = planner.plan(data, thumbnail)) {
+            return plan.decode();
+        }
+    }
+}
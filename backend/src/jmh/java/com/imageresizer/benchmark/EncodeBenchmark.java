@@ -0,0 +1,108 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.service.AnimatedGifProcessor;
+import com.imageresizer.service.DecodePlanner;
+import com.imageresizer.service.EncodeOptions;
+import com.imageresizer.service.FormatNegotiator;
+import com.imageresizer.service.ImageEncoder;
+import com.imageresizer.service.ImageMetrics;
+import com.imageresizer.service.ImageProbe;
+import com.imageresizer.service.ImageProcessingService;
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.LocalOutputStore;
+import com.imageresizer.service.LosslessJpegTransformer;
+import com.imageresizer.service.PixelBufferPool;
+import com.imageresizer.service.ProcessedImage;
+import com.imageresizer.service.ProcessingResultCache;
+import com.imageresizer.service.ProcessingScheduler;
+import com.imageresizer.service.TiledImageProcessor;
+import com.imageresizer.service.UploadReader;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Codificação por formato e qualidade, pelo mesmo caminho usado pelo {@code saveImage}.
+ * O tamanho gerado de cada combinação é impresso no setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EncodeBenchmark {
+
+    @Param({"1920x1080"})
+    public String resolution;
+
+    @Param({"JPG", "PNG", "WEBP", "GIF", "BMP"})
+    public ImageFormat format;
+
+    @Param({"50", "85", "95"})
+    public int quality;
+
+    private ImageProcessingService service;
+    private ProcessingScheduler scheduler;
+    private ProcessedImage processed;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setUp() throws IOException {
+        scheduler = new ProcessingScheduler(1, 1, 64, 1000, 1);
+        PixelBufferPool bufferPool = new PixelBufferPool(false, 0, 0);
+        ImageProbe probe = new ImageProbe(0);
+        ImageTransformPipeline pipeline = BenchmarkFixtures.pipeline(bufferPool);
+        ImageEncoder encoder = new ImageEncoder(bufferPool);
+        service = new ImageProcessingService(
+                new LocalOutputStore(Files.createTempDirectory("encode-benchmark").toString(), 0, 0),
+                new ProcessingResultCache(false, 0, 0),
+                new DecodePlanner(probe),
+                probe,
+                pipeline,
+                scheduler,
+                encoder,
+                bufferPool,
+                new TiledImageProcessor(0, 16, System.getProperty("java.io.tmpdir")),
+                new ImageMetrics(new SimpleMeterRegistry()),
+                new FormatNegotiator(scheduler, false, false, List.of()),
+                new UploadReader(probe, DataSize.ofMegabytes(20)),
+                new LosslessJpegTransformer(false, probe),
+                new AnimatedGifProcessor(false, 0, 1, pipeline, encoder, probe, bufferPool, scheduler));
+        processed = new ProcessedImage(BenchmarkFixtures.image(resolution), 0, 0, format,
+                new EncodeOptions(quality, false, null, null, false, null));
+        output = new ByteArrayOutputStream(8 * 1024 * 1024);
+
+        System.out.printf("%n%s q=%d @ %s: %d bytes%n", format, quality, resolution, encode());
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        output.reset();
+        service.writeImage(processed, output);
+        return output.size();
+    }
+}
@@ -0,0 +1,134 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.service.ImageFilters;
+import com.imageresizer.service.PixelBufferPool;
+import com.imageresizer.service.ProcessingScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ConvolveOp;
+import java.awt.image.Kernel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Desfoque e nitidez do {@link ImageFilters} (três caixas com soma corrente) contra um
+ * {@link ConvolveOp} com o kernel gaussiano inteiro, de lado {@code 2 * ceil(3 * sigma) + 1}.
+ * O setup mostra o PSNR entre os dois desfoques, fora das bordas que o {@code ConvolveOp}
+ * não filtra.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+
+    private static final double SHARPEN_AMOUNT = 0.5;
+
+    @Param({"400x300", "1920x1080"})
+    public String resolution;
+
+    @Param({"1", "3", "10"})
+    public double sigma;
+
+    @Param({"1"})
+    public int parallelism;
+
+    private BufferedImage image;
+    private PixelBufferPool bufferPool;
+    private ProcessingScheduler scheduler;
+    private ImageFilters filters;
+    private ConvolveOp convolveBlur;
+    private ConvolveOp convolveSharpen;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkFixtures.image(resolution);
+        bufferPool = new PixelBufferPool(true, 256, 256);
+        scheduler = new ProcessingScheduler(0, 64, 1024, 1000, 1);
+        filters = new ImageFilters(bufferPool, scheduler, parallelism, 64, 0);
+
+        int radius = (int) Math.ceil(3 * sigma);
+        float[] gaussian = gaussian(radius, sigma);
+        convolveBlur = new ConvolveOp(new Kernel(2 * radius + 1, 2 * radius + 1, gaussian), ConvolveOp.EDGE_NO_OP, null);
+        float[] unsharp = new float[gaussian.length];
+        for (int i = 0; i < unsharp.length; i++) {
+            unsharp[i] = (float) (-SHARPEN_AMOUNT * gaussian[i]);
+        }
+        unsharp[unsharp.length / 2] += (float) (1 + SHARPEN_AMOUNT);
+        convolveSharpen = new ConvolveOp(new Kernel(2 * radius + 1, 2 * radius + 1, unsharp), ConvolveOp.EDGE_NO_OP, null);
+
+        BufferedImage box = filters.blur(image, sigma);
+        BufferedImage exact = convolveBlur();
+        int margin = Math.min(radius, Math.min(image.getWidth(), image.getHeight()) / 4);
+        int width = image.getWidth() - 2 * margin;
+        int height = image.getHeight() - 2 * margin;
+        System.out.printf("%n%s sigma=%s: box blur vs gaussian PSNR = %.1f dB%n", resolution, sigma,
+                BenchmarkFixtures.psnr(exact.getSubimage(margin, margin, width, height),
+                        box.getSubimage(margin, margin, width, height)));
+        bufferPool.release(box);
+    }
+
+    @TearDown
+    public void tearDown() {
+        filters.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage blur() {
+        return release(filters.blur(image, sigma));
+    }
+
+    @Benchmark
+    public BufferedImage sharpen() {
+        return release(filters.sharpen(image, SHARPEN_AMOUNT, sigma));
+    }
+
+    @Benchmark
+    public BufferedImage convolveBlur() {
+        return convolveBlur.filter(image, null);
+    }
+
+    @Benchmark
+    public BufferedImage convolveSharpen() {
+        return convolveSharpen.filter(image, null);
+    }
+
+    private BufferedImage release(BufferedImage result) {
+        bufferPool.release(result);
+        return result;
+    }
+
+    /**
+     * Kernel gaussiano 2D normalizado, linha a linha
+     */
+    private static float[] gaussian(int radius, double sigma) {
+        int size = 2 * radius + 1;
+        float[] kernel = new float[size * size];
+        double sum = 0;
+        for (int y = -radius; y <= radius; y++) {
+            for (int x = -radius; x <= radius; x++) {
+                double weight = Math.exp(-(x * x + y * y) / (2 * sigma * sigma));
+                kernel[(y + radius) * size + x + radius] = (float) weight;
+                sum += weight;
+            }
+        }
+        for (int i = 0; i < kernel.length; i++) {
+            kernel[i] /= (float) sum;
+        }
+        return kernel;
+    }
+}
@@ -0,0 +1,110 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.PixelBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kernels escalares contra vetoriais ({@code simd=false/true}) para cada layout de pixel:
+ * redimensionamento separável, grayscale, rotação de 90° e espelhamento.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+
+    @Param({"1920x1080", "4000x3000"})
+    public String resolution;
+
+    @Param({"INT_RGB", "INT_ARGB", "3BYTE_BGR"})
+    public String layout;
+
+    @Param({"true", "false"})
+    public boolean simd;
+
+    private BufferedImage image;
+    private ImageTransformPipeline pipeline;
+    private PixelBufferPool bufferPool;
+
+    private ResizeRequest bicubic;
+    private ResizeRequest lanczos;
+    private ResizeRequest grayscale;
+    private ResizeRequest rotate;
+    private ResizeRequest flip;
+
+    @Setup
+    public void setUp() {
+        image = convert(BenchmarkFixtures.image(resolution), switch (layout) {
+            case "INT_ARGB" -> BufferedImage.TYPE_INT_ARGB;
+            case "3BYTE_BGR" -> BufferedImage.TYPE_3BYTE_BGR;
+            default -> BufferedImage.TYPE_INT_RGB;
+        });
+        bufferPool = new PixelBufferPool(true, 256, 256);
+        pipeline = BenchmarkFixtures.pipeline(bufferPool);
+        bicubic = ResizeRequest.builder().width(800).keepAspectRatio(true).resampler("bicubic").simd(simd).build();
+        lanczos = ResizeRequest.builder().width(800).keepAspectRatio(true).resampler("lanczos").simd(simd).build();
+        grayscale = ResizeRequest.builder().grayscale(true).simd(simd).build();
+        rotate = ResizeRequest.builder().rotation(90).simd(simd).build();
+        flip = ResizeRequest.builder().flipHorizontal(true).simd(simd).build();
+    }
+
+    @Benchmark
+    public BufferedImage resizeBicubic() throws IOException {
+        return release(pipeline.resize(image, bicubic));
+    }
+
+    @Benchmark
+    public BufferedImage resizeLanczos() throws IOException {
+        return release(pipeline.resize(image, lanczos));
+    }
+
+    @Benchmark
+    public BufferedImage grayscale() {
+        return release(pipeline.finish(image, grayscale));
+    }
+
+    @Benchmark
+    public BufferedImage rotate90() {
+        return release(pipeline.finish(image, rotate));
+    }
+
+    @Benchmark
+    public BufferedImage flipHorizontal() {
+        return release(pipeline.finish(image, flip));
+    }
+
+    private BufferedImage release(BufferedImage result) {
+        bufferPool.release(result);
+        return result;
+    }
+
+    private static BufferedImage convert(BufferedImage source, int type) {
+        if (source.getType() == type) {
+            return source;
+        }
+        BufferedImage converted = new BufferedImage(source.getWidth(), source.getHeight(), type);
+        Graphics2D g = converted.createGraphics();
+        g.drawImage(source, 0, 0, null);
+        g.dispose();
+        return converted;
+    }
+}
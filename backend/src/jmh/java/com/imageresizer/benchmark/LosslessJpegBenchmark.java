@@ -0,0 +1,76 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.service.EncodedImage;
+import com.imageresizer.service.ImageProbe;
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.LosslessJpegTransformer;
+import com.imageresizer.service.PixelBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rotação de um JPEG nos coeficientes DCT ({@link LosslessJpegTransformer}) contra o caminho
+ * por pixels (decodificar, girar, codificar). As resoluções são múltiplas do MCU de 16x16,
+ * para que o caminho sem perdas sempre se aplique.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LosslessJpegBenchmark {
+
+    @Param({"1600x1200", "4000x3008"})
+    public String resolution;
+
+    @Param({"90", "180"})
+    public int rotation;
+
+    private byte[] jpeg;
+    private ResizeRequest request;
+    private LosslessJpegTransformer transformer;
+    private ImageTransformPipeline pipeline;
+    private PixelBufferPool bufferPool;
+
+    @Setup
+    public void setUp() throws IOException {
+        jpeg = BenchmarkFixtures.encode(BenchmarkFixtures.image(resolution), ImageFormat.JPG);
+        request = ResizeRequest.builder().rotation(rotation).build();
+        transformer = new LosslessJpegTransformer(true, new ImageProbe(0));
+        bufferPool = new PixelBufferPool(false, 0, 0);
+        pipeline = BenchmarkFixtures.pipeline(bufferPool);
+        if (transformer.transform(jpeg, request).isEmpty()) {
+            throw new IllegalStateException("Lossless transform not applicable to " + resolution);
+        }
+    }
+
+    @Benchmark
+    public EncodedImage lossless() throws IOException {
+        return transformer.transform(jpeg, request).orElseThrow();
+    }
+
+    @Benchmark
+    public byte[] pixels() throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(jpeg));
+        BufferedImage rotated = pipeline.finish(image, request);
+        return BenchmarkFixtures.encode(rotated, ImageFormat.JPG);
+    }
+}
@@ -0,0 +1,88 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.service.ImageFilters;
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.ParallelResampler;
+import com.imageresizer.service.PixelBufferPool;
+import com.imageresizer.service.ProcessingScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resize separável de uma única imagem numa thread ({@code parallelism=1}) contra as faixas
+ * paralelas em todos os núcleos ({@code parallelism=0}), sem limite mínimo de megapixels.
+ * O setup confere que as duas saídas são idênticas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelResizeBenchmark {
+
+    @Param({"1920x1080", "4000x3000", "8000x6000"})
+    public String resolution;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    @Param({"bicubic", "lanczos"})
+    public String resampler;
+
+    private BufferedImage image;
+    private ImageTransformPipeline pipeline;
+    private PixelBufferPool bufferPool;
+    private ProcessingScheduler scheduler;
+    private ParallelResampler parallelResampler;
+    private ResizeRequest request;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = BenchmarkFixtures.image(resolution);
+        bufferPool = new PixelBufferPool(true, 256, 256);
+        scheduler = new ProcessingScheduler(0, 64, 1024, 1000, 1);
+        parallelResampler = new ParallelResampler(bufferPool, scheduler, parallelism, 64, 0);
+        pipeline = new ImageTransformPipeline(bufferPool, parallelResampler,
+                new ImageFilters(bufferPool, scheduler, 1, 64, 0), "auto");
+        request = ResizeRequest.builder().percentage(50).keepAspectRatio(true).resampler(resampler).build();
+
+        BufferedImage sequential = BenchmarkFixtures.pipeline(bufferPool).resize(image, request);
+        BufferedImage result = pipeline.resize(image, request);
+        System.out.printf("%n%s %s parallelism=%d: identical to sequential = %b%n", resolution, resampler,
+                parallelism, Arrays.equals(pixels(sequential), pixels(result)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        parallelResampler.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Benchmark
+    public BufferedImage resize() throws IOException {
+        BufferedImage result = pipeline.resize(image, request);
+        bufferPool.release(result);
+        return result;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
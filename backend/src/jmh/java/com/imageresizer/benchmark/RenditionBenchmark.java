@@ -0,0 +1,77 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.PixelBufferPool;
+import com.imageresizer.service.RenditionPlanner;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cadeia de rendições do {@link RenditionPlanner} contra resizes independentes a partir
+ * da origem. O PSNR de cada rendição em relação ao resize independente é impresso no setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenditionBenchmark {
+
+    private static final int[] WIDTHS = {2048, 1024, 512, 256, 128};
+
+    @Param({"6000x4000"})
+    public String resolution;
+
+    private BufferedImage image;
+    private ImageTransformPipeline pipeline;
+    private RenditionPlanner planner;
+    private List<RenditionPlanner.Size> sizes;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = BenchmarkFixtures.image(resolution);
+        pipeline = BenchmarkFixtures.pipeline(new PixelBufferPool(false, 0, 0));
+        planner = new RenditionPlanner(pipeline);
+        sizes = new ArrayList<>();
+        for (int width : WIDTHS) {
+            sizes.add(new RenditionPlanner.Size(width, image.getHeight(), true));
+        }
+
+        List<BufferedImage> chained = renditionChain();
+        List<BufferedImage> independent = independentResizes();
+        for (int i = 0; i < WIDTHS.length; i++) {
+            System.out.printf("%nwidth %d: PSNR chain vs independent = %.2f dB%n",
+                    WIDTHS[i], BenchmarkFixtures.psnr(independent.get(i), chained.get(i)));
+        }
+    }
+
+    @Benchmark
+    public List<BufferedImage> renditionChain() throws IOException {
+        return planner.render(image, sizes);
+    }
+
+    @Benchmark
+    public List<BufferedImage> independentResizes() throws IOException {
+        List<BufferedImage> renditions = new ArrayList<>();
+        for (RenditionPlanner.Size size : sizes) {
+            renditions.add(pipeline.resize(image, size.width(), size.height(), true));
+        }
+        return renditions;
+    }
+}
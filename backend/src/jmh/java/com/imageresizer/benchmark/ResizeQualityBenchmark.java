@@ -0,0 +1,81 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.PixelBufferPool;
+import net.coobird.thumbnailator.Thumbnails;
+import org.imgscalr.Scalr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thumbnailator e os filtros separáveis do pipeline ({@code resampler=bicubic/lanczos})
+ * contra os modos de qualidade do imgscalr para a mesma redução. O PSNR de cada modo em relação ao ULTRA_QUALITY é impresso no setup.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResizeQualityBenchmark {
+
+    private static final int TARGET_WIDTH = 800;
+
+    @Param({"1920x1080", "4000x3000"})
+    public String resolution;
+
+    @Param({"THUMBNAILATOR", "SCALR_SPEED", "SCALR_BALANCED", "SCALR_QUALITY", "SCALR_ULTRA_QUALITY",
+            "SEPARABLE_BICUBIC", "SEPARABLE_LANCZOS"})
+    public String resizer;
+
+    private BufferedImage image;
+    private ImageTransformPipeline pipeline;
+
+    @Setup
+    public void setUp() throws IOException {
+        image = BenchmarkFixtures.image(resolution);
+        pipeline = BenchmarkFixtures.pipeline(new PixelBufferPool(false, 0, 0));
+        BufferedImage reference = scalr(Scalr.Method.ULTRA_QUALITY);
+        BufferedImage result = resize();
+        if (result.getWidth() == reference.getWidth() && result.getHeight() == reference.getHeight()) {
+            System.out.printf("%n%s @ %s: PSNR vs ULTRA_QUALITY = %.2f dB%n",
+                    resizer, resolution, BenchmarkFixtures.psnr(reference, result));
+        }
+    }
+
+    @Benchmark
+    public BufferedImage resize() throws IOException {
+        return switch (resizer) {
+            case "THUMBNAILATOR" -> Thumbnails.of(image).width(TARGET_WIDTH).asBufferedImage();
+            case "SCALR_SPEED" -> scalr(Scalr.Method.SPEED);
+            case "SCALR_BALANCED" -> scalr(Scalr.Method.BALANCED);
+            case "SCALR_QUALITY" -> scalr(Scalr.Method.QUALITY);
+            case "SEPARABLE_BICUBIC" -> separable("bicubic");
+            case "SEPARABLE_LANCZOS" -> separable("lanczos");
+            default -> scalr(Scalr.Method.ULTRA_QUALITY);
+        };
+    }
+
+    private BufferedImage separable(String resampler) throws IOException {
+        return pipeline.resize(image, ResizeRequest.builder()
+                .width(TARGET_WIDTH).keepAspectRatio(true).resampler(resampler).build());
+    }
+
+    private BufferedImage scalr(Scalr.Method method) {
+        return Scalr.resize(image, method, Scalr.Mode.FIT_TO_WIDTH, TARGET_WIDTH);
+    }
+}
@@ -0,0 +1,188 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ImageFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Teste de carga com clientes lentos misturados a resizes pesados.
+ *
+ * Os clientes lentos enviam uma imagem pequena em pedaços, com pausas entre eles, e leem a
+ * resposta devagar, ocupando a thread da requisição pela maior parte do tempo. Ao mesmo
+ * tempo, os clientes pesados enviam fotos grandes para redução; o teste mede a vazão e a
+ * latência (p50/p99) desses resizes. Rode contra a mesma instância com e sem o profile
+ * {@code virtual} para comparar.
+ *
+ * Argumentos: url [clientesLentos] [clientesPesados] [segundos]
+ */
+public final class SlowClientLoadTest {
+
+    private static final String BOUNDARY = "----load-test-boundary";
+    private static final int CHUNK_BYTES = 512;
+    private static final long CHUNK_PAUSE_MILLIS = 50;
+    private static final long ERROR_BACKOFF_MILLIS = 1000;
+
+    private final URI baseUri;
+    private final byte[] smallImage;
+    private final byte[] largeImage;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+    private final ConcurrentLinkedQueue<Long> heavyLatencies = new ConcurrentLinkedQueue<>();
+    private final AtomicLong heavyErrors = new AtomicLong();
+    private final AtomicLong slowCompleted = new AtomicLong();
+    private final AtomicLong slowErrors = new AtomicLong();
+
+    private SlowClientLoadTest(URI baseUri) {
+        this.baseUri = baseUri;
+        this.smallImage = BenchmarkFixtures.encode(BenchmarkFixtures.image(320, 240), ImageFormat.JPG);
+        this.largeImage = BenchmarkFixtures.encode(BenchmarkFixtures.image(4000, 3000), ImageFormat.JPG);
+    }
+
+    public static void main(String[] args) throws Exception {
+        URI uri = URI.create(args.length > 0 ? args[0] : "http://localhost:8080");
+        int slowClients = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+        int heavyClients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+        new SlowClientLoadTest(uri).run(slowClients, heavyClients, seconds);
+    }
+
+    private void run(int slowClients, int heavyClients, int seconds) throws InterruptedException {
+        System.out.printf("Target %s: %d slow clients, %d heavy clients, %d s%n",
+                baseUri, slowClients, heavyClients, seconds);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(slowClients + heavyClients);
+        for (int i = 0; i < slowClients; i++) {
+            executor.execute(() -> loop(deadline, this::slowRequest, slowErrors));
+        }
+        for (int i = 0; i < heavyClients; i++) {
+            executor.execute(() -> loop(deadline, this::heavyRequest, heavyErrors));
+        }
+        executor.shutdown();
+        executor.awaitTermination(seconds + 120L, TimeUnit.SECONDS);
+        report(seconds);
+    }
+
+    private void loop(long deadline, Request request, AtomicLong errors) {
+        while (System.nanoTime() < deadline) {
+            try {
+                request.send();
+            } catch (Exception e) {
+                if (errors.incrementAndGet() == 1) {
+                    System.out.println("First error: " + e);
+                }
+                pause(ERROR_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private static void pause(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Resize pesado: foto de 12 MP reduzida para 800 px de largura
+     */
+    private void heavyRequest() throws IOException, InterruptedException {
+        byte[] body = multipart(largeImage, "large.jpg", "800");
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("/api/images/process/stream"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode());
+        }
+        heavyLatencies.add(System.nanoTime() - start);
+    }
+
+    /**
+     * Cliente lento: upload em pedaços de 512 bytes a cada 50 ms e leitura lenta da resposta
+     */
+    private void slowRequest() throws IOException, InterruptedException {
+        byte[] body = multipart(smallImage, "small.jpg", "64");
+        try (Socket socket = new Socket(baseUri.getHost(), baseUri.getPort())) {
+            OutputStream output = socket.getOutputStream();
+            String head = "POST /api/images/process/stream HTTP/1.1\r\n"
+                    + "Host: " + baseUri.getHost() + "\r\n"
+                    + "Content-Type: multipart/form-data; boundary=" + BOUNDARY + "\r\n"
+                    + "Content-Length: " + body.length + "\r\n"
+                    + "Connection: close\r\n\r\n";
+            output.write(head.getBytes(StandardCharsets.US_ASCII));
+            for (int offset = 0; offset < body.length; offset += CHUNK_BYTES) {
+                output.write(body, offset, Math.min(CHUNK_BYTES, body.length - offset));
+                output.flush();
+                Thread.sleep(CHUNK_PAUSE_MILLIS);
+            }
+
+            InputStream input = socket.getInputStream();
+            byte[] buffer = new byte[CHUNK_BYTES];
+            byte[] status = input.readNBytes(12);
+            String line = new String(status, StandardCharsets.US_ASCII);
+            if (!line.endsWith("200")) {
+                throw new IOException("Unexpected response: " + line);
+            }
+            while (input.read(buffer) != -1) {
+                Thread.sleep(CHUNK_PAUSE_MILLIS);
+            }
+        }
+        slowCompleted.incrementAndGet();
+    }
+
+    private static byte[] multipart(byte[] image, String fileName, String width) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 512);
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"width\"\r\n\r\n"
+                + width + "\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"" + fileName + "\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(image);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+
+    private void report(int seconds) {
+        List<Long> latencies = new ArrayList<>(heavyLatencies);
+        latencies.sort(null);
+        System.out.printf("Heavy: %d ok, %d errors, %.2f req/s, p50 %.0f ms, p99 %.0f ms, max %.0f ms%n",
+                latencies.size(), heavyErrors.get(), latencies.size() / (double) seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.99),
+                latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1) / 1e6);
+        System.out.printf("Slow: %d ok, %d errors%n", slowCompleted.get(), slowErrors.get());
+    }
+
+    private static double percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(0, index)) / 1e6;
+    }
+
+    @FunctionalInterface
+    private interface Request {
+        void send() throws Exception;
+    }
+}
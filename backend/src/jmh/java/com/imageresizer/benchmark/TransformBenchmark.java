@@ -0,0 +1,105 @@
+package com.imageresizer.benchmark;
+
+import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.service.ImageTransformPipeline;
+import com.imageresizer.service.PixelBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cada etapa de {@code applyTransformations} isolada, mais a combinação
+ * rotação + espelhamentos + grayscale executada numa única passada, com e sem o
+ * {@link PixelBufferPool} (compare a alocação com {@code -prof gc}).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransformBenchmark {
+
+    @Param({"640x480", "1920x1080", "4000x3000"})
+    public String resolution;
+
+    @Param({"true", "false"})
+    public boolean pooled;
+
+    private BufferedImage image;
+    private ImageTransformPipeline pipeline;
+    private PixelBufferPool bufferPool;
+
+    private ResizeRequest crop;
+    private ResizeRequest resize;
+    private ResizeRequest rotate;
+    private ResizeRequest flip;
+    private ResizeRequest grayscale;
+    private ResizeRequest combined;
+
+    @Setup
+    public void setUp() {
+        image = BenchmarkFixtures.image(resolution);
+        bufferPool = new PixelBufferPool(pooled, 256, 256);
+        pipeline = BenchmarkFixtures.pipeline(bufferPool);
+        crop = ResizeRequest.builder()
+                .cropX(image.getWidth() / 4).cropY(image.getHeight() / 4)
+                .cropWidth(image.getWidth() / 2).cropHeight(image.getHeight() / 2)
+                .build();
+        resize = ResizeRequest.builder().percentage(50).keepAspectRatio(true).build();
+        rotate = ResizeRequest.builder().rotation(90).build();
+        flip = ResizeRequest.builder().flipHorizontal(true).build();
+        grayscale = ResizeRequest.builder().grayscale(true).build();
+        combined = ResizeRequest.builder()
+                .rotation(90).flipHorizontal(true).flipVertical(true).grayscale(true)
+                .build();
+    }
+
+    @Benchmark
+    public BufferedImage crop() {
+        return pipeline.crop(image, crop);
+    }
+
+    @Benchmark
+    public BufferedImage resizeHalf() throws IOException {
+        return pipeline.resize(image, resize);
+    }
+
+    @Benchmark
+    public BufferedImage rotate90() {
+        return finish(rotate);
+    }
+
+    @Benchmark
+    public BufferedImage flipHorizontal() {
+        return finish(flip);
+    }
+
+    @Benchmark
+    public BufferedImage grayscale() {
+        return finish(grayscale);
+    }
+
+    @Benchmark
+    public BufferedImage rotateFlipGrayscale() {
+        return finish(combined);
+    }
+
+    private BufferedImage finish(ResizeRequest request) {
+        BufferedImage result = pipeline.finish(image, request);
+        bufferPool.release(result);
+        return result;
+    }
+}
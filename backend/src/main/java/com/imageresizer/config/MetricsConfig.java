@@ -0,0 +1,120 @@
+package com.imageresizer.config;
+
+import com.imageresizer.service.OutputStore;
+import com.imageresizer.service.PixelBufferPool;
+import com.imageresizer.service.ProcessingResultCache;
+import com.imageresizer.service.ProcessingScheduler;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Exporta as estatísticas do cache, do agendador e do armazenamento como métricas do Micrometer
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder resultCacheMetrics(ProcessingResultCache cache) {
+        return registry -> {
+            FunctionCounter.builder("image.cache.hits", cache, c -> c.stats().hits())
+                    .description("Acertos do cache de resultados")
+                    .register(registry);
+            FunctionCounter.builder("image.cache.misses", cache, c -> c.stats().misses())
+                    .description("Falhas do cache de resultados")
+                    .register(registry);
+            FunctionCounter.builder("image.cache.evictions", cache, c -> c.stats().evictions())
+                    .description("Remoções do cache de resultados")
+                    .register(registry);
+            Gauge.builder("image.cache.entries", cache, c -> c.stats().entries())
+                    .description("Entradas no cache de resultados")
+                    .register(registry);
+            Gauge.builder("image.cache.size", cache, c -> c.stats().totalBytes())
+                    .description("Bytes dos arquivos no cache de resultados")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder bufferPoolMetrics(PixelBufferPool pool) {
+        return registry -> {
+            Gauge.builder("image.buffer.pool.pooled", pool, p -> p.stats().pooledBytes())
+                    .description("Bytes ociosos no pool de pixels")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("image.buffer.pool.borrowed", pool, p -> p.stats().borrowedBytes())
+                    .description("Bytes do pool de pixels em uso")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("image.buffer.pool.hits", pool, p -> p.stats().hits())
+                    .description("Buffers reaproveitados do pool de pixels")
+                    .register(registry);
+            FunctionCounter.builder("image.buffer.pool.misses", pool, p -> p.stats().misses())
+                    .description("Buffers alocados por falta no pool de pixels")
+                    .register(registry);
+            FunctionCounter.builder("image.buffer.pool.discarded", pool, p -> p.stats().discarded())
+                    .description("Buffers descartados por exceder o limite do pool")
+                    .register(registry);
+            FunctionCounter.builder("image.buffer.pool.leaks", pool, p -> p.stats().leaks())
+                    .description("Buffers recuperados sem terem sido devolvidos")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder outputStoreMetrics(OutputStore store) {
+        return registry -> {
+            Gauge.builder("image.output.store.files", store, s -> s.stats().files())
+                    .description("Imagens processadas armazenadas")
+                    .register(registry);
+            Gauge.builder("image.output.store.size", store, s -> s.stats().totalBytes())
+                    .description("Bytes das imagens processadas armazenadas")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("image.output.store.max", store, s -> s.stats().maxBytes())
+                    .description("Limite de bytes do armazenamento (0 = sem limite)")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("image.output.store.evictions", store, s -> s.stats().expired())
+                    .description("Imagens removidas do armazenamento")
+                    .tag("reason", "ttl")
+                    .register(registry);
+            FunctionCounter.builder("image.output.store.evictions", store, s -> s.stats().evicted())
+                    .description("Imagens removidas do armazenamento")
+                    .tag("reason", "quota")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder schedulerMetrics(ProcessingScheduler scheduler) {
+        return registry -> {
+            Gauge.builder("image.scheduler.workers", scheduler, s -> s.stats().workers())
+                    .description("Workers do pool de processamento")
+                    .register(registry);
+            Gauge.builder("image.scheduler.active", scheduler, s -> s.stats().activeWorkers())
+                    .description("Workers processando imagens")
+                    .register(registry);
+            Gauge.builder("image.scheduler.queue.depth", scheduler, s -> s.stats().queueDepth())
+                    .description("Tarefas aguardando na fila")
+                    .register(registry);
+            Gauge.builder("image.scheduler.memory.used", scheduler, s -> s.stats().memoryInUseMb() * 1024.0 * 1024.0)
+                    .description("Memória reservada do orçamento de pixels")
+                    .baseUnit("bytes")
+                    .register(registry);
+            Gauge.builder("image.scheduler.memory.budget", scheduler, s -> s.stats().memoryBudgetMb() * 1024.0 * 1024.0)
+                    .description("Orçamento de memória para pixels")
+                    .baseUnit("bytes")
+                    .register(registry);
+            FunctionCounter.builder("image.scheduler.rejected", scheduler, s -> s.stats().rejected())
+                    .description("Requisições recusadas por fila cheia ou falta de memória")
+                    .register(registry);
+            FunctionCounter.builder("image.scheduler.started", scheduler, s -> s.stats().started())
+                    .description("Tarefas iniciadas pelos workers")
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,12 @@
+package com.imageresizer.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita as tarefas periódicas (varredura do armazenamento de saída)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,235 @@
+package com.imageresizer.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Envio de um arquivo armazenado com requisições condicionais e por faixa de bytes.
+ *
+ * <ul>
+ *   <li>{@code ETag} e {@code Last-Modified}, com {@code If-None-Match}/{@code If-Modified-Since}
+ *       (304)</li>
+ *   <li>{@code Range} com uma faixa (206) ou várias ({@code multipart/byteranges}),
+ *       {@code If-Range} e 416 para faixas fora do arquivo</li>
+ *   <li>Arquivos em disco vão por sendfile do Tomcat (a cópia é feita pelo kernel, do
+ *       arquivo para o socket); sem sendfile, ou com várias faixas, por
+ *       {@link FileChannel#transferTo}</li>
+ * </ul>
+ */
+@Component
+public class FileResponder {
+
+    // Atributos de sendfile do conector do Tomcat (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    /**
+     * Responde com o arquivo. Headers de cache e {@code Vary} devem ser definidos antes;
+     * {@code etag} nulo usa tamanho e data de modificação (os arquivos nunca mudam de conteúdo).
+     */
+    public void send(HttpServletRequest request, HttpServletResponse response, Resource resource,
+                     MediaType contentType, String etag, String contentDisposition) throws IOException {
+        long length = resource.contentLength();
+        long lastModified = resource.lastModified();
+        String tag = etag != null ? etag : "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+
+        if (new ServletWebRequest(request, response).checkNotModified(tag, lastModified)) {
+            // 304, com ETag e Last-Modified já definidos
+            return;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (contentDisposition != null) {
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        }
+
+        List<Region> regions;
+        try {
+            regions = regions(request, length, tag, lastModified);
+        } catch (IllegalArgumentException e) {
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            return;
+        }
+        boolean head = HttpMethod.HEAD.matches(request.getMethod());
+
+        if (regions.size() > 1) {
+            sendMultipart(response, resource, contentType, length, regions, head);
+            return;
+        }
+        Region region = regions.isEmpty() ? new Region(0, length) : regions.get(0);
+        if (!regions.isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, region.contentRange(length));
+        }
+        response.setContentType(contentType.toString());
+        response.setContentLengthLong(region.count());
+        if (head || region.count() == 0) {
+            return;
+        }
+        if (resource.isFile() && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // O Tomcat envia o arquivo depois que o handler retorna
+            request.setAttribute(SENDFILE_FILENAME, resource.getFile().getAbsolutePath());
+            request.setAttribute(SENDFILE_START, region.start());
+            request.setAttribute(SENDFILE_END, region.start() + region.count());
+            return;
+        }
+        OutputStream output = response.getOutputStream();
+        transfer(resource, region, output);
+    }
+
+    /**
+     * Faixas pedidas; vazio para o arquivo inteiro (sem {@code Range}, header inválido ou
+     * {@code If-Range} que não confere)
+     */
+    private static List<Region> regions(HttpServletRequest request, long length, String etag,
+                                        long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null || !isRangeCurrent(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            return List.of();
+        }
+        List<HttpRange> ranges;
+        try {
+            // Limitado a 100 faixas pelo próprio parser
+            ranges = HttpRange.parseRanges(header);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+        List<Region> regions = new ArrayList<>(ranges.size());
+        long total = 0;
+        for (HttpRange range : ranges) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            // Faixas fora do arquivo são ignoradas; 416 só se nenhuma servir
+            if (start < length && end >= start) {
+                regions.add(new Region(start, end - start + 1));
+                total += end - start + 1;
+            }
+        }
+        if (regions.isEmpty()) {
+            throw new IllegalArgumentException("Range not satisfiable: " + header);
+        }
+        // Faixas sobrepostas que somam mais que o arquivo só servem para amplificar a resposta
+        if (total > length && regions.size() > 1) {
+            throw new IllegalArgumentException("Ranges exceed the file length");
+        }
+        return regions;
+    }
+
+    /**
+     * {@code If-Range} com ETag exige comparação forte; com data, a data exata do arquivo
+     */
+    private static boolean isRangeCurrent(String ifRange, String etag, long lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(etag);
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.IF_RANGE, ifRange);
+        try {
+            // Datas HTTP têm resolução de segundos
+            return headers.getFirstDate(HttpHeaders.IF_RANGE) / 1000 == lastModified / 1000;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void sendMultipart(HttpServletResponse response, Resource resource, MediaType contentType,
+                               long length, List<Region> regions, boolean head) throws IOException {
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        List<byte[]> partHeaders = new ArrayList<>(regions.size());
+        long contentLength = 0;
+        for (Region region : regions) {
+            byte[] header = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + region.contentRange(length) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            partHeaders.add(header);
+            contentLength += header.length + region.count();
+        }
+        byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        contentLength += end.length;
+
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setContentType("multipart/byteranges; boundary=" + boundary);
+        response.setContentLengthLong(contentLength);
+        if (head) {
+            return;
+        }
+        OutputStream output = response.getOutputStream();
+        for (int i = 0; i < regions.size(); i++) {
+            output.write(partHeaders.get(i));
+            transfer(resource, regions.get(i), output);
+        }
+        output.write(end);
+    }
+
+    private static void transfer(Resource resource, Region region, OutputStream output) throws IOException {
+        if (resource.isFile()) {
+            File file = resource.getFile();
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                WritableByteChannel target = Channels.newChannel(output);
+                long position = region.start();
+                long remaining = region.count();
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+            return;
+        }
+        try (InputStream input = resource.getInputStream()) {
+            input.skipNBytes(region.start());
+            byte[] buffer = new byte[8192];
+            long remaining = region.count();
+            while (remaining > 0) {
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read < 0) {
+                    break;
+                }
+                output.write(buffer, 0, read);
+                remaining -= read;
+            }
+        }
+    }
+
+    /**
+     * Faixa de bytes: início e quantidade
+     */
+    private record Region(long start, long count) {
+
+        String contentRange(long length) {
+            return "bytes " + start + "-" + (start + count - 1) + "/" + length;
+        }
+    }
+}
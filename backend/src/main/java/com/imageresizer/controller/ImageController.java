@@ -1,23 +1,52 @@
 package com.imageresizer.controller;
 
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ImageMetadata;
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ImageJob;
 import com.imageresizer.model.ImageResponse;
+import com.imageresizer.model.JobResponse;
 import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.model.SourceResponse;
+import com.imageresizer.service.BatchProcessingService;
+import com.imageresizer.service.EncodedImage;
+import com.imageresizer.service.FormatNegotiator;
 import com.imageresizer.service.ImageProcessingService;
+import com.imageresizer.service.JobService;
+import com.imageresizer.service.OutputStore;
+import com.imageresizer.service.PixelBufferPool;
+import com.imageresizer.service.ProcessedImage;
+import com.imageresizer.service.ProcessingResultCache;
+import com.imageresizer.service.ProcessingScheduler;
+import com.imageresizer.service.RenditionService;
+import com.imageresizer.service.ReservedImage;
+import com.imageresizer.service.UploadReader;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.FileSystemResource;
+import org.springdoc.core.annotations.ParameterObject;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
 import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller para processamento de imagens
@@ -29,10 +58,25 @@ import java.io.IOException;
 public class ImageController {
 
     private final ImageProcessingService imageProcessingService;
+    private final BatchProcessingService batchProcessingService;
+    private final JobService jobService;
+    private final RenditionService renditionService;
+    private final FormatNegotiator formatNegotiator;
+    private final FileResponder fileResponder;
     private final ObjectMapper objectMapper;
 
-    public ImageController(ImageProcessingService imageProcessingService) {
+    public ImageController(ImageProcessingService imageProcessingService,
+                           BatchProcessingService batchProcessingService,
+                           JobService jobService,
+                           RenditionService renditionService,
+                           FormatNegotiator formatNegotiator,
+                           FileResponder fileResponder) {
         this.imageProcessingService = imageProcessingService;
+        this.batchProcessingService = batchProcessingService;
+        this.jobService = jobService;
+        this.renditionService = renditionService;
+        this.formatNegotiator = formatNegotiator;
+        this.fileResponder = fileResponder;
         this.objectMapper = new ObjectMapper();
     }
 
@@ -57,9 +101,30 @@ public class ImageController {
             @Parameter(description = "Qualidade JPEG (1-100)", example = "85")
             @RequestParam(value = "quality", defaultValue = "85") Integer quality,
             
+            @Parameter(description = "Algoritmo de resize (thumbnailator, bicubic, lanczos)", example = "thumbnailator")
+            @RequestParam(value = "resampler", required = false) String resampler,
+            
+            @Parameter(description = "Usar kernels SIMD (Vector API) quando disponíveis")
+            @RequestParam(value = "simd", required = false) Boolean simd,
+            
             @Parameter(description = "Formato de saída", example = "jpg")
             @RequestParam(value = "outputFormat", required = false) String outputFormat,
             
+            @Parameter(description = "JPEG progressivo")
+            @RequestParam(value = "progressive", defaultValue = "false") Boolean progressive,
+            
+            @Parameter(description = "Subamostragem de crominância JPEG (420, 422, 444)")
+            @RequestParam(value = "chromaSubsampling", required = false) String chromaSubsampling,
+            
+            @Parameter(description = "Nível de compressão PNG (0-9)")
+            @RequestParam(value = "compressionLevel", required = false) Integer compressionLevel,
+            
+            @Parameter(description = "WebP sem perdas")
+            @RequestParam(value = "lossless", defaultValue = "false") Boolean lossless,
+            
+            @Parameter(description = "Tamanho máximo do arquivo em bytes (reduz a qualidade JPEG/WebP até caber)")
+            @RequestParam(value = "maxBytes", required = false) Integer maxBytes,
+            
             @Parameter(description = "Rotação em graus (90, 180, 270)")
             @RequestParam(value = "rotation", required = false) Integer rotation,
             
@@ -72,6 +137,15 @@ public class ImageController {
             @Parameter(description = "Converter para preto e branco")
             @RequestParam(value = "grayscale", defaultValue = "false") Boolean grayscale,
             
+            @Parameter(description = "Desfoque gaussiano: sigma em pixels (até 100)")
+            @RequestParam(value = "blur", required = false) Double blur,
+            
+            @Parameter(description = "Nitidez (unsharp mask): intensidade, 0.5 = 50% (até 10)")
+            @RequestParam(value = "sharpen", required = false) Double sharpen,
+            
+            @Parameter(description = "Sigma da nitidez em pixels (padrão 1)")
+            @RequestParam(value = "sharpenRadius", required = false) Double sharpenRadius,
+            
             @Parameter(description = "Crop X (pixels)")
             @RequestParam(value = "cropX", required = false) Integer cropX,
             
@@ -82,7 +156,13 @@ public class ImageController {
             @RequestParam(value = "cropWidth", required = false) Integer cropWidth,
             
             @Parameter(description = "Crop altura (pixels)")
-            @RequestParam(value = "cropHeight", required = false) Integer cropHeight
+            @RequestParam(value = "cropHeight", required = false) Integer cropHeight,
+            
+            @Parameter(description = "GIF animado: máximo de quadros mantidos")
+            @RequestParam(value = "maxFrames", required = false) Integer maxFrames,
+            
+            @Parameter(description = "GIF animado: máximo de quadros por segundo")
+            @RequestParam(value = "maxFrameRate", required = false) Integer maxFrameRate
     ) {
         log.info("Received image processing request: {}", file.getOriginalFilename());
         
@@ -100,15 +180,27 @@ public class ImageController {
                 .percentage(percentage)
                 .keepAspectRatio(keepAspectRatio)
                 .quality(quality)
+                .resampler(resampler)
+                .simd(simd)
                 .outputFormat(outputFormat)
+                .progressive(progressive)
+                .chromaSubsampling(chromaSubsampling)
+                .compressionLevel(compressionLevel)
+                .lossless(lossless)
+                .maxBytes(maxBytes)
                 .rotation(rotation)
                 .flipHorizontal(flipHorizontal)
                 .flipVertical(flipVertical)
                 .grayscale(grayscale)
+                .blur(blur)
+                .sharpen(sharpen)
+                .sharpenRadius(sharpenRadius)
                 .cropX(cropX)
                 .cropY(cropY)
                 .cropWidth(cropWidth)
                 .cropHeight(cropHeight)
+                .maxFrames(maxFrames)
+                .maxFrameRate(maxFrameRate)
                 .build();
         
         ImageResponse response = imageProcessingService.processImage(file, request);
@@ -120,71 +212,332 @@ public class ImageController {
         }
     }
 
-    @GetMapping("/download/{fileName}")
-    @Operation(summary = "Baixar imagem processada", description = "Faz download da imagem processada")
-    public ResponseEntity<Resource> downloadImage(
-            @Parameter(description = "Nome do arquivo", required = true)
-            @PathVariable String fileName
+    @PostMapping(value = "/process", consumes = "image/*")
+    @Operation(summary = "Processar imagem (corpo bruto)",
+            description = "Como /process, com a imagem no corpo da requisição (Content-Type: image/*) em vez de multipart; "
+                    + "o corpo é lido direto do socket, sem arquivo temporário")
+    public ResponseEntity<ImageResponse> processRawImage(
+            @Parameter(description = "Nome do arquivo original (padrão: upload.<extensão do Content-Type>)")
+            @RequestParam(value = "fileName", required = false) String fileName,
+            
+            @ParameterObject @ModelAttribute ResizeRequest request,
+            
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+            
+            HttpServletRequest servletRequest
     ) throws IOException {
-        log.info("Download request for file: {}", fileName);
+        String originalFileName = StringUtils.hasText(fileName) ? fileName
+                : "upload." + ImageFormat.fromMimeType(contentType.getType() + "/" + contentType.getSubtype()).getExtension();
+        log.info("Received raw image processing request: {}", originalFileName);
+        
+        UploadReader.Upload upload = imageProcessingService.receiveUpload(servletRequest.getInputStream(),
+                servletRequest.getContentLengthLong());
+        if (upload.data().length == 0) {
+            throw new ImageProcessingException("File is empty");
+        }
+        
+        ImageResponse response = imageProcessingService.processImage(upload, originalFileName, request);
+        
+        if (response.isSuccess()) {
+            return ResponseEntity.ok(response);
+        } else {
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+
+    @PostMapping(value = "/process/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Processar imagem (streaming)",
+            description = "Processa a imagem e devolve o resultado direto no corpo da resposta, sem gravar em disco")
+    public ResponseEntity<StreamingResponseBody> processImageStream(
+            @Parameter(description = "Arquivo de imagem", required = true)
+            @RequestParam("file") MultipartFile file,
+            
+            @ParameterObject @ModelAttribute ResizeRequest request,
+            
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept
+    ) throws IOException {
+        log.info("Received streaming image processing request: {}", file.getOriginalFilename());
+        
+        if (file.isEmpty()) {
+            throw new ImageProcessingException("File is empty");
+        }
+        
+        byte[] data = imageProcessingService.readUpload(file);
+        List<ImageFormat> formats = imageProcessingService.outputFormats(data, file.getOriginalFilename(),
+                request, accept);
+        String[] vary = formatNegotiator.isNegotiated(request) ? new String[] {HttpHeaders.ACCEPT} : new String[0];
+        
+        if (formats.size() > 1) {
+            // Tentativa em vários formatos: o menor já está em memória
+            EncodedImage encoded = imageProcessingService.renderSmallest(data, formats, request);
+            StreamingResponseBody body = output -> output.write(encoded.data());
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType(encoded.format().getMimeType()))
+                    .contentLength(encoded.data().length)
+                    .varyBy(vary)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline")
+                    .header("X-Original-Width", String.valueOf(encoded.originalWidth()))
+                    .header("X-Original-Height", String.valueOf(encoded.originalHeight()))
+                    .header("X-Original-Size", String.valueOf(file.getSize()))
+                    .header("X-Processed-Width", String.valueOf(encoded.width()))
+                    .header("X-Processed-Height", String.valueOf(encoded.height()))
+                    .body(body);
+        }
         
-        File file = imageProcessingService.getProcessedFile(fileName);
-        Resource resource = new FileSystemResource(file);
+        // A reserva de memória só é devolvida depois que o corpo foi codificado
+        ReservedImage reserved = imageProcessingService.renderReserved(data, formats.get(0), request);
+        ProcessedImage processed = reserved.processed();
         
+        StreamingResponseBody body = output -> {
+            try {
+                imageProcessingService.writeImage(reserved, output);
+            } finally {
+                imageProcessingService.release(reserved);
+            }
+        };
         return ResponseEntity.ok()
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .contentLength(file.length())
-                .body(resource);
+                .contentType(MediaType.parseMediaType(processed.format().getMimeType()))
+                .varyBy(vary)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline")
+                .header("X-Original-Width", String.valueOf(processed.originalWidth()))
+                .header("X-Original-Height", String.valueOf(processed.originalHeight()))
+                .header("X-Original-Size", String.valueOf(file.getSize()))
+                .header("X-Processed-Width", String.valueOf(processed.width()))
+                .header("X-Processed-Height", String.valueOf(processed.height()))
+                .body(body);
     }
 
-    @GetMapping("/info/{fileName}")
-    @Operation(summary = "Informações da imagem", description = "Retorna metadados da imagem processada")
-    public ResponseEntity<ImageInfo> getImageInfo(
-            @PathVariable String fileName
+    @PostMapping(value = "/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = "application/zip")
+    @Operation(summary = "Processar lote",
+            description = "Processa vários arquivos (e opcionalmente várias larguras de cada um) e devolve um ZIP")
+    public ResponseEntity<StreamingResponseBody> processBatch(
+            @Parameter(description = "Arquivos de imagem", required = true)
+            @RequestParam("files") List<MultipartFile> files,
+            
+            @Parameter(description = "Larguras das variantes (ex: 2048,1024,512)")
+            @RequestParam(value = "widths", required = false) List<Integer> widths,
+            
+            @ParameterObject @ModelAttribute ResizeRequest request
     ) throws IOException {
-        File file = imageProcessingService.getProcessedFile(fileName);
+        log.info("Received batch processing request: {} files", files.size());
         
-        // Aqui você pode adicionar lógica para extrair metadados da imagem
-        ImageInfo info = ImageInfo.builder()
-                .fileName(fileName)
-                .fileSize(file.length())
-                .build();
+        List<BatchProcessingService.BatchSource> sources = new ArrayList<>();
+        for (MultipartFile file : files) {
+            if (!file.isEmpty()) {
+                sources.add(new BatchProcessingService.BatchSource(
+                        file.getOriginalFilename(), imageProcessingService.readUpload(file)));
+            }
+        }
+        if (sources.isEmpty()) {
+            throw new ImageProcessingException("No files to process");
+        }
         
-        return ResponseEntity.ok(info);
+        BatchProcessingService.Batch batch = batchProcessingService.submit(sources, request, widths);
+        StreamingResponseBody body = batch::writeZip;
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"images.zip\"")
+                .body(body);
     }
 
-    @GetMapping("/health")
-    @Operation(summary = "Health check", description = "Verifica se a API está funcionando")
-    public ResponseEntity<HealthResponse> healthCheck() {
-        return ResponseEntity.ok(new HealthResponse("Image Resizer API is running", "1.0.0"));
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Criar job assíncrono",
+            description = "Enfileira o processamento e devolve o id do job na hora; a mesma imagem com os mesmos parâmetros devolve o job existente")
+    public ResponseEntity<JobResponse> submitJob(
+            @Parameter(description = "Arquivo de imagem", required = true)
+            @RequestParam("file") MultipartFile file,
+            
+            @ParameterObject @ModelAttribute ResizeRequest request
+    ) throws IOException {
+        log.info("Received job request: {}", file.getOriginalFilename());
+        
+        if (file.isEmpty()) {
+            throw new ImageProcessingException("File is empty");
+        }
+        
+        ImageJob job = jobService.submit(imageProcessingService.readUpload(file), file.getOriginalFilename(), request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/images/jobs/" + job.getId()))
+                .body(JobResponse.from(job));
     }
 
-    // DTOs internos
-    public record ImageInfo(String fileName, Long fileSize) {
-        public static ImageInfoBuilder builder() {
-            return new ImageInfoBuilder();
+    @GetMapping("/jobs/{jobId}")
+    @Operation(summary = "Estado do job",
+            description = "Retorna o estado do job e, quando concluído, o resultado; com wait > 0 aguarda até o job terminar (long-poll)")
+    public CompletableFuture<ResponseEntity<JobResponse>> getJob(
+            @PathVariable String jobId,
+            
+            @Parameter(description = "Segundos para aguardar o fim do job (long-poll)")
+            @RequestParam(value = "wait", defaultValue = "0") int wait
+    ) {
+        return jobService.await(jobId, wait)
+                .thenApply(job -> job
+                        .map(found -> ResponseEntity.ok(JobResponse.from(found)))
+                        .orElseGet(() -> ResponseEntity.notFound().build()));
+    }
+
+    @PostMapping(value = "/sources", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Armazenar original",
+            description = "Guarda a imagem original para servir renditions sob demanda em /r/{sourceId}")
+    public ResponseEntity<SourceResponse> storeSource(
+            @Parameter(description = "Arquivo de imagem", required = true)
+            @RequestParam("file") MultipartFile file
+    ) throws IOException {
+        if (file.isEmpty()) {
+            throw new ImageProcessingException("File is empty");
         }
         
-        public static class ImageInfoBuilder {
-            private String fileName;
-            private Long fileSize;
+        SourceResponse response = renditionService.store(imageProcessingService.readUpload(file),
+                file.getOriginalFilename());
+        return ResponseEntity.created(URI.create("/api/images/r/" + response.getSourceId()))
+                .body(response);
+    }
+
+    @GetMapping("/r/{sourceId}")
+    @Operation(summary = "Rendition sob demanda",
+            description = "Gera (ou busca no cache) a rendition de um original armazenado, com ETag e Cache-Control para CDN")
+    public void getRendition(
+            @PathVariable String sourceId,
             
-            public ImageInfoBuilder fileName(String fileName) {
-                this.fileName = fileName;
-                return this;
-            }
+            @Parameter(description = "Largura (pixels)")
+            @RequestParam(value = "w", required = false) Integer w,
             
-            public ImageInfoBuilder fileSize(Long fileSize) {
-                this.fileSize = fileSize;
-                return this;
-            }
+            @Parameter(description = "Altura (pixels)")
+            @RequestParam(value = "h", required = false) Integer h,
             
-            public ImageInfo build() {
-                return new ImageInfo(fileName, fileSize);
-            }
+            @Parameter(description = "Formato de saída (padrão: o do original)")
+            @RequestParam(value = "fmt", required = false) String fmt,
+            
+            @Parameter(description = "Qualidade JPEG/WebP (1-100)")
+            @RequestParam(value = "q", required = false) Integer q,
+            
+            @ParameterObject @ModelAttribute ResizeRequest request,
+            
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            
+            HttpServletRequest servletRequest,
+            HttpServletResponse servletResponse
+    ) throws IOException {
+        // Os parâmetros curtos têm precedência sobre os nomes completos de /process
+        ResizeRequest effective = request.toBuilder()
+                .width(w != null ? w : request.getWidth())
+                .height(h != null ? h : request.getHeight())
+                .outputFormat(fmt != null ? fmt : request.getOutputFormat())
+                .quality(q != null ? q : request.getQuality())
+                .build();
+        
+        Optional<RenditionService.Rendition> resolved = renditionService.resolve(sourceId, effective, accept);
+        if (resolved.isEmpty()) {
+            servletResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        RenditionService.Rendition rendition = resolved.get();
+        CacheControl cacheControl = CacheControl.maxAge(Duration.ofSeconds(renditionService.getMaxAgeSeconds()))
+                .cachePublic()
+                .immutable();
+        servletResponse.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        // Sem formato na URL o conteúdo depende do Accept: a CDN precisa separar as variantes
+        if (rendition.negotiated()) {
+            servletResponse.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        
+        // Revalidação sem gerar a rendition
+        if (rendition.matches(ifNoneMatch)) {
+            servletResponse.setHeader(HttpHeaders.ETAG, rendition.etag());
+            servletResponse.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        
+        Resource resource = renditionService.render(rendition);
+        fileResponder.send(servletRequest, servletResponse, resource, mediaType(resource), rendition.etag(), "inline");
     }
-    
+
+    @GetMapping("/download/{fileName}")
+    @Operation(summary = "Baixar imagem processada",
+            description = "Faz download da imagem processada, com ETag, Last-Modified e Range (206/416)")
+    public void downloadImage(
+            @Parameter(description = "Nome do arquivo", required = true)
+            @PathVariable String fileName,
+            
+            HttpServletRequest servletRequest,
+            HttpServletResponse servletResponse
+    ) throws IOException {
+        log.info("Download request for file: {}", fileName);
+        
+        Optional<Resource> resource = imageProcessingService.findProcessedFile(fileName);
+        if (resource.isEmpty()) {
+            servletResponse.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        fileResponder.send(servletRequest, servletResponse, resource.get(), mediaType(resource.get()), null,
+                ContentDisposition.attachment().filename(fileName).build().toString());
+    }
+
+    /**
+     * Tipo MIME pela extensão do arquivo gerado
+     */
+    private static MediaType mediaType(Resource resource) {
+        String extension = StringUtils.getFilenameExtension(resource.getFilename());
+        if (extension == null) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+        return MediaType.parseMediaType(ImageFormat.fromExtension(extension).getMimeType());
+    }
+
+    @GetMapping("/info/{fileName}")
+    @Operation(summary = "Informações da imagem",
+            description = "Retorna metadados da imagem processada, lidos só do cabeçalho")
+    public ResponseEntity<ImageMetadata> getImageInfo(
+            @PathVariable String fileName
+    ) throws IOException {
+        return ResponseEntity.ok(imageProcessingService.getProcessedImageInfo(fileName));
+    }
+
+    @PostMapping(value = "/probe", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Inspecionar imagem",
+            description = "Retorna dimensões, modelo de cor, quadros e orientação EXIF sem decodificar os pixels")
+    public ResponseEntity<ImageMetadata> probeImage(
+            @Parameter(description = "Arquivo de imagem", required = true)
+            @RequestParam("file") MultipartFile file
+    ) throws IOException {
+        if (file.isEmpty()) {
+            throw new ImageProcessingException("File is empty");
+        }
+        return ResponseEntity.ok(imageProcessingService.probeImage(file));
+    }
+
+    @GetMapping("/cache/stats")
+    @Operation(summary = "Estatísticas do cache", description = "Retorna acertos, falhas e remoções do cache de resultados")
+    public ResponseEntity<ProcessingResultCache.CacheStats> getCacheStats() {
+        return ResponseEntity.ok(imageProcessingService.getCacheStats());
+    }
+
+    @GetMapping("/scheduler/stats")
+    @Operation(summary = "Estatísticas do processamento", description = "Retorna fila, tempo de espera e recusas do agendador")
+    public ResponseEntity<ProcessingScheduler.SchedulerStats> getSchedulerStats() {
+        return ResponseEntity.ok(imageProcessingService.getSchedulerStats());
+    }
+
+    @GetMapping("/output/stats")
+    @Operation(summary = "Estatísticas do armazenamento", description = "Retorna arquivos, bytes, expirações e remoções por falta de espaço das imagens processadas")
+    public ResponseEntity<OutputStore.StoreStats> getOutputStoreStats() {
+        return ResponseEntity.ok(imageProcessingService.getOutputStoreStats());
+    }
+
+    @GetMapping("/buffers/stats")
+    @Operation(summary = "Estatísticas do pool de pixels", description = "Retorna uso, reaproveitamento e vazamentos do pool de buffers")
+    public ResponseEntity<PixelBufferPool.PoolStats> getBufferPoolStats() {
+        return ResponseEntity.ok(imageProcessingService.getBufferPoolStats());
+    }
+
+    @GetMapping("/health")
+    @Operation(summary = "Health check", description = "Verifica se a API está funcionando")
+    public ResponseEntity<HealthResponse> healthCheck() {
+        return ResponseEntity.ok(new HealthResponse("Image Resizer API is running", "1.0.0"));
+    }
+
+    // DTOs internos
     public record HealthResponse(String status, String version) {}
 }
@@ -0,0 +1,26 @@
+package com.imageresizer.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Exception para requisições recusadas pelo controle de admissão
+ */
+public class ProcessingRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final int retryAfterSeconds;
+
+    public ProcessingRejectedException(String message, HttpStatus status, int retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
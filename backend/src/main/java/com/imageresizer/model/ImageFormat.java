@@ -36,4 +36,13 @@ public enum ImageFormat {
         }
         return PNG; // Default
     }
+
+    public static ImageFormat fromMimeType(String mimeType) {
+        for (ImageFormat format : values()) {
+            if (format.mimeType.equalsIgnoreCase(mimeType)) {
+                return format;
+            }
+        }
+        return PNG; // Default
+    }
 }
@@ -0,0 +1,29 @@
+package com.imageresizer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Job assíncrono de processamento, como gravado no diretório de jobs
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageJob {
+
+    private String id; // hash da entrada + parâmetros
+    private JobState state;
+    private String originalFileName;
+    private ResizeRequest request;
+    private int attempts;
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    // Resultado (COMPLETED ou FAILED)
+    private ImageResponse result;
+}
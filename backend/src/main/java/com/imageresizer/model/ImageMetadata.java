@@ -0,0 +1,32 @@
+package com.imageresizer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO com os metadados lidos do cabeçalho da imagem (sem decodificar os pixels)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageMetadata {
+
+    private String fileName;
+    private Long fileSize;
+
+    // Cabeçalho
+    private String format;
+    private Integer width;
+    private Integer height;
+    private String colorModel; // RGB, RGBA, GRAY, GRAY_ALPHA, INDEXED, CMYK
+    private Integer bitsPerPixel;
+    private Boolean hasAlpha;
+    private Integer frameCount;
+    private Integer orientation; // EXIF 1-8 (null se ausente)
+
+    // Limite de pixels (image.max-pixels)
+    private Boolean withinPixelLimit;
+}
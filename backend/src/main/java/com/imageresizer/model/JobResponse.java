@@ -0,0 +1,42 @@
+package com.imageresizer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * DTO para resposta de consulta de job
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class JobResponse {
+
+    private String jobId;
+    private JobState state;
+    private String originalFileName;
+    private int attempts;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private String statusUrl;
+
+    // Mesmo conteúdo da resposta do /process, quando o job termina
+    private ImageResponse result;
+
+    public static JobResponse from(ImageJob job) {
+        return JobResponse.builder()
+                .jobId(job.getId())
+                .state(job.getState())
+                .originalFileName(job.getOriginalFileName())
+                .attempts(job.getAttempts())
+                .createdAt(job.getCreatedAt())
+                .updatedAt(job.getUpdatedAt())
+                .statusUrl("/jobs/" + job.getId())
+                .result(job.getResult())
+                .build();
+    }
+}
@@ -0,0 +1,15 @@
+package com.imageresizer.model;
+
+/**
+ * Estados de um job assíncrono
+ */
+public enum JobState {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    FAILED;
+
+    public boolean isFinished() {
+        return this == COMPLETED || this == FAILED;
+    }
+}
@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
  * DTO para requisição de redimensionamento de imagem
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ResizeRequest {
@@ -22,19 +22,37 @@ public class ResizeRequest {
     // Opções
     private Boolean keepAspectRatio = true;
     private Integer quality = 85; // 1-100 para JPEG
+    private String resampler; // thumbnailator (padrão), bicubic, lanczos
+    private Boolean simd; // false força os kernels escalares
     
     // Formato
     private String outputFormat; // png, jpg, webp, gif
     
+    // Codificação
+    private Boolean progressive; // JPEG progressivo
+    private String chromaSubsampling; // JPEG: 420, 422, 444
+    private Integer compressionLevel; // PNG: 0-9
+    private Boolean lossless; // WebP sem perdas
+    private Integer maxBytes; // Tamanho máximo do arquivo (JPEG/WebP)
+    
     // Operações adicionais
     private Integer rotation; // 90, 180, 270
     private Boolean flipHorizontal;
     private Boolean flipVertical;
     private Boolean grayscale;
     
+    // Filtros
+    private Double blur; // Desfoque gaussiano: sigma em pixels
+    private Double sharpen; // Nitidez (unsharp mask): intensidade, 0.5 = 50%
+    private Double sharpenRadius; // Sigma da nitidez em pixels (padrão 1)
+    
     // Crop
     private Integer cropX;
     private Integer cropY;
     private Integer cropWidth;
     private Integer cropHeight;
+    
+    // GIF animado
+    private Integer maxFrames; // Máximo de quadros mantidos
+    private Integer maxFrameRate; // Máximo de quadros por segundo
 }
@@ -0,0 +1,26 @@
+package com.imageresizer.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO para resposta de envio de original
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SourceResponse {
+
+    private String sourceId;
+    private String originalFileName;
+    private String format;
+    private Integer width;
+    private Integer height;
+    private long sizeBytes;
+
+    // GET com os parâmetros da rendition (ex: ?w=800&fmt=webp)
+    private String renditionUrl;
+}
@@ -0,0 +1,390 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ImageMetadata;
+import com.imageresizer.model.ResizeRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Processamento de GIF animado quadro a quadro, mantendo a animação.
+ *
+ * O {@link AnimatedGifReader} compõe os quadros em ordem numa tela única; cada quadro
+ * mantido é copiado e segue para um {@link ForkJoinPool} próprio, onde passa pelo
+ * {@link ImageTransformPipeline} e é codificado como GIF (quantização e LZW, a parte cara).
+ * O {@link AnimatedGifWriter} junta os quadros na ordem, com os tempos originais. Em
+ * animações sem transparência cada quadro traz só o retângulo que mudou desde o anterior,
+ * como nos GIFs otimizados; com transparência, cada quadro é uma tela inteira.
+ *
+ * Só {@code parallelism} quadros ficam em andamento ao mesmo tempo, então a memória não
+ * depende do tamanho da animação. Cada quadro a mais ocupa um worker livre do
+ * {@link ProcessingScheduler} enquanto a animação roda; com o servidor ocupado, e dentro de
+ * um lote, os quadros são processados na thread que chamou, como no {@link ParallelResampler}.
+ *
+ * Quadros podem ser descartados para limitar o resultado: {@code maxFrameRate} (quadros
+ * por segundo) e {@code maxFrames} da requisição, além do teto {@code max-frames} do
+ * servidor. O tempo de um quadro descartado é somado ao do quadro mantido anterior, então
+ * a duração total não muda.
+ */
+@Slf4j
+@Component
+public class AnimatedGifProcessor {
+
+    /**
+     * Duração mínima que os navegadores respeitam; tempos menores viram 10 centésimos
+     */
+    private static final int MIN_BROWSER_DELAY = 2;
+    private static final int DEFAULT_BROWSER_DELAY = 10;
+
+    private final boolean enabled;
+    private final int maxFrames;
+    private final int parallelism;
+    private final ImageTransformPipeline transformPipeline;
+    private final ImageEncoder encoder;
+    private final ImageProbe imageProbe;
+    private final PixelBufferPool bufferPool;
+    private final ProcessingScheduler scheduler;
+    private final ForkJoinPool pool;
+
+    public AnimatedGifProcessor(@Value("${image.animation.enabled:true}") boolean enabled,
+                                @Value("${image.animation.max-frames:500}") int maxFrames,
+                                @Value("${image.animation.parallelism:0}") int parallelism,
+                                ImageTransformPipeline transformPipeline,
+                                ImageEncoder encoder,
+                                ImageProbe imageProbe,
+                                PixelBufferPool bufferPool,
+                                ProcessingScheduler scheduler) {
+        this.enabled = enabled;
+        this.maxFrames = maxFrames;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.transformPipeline = transformPipeline;
+        this.encoder = encoder;
+        this.imageProbe = imageProbe;
+        this.bufferPool = bufferPool;
+        this.scheduler = scheduler;
+        this.pool = new ForkJoinPool(this.parallelism);
+    }
+
+    /**
+     * Se a imagem é um GIF com mais de um quadro e a saída pedida é GIF
+     */
+    public boolean accepts(ImageMetadata header, ImageFormat outputFormat) {
+        return enabled && outputFormat == ImageFormat.GIF && "gif".equals(header.getFormat())
+                && header.getFrameCount() != null && header.getFrameCount() > 1;
+    }
+
+    /**
+     * Memória de pico: a tela de composição, a cópia da tela e o quadro transformado de
+     * cada quadro em andamento, e o último quadro gravado (base do próximo)
+     */
+    public long estimatedBytes(int width, int height) {
+        return (long) width * height * Integer.BYTES * (2 + 2L * parallelism);
+    }
+
+    /**
+     * Transforma todos os quadros mantidos e grava a animação no stream
+     */
+    public Result render(byte[] data, ResizeRequest request, OutputStream output) throws IOException {
+        EncodeOptions encoding = EncodeOptions.from(request);
+        int limit = frameLimit(request);
+        try (AnimatedGifReader reader = new AnimatedGifReader(data, imageProbe, bufferPool)) {
+            int[] delays = reader.delays();
+            int[] kept = selectFrames(delays, limit, request.getMaxFrameRate());
+            // Sem transparência cada quadro pode trazer só o que mudou desde o anterior
+            boolean opaque = reader.isOpaque();
+            AnimatedGifWriter writer = new AnimatedGifWriter(output, reader.loopCount(), !opaque);
+            // A thread que chama conta como um dos quadros em andamento
+            List<ProcessingScheduler.Worker> helpers = occupyHelpers();
+            int window = 1 + helpers.size();
+            Executor executor = window > 1 ? ImageMetrics.measured(pool) : Runnable::run;
+            Deque<PendingFrame> pending = new ArrayDeque<>(window);
+            PendingFrame lastWritten = null;
+            int written = 0;
+            try {
+                CompletableFuture<BufferedImage> previous = null;
+                int next = 0;
+                for (int index = 0; index < reader.frameCount() && next < kept.length; index++) {
+                    BufferedImage canvas = reader.compose();
+                    if (index != kept[next]) {
+                        continue;
+                    }
+                    if (pending.size() == window) {
+                        PendingFrame head = pending.peekFirst();
+                        writeFrame(writer, head, duration(delays, kept, written++));
+                        pending.removeFirst();
+                        release(lastWritten);
+                        lastWritten = head;
+                    }
+                    BufferedImage frame = copy(canvas, opaque);
+                    CompletableFuture<BufferedImage> transformed = CompletableFuture.supplyAsync(
+                            () -> transform(frame, request), executor);
+                    CompletableFuture<EncodedFrame> encoded = previous == null || !opaque
+                            ? transformed.thenApplyAsync(image -> encodeFrame(image, null, encoding), executor)
+                            : transformed.thenCombineAsync(previous,
+                                    (image, before) -> encodeFrame(image, before, encoding), executor);
+                    pending.addLast(new PendingFrame(transformed, encoded));
+                    previous = transformed;
+                    next++;
+                }
+                while (!pending.isEmpty()) {
+                    PendingFrame head = pending.peekFirst();
+                    writeFrame(writer, head, duration(delays, kept, written++));
+                    pending.removeFirst();
+                    release(lastWritten);
+                    lastWritten = head;
+                }
+            } finally {
+                // Em caso de erro, os quadros em andamento terminam antes de os buffers voltarem ao pool
+                for (PendingFrame frame : pending) {
+                    frame.encoded().handle((result, error) -> null).join();
+                }
+                release(lastWritten);
+                for (PendingFrame frame : pending) {
+                    release(frame);
+                }
+                helpers.forEach(ProcessingScheduler.Worker::close);
+            }
+            writer.finish();
+            log.info("Animated GIF: {} of {} frames, {}x{} -> {}x{}{}", written, reader.frameCount(),
+                    reader.width(), reader.height(), writer.width(), writer.height(), opaque ? " (delta frames)" : "");
+            return new Result(reader.width(), reader.height(), writer.width(), writer.height(),
+                    written, reader.frameCount() - written);
+        }
+    }
+
+    /**
+     * Limite de quadros: o da requisição, sem passar do teto do servidor (0 desliga)
+     */
+    private int frameLimit(ResizeRequest request) {
+        Integer requested = request.getMaxFrames();
+        if (requested != null && requested <= 0) {
+            throw new ImageProcessingException("maxFrames must be positive");
+        }
+        if (request.getMaxFrameRate() != null && request.getMaxFrameRate() <= 0) {
+            throw new ImageProcessingException("maxFrameRate must be positive");
+        }
+        if (requested == null) {
+            return maxFrames;
+        }
+        return maxFrames > 0 ? Math.min(requested, maxFrames) : requested;
+    }
+
+    /**
+     * Workers ocupados para os quadros em andamento além do primeiro: até
+     * {@code parallelism - 1}, só os que estão livres agora; nenhum (quadros na thread que
+     * chamou) quando já roda dentro de um fork/join. Ficam ocupados até a animação terminar.
+     */
+    private List<ProcessingScheduler.Worker> occupyHelpers() {
+        List<ProcessingScheduler.Worker> helpers = new ArrayList<>();
+        if (parallelism <= 1 || Thread.currentThread() instanceof ForkJoinWorkerThread) {
+            return helpers;
+        }
+        for (int i = Math.min(parallelism - 1, scheduler.idleWorkers()); i > 0; i--) {
+            ProcessingScheduler.Worker worker = scheduler.tryOccupyWorker();
+            if (worker == null) {
+                break;
+            }
+            helpers.add(worker);
+        }
+        return helpers;
+    }
+
+    private void writeFrame(AnimatedGifWriter writer, PendingFrame frame, int delay) throws IOException {
+        EncodedFrame encoded = await(frame.encoded());
+        writer.writeFrame(encoded.gif(), encoded.x(), encoded.y(), delay);
+    }
+
+    private BufferedImage transform(BufferedImage frame, ResizeRequest request) {
+        BufferedImage transformed;
+        try {
+            transformed = transformPipeline.apply(frame, request);
+        } catch (IOException e) {
+            bufferPool.release(frame);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            bufferPool.release(frame);
+            throw e;
+        }
+        if (!PixelBufferPool.sharesBuffer(transformed, frame)) {
+            bufferPool.release(frame);
+        }
+        return transformed;
+    }
+
+    /**
+     * Codifica o quadro inteiro ou, havendo o anterior, só o retângulo que mudou
+     */
+    private EncodedFrame encodeFrame(BufferedImage image, BufferedImage previous, EncodeOptions encoding) {
+        Rectangle area = previous != null
+                ? changedArea(image, previous)
+                : new Rectangle(image.getWidth(), image.getHeight());
+        BufferedImage region = area.width == image.getWidth() && area.height == image.getHeight()
+                ? image
+                : image.getSubimage(area.x, area.y, area.width, area.height);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try {
+            encoder.encode(region, ImageFormat.GIF, encoding, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new EncodedFrame(output.toByteArray(), area.x, area.y);
+    }
+
+    /**
+     * Menor retângulo com todos os pixels diferentes entre os dois quadros (1x1 se são
+     * iguais: o GIF não tem quadro vazio)
+     */
+    static Rectangle changedArea(BufferedImage image, BufferedImage previous) {
+        int width = image.getWidth();
+        int[] row = new int[width];
+        int[] before = new int[width];
+        PixelKernels kernels = PixelKernels.preferred();
+        int top = -1;
+        int bottom = -1;
+        int left = width;
+        int right = -1;
+        for (int y = 0; y < image.getHeight(); y++) {
+            RasterRows.read(image, 0, y, width, row, 0, kernels);
+            RasterRows.read(previous, 0, y, width, before, 0, kernels);
+            int first = Arrays.mismatch(row, before);
+            if (first < 0) {
+                continue;
+            }
+            int last = width - 1;
+            while (row[last] == before[last]) {
+                last--;
+            }
+            if (top < 0) {
+                top = y;
+            }
+            bottom = y;
+            left = Math.min(left, first);
+            right = Math.max(right, last);
+        }
+        if (top < 0) {
+            return new Rectangle(0, 0, 1, 1);
+        }
+        return new Rectangle(left, top, right - left + 1, bottom - top + 1);
+    }
+
+    /**
+     * Cópia da tela; em animações opacas sem o canal alfa, para o GIF não reservar uma
+     * cor transparente
+     */
+    private BufferedImage copy(BufferedImage canvas, boolean opaque) {
+        BufferedImage frame = bufferPool.createImageForOverwrite(canvas.getWidth(), canvas.getHeight(),
+                opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        int[] source = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+        int[] target = ((DataBufferInt) frame.getRaster().getDataBuffer()).getData();
+        System.arraycopy(source, 0, target, 0, canvas.getWidth() * canvas.getHeight());
+        return frame;
+    }
+
+    /**
+     * Devolve ao pool o quadro transformado, depois que a codificação dele terminou
+     */
+    private void release(PendingFrame frame) {
+        if (frame != null) {
+            bufferPool.release(frame.transformed().handle((image, error) -> image).join());
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Índices dos quadros mantidos. Primeiro o limite de quadros por segundo (um quadro só
+     * entra se começar pelo menos 1/fps depois do último mantido, nos tempos que o
+     * navegador usaria); depois, se ainda passar de {@code maxFrames}, uma amostra
+     * uniforme dos que sobraram.
+     */
+    static int[] selectFrames(int[] delays, int maxFrames, Integer maxFrameRate) {
+        int[] kept = new int[delays.length];
+        int count = 0;
+        double interval = maxFrameRate != null ? 100.0 / maxFrameRate : 0;
+        double time = 0;
+        double nextAllowed = 0;
+        for (int i = 0; i < delays.length; i++) {
+            if (time >= nextAllowed - 1e-9) {
+                kept[count++] = i;
+                nextAllowed = time + interval;
+            }
+            time += delays[i] < MIN_BROWSER_DELAY ? DEFAULT_BROWSER_DELAY : delays[i];
+        }
+        if (maxFrames <= 0 || count <= maxFrames) {
+            return Arrays.copyOf(kept, count);
+        }
+        int[] sampled = new int[maxFrames];
+        for (int i = 0; i < maxFrames; i++) {
+            sampled[i] = kept[(int) ((long) i * count / maxFrames)];
+        }
+        return sampled;
+    }
+
+    /**
+     * Duração do quadro mantido: a dele e a de todos os descartados até o próximo mantido
+     */
+    static int duration(int[] delays, int[] kept, int position) {
+        int end = position + 1 < kept.length ? kept[position + 1] : delays.length;
+        int total = 0;
+        for (int i = kept[position]; i < end; i++) {
+            total += delays[i];
+        }
+        return total;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Quadro em andamento: a transformação e a codificação, que no modo delta também
+     * depende do quadro transformado anterior
+     */
+    private record PendingFrame(CompletableFuture<BufferedImage> transformed,
+                                CompletableFuture<EncodedFrame> encoded) {}
+
+    /**
+     * GIF de uma imagem com a posição dela na animação
+     */
+    private record EncodedFrame(byte[] gif, int x, int y) {}
+
+    /**
+     * Dimensões da tela de origem e da animação gerada, e quadros gravados e descartados
+     */
+    public record Result(int originalWidth, int originalHeight, int width, int height,
+                         int frames, int droppedFrames) {}
+}
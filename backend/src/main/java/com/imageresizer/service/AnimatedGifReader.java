@@ -0,0 +1,274 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Leitura quadro a quadro de um GIF animado, com a composição que o navegador faz.
+ *
+ * Cada quadro do arquivo cobre só um retângulo da tela lógica e diz o que fazer com ele
+ * antes do próximo (disposal): manter, limpar para transparente ou restaurar o que havia
+ * antes. O leitor mantém uma única tela ARGB e decodifica um quadro por vez, então a
+ * memória não depende do número de quadros. Quem precisa de um quadro além do próximo
+ * {@link #compose} copia a tela.
+ *
+ * Os tempos e a contagem de repetições vêm dos metadados, lidos na abertura sem
+ * descomprimir nenhum quadro.
+ */
+final class AnimatedGifReader implements Closeable {
+
+    private static final String STREAM_METADATA_FORMAT = "javax_imageio_gif_stream_1.0";
+    private static final String IMAGE_METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+
+    private final ImageInputStream input;
+    private final ImageReader reader;
+    private final Frame[] frames;
+    private final int width;
+    private final int height;
+    private final int loopCount;
+    private final PixelBufferPool bufferPool;
+    private final BufferedImage canvas;
+    private final int[] pixels;
+    private int next;
+    private int[] saved;
+
+    AnimatedGifReader(byte[] data, ImageProbe imageProbe, PixelBufferPool bufferPool) throws IOException {
+        this.input = new MemoryCacheImageInputStream(new ByteArrayInputStream(data));
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("gif");
+        if (!readers.hasNext()) {
+            input.close();
+            throw new ImageProcessingException("No decoder available for format: gif");
+        }
+        this.reader = readers.next();
+        try {
+            reader.setInput(input, false, false);
+            int count = reader.getNumImages(true);
+            if (count <= 0) {
+                throw new ImageProcessingException("GIF has no frames");
+            }
+            this.frames = new Frame[count];
+            int screenWidth = 0;
+            int screenHeight = 0;
+            IIOMetadata streamMetadata = reader.getStreamMetadata();
+            if (streamMetadata != null) {
+                IIOMetadataNode screen = child(streamMetadata.getAsTree(STREAM_METADATA_FORMAT),
+                        "LogicalScreenDescriptor");
+                screenWidth = intAttribute(screen, "logicalScreenWidth", 0);
+                screenHeight = intAttribute(screen, "logicalScreenHeight", 0);
+            }
+            int loops = -1;
+            for (int i = 0; i < count; i++) {
+                IIOMetadataNode root = (IIOMetadataNode) reader.getImageMetadata(i).getAsTree(IMAGE_METADATA_FORMAT);
+                frames[i] = frame(root);
+                if (i == 0) {
+                    loops = loopCount(root);
+                }
+            }
+            // Tela lógica menor que o primeiro quadro (arquivos malformados): vale o quadro
+            screenWidth = Math.max(screenWidth, frames[0].bounds.x + frames[0].bounds.width);
+            screenHeight = Math.max(screenHeight, frames[0].bounds.y + frames[0].bounds.height);
+            imageProbe.checkPixels(screenWidth, screenHeight);
+            this.width = screenWidth;
+            this.height = screenHeight;
+            this.loopCount = loops;
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            input.close();
+            throw e;
+        }
+        this.bufferPool = bufferPool;
+        this.canvas = bufferPool.createImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        this.pixels = ((DataBufferInt) canvas.getRaster().getDataBuffer()).getData();
+    }
+
+    int frameCount() {
+        return frames.length;
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    /**
+     * Repetições da animação (0 = infinitas), ou -1 se o arquivo não tem a extensão
+     * NETSCAPE2.0 (toca uma vez)
+     */
+    int loopCount() {
+        return loopCount;
+    }
+
+    /**
+     * Se todas as telas compostas são opacas: o primeiro quadro cobre a tela sem cor
+     * transparente e nenhum quadro limpa a própria área (a transparência dos seguintes só
+     * deixa ver o que já estava na tela)
+     */
+    boolean isOpaque() {
+        if (frames[0].transparent || !frames[0].bounds.contains(new Rectangle(width, height))) {
+            return false;
+        }
+        for (Frame frame : frames) {
+            if (frame.disposal == Disposal.RESTORE_TO_BACKGROUND) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Duração de cada quadro, em centésimos de segundo
+     */
+    int[] delays() {
+        int[] delays = new int[frames.length];
+        for (int i = 0; i < frames.length; i++) {
+            delays[i] = frames[i].delay;
+        }
+        return delays;
+    }
+
+    /**
+     * Decodifica o quadro seguinte e o compõe na tela, que é devolvida (e alterada pela
+     * próxima chamada). Os quadros precisam ser compostos em ordem, mesmo os descartados.
+     */
+    BufferedImage compose() throws IOException {
+        if (next >= frames.length) {
+            throw new IllegalStateException("No more frames");
+        }
+        if (next > 0) {
+            dispose(frames[next - 1]);
+        }
+        Frame frame = frames[next];
+        Rectangle area = frame.bounds.intersection(new Rectangle(width, height));
+        if (frame.disposal == Disposal.RESTORE_TO_PREVIOUS && !area.isEmpty()) {
+            saved = copy(area);
+        }
+        BufferedImage image = reader.read(next);
+        Graphics2D graphics = canvas.createGraphics();
+        try {
+            graphics.drawImage(image, frame.bounds.x, frame.bounds.y, null);
+        } finally {
+            graphics.dispose();
+        }
+        next++;
+        return canvas;
+    }
+
+    /**
+     * Libera a área do quadro anterior conforme o seu disposal
+     */
+    private void dispose(Frame frame) {
+        Rectangle area = frame.bounds.intersection(new Rectangle(width, height));
+        if (area.isEmpty()) {
+            return;
+        }
+        if (frame.disposal == Disposal.RESTORE_TO_BACKGROUND) {
+            // Os navegadores limpam para transparente, não para a cor de fundo
+            for (int y = area.y; y < area.y + area.height; y++) {
+                int offset = y * width + area.x;
+                Arrays.fill(pixels, offset, offset + area.width, 0);
+            }
+        } else if (frame.disposal == Disposal.RESTORE_TO_PREVIOUS && saved != null) {
+            for (int y = 0; y < area.height; y++) {
+                System.arraycopy(saved, y * area.width, pixels, (area.y + y) * width + area.x, area.width);
+            }
+            saved = null;
+        }
+    }
+
+    private int[] copy(Rectangle area) {
+        int[] copy = new int[area.width * area.height];
+        for (int y = 0; y < area.height; y++) {
+            System.arraycopy(pixels, (area.y + y) * width + area.x, copy, y * area.width, area.width);
+        }
+        return copy;
+    }
+
+    @Override
+    public void close() throws IOException {
+        bufferPool.release(canvas);
+        reader.dispose();
+        input.close();
+    }
+
+    private static Frame frame(IIOMetadataNode root) {
+        IIOMetadataNode descriptor = child(root, "ImageDescriptor");
+        IIOMetadataNode control = child(root, "GraphicControlExtension");
+        Rectangle bounds = new Rectangle(
+                intAttribute(descriptor, "imageLeftPosition", 0),
+                intAttribute(descriptor, "imageTopPosition", 0),
+                intAttribute(descriptor, "imageWidth", 0),
+                intAttribute(descriptor, "imageHeight", 0));
+        String disposal = control != null ? control.getAttribute("disposalMethod") : "";
+        boolean transparent = control != null && "TRUE".equalsIgnoreCase(control.getAttribute("transparentColorFlag"));
+        return new Frame(bounds, intAttribute(control, "delayTime", 0), transparent, switch (disposal) {
+            case "restoreToBackgroundColor" -> Disposal.RESTORE_TO_BACKGROUND;
+            case "restoreToPrevious" -> Disposal.RESTORE_TO_PREVIOUS;
+            default -> Disposal.KEEP;
+        });
+    }
+
+    /**
+     * Repetições da extensão NETSCAPE2.0 (sub-bloco 1: contagem em little endian)
+     */
+    private static int loopCount(IIOMetadataNode root) {
+        IIOMetadataNode extensions = child(root, "ApplicationExtensions");
+        if (extensions == null) {
+            return -1;
+        }
+        for (Node node = extensions.getFirstChild(); node != null; node = node.getNextSibling()) {
+            IIOMetadataNode extension = (IIOMetadataNode) node;
+            if ("NETSCAPE".equals(extension.getAttribute("applicationID"))
+                    && extension.getUserObject() instanceof byte[] data && data.length >= 3 && data[0] == 1) {
+                return (data[1] & 0xFF) | (data[2] & 0xFF) << 8;
+            }
+        }
+        return -1;
+    }
+
+    private static IIOMetadataNode child(Node parent, String name) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (name.equals(node.getNodeName())) {
+                return (IIOMetadataNode) node;
+            }
+        }
+        return null;
+    }
+
+    private static int intAttribute(IIOMetadataNode node, String name, int defaultValue) {
+        if (node == null || !node.hasAttribute(name)) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(node.getAttribute(name));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private enum Disposal {
+        KEEP,
+        RESTORE_TO_BACKGROUND,
+        RESTORE_TO_PREVIOUS
+    }
+
+    private record Frame(Rectangle bounds, int delay, boolean transparent, Disposal disposal) {}
+}
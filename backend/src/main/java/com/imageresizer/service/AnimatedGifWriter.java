@@ -0,0 +1,180 @@
+package com.imageresizer.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Monta um GIF animado a partir de quadros codificados separadamente.
+ *
+ * Cada quadro chega como um GIF completo de uma imagem só (o que permite quantizar e
+ * comprimir os quadros em paralelo); daqui saem só a paleta e os dados LZW dele, que
+ * viram um quadro da animação com paleta local, na posição e com o tempo informados. O
+ * primeiro quadro define o tamanho da animação.
+ *
+ * Com {@code clearFrames} cada quadro é limpo antes do próximo (disposal "restore to
+ * background"), para animações com transparência, em que cada quadro é uma tela inteira;
+ * sem, os quadros ficam e os seguintes podem trazer só a área que mudou.
+ */
+final class AnimatedGifWriter {
+
+    private final OutputStream output;
+    private final int loopCount;
+    private final boolean clearFrames;
+    private int width = -1;
+    private int height = -1;
+    private int frames;
+
+    /**
+     * @param loopCount repetições (0 = infinitas) ou -1 para tocar uma vez
+     */
+    AnimatedGifWriter(OutputStream output, int loopCount, boolean clearFrames) {
+        this.output = output;
+        this.loopCount = loopCount;
+        this.clearFrames = clearFrames;
+    }
+
+    /**
+     * Acrescenta um quadro
+     *
+     * @param gif   GIF de uma imagem
+     * @param x     posição do quadro na animação
+     * @param y     posição do quadro na animação
+     * @param delay duração em centésimos de segundo
+     */
+    void writeFrame(byte[] gif, int x, int y, int delay) throws IOException {
+        int frameWidth = readShort(gif, 6);
+        int frameHeight = readShort(gif, 8);
+        if (frames == 0) {
+            width = x + frameWidth;
+            height = y + frameHeight;
+            writeHeader();
+        } else if (x + frameWidth > width || y + frameHeight > height) {
+            throw new IOException("Frame " + frameWidth + "x" + frameHeight + " at " + x + "," + y
+                    + " exceeds the animation size " + width + "x" + height);
+        }
+
+        int screenFlags = gif[10] & 0xFF;
+        int position = 13;
+        int globalTable = -1;
+        int globalTableBits = screenFlags & 0x07;
+        if ((screenFlags & 0x80) != 0) {
+            globalTable = position;
+            position += tableLength(globalTableBits);
+        }
+
+        int transparentIndex = -1;
+        while (position < gif.length) {
+            int block = gif[position] & 0xFF;
+            if (block == 0x21) {
+                if ((gif[position + 1] & 0xFF) == 0xF9 && (gif[position + 3] & 0x01) != 0) {
+                    transparentIndex = gif[position + 6] & 0xFF;
+                }
+                position = skipSubBlocks(gif, position + 2);
+            } else if (block == 0x2C) {
+                writeImage(gif, position, globalTable, globalTableBits, transparentIndex, x, y, delay);
+                frames++;
+                return;
+            } else {
+                break;
+            }
+        }
+        throw new IOException("Encoded frame has no image");
+    }
+
+    /**
+     * Fecha a animação
+     */
+    void finish() throws IOException {
+        output.write(0x3B);
+    }
+
+    int width() {
+        return width;
+    }
+
+    int height() {
+        return height;
+    }
+
+    private void writeHeader() throws IOException {
+        output.write(new byte[] {'G', 'I', 'F', '8', '9', 'a'});
+        writeShort(width);
+        writeShort(height);
+        // Sem paleta global: cada quadro traz a sua
+        output.write(0);
+        output.write(0);
+        output.write(0);
+        if (loopCount >= 0) {
+            output.write(new byte[] {0x21, (byte) 0xFF, 0x0B,
+                    'N', 'E', 'T', 'S', 'C', 'A', 'P', 'E', '2', '.', '0', 0x03, 0x01});
+            writeShort(loopCount);
+            output.write(0);
+        }
+    }
+
+    /**
+     * Graphic Control Extension, descritor com a paleta local e os dados LZW do quadro
+     */
+    private void writeImage(byte[] gif, int descriptor, int globalTable, int globalTableBits,
+                            int transparentIndex, int x, int y, int delay) throws IOException {
+        boolean transparent = transparentIndex >= 0;
+        output.write(0x21);
+        output.write(0xF9);
+        output.write(4);
+        output.write((clearFrames ? 2 : 1) << 2 | (transparent ? 1 : 0));
+        writeShort(Math.max(0, Math.min(0xFFFF, delay)));
+        output.write(transparent ? transparentIndex : 0);
+        output.write(0);
+
+        int imageFlags = gif[descriptor + 9] & 0xFF;
+        boolean localTable = (imageFlags & 0x80) != 0;
+        int tableStart;
+        int tableBits;
+        if (localTable) {
+            tableStart = descriptor + 10;
+            tableBits = imageFlags & 0x07;
+        } else if (globalTable >= 0) {
+            tableStart = globalTable;
+            tableBits = globalTableBits;
+        } else {
+            throw new IOException("Encoded frame has no color table");
+        }
+        output.write(0x2C);
+        writeShort(x);
+        writeShort(y);
+        output.write(gif, descriptor + 5, 4);
+        output.write(0x80 | (imageFlags & 0x40) | tableBits);
+        output.write(gif, tableStart, tableLength(tableBits));
+
+        int data = descriptor + 10 + (localTable ? tableLength(tableBits) : 0);
+        int end = skipSubBlocks(gif, data + 1);
+        output.write(gif, data, end - data);
+    }
+
+    /**
+     * Posição logo depois do terminador de uma sequência de sub-blocos
+     */
+    private static int skipSubBlocks(byte[] gif, int position) throws IOException {
+        while (position < gif.length) {
+            int size = gif[position] & 0xFF;
+            position += 1 + size;
+            if (size == 0) {
+                return position;
+            }
+        }
+        throw new IOException("Truncated GIF data");
+    }
+
+    private static int tableLength(int bits) {
+        return 3 * (1 << (bits + 1));
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private void writeShort(int value) throws IOException {
+        output.write(value & 0xFF);
+        output.write((value >> 8) & 0xFF);
+    }
+}
@@ -0,0 +1,379 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ProcessingRejectedException;
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ResizeRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Service para processamento em lote.
+ *
+ * Cada arquivo é decodificado uma única vez e a imagem é compartilhada entre todas as
+ * variantes pedidas (ex.: as larguras de um srcset), com cada largura derivada da
+ * anterior pelo {@link RenditionPlanner}. Arquivos e variantes rodam em
+ * paralelo num {@link ForkJoinPool} (work-stealing), e os resultados são gravados num
+ * ZIP na ordem de envio. Decodificação, resize e cada variante ocupam um worker do
+ * {@link ProcessingScheduler} enquanto rodam, então um lote divide as CPUs com as
+ * requisições avulsas em vez de somar as suas. A memória de cada arquivo (a imagem
+ * decodificada e todas as variantes) é reservada uma vez, antes das tarefas dele.
+ */
+@Slf4j
+@Service
+public class BatchProcessingService {
+
+    private final ImageProcessingService imageProcessingService;
+    private final DecodePlanner decodePlanner;
+    private final ImageTransformPipeline transformPipeline;
+    private final RenditionPlanner renditionPlanner;
+    private final ProcessingScheduler scheduler;
+    private final PixelBufferPool bufferPool;
+    private final ImageMetrics metrics;
+    private final ForkJoinPool pool;
+
+    public BatchProcessingService(ImageProcessingService imageProcessingService,
+                                  DecodePlanner decodePlanner,
+                                  ImageTransformPipeline transformPipeline,
+                                  RenditionPlanner renditionPlanner,
+                                  ProcessingScheduler scheduler,
+                                  PixelBufferPool bufferPool,
+                                  ImageMetrics metrics,
+                                  @Value("${image.batch.parallelism:0}") int parallelism) {
+        this.imageProcessingService = imageProcessingService;
+        this.decodePlanner = decodePlanner;
+        this.transformPipeline = transformPipeline;
+        this.renditionPlanner = renditionPlanner;
+        this.scheduler = scheduler;
+        this.bufferPool = bufferPool;
+        this.metrics = metrics;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Inicia o processamento de todos os arquivos. As tarefas já estão rodando quando o
+     * método retorna; {@link Batch#writeZip(OutputStream)} aguarda e grava os resultados.
+     *
+     * A memória de cada arquivo é reservada aqui, na thread da requisição, antes de a
+     * tarefa dele ser criada: se o agendador recusar, a exceção chega ao controller antes
+     * de a resposta começar (as tarefas já criadas terminam e soltam as suas reservas).
+     */
+    public Batch submit(List<BatchSource> sources, ResizeRequest request, List<Integer> widths) {
+        log.info("Processing batch: {} files, {} variants each",
+                sources.size(), widths == null || widths.isEmpty() ? 1 : widths.size());
+        List<ForkJoinTask<List<BatchEntry>>> tasks = new ArrayList<>();
+        for (BatchSource source : sources) {
+            PreparedSource prepared;
+            try {
+                prepared = prepare(source, request, widths);
+            } catch (ProcessingRejectedException e) {
+                throw e;
+            } catch (Exception e) {
+                tasks.add(pool.submit(() -> errorEntries(source, e)));
+                continue;
+            }
+            tasks.add(pool.submit(() -> processSource(prepared, widths)));
+        }
+        return new Batch(tasks);
+    }
+
+    /**
+     * Lê o cabeçalho e reserva a memória do arquivo inteiro: a imagem decodificada e todas
+     * as variantes, que ficam prontas ao mesmo tempo
+     */
+    private PreparedSource prepare(BatchSource source, ResizeRequest request, List<Integer> widths)
+            throws IOException {
+        ImageFormat format = imageProcessingService.determineOutputFormat(source.fileName(), request.getOutputFormat());
+        List<ResizeRequest> variants = variants(request, widths);
+        // Decodifica pensando na maior variante; as demais são menores
+        DecodePlan plan = decodePlanner.plan(source.data(), largestVariant(variants));
+        try {
+            List<ResizeRequest> effective = new ArrayList<>();
+            for (ResizeRequest variant : variants) {
+                effective.add(effectiveRequest(plan, variant));
+            }
+            ProcessingScheduler.Admission admission = scheduler.admit(estimatedBytes(plan, effective));
+            return new PreparedSource(source, format, variants, effective, plan, admission);
+        } catch (Exception e) {
+            plan.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Decodifica um arquivo uma vez e gera todas as variantes em paralelo
+     */
+    private List<BatchEntry> processSource(PreparedSource prepared, List<Integer> widths) {
+        String baseName = baseName(prepared.source().fileName());
+        List<ResizeRequest> variants = prepared.variants();
+        List<ResizeRequest> effective = prepared.effective();
+        try (DecodePlan plan = prepared.plan();
+             ProcessingScheduler.Admission admission = prepared.admission()) {
+            BufferedImage decoded;
+            List<BufferedImage> resized;
+            // O worker é solto antes de esperar as variantes, que ocupam cada uma o seu
+            try (ProcessingScheduler.Worker worker = scheduler.occupyWorker()) {
+                decoded = metrics.record(ImageMetrics.Stage.DECODE,
+                        ImageMetrics.sourceTags(plan), () -> plan.decode(bufferPool));
+                metrics.recordDecodedBytes(plan);
+                try {
+                    // Variantes de largura saem de uma cadeia de reduções progressivas
+                    resized = metrics.record(ImageMetrics.Stage.TRANSFORM,
+                            ImageMetrics.transformTags(plan, largestVariant(variants)),
+                            () -> resizeVariants(decoded, effective));
+                } catch (Exception e) {
+                    bufferPool.release(decoded);
+                    throw e;
+                }
+            }
+            try {
+                List<ForkJoinTask<BatchEntry>> variantTasks = new ArrayList<>();
+                for (int i = 0; i < variants.size(); i++) {
+                    ResizeRequest variant = variants.get(i);
+                    BufferedImage image = resized.get(i);
+                    ResizeRequest finish = effective.get(i);
+                    String name = baseName + suffix(variant, widths) + "." + prepared.format().getExtension();
+                    variantTasks.add(ForkJoinTask.adapt(() -> renderVariant(plan, decoded, image, finish,
+                            prepared.format(), variant, name)));
+                }
+                List<BatchEntry> entries = new ArrayList<>();
+                try {
+                    ForkJoinTask.invokeAll(variantTasks);
+                    for (ForkJoinTask<BatchEntry> task : variantTasks) {
+                        entries.add(task.join());
+                    }
+                } finally {
+                    releaseResized(decoded, resized);
+                }
+                return entries;
+            } finally {
+                bufferPool.release(decoded);
+            }
+        } catch (Exception e) {
+            return errorEntries(prepared.source(), e);
+        }
+    }
+
+    private List<BatchEntry> errorEntries(BatchSource source, Exception e) {
+        log.error("Error processing batch file: {}", source.fileName(), e);
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        return List.of(new BatchEntry(baseName(source.fileName()) + ".error.txt",
+                message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Memória de pico de um arquivo: a imagem decodificada e, de cada variante, o quadro
+     * redimensionado, o do acabamento, a cópia que o encoder pode fazer e os rascunhos dos
+     * filtros
+     */
+    private static long estimatedBytes(DecodePlan plan, List<ResizeRequest> effective) {
+        long total = plan.getEstimatedBytes();
+        for (ResizeRequest request : effective) {
+            int width = plan.getDecodedWidth();
+            int height = plan.getDecodedHeight();
+            if (ImageTransformPipeline.hasResize(request)) {
+                int[] target = ImageTransformPipeline.targetSize(request, width, height);
+                RenditionPlanner.Size size = new RenditionPlanner.Size(target[0], target[1],
+                        Boolean.TRUE.equals(request.getKeepAspectRatio())).fittedTo(width, height);
+                width = Math.max(1, size.width());
+                height = Math.max(1, size.height());
+            }
+            total += 3L * width * height * Integer.BYTES + ImageFilters.scratchBytes(request, width, height);
+        }
+        return total;
+    }
+
+    /**
+     * Crop e resize de cada variante; com mais de uma variante, usa o {@link RenditionPlanner}
+     */
+    private List<BufferedImage> resizeVariants(BufferedImage decoded, List<ResizeRequest> effective) throws IOException {
+        if (effective.size() == 1) {
+            ResizeRequest request = effective.get(0);
+            return List.of(transformPipeline.resize(transformPipeline.crop(decoded, request), request));
+        }
+        List<RenditionPlanner.Size> sizes = new ArrayList<>();
+        for (ResizeRequest request : effective) {
+            sizes.add(new RenditionPlanner.Size(request.getWidth(), request.getHeight(),
+                    Boolean.TRUE.equals(request.getKeepAspectRatio())));
+        }
+        return renditionPlanner.render(transformPipeline.crop(decoded, effective.get(0)), sizes, effective.get(0));
+    }
+
+    /**
+     * Devolve ao pool os quadros do resize (o redimensionamento separável usa o pool)
+     */
+    private void releaseResized(BufferedImage decoded, List<BufferedImage> resized) {
+        for (BufferedImage image : resized) {
+            if (!PixelBufferPool.sharesBuffer(image, decoded)) {
+                bufferPool.release(image);
+            }
+        }
+    }
+
+    private BatchEntry renderVariant(DecodePlan plan, BufferedImage decoded, BufferedImage resized,
+                                     ResizeRequest effective, ImageFormat format, ResizeRequest variant,
+                                     String name) throws IOException {
+        EncodeOptions encoding = EncodeOptions.from(variant);
+        try (ProcessingScheduler.Worker worker = scheduler.occupyWorker()) {
+            BufferedImage result = transformPipeline.finish(resized, effective);
+            try {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                imageProcessingService.writeImage(new ProcessedImage(result, plan.getSourceWidth(),
+                        plan.getSourceHeight(), format, encoding), output);
+                return new BatchEntry(name, output.toByteArray());
+            } finally {
+                // A imagem decodificada é compartilhada entre as variantes e só é devolvida no fim
+                if (!PixelBufferPool.sharesBuffer(result, decoded)) {
+                    bufferPool.release(result);
+                }
+            }
+        }
+    }
+
+    /**
+     * Requisição da variante relativa à imagem decodificada pelo plano
+     */
+    private ResizeRequest effectiveRequest(DecodePlan plan, ResizeRequest variant) {
+        ResizeRequest effective = plan.getEffectiveRequest().toBuilder().build();
+        if (ImageTransformPipeline.hasResize(variant)) {
+            int[] target = ImageTransformPipeline.targetSize(variant, plan.getRegionWidth(), plan.getRegionHeight());
+            effective.setPercentage(null);
+            effective.setWidth(target[0]);
+            effective.setHeight(target[1]);
+        }
+        return effective;
+    }
+
+    private List<ResizeRequest> variants(ResizeRequest request, List<Integer> widths) {
+        if (widths == null || widths.isEmpty()) {
+            return List.of(request);
+        }
+        List<ResizeRequest> variants = new ArrayList<>();
+        for (Integer width : widths) {
+            variants.add(request.toBuilder()
+                    .width(width)
+                    .height(null)
+                    .percentage(null)
+                    .keepAspectRatio(true)
+                    .build());
+        }
+        return variants;
+    }
+
+    private ResizeRequest largestVariant(List<ResizeRequest> variants) {
+        ResizeRequest largest = variants.get(0);
+        for (ResizeRequest variant : variants) {
+            if (variant.getWidth() != null && largest.getWidth() != null && variant.getWidth() > largest.getWidth()) {
+                largest = variant;
+            }
+        }
+        return largest;
+    }
+
+    private String suffix(ResizeRequest variant, List<Integer> widths) {
+        return widths == null || widths.isEmpty() ? "" : "_w" + variant.getWidth();
+    }
+
+    /**
+     * Nome da entrada no ZIP a partir do nome enviado pelo cliente: fica só o último
+     * segmento do caminho, sem separadores nem controles, para que nenhuma entrada escape
+     * da pasta de extração (zip slip)
+     */
+    private static String baseName(String fileName) {
+        String name = fileName == null ? null : StringUtils.getFilename(StringUtils.cleanPath(fileName));
+        name = name == null ? "" : name.replaceAll("[\\p{Cntrl}:/\\\\]", "_").strip();
+        int dot = name.lastIndexOf('.');
+        name = dot > 0 ? name.substring(0, dot) : name;
+        return name.isEmpty() || name.equals(".") || name.equals("..") ? "image" : name;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Arquivo enviado no lote
+     */
+    public record BatchSource(String fileName, byte[] data) {}
+
+    /**
+     * Arquivo com o cabeçalho lido e a memória reservada, pronto para a tarefa
+     */
+    private record PreparedSource(BatchSource source, ImageFormat format, List<ResizeRequest> variants,
+                                  List<ResizeRequest> effective, DecodePlan plan,
+                                  ProcessingScheduler.Admission admission) {}
+
+    /**
+     * Arquivo gerado no lote
+     */
+    public record BatchEntry(String name, byte[] data) {}
+
+    /**
+     * Lote em andamento
+     */
+    public static class Batch {
+
+        private final List<ForkJoinTask<List<BatchEntry>>> tasks;
+
+        Batch(List<ForkJoinTask<List<BatchEntry>>> tasks) {
+            this.tasks = tasks;
+        }
+
+        /**
+         * Grava os resultados num ZIP à medida que cada arquivo termina, na ordem de envio
+         */
+        public void writeZip(OutputStream output) throws IOException {
+            Set<String> names = new HashSet<>();
+            try (ZipOutputStream zip = new ZipOutputStream(output)) {
+                for (ForkJoinTask<List<BatchEntry>> task : tasks) {
+                    for (BatchEntry entry : task.join()) {
+                        zip.putNextEntry(storedEntry(uniqueName(names, entry.name()), entry.data()));
+                        zip.write(entry.data());
+                        zip.closeEntry();
+                    }
+                }
+            }
+        }
+
+        /**
+         * Imagens já são comprimidas, então as entradas são gravadas sem deflate
+         */
+        private static ZipEntry storedEntry(String name, byte[] data) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            ZipEntry entry = new ZipEntry(name);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+            return entry;
+        }
+
+        private static String uniqueName(Set<String> names, String name) {
+            String candidate = name;
+            for (int i = 2; !names.add(candidate); i++) {
+                int dot = name.lastIndexOf('.');
+                candidate = dot > 0 ? name.substring(0, dot) + "_" + i + name.substring(dot) : name + "_" + i;
+            }
+            return candidate;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ResizeRequest;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Plano de decodificação gerado pelo {@link DecodePlanner}.
+ *
+ * Mantém o {@link ImageReader} já posicionado no cabeçalho, a região de interesse e o
+ * fator de subamostragem, além da requisição equivalente a ser aplicada sobre a imagem
+ * decodificada (crop já resolvido e dimensões de resize absolutas).
+ */
+public class DecodePlan implements Closeable {
+
+    private final ImageReader reader;
+    private final ImageInputStream input;
+    private final int sourceWidth;
+    private final int sourceHeight;
+    private final Rectangle region;
+    private final int subsamplingX;
+    private final int subsamplingY;
+    private final int bytesPerPixel;
+    private final ResizeRequest effectiveRequest;
+
+    DecodePlan(ImageReader reader, ImageInputStream input, int sourceWidth, int sourceHeight,
+               Rectangle region, int subsamplingX, int subsamplingY, int bytesPerPixel,
+               ResizeRequest effectiveRequest) {
+        this.reader = reader;
+        this.input = input;
+        this.sourceWidth = sourceWidth;
+        this.sourceHeight = sourceHeight;
+        this.region = region;
+        this.subsamplingX = subsamplingX;
+        this.subsamplingY = subsamplingY;
+        this.bytesPerPixel = bytesPerPixel;
+        this.effectiveRequest = effectiveRequest;
+    }
+
+    /**
+     * Decodifica apenas os pixels necessários
+     */
+    public BufferedImage decode() throws IOException {
+        return reader.read(0, readParam());
+    }
+
+    /**
+     * Decodifica apenas os pixels necessários, num destino emprestado do pool. A imagem
+     * retornada deve ser devolvida com {@link PixelBufferPool#release(BufferedImage)}.
+     */
+    public BufferedImage decode(PixelBufferPool pool) throws IOException {
+        ImageReadParam param = readParam();
+        // Mesmo tipo que o reader escolheria por padrão (o primeiro da lista)
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        BufferedImage destination = types.hasNext()
+                ? pool.createImage(types.next(), getDecodedWidth(), getDecodedHeight())
+                : null;
+        if (destination == null) {
+            return reader.read(0, param);
+        }
+        param.setDestination(destination);
+        BufferedImage decoded;
+        try {
+            decoded = reader.read(0, param);
+        } catch (IOException | RuntimeException e) {
+            pool.release(destination);
+            throw e;
+        }
+        // Readers que ignoram o destino (ex.: WebP) devolvem uma imagem própria
+        if (!PixelBufferPool.sharesBuffer(decoded, destination)) {
+            pool.release(destination);
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodifica só um retângulo da imagem que {@link #decode()} produziria (coordenadas já
+     * recortadas e subamostradas), com exatamente os mesmos pixels. Usado no processamento
+     * em faixas.
+     */
+    public BufferedImage decodeRegion(Rectangle decoded) throws IOException {
+        int x = (region != null ? region.x : 0) + decoded.x * subsamplingX;
+        int y = (region != null ? region.y : 0) + decoded.y * subsamplingY;
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceRegion(new Rectangle(x, y,
+                (decoded.width - 1) * subsamplingX + 1, (decoded.height - 1) * subsamplingY + 1));
+        if (subsamplingX > 1 || subsamplingY > 1) {
+            param.setSourceSubsampling(subsamplingX, subsamplingY, 0, 0);
+        }
+        return reader.read(0, param);
+    }
+
+    ImageReadParam readParam() {
+        ImageReadParam param = reader.getDefaultReadParam();
+        if (region != null) {
+            param.setSourceRegion(region);
+        }
+        if (subsamplingX > 1 || subsamplingY > 1) {
+            param.setSourceSubsampling(subsamplingX, subsamplingY, 0, 0);
+        }
+        return param;
+    }
+
+    public int getSourceWidth() {
+        return sourceWidth;
+    }
+
+    public int getSourceHeight() {
+        return sourceHeight;
+    }
+
+    /**
+     * Largura da área lida da origem (região de crop ou imagem inteira)
+     */
+    public int getRegionWidth() {
+        return region != null ? region.width : sourceWidth;
+    }
+
+    /**
+     * Altura da área lida da origem (região de crop ou imagem inteira)
+     */
+    public int getRegionHeight() {
+        return region != null ? region.height : sourceHeight;
+    }
+
+    public int getDecodedWidth() {
+        return (getRegionWidth() + subsamplingX - 1) / subsamplingX;
+    }
+
+    public int getDecodedHeight() {
+        return (getRegionHeight() + subsamplingY - 1) / subsamplingY;
+    }
+
+    /**
+     * Memória estimada dos pixels decodificados (largura x altura x bytes por pixel)
+     */
+    public long getEstimatedBytes() {
+        return (long) getDecodedWidth() * getDecodedHeight() * bytesPerPixel;
+    }
+
+    public boolean isSubsampled() {
+        return subsamplingX > 1 || subsamplingY > 1;
+    }
+
+    public ImageReader getReader() {
+        return reader;
+    }
+
+    /**
+     * Requisição a ser aplicada sobre a imagem decodificada
+     */
+    public ResizeRequest getEffectiveRequest() {
+        return effectiveRequest;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.dispose();
+        input.close();
+    }
+}
@@ -0,0 +1,126 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ResizeRequest;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Planeja a decodificação a partir do cabeçalho da imagem.
+ *
+ * Pedidos de crop viram uma região de interesse ({@code setSourceRegion}) e reduções
+ * grandes viram subamostragem na leitura ({@code setSourceSubsampling}), de modo que só
+ * os pixels necessários sejam decodificados. A subamostragem mantém pelo menos o dobro
+ * da resolução final para que o resize posterior preserve a qualidade.
+ *
+ * Imagens acima do limite de pixels do {@link ImageProbe} são recusadas aqui, antes de
+ * qualquer pixel ser alocado.
+ */
+@Component
+public class DecodePlanner {
+
+    /**
+     * Fator mínimo entre a resolução decodificada e a resolução final
+     */
+    private static final int OVERSAMPLING = 2;
+
+    private static final int DEFAULT_BYTES_PER_PIXEL = 4;
+
+    private final ImageProbe probe;
+
+    public DecodePlanner(ImageProbe probe) {
+        this.probe = probe;
+    }
+
+    public DecodePlan plan(byte[] data, ResizeRequest request) throws IOException {
+        return plan(ImageIO.createImageInputStream(new ByteArrayInputStream(data)), request);
+    }
+
+    public DecodePlan plan(ImageInputStream input, ResizeRequest request) throws IOException {
+        if (input == null) {
+            throw new ImageProcessingException("Unable to read image data");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            input.close();
+            throw new ImageProcessingException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+
+        try {
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+            probe.checkPixels(sourceWidth, sourceHeight);
+
+            ResizeRequest effective = copyOf(request);
+            Rectangle region = ImageTransformPipeline.cropBounds(request, sourceWidth, sourceHeight);
+            int regionWidth = region != null ? region.width : sourceWidth;
+            int regionHeight = region != null ? region.height : sourceHeight;
+            if (region != null) {
+                effective.setCropX(null);
+                effective.setCropY(null);
+                effective.setCropWidth(null);
+                effective.setCropHeight(null);
+            }
+
+            int subsamplingX = 1;
+            int subsamplingY = 1;
+            if (ImageTransformPipeline.hasResize(request)) {
+                int[] target = ImageTransformPipeline.targetSize(request, regionWidth, regionHeight);
+                effective.setPercentage(null);
+                effective.setWidth(target[0]);
+                effective.setHeight(target[1]);
+
+                double shrinkX = regionWidth / (double) Math.max(target[0], 1);
+                double shrinkY = regionHeight / (double) Math.max(target[1], 1);
+                if (Boolean.TRUE.equals(request.getKeepAspectRatio())) {
+                    int factor = subsamplingFactor(Math.max(shrinkX, shrinkY));
+                    subsamplingX = factor;
+                    subsamplingY = factor;
+                } else {
+                    subsamplingX = subsamplingFactor(shrinkX);
+                    subsamplingY = subsamplingFactor(shrinkY);
+                }
+            }
+
+            return new DecodePlan(reader, input, sourceWidth, sourceHeight,
+                    region, subsamplingX, subsamplingY, bytesPerPixel(reader), effective);
+        } catch (IOException | RuntimeException e) {
+            reader.dispose();
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Bytes por pixel do tipo nativo da imagem, lido do cabeçalho
+     */
+    private int bytesPerPixel(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+            return DEFAULT_BYTES_PER_PIXEL;
+        }
+        int bits = 0;
+        for (int size : type.getSampleModel().getSampleSize()) {
+            bits += size;
+        }
+        return Math.max(1, (bits + 7) / 8);
+    }
+
+    private int subsamplingFactor(double shrink) {
+        return Math.max(1, (int) Math.floor(shrink / OVERSAMPLING));
+    }
+
+    private ResizeRequest copyOf(ResizeRequest request) {
+        return request.toBuilder().build();
+    }
+}
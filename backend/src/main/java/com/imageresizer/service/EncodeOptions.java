@@ -0,0 +1,65 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ResizeRequest;
+
+import java.util.Set;
+
+/**
+ * Parâmetros de codificação de uma imagem processada
+ *
+ * @param quality           qualidade 1-100 (JPEG e WebP com perdas)
+ * @param progressive       JPEG progressivo
+ * @param chromaSubsampling subamostragem de crominância do JPEG: 420, 422 ou 444
+ * @param compressionLevel  nível do deflate do PNG (0-9)
+ * @param lossless          WebP sem perdas
+ * @param maxBytes          tamanho máximo; a qualidade é reduzida até o resultado caber
+ */
+public record EncodeOptions(Integer quality,
+                            Boolean progressive,
+                            String chromaSubsampling,
+                            Integer compressionLevel,
+                            Boolean lossless,
+                            Integer maxBytes) {
+
+    public static final int DEFAULT_QUALITY = 85;
+
+    private static final Set<String> CHROMA_SUBSAMPLINGS = Set.of("420", "422", "444");
+
+    /**
+     * Valida os parâmetros antes do processamento, para que erros não apareçam só no meio
+     * da escrita da resposta
+     */
+    public EncodeOptions {
+        if (chromaSubsampling != null && !CHROMA_SUBSAMPLINGS.contains(chromaSubsampling)) {
+            throw new ImageProcessingException(
+                    "Invalid chroma subsampling: " + chromaSubsampling + " (use 420, 422 or 444)");
+        }
+        if (compressionLevel != null && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new ImageProcessingException("PNG compression level must be between 0 and 9");
+        }
+        if (maxBytes != null && maxBytes <= 0) {
+            throw new ImageProcessingException("maxBytes must be positive");
+        }
+    }
+
+    public static EncodeOptions from(ResizeRequest request) {
+        return new EncodeOptions(request.getQuality(), request.getProgressive(), request.getChromaSubsampling(),
+                request.getCompressionLevel(), request.getLossless(), request.getMaxBytes());
+    }
+
+    /**
+     * Qualidade pedida limitada a 1-100
+     */
+    public int effectiveQuality() {
+        return quality != null ? Math.max(1, Math.min(100, quality)) : DEFAULT_QUALITY;
+    }
+
+    public boolean isProgressive() {
+        return Boolean.TRUE.equals(progressive);
+    }
+
+    public boolean isLossless() {
+        return Boolean.TRUE.equals(lossless);
+    }
+}
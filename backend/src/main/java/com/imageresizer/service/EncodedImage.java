@@ -0,0 +1,13 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ImageFormat;
+
+/**
+ * Imagem já codificada em memória
+ */
+public record EncodedImage(ImageFormat format,
+                           byte[] data,
+                           int originalWidth,
+                           int originalHeight,
+                           int width,
+                           int height) {}
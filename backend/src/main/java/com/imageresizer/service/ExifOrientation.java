@@ -0,0 +1,167 @@
+package com.imageresizer.service;
+
+import javax.imageio.stream.ImageInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Leitura da tag de orientação EXIF (0x0112) direto dos blocos do arquivo, sem passar
+ * pelos metadados do ImageIO: APP1 no JPEG, {@code eXIf} no PNG e {@code EXIF} no WebP.
+ * Os blocos de pixels são pulados, nunca lidos.
+ */
+final class ExifOrientation {
+
+    private static final int ORIENTATION_TAG = 0x0112;
+    private static final int TYPE_SHORT = 3;
+
+    /**
+     * Maior bloco EXIF lido; a tag de orientação fica sempre no início (IFD0)
+     */
+    private static final int MAX_EXIF_BYTES = 64 * 1024;
+
+    private static final byte[] EXIF_HEADER = "Exif\0\0".getBytes(StandardCharsets.ISO_8859_1);
+
+    private ExifOrientation() {
+    }
+
+    /**
+     * Orientação EXIF (1 a 8) ou null se ausente. Lê a partir da posição 0 e deixa o
+     * stream em posição indefinida.
+     */
+    static Integer read(ImageInputStream input, String format) throws IOException {
+        input.seek(0);
+        try {
+            byte[] exif = switch (format) {
+                case "jpeg" -> jpegExif(input);
+                case "png" -> pngExif(input);
+                case "webp" -> webpExif(input);
+                default -> null;
+            };
+            return exif != null ? orientation(exif) : null;
+        } catch (EOFException e) {
+            return null;
+        } finally {
+            input.setByteOrder(ByteOrder.BIG_ENDIAN);
+        }
+    }
+
+    private static byte[] jpegExif(ImageInputStream input) throws IOException {
+        input.setByteOrder(ByteOrder.BIG_ENDIAN);
+        if (input.readUnsignedShort() != 0xFFD8) {
+            return null;
+        }
+        while (true) {
+            if (input.readUnsignedByte() != 0xFF) {
+                return null;
+            }
+            int marker = input.readUnsignedByte();
+            while (marker == 0xFF) {
+                marker = input.readUnsignedByte();
+            }
+            // SOS: daqui em diante só dados comprimidos
+            if (marker == 0xDA || marker == 0xD9) {
+                return null;
+            }
+            int length = input.readUnsignedShort() - 2;
+            if (marker == 0xE1 && length > EXIF_HEADER.length) {
+                byte[] segment = readBytes(input, Math.min(length, MAX_EXIF_BYTES));
+                if (Arrays.equals(segment, 0, EXIF_HEADER.length, EXIF_HEADER, 0, EXIF_HEADER.length)) {
+                    return Arrays.copyOfRange(segment, EXIF_HEADER.length, segment.length);
+                }
+                input.skipBytes(length - segment.length);
+            } else {
+                input.skipBytes(length);
+            }
+        }
+    }
+
+    private static byte[] pngExif(ImageInputStream input) throws IOException {
+        input.setByteOrder(ByteOrder.BIG_ENDIAN);
+        input.skipBytes(8);
+        while (true) {
+            long length = input.readUnsignedInt();
+            String type = readType(input);
+            if (type.equals("eXIf")) {
+                return readBytes(input, (int) Math.min(length, MAX_EXIF_BYTES));
+            }
+            // O PNG só permite eXIf antes dos dados da imagem
+            if (type.equals("IDAT") || type.equals("IEND")) {
+                return null;
+            }
+            input.seek(input.getStreamPosition() + length + 4);
+        }
+    }
+
+    private static byte[] webpExif(ImageInputStream input) throws IOException {
+        input.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        if (!readType(input).equals("RIFF")) {
+            return null;
+        }
+        input.skipBytes(4);
+        if (!readType(input).equals("WEBP")) {
+            return null;
+        }
+        while (true) {
+            String type = readType(input);
+            long length = input.readUnsignedInt();
+            if (type.equals("EXIF")) {
+                byte[] exif = readBytes(input, (int) Math.min(length, MAX_EXIF_BYTES));
+                // Alguns encoders mantêm o cabeçalho do APP1
+                boolean prefixed = exif.length > EXIF_HEADER.length
+                        && Arrays.equals(exif, 0, EXIF_HEADER.length, EXIF_HEADER, 0, EXIF_HEADER.length);
+                return prefixed ? Arrays.copyOfRange(exif, EXIF_HEADER.length, exif.length) : exif;
+            }
+            // Sem VP8X não há chunks de metadados
+            if ((type.equals("VP8 ") || type.equals("VP8L")) && input.getStreamPosition() == 20) {
+                return null;
+            }
+            input.seek(input.getStreamPosition() + length + (length & 1));
+        }
+    }
+
+    /**
+     * Procura a orientação na IFD0 de um bloco TIFF
+     */
+    private static Integer orientation(byte[] tiff) {
+        if (tiff.length < 8) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(tiff);
+        if (tiff[0] == 'I' && tiff[1] == 'I') {
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (tiff[0] != 'M' || tiff[1] != 'M') {
+            return null;
+        }
+        long ifd = Integer.toUnsignedLong(buffer.getInt(4));
+        if (ifd + 2 > tiff.length) {
+            return null;
+        }
+        int entries = Short.toUnsignedInt(buffer.getShort((int) ifd));
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > tiff.length) {
+                return null;
+            }
+            if (Short.toUnsignedInt(buffer.getShort(entry)) == ORIENTATION_TAG
+                    && Short.toUnsignedInt(buffer.getShort(entry + 2)) == TYPE_SHORT) {
+                int value = Short.toUnsignedInt(buffer.getShort(entry + 8));
+                return value >= 1 && value <= 8 ? value : null;
+            }
+        }
+        return null;
+    }
+
+    private static String readType(ImageInputStream input) throws IOException {
+        return new String(readBytes(input, 4), StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] readBytes(ImageInputStream input, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return bytes;
+    }
+}
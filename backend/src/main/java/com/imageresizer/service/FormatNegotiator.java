@@ -0,0 +1,217 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ImageMetadata;
+import com.imageresizer.model.ResizeRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import javax.imageio.ImageIO;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Escolha do formato de saída pelo header {@code Accept}, quando a requisição não força
+ * um formato.
+ *
+ * Os formatos aceitos pelo cliente são ordenados por {@code image.negotiation.formats}
+ * (do que costuma gerar o menor arquivo para o maior); formatos sem encoder instalado
+ * ficam de fora. JPEG e PNG podem ser aceitos por curingas ({@code image/*},
+ * {@code *}{@code /*}); WebP só quando aparece explicitamente, porque navegadores sem
+ * suporte também mandam {@code image/*}. Um {@code q=0} exclui o formato. Originais com transparência nunca viram JPEG, e animações não são negociadas
+ * (só o GIF as mantém). Sem nenhum tipo {@code image/} no header (só {@code *}{@code /*}),
+ * o formato do original é mantido.
+ *
+ * Com {@code trial-encode}, todos os candidatos são codificados e fica o menor arquivo;
+ * sem ele, vale o primeiro da ordem. Os candidatos só rodam em paralelo nos workers que o
+ * {@link ProcessingScheduler} tem livres; o resto é codificado em sequência.
+ */
+@Slf4j
+@Component
+public class FormatNegotiator {
+
+    /**
+     * Formatos que todo cliente de imagens entende
+     */
+    private static final Set<ImageFormat> BASELINE_FORMATS = Set.of(ImageFormat.JPG, ImageFormat.JPEG,
+            ImageFormat.PNG, ImageFormat.GIF);
+
+    private final boolean enabled;
+    private final boolean trialEncode;
+    private final List<ImageFormat> preference;
+    private final ProcessingScheduler scheduler;
+    private final ForkJoinPool pool;
+
+    public FormatNegotiator(ProcessingScheduler scheduler,
+                            @Value("${image.negotiation.enabled:true}") boolean enabled,
+                            @Value("${image.negotiation.trial-encode:false}") boolean trialEncode,
+                            @Value("${image.negotiation.formats:webp,jpg,png}") List<String> formats) {
+        this.enabled = enabled;
+        this.trialEncode = trialEncode;
+        List<ImageFormat> configured = formats.stream().map(ImageFormat::fromExtension).distinct().toList();
+        // Só formatos com encoder instalado (o WebP depende do codec nativo)
+        this.preference = configured.stream()
+                .filter(format -> ImageIO.getImageWritersByFormatName(format.getExtension()).hasNext())
+                .toList();
+        if (preference.size() < configured.size()) {
+            log.warn("Format negotiation: no encoder for {}, left out of the order",
+                    configured.stream().filter(format -> !preference.contains(format)).toList());
+        }
+        this.scheduler = scheduler;
+        // As threads do pool só rodam com um worker do agendador ocupado
+        this.pool = trialEncode ? new ForkJoinPool(Runtime.getRuntime().availableProcessors()) : null;
+        log.info("Format negotiation: enabled={}, order={}, trial encode={}", enabled, preference, trialEncode);
+    }
+
+    /**
+     * Se o formato da resposta depende do {@code Accept} (para o header {@code Vary})
+     */
+    public boolean isNegotiated(ResizeRequest request) {
+        return enabled && !StringUtils.hasText(request.getOutputFormat());
+    }
+
+    /**
+     * Formatos candidatos, em ordem de preferência; vazio se a requisição força um formato,
+     * se o original é animado ou se o cliente não aceita nenhum (aí vale o formato do
+     * original)
+     */
+    public List<ImageFormat> candidates(ResizeRequest request, String accept, ImageMetadata header) {
+        if (!isNegotiated(request) || !StringUtils.hasText(accept)) {
+            return List.of();
+        }
+        if (header.getFrameCount() != null && header.getFrameCount() > 1) {
+            return List.of();
+        }
+        boolean hasAlpha = Boolean.TRUE.equals(header.getHasAlpha());
+        List<MediaType> ranges;
+        try {
+            ranges = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return List.of();
+        }
+        // Sem image/ no header (curl, bibliotecas HTTP): o cliente não escolheu
+        if (ranges.stream().noneMatch(range -> "image".equals(range.getType()))) {
+            return List.of();
+        }
+        List<ImageFormat> candidates = new ArrayList<>();
+        for (ImageFormat format : preference) {
+            boolean jpeg = format == ImageFormat.JPG || format == ImageFormat.JPEG;
+            if (!(hasAlpha && jpeg) && accepts(ranges, format)) {
+                candidates.add(format);
+            }
+        }
+        return trialEncode || candidates.isEmpty() ? candidates : candidates.subList(0, 1);
+    }
+
+    /**
+     * Codifica em todos os formatos e devolve o menor resultado; em caso de empate fica o
+     * primeiro da ordem. O primeiro roda na thread que chama (um worker do agendador); dos
+     * demais, vão para o pool tantos quantos workers livres houver, e o resto roda em
+     * sequência na thread que chama. Formatos que falham são descartados, desde que algum
+     * funcione.
+     */
+    public EncodedImage encodeSmallest(List<ImageFormat> formats, Encoding encoding) throws IOException {
+        List<ForkJoinTask<EncodedImage>> forked = new ArrayList<>(formats.size());
+        forked.add(null);
+        for (ImageFormat format : formats.subList(1, formats.size())) {
+            ProcessingScheduler.Worker worker = pool != null ? scheduler.tryOccupyWorker() : null;
+            forked.add(worker == null ? null : pool.submit(ImageMetrics.measured(() -> {
+                try (worker) {
+                    return encoding.encode(format);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })));
+        }
+
+        List<EncodedImage> encoded = new ArrayList<>(formats.size());
+        Exception failure = null;
+        for (int i = 0; i < formats.size(); i++) {
+            if (forked.get(i) == null) {
+                try {
+                    encoded.add(encoding.encode(formats.get(i)));
+                } catch (IOException | RuntimeException e) {
+                    failure = failure != null ? failure : e;
+                    encoded.add(null);
+                }
+            } else {
+                encoded.add(null);
+            }
+        }
+        EncodedImage smallest = null;
+        for (int i = 0; i < formats.size(); i++) {
+            EncodedImage candidate = encoded.get(i);
+            if (forked.get(i) != null) {
+                try {
+                    candidate = forked.get(i).join();
+                } catch (RuntimeException e) {
+                    failure = failure != null ? failure : e;
+                }
+            }
+            if (candidate != null && (smallest == null || candidate.data().length < smallest.data().length)) {
+                smallest = candidate;
+            }
+        }
+        if (smallest != null) {
+            if (failure != null) {
+                log.warn("Trial encode skipped a format: {}", failure.getMessage());
+            }
+            return smallest;
+        }
+        if (failure instanceof UncheckedIOException unchecked) {
+            throw unchecked.getCause();
+        }
+        if (failure instanceof IOException io) {
+            throw io;
+        }
+        throw (RuntimeException) failure;
+    }
+
+    /**
+     * A faixa mais específica que inclui o tipo decide; formatos fora da base precisam de
+     * uma faixa exata
+     */
+    private static boolean accepts(List<MediaType> ranges, ImageFormat format) {
+        MediaType type = MediaType.parseMediaType(format.getMimeType());
+        boolean baseline = BASELINE_FORMATS.contains(format);
+        MediaType best = null;
+        for (MediaType range : ranges) {
+            if (!range.includes(type) || (!baseline && (range.isWildcardType() || range.isWildcardSubtype()))) {
+                continue;
+            }
+            if (best == null || specificity(range) > specificity(best)) {
+                best = range;
+            }
+        }
+        return best != null && best.getQualityValue() > 0;
+    }
+
+    private static int specificity(MediaType range) {
+        return range.isWildcardType() ? 0 : range.isWildcardSubtype() ? 1 : 2;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Codificação da mesma imagem num formato
+     */
+    @FunctionalInterface
+    public interface Encoding {
+        EncodedImage encode(ImageFormat format) throws IOException;
+    }
+}
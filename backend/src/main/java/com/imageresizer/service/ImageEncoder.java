@@ -0,0 +1,235 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ImageFormat;
+import org.springframework.stereotype.Component;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.FileCacheImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Codificação direta via {@link ImageWriter}, com parâmetros por formato.
+ *
+ * <ul>
+ *   <li>JPEG: qualidade, modo progressivo, subamostragem de crominância (4:2:0, 4:2:2
+ *       ou 4:4:4) e tabelas de Huffman otimizadas (sempre ligadas)</li>
+ *   <li>PNG: nível do deflate (o filtro por linha é escolhido pelo próprio writer)</li>
+ *   <li>WebP: com perdas (qualidade) ou sem perdas</li>
+ * </ul>
+ *
+ * Com {@code maxBytes}, formatos com perdas fazem uma busca binária pela maior qualidade
+ * (até a pedida) cujo resultado caiba no limite.
+ */
+@Component
+public class ImageEncoder {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    private final PixelBufferPool bufferPool;
+
+    public ImageEncoder(PixelBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Codifica a imagem no stream informado
+     */
+    public void encode(RenderedImage image, ImageFormat format, EncodeOptions options,
+                       OutputStream output) throws IOException {
+        RenderedImage source = isJpeg(format) ? withoutAlpha(image) : image;
+        try {
+            if (options.maxBytes() != null && isLossy(format, options)) {
+                output.write(encodeToSize(source, format, options));
+            } else {
+                write(source, format, options, options.effectiveQuality(), output);
+            }
+        } finally {
+            if (source != image) {
+                bufferPool.release((BufferedImage) source);
+            }
+        }
+    }
+
+    /**
+     * Maior qualidade cujo resultado tem no máximo {@code maxBytes}; se nem a qualidade
+     * mínima couber, devolve o menor resultado obtido
+     */
+    private byte[] encodeToSize(RenderedImage image, ImageFormat format, EncodeOptions options) throws IOException {
+        int low = 1;
+        int high = options.effectiveQuality();
+        byte[] best = null;
+        byte[] smallest = null;
+        while (low <= high) {
+            int quality = (low + high) >>> 1;
+            byte[] data = encodeToBytes(image, format, options, quality);
+            if (data.length <= options.maxBytes()) {
+                best = data;
+                low = quality + 1;
+            } else {
+                high = quality - 1;
+            }
+            if (smallest == null || data.length < smallest.length) {
+                smallest = data;
+            }
+        }
+        return best != null ? best : smallest;
+    }
+
+    private byte[] encodeToBytes(RenderedImage image, ImageFormat format, EncodeOptions options,
+                                 int quality) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        write(image, format, options, quality, output);
+        return output.toByteArray();
+    }
+
+    private void write(RenderedImage image, ImageFormat format, EncodeOptions options, int quality,
+                       OutputStream output) throws IOException {
+        ImageWriter writer = writer(image, format);
+        try (ImageOutputStream stream = outputStream(image, output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            IIOMetadata metadata = null;
+            switch (format) {
+                case JPG, JPEG -> {
+                    jpegParam(param, options, quality);
+                    metadata = jpegMetadata(writer, image, param, options.chromaSubsampling());
+                }
+                case PNG -> pngParam(param, options);
+                case WEBP -> webpParam(param, options, quality);
+                default -> {
+                    // GIF e BMP não têm parâmetros
+                }
+            }
+            writer.write(null, new IIOImage(image, null, metadata), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    /**
+     * Buffer em memória, sem o cache em arquivo temporário do ImageIO.createImageOutputStream;
+     * imagens em faixas geram arquivos grandes demais para o heap e usam o cache em disco,
+     * na pasta do próprio spool
+     */
+    private static ImageOutputStream outputStream(RenderedImage image, OutputStream output) throws IOException {
+        if (image instanceof StripImage strip) {
+            return new FileCacheImageOutputStream(output, strip.getSpoolDirectory().toFile());
+        }
+        return new MemoryCacheImageOutputStream(output);
+    }
+
+    private void jpegParam(ImageWriteParam param, EncodeOptions options, int quality) {
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(quality / 100f);
+        if (param instanceof JPEGImageWriteParam jpeg) {
+            jpeg.setOptimizeHuffmanTables(true);
+        }
+        if (options.isProgressive()) {
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        }
+    }
+
+    /**
+     * Ajusta os fatores de amostragem da luminância; crominância fica sempre em 1x1
+     */
+    private IIOMetadata jpegMetadata(ImageWriter writer, RenderedImage image, ImageWriteParam param,
+                                     String chromaSubsampling) throws IOException {
+        if (chromaSubsampling == null || image.getColorModel().getNumComponents() < 3) {
+            return null;
+        }
+        int[] factors = switch (chromaSubsampling) {
+            case "420" -> new int[] {2, 2};
+            case "422" -> new int[] {2, 1};
+            default -> new int[] {1, 1};
+        };
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+        NodeList components = root.getElementsByTagName("componentSpec");
+        for (int i = 0; i < components.getLength(); i++) {
+            IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+            component.setAttribute("HsamplingFactor", String.valueOf(i == 0 ? factors[0] : 1));
+            component.setAttribute("VsamplingFactor", String.valueOf(i == 0 ? factors[1] : 1));
+        }
+        metadata.setFromTree(JPEG_METADATA_FORMAT, root);
+        return metadata;
+    }
+
+    /**
+     * O writer do JDK converte a qualidade em nível do deflate: nível = 9 x (1 - qualidade)
+     */
+    private void pngParam(ImageWriteParam param, EncodeOptions options) {
+        Integer level = options.compressionLevel();
+        if (level == null || !param.canWriteCompressed()) {
+            return;
+        }
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(Math.max(0f, 1f - (level + 0.5f) / 9f));
+    }
+
+    private void webpParam(ImageWriteParam param, EncodeOptions options, int quality) {
+        if (!param.canWriteCompressed()) {
+            return;
+        }
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        String[] types = param.getCompressionTypes();
+        String wanted = options.isLossless() ? "Lossless" : "Lossy";
+        for (String type : types) {
+            if (type.equalsIgnoreCase(wanted)) {
+                param.setCompressionType(type);
+            }
+        }
+        param.setCompressionQuality(quality / 100f);
+    }
+
+    private ImageWriter writer(RenderedImage image, ImageFormat format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWriters(
+                ImageTypeSpecifier.createFromRenderedImage(image), format.getExtension());
+        if (!writers.hasNext()) {
+            throw new ImageProcessingException("No encoder available for format: " + format.getExtension());
+        }
+        return writers.next();
+    }
+
+    private static boolean isLossy(ImageFormat format, EncodeOptions options) {
+        return isJpeg(format) || (format == ImageFormat.WEBP && !options.isLossless());
+    }
+
+    private static boolean isJpeg(ImageFormat format) {
+        return format == ImageFormat.JPG || format == ImageFormat.JPEG;
+    }
+
+    /**
+     * JPEG não tem canal alfa: compõe sobre fundo preto, como o Thumbnailator fazia
+     */
+    private RenderedImage withoutAlpha(RenderedImage image) {
+        if (!image.getColorModel().hasAlpha()) {
+            return image;
+        }
+        BufferedImage rgb = bufferPool.createImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rgb.createGraphics();
+        try {
+            graphics.drawRenderedImage(image, new AffineTransform());
+        } finally {
+            graphics.dispose();
+        }
+        return rgb;
+    }
+}
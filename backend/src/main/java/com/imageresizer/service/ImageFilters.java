@@ -0,0 +1,462 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ResizeRequest;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Desfoque gaussiano e máscara de nitidez (unsharp mask) com custo constante por pixel.
+ *
+ * A gaussiana é aproximada por três médias em caixa sucessivas, cada uma separada numa
+ * passada horizontal e numa vertical com soma corrente: cada pixel custa uma soma e uma
+ * subtração por canal, qualquer que seja o raio. As somas guardam dois canais por int, e
+ * a passada vertical, independente entre colunas, usa os {@link PixelKernels} vetoriais
+ * (exceto com {@code simd=false}). A nitidez soma à imagem a diferença entre ela e a
+ * versão desfocada, multiplicada por {@code sharpen}.
+ *
+ * As passadas horizontais são divididas em faixas de linhas e as verticais em faixas de
+ * colunas, que rodam como as do {@link ParallelResampler}: a thread que chamou faz uma e
+ * as demais vão para um {@link ForkJoinPool} próprio, conforme {@code parallelism}, os
+ * workers livres do {@link ProcessingScheduler} e {@code threshold-megapixels}. Imagens
+ * com alfa são filtradas com as cores pré-multiplicadas, para que os pixels
+ * transparentes não escureçam as bordas.
+ */
+@Slf4j
+@Component
+public class ImageFilters {
+
+    private static final long MEGAPIXEL = 1_000_000L;
+
+    /**
+     * Maior sigma aceito, em pixels
+     */
+    static final double MAX_SIGMA = 100;
+
+    static final double MAX_AMOUNT = 10;
+
+    /**
+     * Sigma da máscara de nitidez quando a requisição não informa {@code sharpenRadius}
+     */
+    static final double DEFAULT_SHARPEN_RADIUS = 1.0;
+
+    /**
+     * Médias em caixa empilhadas para aproximar a gaussiana
+     */
+    private static final int BOXES = 3;
+
+    static final int SCALE_BITS = 24;
+    static final int HALF = 1 << (SCALE_BITS - 1);
+
+    /**
+     * Dois canais por int (alfa e verde, vermelho e azul), 16 bits para a soma de cada um:
+     * cabe a janela de até 257 pixels, acima do raio das caixas de {@link #MAX_SIGMA}
+     */
+    static final int LANES = 0x00FF00FF;
+
+    private final PixelBufferPool bufferPool;
+    private final ProcessingScheduler scheduler;
+    private final int parallelism;
+    private final int minBandRows;
+    private final long thresholdPixels;
+    private final ForkJoinPool pool;
+
+    public ImageFilters(PixelBufferPool bufferPool,
+                        ProcessingScheduler scheduler,
+                        @Value("${image.filter.parallel.parallelism:0}") int parallelism,
+                        @Value("${image.filter.parallel.min-band-rows:64}") int minBandRows,
+                        @Value("${image.filter.parallel.threshold-megapixels:1}") int thresholdMegapixels) {
+        this.bufferPool = bufferPool;
+        this.scheduler = scheduler;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.minBandRows = Math.max(1, minBandRows);
+        this.thresholdPixels = thresholdMegapixels * MEGAPIXEL;
+        this.pool = new ForkJoinPool(Math.max(1, this.parallelism - 1));
+        log.info("Parallel filters: up to {} bands of at least {} rows, from {} MP",
+                this.parallelism, this.minBandRows, thresholdMegapixels);
+    }
+
+    /**
+     * Aplica o desfoque e depois a nitidez da requisição; devolve a própria imagem se não
+     * houver filtro, ou um quadro do {@link PixelBufferPool}
+     */
+    public BufferedImage apply(BufferedImage image, ResizeRequest request) {
+        validate(request);
+        PixelKernels kernels = PixelKernels.forRequest(request);
+        BufferedImage result = image;
+        if (request.getBlur() != null) {
+            result = filter(image, request.getBlur(), 0, kernels);
+        }
+        if (request.getSharpen() != null) {
+            double radius = request.getSharpenRadius() != null ? request.getSharpenRadius() : DEFAULT_SHARPEN_RADIUS;
+            BufferedImage sharpened;
+            try {
+                sharpened = filter(result, radius, request.getSharpen(), kernels);
+            } finally {
+                if (result != image) {
+                    bufferPool.release(result);
+                }
+            }
+            result = sharpened;
+        }
+        return result;
+    }
+
+    /**
+     * Desfoque gaussiano de desvio padrão {@code sigma} pixels
+     */
+    public BufferedImage blur(BufferedImage image, double sigma) {
+        return filter(image, sigma, 0, PixelKernels.preferred());
+    }
+
+    /**
+     * Unsharp mask: {@code imagem + amount * (imagem - desfoque(sigma))}
+     */
+    public BufferedImage sharpen(BufferedImage image, double amount, double sigma) {
+        return filter(image, sigma, amount, PixelKernels.preferred());
+    }
+
+    /**
+     * Pico de memória dos quadros que os filtros da requisição alocam numa imagem de
+     * {@code width x height}: origem, rascunhos e saída de cada filtro, mais o resultado do
+     * desfoque enquanto a nitidez roda sobre ele
+     */
+    public static long scratchBytes(ResizeRequest request, int width, int height) {
+        long frame = (long) width * height * 4;
+        boolean blur = request.getBlur() != null;
+        if (request.getSharpen() != null) {
+            return frame * (blur ? 5 : 4);
+        }
+        return blur ? frame * 3 : 0;
+    }
+
+    static void validate(ResizeRequest request) {
+        if (request.getBlur() != null && !(request.getBlur() > 0 && request.getBlur() <= MAX_SIGMA)) {
+            throw new ImageProcessingException("blur must be greater than 0 and at most " + (int) MAX_SIGMA);
+        }
+        if (request.getSharpen() != null && !(request.getSharpen() > 0 && request.getSharpen() <= MAX_AMOUNT)) {
+            throw new ImageProcessingException("sharpen must be greater than 0 and at most " + (int) MAX_AMOUNT);
+        }
+        if (request.getSharpenRadius() != null
+                && !(request.getSharpenRadius() > 0 && request.getSharpenRadius() <= MAX_SIGMA)) {
+            throw new ImageProcessingException("sharpenRadius must be greater than 0 and at most " + (int) MAX_SIGMA);
+        }
+    }
+
+    /**
+     * Desfoque ({@code amount} 0) ou nitidez. A origem é lida e pré-multiplicada junto com
+     * as passadas horizontais; as verticais terminam gravando no quadro de saída. Caixas de
+     * raio 0 (sigmas pequenos) não mudam nada e são puladas.
+     */
+    private BufferedImage filter(BufferedImage image, double sigma, double amount, PixelKernels kernels) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        boolean alpha = image.getColorModel().hasAlpha();
+        int[] radii = Arrays.stream(boxRadii(sigma)).filter(radius -> radius > 0).toArray();
+        if (radii.length == 0) {
+            radii = new int[] {0};
+        }
+        int passes = radii.length;
+        int gain = (int) Math.round(amount * 256);
+        boolean sharpen = amount > 0;
+
+        BufferedImage source = bufferPool.createImageForOverwrite(width, height, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage first = bufferPool.createImageForOverwrite(width, height, BufferedImage.TYPE_INT_ARGB);
+        BufferedImage second = sharpen
+                ? bufferPool.createImageForOverwrite(width, height, BufferedImage.TYPE_INT_ARGB) : null;
+        BufferedImage result = bufferPool.createImageForOverwrite(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        try {
+            int[] src = pixels(source);
+            int[] out = pixels(result);
+            // Cada passada lê um buffer e grava no seguinte: as horizontais e depois as verticais
+            // alternam entre dois rascunhos; sem nitidez a origem não é mais lida depois da
+            // primeira passada e serve de rascunho, e a última vertical grava direto na saída
+            int[] tmp = pixels(first);
+            int[] spare = sharpen ? pixels(second) : src;
+            int[][] buffers = new int[2 * passes + 1][];
+            buffers[0] = src;
+            for (int i = 1; i <= 2 * passes; i++) {
+                buffers[i] = i % 2 == 1 ? tmp : spare;
+            }
+            if (!sharpen) {
+                buffers[2 * passes] = out;
+            }
+            int[] boxes = radii;
+            long pixels = (long) width * height;
+
+            runBands(height, bands(pixels, height, boxes), (from, to) -> {
+                for (int y = from; y < to; y++) {
+                    RasterRows.read(image, 0, y, width, src, y * width, kernels);
+                }
+                if (alpha) {
+                    premultiply(src, from * width, to * width);
+                }
+                for (int i = 0; i < passes; i++) {
+                    horizontal(buffers[i], buffers[i + 1], width, from, to, boxes[i]);
+                }
+            });
+            runBands(width, bands(pixels, width, boxes), (from, to) -> {
+                for (int i = 0; i < passes; i++) {
+                    vertical(buffers[passes + i], buffers[passes + i + 1], width, height, from, to,
+                            boxes[i], kernels);
+                }
+                if (sharpen) {
+                    unsharp(src, buffers[2 * passes], out, width, height, from, to, gain, alpha);
+                } else if (alpha) {
+                    unpremultiply(out, width, height, from, to);
+                }
+            });
+        } catch (RuntimeException e) {
+            bufferPool.release(result);
+            throw e;
+        } finally {
+            bufferPool.release(source);
+            bufferPool.release(first);
+            bufferPool.release(second);
+        }
+        return result;
+    }
+
+    /**
+     * Raios das três caixas cuja convolução tem o desvio padrão {@code sigma} (larguras
+     * ímpares consecutivas, as menores primeiro)
+     */
+    static int[] boxRadii(double sigma) {
+        double ideal = Math.sqrt(12 * sigma * sigma / BOXES + 1);
+        int lower = (int) Math.floor(ideal);
+        if (lower % 2 == 0) {
+            lower--;
+        }
+        int upper = lower + 2;
+        double lowerCount = (12 * sigma * sigma - BOXES * lower * lower - 4.0 * BOXES * lower - 3 * BOXES)
+                / (-4.0 * lower - 4);
+        int count = (int) Math.max(0, Math.min(BOXES, Math.round(lowerCount)));
+        int[] radii = new int[BOXES];
+        for (int i = 0; i < BOXES; i++) {
+            radii[i] = ((i < count ? lower : upper) - 1) / 2;
+        }
+        return radii;
+    }
+
+    /**
+     * Média em caixa de largura {@code 2 * radius + 1} ao longo das linhas; as bordas
+     * repetem o primeiro e o último pixel
+     */
+    static void horizontal(int[] in, int[] out, int width, int fromRow, int toRow, int radius) {
+        int scale = scale(radius);
+        for (int y = fromRow; y < toRow; y++) {
+            int start = y * width;
+            int last = start + width - 1;
+            int p = in[start];
+            int ag = ((p >>> 8) & LANES) * (radius + 1);
+            int rb = (p & LANES) * (radius + 1);
+            for (int i = 1; i <= radius; i++) {
+                p = in[Math.min(start + i, last)];
+                ag += (p >>> 8) & LANES;
+                rb += p & LANES;
+            }
+            for (int x = start; x <= last; x++) {
+                out[x] = average(ag, rb, scale);
+                int added = in[Math.min(x + radius + 1, last)];
+                int removed = in[Math.max(x - radius, start)];
+                ag += ((added >>> 8) & LANES) - ((removed >>> 8) & LANES);
+                rb += (added & LANES) - (removed & LANES);
+            }
+        }
+    }
+
+    /**
+     * Média em caixa ao longo das colunas {@code [fromColumn, toColumn)}, com uma soma por
+     * coluna e as linhas percorridas em ordem ({@link PixelKernels#boxStep})
+     */
+    static void vertical(int[] in, int[] out, int width, int height, int fromColumn, int toColumn, int radius,
+                         PixelKernels kernels) {
+        int scale = scale(radius);
+        int columns = toColumn - fromColumn;
+        int[] agSums = new int[columns];
+        int[] rbSums = new int[columns];
+        for (int c = 0; c < columns; c++) {
+            int x = fromColumn + c;
+            int p = in[x];
+            int ag = ((p >>> 8) & LANES) * (radius + 1);
+            int rb = (p & LANES) * (radius + 1);
+            for (int i = 1; i <= radius; i++) {
+                p = in[Math.min(i, height - 1) * width + x];
+                ag += (p >>> 8) & LANES;
+                rb += p & LANES;
+            }
+            agSums[c] = ag;
+            rbSums[c] = rb;
+        }
+        for (int y = 0; y < height; y++) {
+            kernels.boxStep(agSums, rbSums, columns, scale,
+                    in, Math.min(y + radius + 1, height - 1) * width + fromColumn,
+                    in, Math.max(y - radius, 0) * width + fromColumn,
+                    out, y * width + fromColumn);
+        }
+    }
+
+    /**
+     * {@code origem + gain/256 * (origem - desfoque)} por canal, com o alfa da origem;
+     * cada cor fica entre 0 e o alfa (cores pré-multiplicadas)
+     */
+    private static void unsharp(int[] src, int[] blurred, int[] out, int width, int height,
+                                int fromColumn, int toColumn, int gain, boolean alpha) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int i = row + fromColumn; i < row + toColumn; i++) {
+                int s = src[i];
+                int d = blurred[i];
+                int a = s >>> 24;
+                int limit = alpha ? a : 255;
+                int r = sharpenChannel((s >> 16) & 0xFF, (d >> 16) & 0xFF, gain, limit);
+                int g = sharpenChannel((s >> 8) & 0xFF, (d >> 8) & 0xFF, gain, limit);
+                int b = sharpenChannel(s & 0xFF, d & 0xFF, gain, limit);
+                out[i] = alpha ? unpremultiply(a, r, g, b) : 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+    }
+
+    private static int sharpenChannel(int value, int blurred, int gain, int limit) {
+        int sharpened = value + (((value - blurred) * gain + 128) >> 8);
+        return Math.max(0, Math.min(limit, sharpened));
+    }
+
+    private static void premultiply(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int p = pixels[i];
+            int a = p >>> 24;
+            if (a != 255) {
+                pixels[i] = a << 24 | multiply((p >> 16) & 0xFF, a) << 16 | multiply((p >> 8) & 0xFF, a) << 8
+                        | multiply(p & 0xFF, a);
+            }
+        }
+    }
+
+    private static void unpremultiply(int[] pixels, int width, int height, int fromColumn, int toColumn) {
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int i = row + fromColumn; i < row + toColumn; i++) {
+                int p = pixels[i];
+                pixels[i] = unpremultiply(p >>> 24, (p >> 16) & 0xFF, (p >> 8) & 0xFF, p & 0xFF);
+            }
+        }
+    }
+
+    private static int unpremultiply(int a, int r, int g, int b) {
+        if (a == 255) {
+            return 0xFF000000 | r << 16 | g << 8 | b;
+        }
+        if (a == 0) {
+            return 0;
+        }
+        int half = a >> 1;
+        return a << 24 | Math.min(255, (r * 255 + half) / a) << 16 | Math.min(255, (g * 255 + half) / a) << 8
+                | Math.min(255, (b * 255 + half) / a);
+    }
+
+    /**
+     * {@code value * alpha / 255} arredondado
+     */
+    private static int multiply(int value, int alpha) {
+        int t = value * alpha + 128;
+        return (t + (t >> 8)) >> 8;
+    }
+
+    /**
+     * Fator em ponto fixo ({@link #SCALE_BITS} bits) que divide a soma da janela pela sua
+     * largura
+     */
+    private static int scale(int radius) {
+        return (int) Math.round((double) (1 << SCALE_BITS) / (2 * radius + 1));
+    }
+
+    /**
+     * Divide as somas pela largura da janela e junta os canais de novo. A soma de um canal
+     * vezes {@code scale} fica abaixo de {@code 256 << SCALE_BITS}, então cabe num int sem
+     * sinal e {@code >>>} dá o resultado exato.
+     */
+    static int average(int ag, int rb, int scale) {
+        return ((ag >>> 16) * scale + HALF) >>> SCALE_BITS << 24
+                | ((rb >>> 16) * scale + HALF) >>> SCALE_BITS << 16
+                | ((ag & 0xFFFF) * scale + HALF) >>> SCALE_BITS << 8
+                | ((rb & 0xFFFF) * scale + HALF) >>> SCALE_BITS;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Faixas para uma imagem de {@code pixels} dividida ao longo de {@code length} linhas
+     * (ou colunas); cada faixa cobre ao menos a janela da maior caixa
+     */
+    int bands(long pixels, int length, int[] radii) {
+        if (parallelism <= 1 || pixels < thresholdPixels
+                || Thread.currentThread() instanceof ForkJoinWorkerThread) {
+            return 1;
+        }
+        int minBand = Math.max(minBandRows, 2 * radii[radii.length - 1] + 1);
+        int available = 1 + scheduler.idleWorkers();
+        return Math.max(1, Math.min(Math.min(parallelism, available), length / minBand));
+    }
+
+    /**
+     * Executa {@code band} sobre {@code [0, length)} dividido em {@code bands} partes; a
+     * primeira roda na thread atual e todas terminam antes do retorno
+     */
+    private void runBands(int length, int bands, Band band) {
+        if (bands <= 1) {
+            band.render(0, length);
+            return;
+        }
+        List<ForkJoinTask<?>> forked = new ArrayList<>(bands - 1);
+        for (int i = 1; i < bands; i++) {
+            int from = bandStart(i, bands, length);
+            int to = bandStart(i + 1, bands, length);
+            forked.add(pool.submit(ImageMetrics.measured(() -> band.render(from, to))));
+        }
+        RuntimeException failure = null;
+        try {
+            band.render(0, bandStart(1, bands, length));
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        // Os rascunhos voltam ao pool depois; nenhuma faixa pode continuar usando-os
+        for (ForkJoinTask<?> task : forked) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static int bandStart(int band, int bands, int length) {
+        return (int) ((long) length * band / bands);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private interface Band {
+        void render(int from, int to);
+    }
+}
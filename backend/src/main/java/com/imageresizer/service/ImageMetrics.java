@@ -0,0 +1,327 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ImageMetadata;
+import com.imageresizer.model.ResizeRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas por etapa do processamento (Micrometer).
+ *
+ * Cada etapa (upload, decode, transform, encode e o processamento inteiro) tem um timer
+ * próprio, com tags de formato de entrada/saída, faixa de megapixels e conjunto de
+ * operações. Também registra os bytes de pixels decodificados e os bytes alocados em cada
+ * requisição, pelo worker e pelas tarefas auxiliares que ele dispara em outros pools (faixas
+ * do resize e dos filtros, quadros de GIF, codificações de teste), que passam por
+ * {@link #measured}. Tudo fica disponível em {@code /actuator/prometheus}.
+ */
+@Component
+public class ImageMetrics {
+
+    /**
+     * Alocações das tarefas auxiliares da requisição medida na thread atual
+     */
+    private static final ThreadLocal<AllocationScope> HELPER_ALLOCATION = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+
+    public ImageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Etapas medidas
+     */
+    public enum Stage {
+        UPLOAD("image.upload", "Leitura do arquivo enviado"),
+        DECODE("image.decode", "Decodificação da imagem"),
+        TRANSFORM("image.transform", "Crop, resize, filtros, rotação, espelhamentos e grayscale"),
+        ENCODE("image.encode", "Codificação da imagem processada"),
+        PROCESS("image.process", "Processamento completo de uma imagem");
+
+        private final String meterName;
+        private final String description;
+
+        Stage(String meterName, String description) {
+            this.meterName = meterName;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Trecho medido; pode lançar {@link IOException}
+     */
+    @FunctionalInterface
+    public interface StageAction<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * Executa o trecho registrando sua duração no timer da etapa
+     */
+    public <T> T record(Stage stage, Tags tags, StageAction<T> action) throws IOException {
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return action.run();
+        } finally {
+            sample.stop(Timer.builder(stage.meterName)
+                    .description(stage.description)
+                    .tags(tags)
+                    .register(registry));
+        }
+    }
+
+    /**
+     * Executa o trecho registrando os bytes alocados pela thread atual e pelas tarefas
+     * auxiliares criadas com {@link #measured} durante ele
+     */
+    public <T> T recordAllocation(Tags tags, StageAction<T> action) throws IOException {
+        AllocationScope helpers = new AllocationScope(Thread.currentThread(), new LongAdder());
+        AllocationScope outer = HELPER_ALLOCATION.get();
+        HELPER_ALLOCATION.set(helpers);
+        long before = allocatedBytes();
+        try {
+            return action.run();
+        } finally {
+            long after = allocatedBytes();
+            HELPER_ALLOCATION.set(outer);
+            if (before >= 0 && after >= before) {
+                DistributionSummary.builder("image.allocated.bytes")
+                        .description("Bytes alocados no heap durante o processamento, somando as tarefas auxiliares")
+                        .baseUnit("bytes")
+                        .tags(tags)
+                        .register(registry)
+                        .record(after - before + helpers.total().sum());
+            }
+        }
+    }
+
+    /**
+     * Tarefa auxiliar cujas alocações contam para a requisição medida na thread que a cria
+     */
+    public static Runnable measured(Runnable task) {
+        AllocationScope scope = HELPER_ALLOCATION.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            long before = allocatedBytes();
+            try {
+                task.run();
+            } finally {
+                scope.add(before);
+            }
+        };
+    }
+
+    /**
+     * Como {@link #measured(Runnable)}, para tarefas com resultado
+     */
+    public static <T> Callable<T> measured(Callable<T> task) {
+        AllocationScope scope = HELPER_ALLOCATION.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            long before = allocatedBytes();
+            try {
+                return task.call();
+            } finally {
+                scope.add(before);
+            }
+        };
+    }
+
+    /**
+     * Executor cujas tarefas contam para a requisição medida na thread que o cria
+     */
+    public static Executor measured(Executor executor) {
+        return HELPER_ALLOCATION.get() == null ? executor : command -> executor.execute(measured(command));
+    }
+
+    /**
+     * Bytes de pixels decodificados (largura x altura x bytes por pixel)
+     */
+    public void recordDecodedBytes(DecodePlan plan) throws IOException {
+        DistributionSummary.builder("image.decoded.bytes")
+                .description("Memória dos pixels decodificados por imagem")
+                .baseUnit("bytes")
+                .tags(sourceTags(plan))
+                .register(registry)
+                .record(plan.getEstimatedBytes());
+    }
+
+    /**
+     * JPEG que qualificava para a transformação sem perdas: feita nos coeficientes ou
+     * devolvida ao caminho por pixels (progressivo, fora da grade de MCUs)
+     */
+    public void recordLosslessJpeg(boolean transformed) {
+        Counter.builder("image.jpeg.lossless")
+                .description("Rotações, espelhamentos e crops de JPEG sem decodificar")
+                .tag("outcome", transformed ? "transformed" : "fallback")
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Quadros de GIFs animados gravados e descartados pelos limites de quadros
+     */
+    public void recordAnimationFrames(int written, int dropped) {
+        Counter.builder("image.animation.frames")
+                .description("Quadros de GIFs animados processados")
+                .tag("outcome", "written")
+                .register(registry)
+                .increment(written);
+        Counter.builder("image.animation.frames")
+                .description("Quadros de GIFs animados processados")
+                .tag("outcome", "dropped")
+                .register(registry)
+                .increment(dropped);
+    }
+
+    /**
+     * Tamanho dos arquivos recebidos
+     */
+    public void recordUploadBytes(long bytes) {
+        DistributionSummary.builder("image.upload.bytes")
+                .description("Tamanho dos arquivos enviados")
+                .baseUnit("bytes")
+                .register(registry)
+                .record(bytes);
+    }
+
+    /**
+     * Formato de entrada e faixa de megapixels da origem
+     */
+    public static Tags sourceTags(DecodePlan plan) throws IOException {
+        return Tags.of(
+                "input.format", formatTag(plan.getReader().getFormatName()),
+                "megapixels", megapixelBucket(plan.getSourceWidth(), plan.getSourceHeight()));
+    }
+
+    /**
+     * Formatos, faixa de megapixels da origem e operações pedidas
+     */
+    public static Tags requestTags(DecodePlan plan, ImageFormat outputFormat, ResizeRequest request) throws IOException {
+        return sourceTags(plan).and(
+                "output.format", formatTag(outputFormat.getExtension()),
+                "operations", operations(request));
+    }
+
+    /**
+     * Como {@link #requestTags(DecodePlan, ImageFormat, ResizeRequest)}, a partir do
+     * cabeçalho, quando a imagem não passa pelo decoder
+     */
+    public static Tags requestTags(ImageMetadata header, ImageFormat outputFormat, ResizeRequest request) {
+        return Tags.of(
+                "input.format", formatTag(header.getFormat()),
+                "megapixels", megapixelBucket(header.getWidth(), header.getHeight()),
+                "output.format", formatTag(outputFormat.getExtension()),
+                "operations", operations(request));
+    }
+
+    /**
+     * Faixa de megapixels da origem e operações pedidas
+     */
+    public static Tags transformTags(DecodePlan plan, ResizeRequest request) throws IOException {
+        return sourceTags(plan).and("operations", operations(request));
+    }
+
+    /**
+     * Formato de saída e faixa de megapixels da imagem codificada
+     */
+    public static Tags outputTags(ProcessedImage processed) {
+        return Tags.of(
+                "output.format", formatTag(processed.format().getExtension()),
+                "megapixels", megapixelBucket(processed.width(), processed.height()));
+    }
+
+    /**
+     * Operações pedidas, em ordem fixa (ex.: {@code crop+resize+grayscale})
+     */
+    static String operations(ResizeRequest request) {
+        StringJoiner operations = new StringJoiner("+");
+        if (request.getCropX() != null && request.getCropWidth() != null) {
+            operations.add("crop");
+        }
+        if (ImageTransformPipeline.hasResize(request)) {
+            operations.add("resize");
+        }
+        if (request.getBlur() != null) {
+            operations.add("blur");
+        }
+        if (request.getSharpen() != null) {
+            operations.add("sharpen");
+        }
+        if (request.getRotation() != null && request.getRotation() % 360 != 0) {
+            operations.add("rotate");
+        }
+        if (Boolean.TRUE.equals(request.getFlipHorizontal()) || Boolean.TRUE.equals(request.getFlipVertical())) {
+            operations.add("flip");
+        }
+        if (Boolean.TRUE.equals(request.getGrayscale())) {
+            operations.add("grayscale");
+        }
+        return operations.length() > 0 ? operations.toString() : "none";
+    }
+
+    /**
+     * Faixas fixas de megapixels, para manter a cardinalidade das tags baixa
+     */
+    static String megapixelBucket(int width, int height) {
+        double megapixels = (double) width * height / 1_000_000;
+        if (megapixels < 1) {
+            return "0-1";
+        } else if (megapixels < 4) {
+            return "1-4";
+        } else if (megapixels < 12) {
+            return "4-12";
+        } else if (megapixels < 24) {
+            return "12-24";
+        }
+        return "24+";
+    }
+
+    private static String formatTag(String formatName) {
+        String format = formatName.toLowerCase(Locale.ROOT);
+        return format.equals("jpeg") ? "jpg" : format;
+    }
+
+    /**
+     * Bytes alocados pela thread atual, ou -1 se a JVM não suportar a medição
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    /**
+     * Alocações das tarefas auxiliares de uma requisição; uma tarefa que acaba rodando na
+     * própria thread medida (um join que a executa) já entra na conta dela
+     */
+    private record AllocationScope(Thread owner, LongAdder total) {
+
+        void add(long before) {
+            long after = allocatedBytes();
+            if (Thread.currentThread() != owner && before >= 0 && after >= before) {
+                total.add(after - before);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ImageMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.color.ColorSpace;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Lê os metadados de uma imagem só pelo cabeçalho ({@link ImageReader} sem decodificar
+ * pixels) e aplica o limite de pixels ({@code image.max-pixels}).
+ *
+ * O limite é verificado pelo {@link DecodePlanner} antes de qualquer alocação de pixels,
+ * o que protege contra imagens pequenas em bytes e enormes quando decodificadas
+ * (decompression bombs).
+ */
+@Component
+public class ImageProbe {
+
+    /**
+     * Formatos que podem ter vários quadros; nos demais a contagem é sempre 1
+     */
+    private static final Set<String> MULTI_FRAME_FORMATS = Set.of("gif", "tiff", "webp");
+
+    private final long maxPixels;
+
+    public ImageProbe(@Value("${image.max-pixels:250000000}") long maxPixels) {
+        this.maxPixels = maxPixels;
+    }
+
+    /**
+     * Metadados de uma imagem enviada; lê do stream só o necessário
+     */
+    public ImageMetadata probe(InputStream stream) throws IOException {
+        try (ImageInputStream input = new MemoryCacheImageInputStream(stream)) {
+            return probe(input);
+        }
+    }
+
+    /**
+     * Metadados de um arquivo em disco, com nome e tamanho
+     */
+    public ImageMetadata probe(Path file) throws IOException {
+        ImageMetadata metadata;
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            metadata = probe(input);
+        }
+        metadata.setFileName(file.getFileName().toString());
+        metadata.setFileSize(Files.size(file));
+        return metadata;
+    }
+
+    private ImageMetadata probe(ImageInputStream input) throws IOException {
+        if (input == null) {
+            throw new ImageProcessingException("Unable to read image data");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new ImageProcessingException("Unsupported image format");
+        }
+        ImageReader reader = readers.next();
+        try {
+            String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+            Integer orientation = ExifOrientation.read(input, format);
+            input.seek(0);
+            reader.setInput(input, false, true);
+
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            ColorModel colorModel = colorModel(reader);
+            return ImageMetadata.builder()
+                    .format(format)
+                    .width(width)
+                    .height(height)
+                    .colorModel(colorModel != null ? describe(colorModel) : null)
+                    .bitsPerPixel(colorModel != null ? colorModel.getPixelSize() : null)
+                    .hasAlpha(colorModel != null ? colorModel.hasAlpha() : null)
+                    .frameCount(frameCount(reader, format))
+                    .orientation(orientation)
+                    .withinPixelLimit(isWithinLimit(width, height))
+                    .build();
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Rejeita imagens acima do limite de pixels (0 desliga)
+     */
+    public void checkPixels(int width, int height) {
+        if (!isWithinLimit(width, height)) {
+            throw new ImageProcessingException("Image is too large: " + width + "x" + height
+                    + " exceeds the limit of " + maxPixels + " pixels");
+        }
+    }
+
+    public boolean isWithinLimit(int width, int height) {
+        return maxPixels <= 0 || (long) width * height <= maxPixels;
+    }
+
+    private ColorModel colorModel(ImageReader reader) throws IOException {
+        ImageTypeSpecifier type = reader.getRawImageType(0);
+        if (type == null) {
+            Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+            type = types.hasNext() ? types.next() : null;
+        }
+        return type != null ? type.getColorModel() : null;
+    }
+
+    private String describe(ColorModel colorModel) {
+        if (colorModel instanceof IndexColorModel) {
+            return "INDEXED";
+        }
+        return switch (colorModel.getColorSpace().getType()) {
+            case ColorSpace.TYPE_GRAY -> colorModel.hasAlpha() ? "GRAY_ALPHA" : "GRAY";
+            case ColorSpace.TYPE_CMYK -> "CMYK";
+            case ColorSpace.TYPE_RGB -> colorModel.hasAlpha() ? "RGBA" : "RGB";
+            default -> "OTHER";
+        };
+    }
+
+    /**
+     * Quadros da imagem. Em GIF a contagem percorre os blocos do arquivo, mas sem
+     * descomprimir nenhum quadro.
+     */
+    private int frameCount(ImageReader reader, String format) throws IOException {
+        if (!MULTI_FRAME_FORMATS.contains(format)) {
+            return 1;
+        }
+        int frames = reader.getNumImages(false);
+        return frames >= 0 ? frames : reader.getNumImages(true);
+    }
+}
@@ -1,26 +1,29 @@
 package com.imageresizer.service;
 
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.exception.ProcessingRejectedException;
 import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ImageMetadata;
 import com.imageresizer.model.ImageResponse;
 import com.imageresizer.model.ResizeRequest;
+import io.micrometer.core.instrument.Tags;
 import lombok.extern.slf4j.Slf4j;
-import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.filters.Canvas;
 import net.coobird.thumbnailator.geometry.Positions;
-import org.imgscalr.Scalr;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.*;
+import javax.imageio.IIOException;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.File;
+import java.io.Closeable;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -30,212 +33,565 @@ import java.util.UUID;
 @Service
 public class ImageProcessingService {
 
-    private final String OUTPUT_DIR = "output/";
+    private final OutputStore outputStore;
+    private final ProcessingResultCache resultCache;
+    private final DecodePlanner decodePlanner;
+    private final ImageProbe imageProbe;
+    private final ImageTransformPipeline transformPipeline;
+    private final ProcessingScheduler scheduler;
+    private final ImageEncoder encoder;
+    private final PixelBufferPool bufferPool;
+    private final TiledImageProcessor tiledProcessor;
+    private final ImageMetrics metrics;
+    private final FormatNegotiator formatNegotiator;
+    private final UploadReader uploadReader;
+    private final LosslessJpegTransformer losslessJpeg;
+    private final AnimatedGifProcessor animatedGif;
 
-    public ImageProcessingService() {
-        createOutputDirectory();
+    public ImageProcessingService(OutputStore outputStore,
+                                  ProcessingResultCache resultCache,
+                                  DecodePlanner decodePlanner,
+                                  ImageProbe imageProbe,
+                                  ImageTransformPipeline transformPipeline,
+                                  ProcessingScheduler scheduler,
+                                  ImageEncoder encoder,
+                                  PixelBufferPool bufferPool,
+                                  TiledImageProcessor tiledProcessor,
+                                  ImageMetrics metrics,
+                                  FormatNegotiator formatNegotiator,
+                                  UploadReader uploadReader,
+                                  LosslessJpegTransformer losslessJpeg,
+                                  AnimatedGifProcessor animatedGif) {
+        this.outputStore = outputStore;
+        this.resultCache = resultCache;
+        this.decodePlanner = decodePlanner;
+        this.imageProbe = imageProbe;
+        this.transformPipeline = transformPipeline;
+        this.scheduler = scheduler;
+        this.encoder = encoder;
+        this.bufferPool = bufferPool;
+        this.tiledProcessor = tiledProcessor;
+        this.metrics = metrics;
+        this.formatNegotiator = formatNegotiator;
+        this.uploadReader = uploadReader;
+        this.losslessJpeg = losslessJpeg;
+        this.animatedGif = animatedGif;
     }
 
     /**
      * Processa imagem com base nos parâmetros
      */
     public ImageResponse processImage(MultipartFile file, ResizeRequest request) {
+        UploadReader.Upload upload;
+        try (InputStream stream = file.getInputStream()) {
+            upload = receiveUpload(stream, file.getSize());
+        } catch (IOException | ImageProcessingException e) {
+            log.error("Error reading uploaded image", e);
+            return errorResponse(e);
+        }
+        return processImage(upload, file.getOriginalFilename(), request);
+    }
+
+    /**
+     * Processa o conteúdo de uma imagem com base nos parâmetros
+     */
+    public ImageResponse processImage(byte[] data, String originalFileName, ResizeRequest request) {
+        return processImage(new UploadReader.Upload(data, null), originalFileName, request);
+    }
+
+    /**
+     * Processa uma imagem recebida por {@link #receiveUpload}, aproveitando o hash calculado
+     * durante a leitura
+     */
+    public ImageResponse processImage(UploadReader.Upload upload, String originalFileName, ResizeRequest request) {
+        byte[] data = upload.data();
         try {
-            log.info("Processing image: {}", file.getOriginalFilename());
-            
-            // Lê imagem original
-            BufferedImage originalImage = ImageIO.read(file.getInputStream());
-            int originalWidth = originalImage.getWidth();
-            int originalHeight = originalImage.getHeight();
-            long originalSize = file.getSize();
-            
-            // Processa imagem
-            BufferedImage processedImage = applyTransformations(originalImage, request);
+            log.info("Processing image: {}", originalFileName);
+            long originalSize = data.length;
             
             // Determina formato de saída
-            ImageFormat outputFormat = determineOutputFormat(file.getOriginalFilename(), request.getOutputFormat());
+            ImageFormat outputFormat = determineOutputFormat(originalFileName, request.getOutputFormat());
             
-            // Salva imagem processada
-            String outputFileName = generateOutputFileName(file.getOriginalFilename(), outputFormat);
-            Path outputPath = Paths.get(OUTPUT_DIR + outputFileName);
-            
-            saveImage(processedImage, outputPath.toFile(), outputFormat, request.getQuality());
+            // Resultado idêntico já processado
+            String cacheKey = upload.digest() != null
+                    ? resultCache.key(upload.digest(), request, outputFormat)
+                    : resultCache.key(data, request, outputFormat);
+            ProcessingResultCache.CachedResult cached = resultCache.lookup(cacheKey, outputStore);
+            if (cached != null) {
+                log.info("Cache hit for image: {} -> {}", originalFileName, cached.processedFileName());
+                return buildResponse(originalFileName, originalSize, cached);
+            }
             
-            long processedSize = Files.size(outputPath);
-            double compressionRatio = calculateCompressionRatio(originalSize, processedSize);
+            // Decodifica, transforma e salva no pool de workers
+            ProcessingResultCache.CachedResult result = renderToFile(data, originalFileName, outputFormat,
+                    request, cacheKey);
             
+            ImageResponse response = buildResponse(originalFileName, originalSize, result);
             log.info("Image processed successfully: {} -> {} ({}% reduction)",
-                    file.getOriginalFilename(), outputFileName, String.format("%.1f", compressionRatio));
-            
-            return ImageResponse.builder()
-                    .success(true)
-                    .message("Image processed successfully")
-                    .originalFileName(file.getOriginalFilename())
-                    .originalWidth(originalWidth)
-                    .originalHeight(originalHeight)
-                    .originalSizeBytes(originalSize)
-                    .processedFileName(outputFileName)
-                    .processedWidth(processedImage.getWidth())
-                    .processedHeight(processedImage.getHeight())
-                    .processedSizeBytes(processedSize)
-                    .compressionRatio(compressionRatio)
-                    .downloadUrl("/download/" + outputFileName)  
-                    .build();
+                    originalFileName, result.processedFileName(), String.format("%.1f", response.getCompressionRatio()));
+            return response;
                     
+        } catch (ProcessingRejectedException e) {
+            log.warn("Image processing rejected: {}", e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Error processing image", e);
-            return ImageResponse.builder()
-                    .success(false)
-                    .message("Error processing image")
-                    .errorDetails(e.getMessage())
-                    .build();
+            return errorResponse(e);
         }
     }
 
     /**
-     * Aplica todas as transformações à imagem
+     * Processa a imagem, grava o resultado no diretório de saída e registra no cache com a
+     * chave informada (sem consultar o cache antes)
      */
-    private BufferedImage applyTransformations(BufferedImage image, ResizeRequest request) throws IOException {
-        BufferedImage result = image;
-        
-        // 1. Crop primeiro (se solicitado)
-        if (request.getCropX() != null && request.getCropWidth() != null) {
-            result = cropImage(result, request);
+    public ProcessingResultCache.CachedResult renderToFile(byte[] data, String originalFileName,
+                                                           ImageFormat outputFormat, ResizeRequest request,
+                                                           String cacheKey) throws IOException {
+        if (losslessJpeg.accepts(outputFormat, request)) {
+            ProcessingResultCache.CachedResult lossless = renderLossless(data, originalFileName, outputFormat,
+                    request, cacheKey);
+            if (lossless != null) {
+                return lossless;
+            }
         }
-        
-        // 2. Resize
-        if (request.getWidth() != null || request.getHeight() != null || request.getPercentage() != null) {
-            result = resizeImage(result, request);
+        if (outputFormat == ImageFormat.GIF) {
+            ProcessingResultCache.CachedResult animated = renderAnimation(data, originalFileName, outputFormat,
+                    request, cacheKey);
+            if (animated != null) {
+                return animated;
+            }
         }
-        
-        // 3. Rotação
-        if (request.getRotation() != null && request.getRotation() != 0) {
-            result = rotateImage(result, request.getRotation());
+        String outputFileName = generateOutputFileName(originalFileName, outputFormat);
+        long[] processedSize = new long[1];
+        ProcessedImage processed;
+        try (DecodePlan plan = decodePlanner.plan(data, request)) {
+            Tags tags = ImageMetrics.requestTags(plan, outputFormat, request);
+            // Imagens enormes são decodificadas e transformadas em faixas
+            boolean tiled = tiledProcessor.accepts(plan);
+            long estimatedBytes = estimatedBytes(plan, tiled);
+            processed = metrics.record(ImageMetrics.Stage.PROCESS, tags, () ->
+                    scheduler.execute(estimatedBytes, () -> metrics.recordAllocation(tags, () -> {
+                        ProcessedImage image = tiled
+                                ? renderTiled(plan, outputFormat, request)
+                                : render(plan, outputFormat, request);
+                        try {
+                            processedSize[0] = outputStore.write(outputFileName, output -> writeImage(image, output));
+                        } finally {
+                            release(image);
+                        }
+                        return image;
+                    })));
         }
-        
-        // 4. Flip
-        if (Boolean.TRUE.equals(request.getFlipHorizontal())) {
-            result = Scalr.rotate(result, Scalr.Rotation.FLIP_HORZ);
+
+        ProcessingResultCache.CachedResult result = new ProcessingResultCache.CachedResult(
+                outputFileName, processed.originalWidth(), processed.originalHeight(),
+                processed.width(), processed.height(), processedSize[0]);
+        resultCache.put(cacheKey, result);
+        return result;
+    }
+
+    /**
+     * Rotação, espelhamentos e crop de JPEG direto nos coeficientes DCT, sem decodificar;
+     * null se o arquivo não permite a operação exata (aí vale o caminho por pixels)
+     */
+    private ProcessingResultCache.CachedResult renderLossless(byte[] data, String originalFileName,
+                                                              ImageFormat outputFormat, ResizeRequest request,
+                                                              String cacheKey) throws IOException {
+        ImageMetadata header = imageProbe.probe(new ByteArrayInputStream(data));
+        if (!"jpeg".equals(header.getFormat())) {
+            return null;
         }
-        if (Boolean.TRUE.equals(request.getFlipVertical())) {
-            result = Scalr.rotate(result, Scalr.Rotation.FLIP_VERT);
+        Tags tags = ImageMetrics.requestTags(header, outputFormat, request);
+        Optional<EncodedImage> transformed = metrics.record(ImageMetrics.Stage.PROCESS, tags, () ->
+                scheduler.execute(LosslessJpegTransformer.estimatedBytes(header.getWidth(), header.getHeight()),
+                        () -> losslessJpeg.transform(data, request)));
+        metrics.recordLosslessJpeg(transformed.isPresent());
+        if (transformed.isEmpty()) {
+            return null;
         }
-        
-        // 5. Grayscale
-        if (Boolean.TRUE.equals(request.getGrayscale())) {
-            result = convertToGrayscale(result);
+        EncodedImage encoded = transformed.get();
+        String outputFileName = generateOutputFileName(originalFileName, outputFormat);
+        outputStore.write(outputFileName, output -> output.write(encoded.data()));
+        log.info("Lossless JPEG transform: {} -> {}", originalFileName, outputFileName);
+
+        ProcessingResultCache.CachedResult result = new ProcessingResultCache.CachedResult(
+                outputFileName, encoded.originalWidth(), encoded.originalHeight(),
+                encoded.width(), encoded.height(), encoded.data().length);
+        resultCache.put(cacheKey, result);
+        return result;
+    }
+
+    /**
+     * GIF animado para GIF: todos os quadros (menos os descartados pelos limites da
+     * requisição) em vez de só o primeiro; null se a imagem não é animada
+     */
+    private ProcessingResultCache.CachedResult renderAnimation(byte[] data, String originalFileName,
+                                                               ImageFormat outputFormat, ResizeRequest request,
+                                                               String cacheKey) throws IOException {
+        ImageMetadata header = imageProbe.probe(new ByteArrayInputStream(data));
+        if (!animatedGif.accepts(header, outputFormat)) {
+            return null;
         }
-        
+        Tags tags = ImageMetrics.requestTags(header, outputFormat, request);
+        String outputFileName = generateOutputFileName(originalFileName, outputFormat);
+        long[] processedSize = new long[1];
+        AnimatedGifProcessor.Result animation;
+        try {
+            animation = metrics.record(ImageMetrics.Stage.PROCESS, tags, () ->
+                    scheduler.execute(animatedGif.estimatedBytes(header.getWidth(), header.getHeight()), () -> {
+                        AnimatedGifProcessor.Result[] rendered = new AnimatedGifProcessor.Result[1];
+                        processedSize[0] = outputStore.write(outputFileName,
+                                output -> rendered[0] = animatedGif.render(data, request, output));
+                        return rendered[0];
+                    }));
+        } catch (IIOException e) {
+            // Quadro corrompido no meio do arquivo: o caminho por pixels usa só o primeiro
+            log.warn("Animated GIF {} unreadable, keeping the first frame only: {}", originalFileName, e.getMessage());
+            return null;
+        }
+        metrics.recordAnimationFrames(animation.frames(), animation.droppedFrames());
+
+        ProcessingResultCache.CachedResult result = new ProcessingResultCache.CachedResult(
+                outputFileName, animation.originalWidth(), animation.originalHeight(),
+                animation.width(), animation.height(), processedSize[0]);
+        resultCache.put(cacheKey, result);
         return result;
     }
 
     /**
-     * Redimensiona imagem
+     * Variante com vários formatos candidatos: codifica em todos e grava o menor
      */
-    private BufferedImage resizeImage(BufferedImage image, ResizeRequest request) throws IOException {
-        int targetWidth;
-        int targetHeight;
-        
-        // Redimensionar por porcentagem
-        if (request.getPercentage() != null) {
-            double scale = request.getPercentage() / 100.0;
-            targetWidth = (int) (image.getWidth() * scale);
-            targetHeight = (int) (image.getHeight() * scale);
-        } else {
-            targetWidth = request.getWidth() != null ? request.getWidth() : image.getWidth();
-            targetHeight = request.getHeight() != null ? request.getHeight() : image.getHeight();
+    public ProcessingResultCache.CachedResult renderToFile(byte[] data, String originalFileName,
+                                                           List<ImageFormat> candidates, ResizeRequest request,
+                                                           String cacheKey) throws IOException {
+        if (candidates.size() == 1) {
+            return renderToFile(data, originalFileName, candidates.get(0), request, cacheKey);
         }
-        
-        // Manter proporção
-        if (Boolean.TRUE.equals(request.getKeepAspectRatio())) {
-            return Thumbnails.of(image)
-                    .size(targetWidth, targetHeight)
-                    .asBufferedImage();
-        } else {
-            return Thumbnails.of(image)
-                    .forceSize(targetWidth, targetHeight)
-                    .asBufferedImage();
+        EncodedImage encoded = renderSmallest(data, candidates, request);
+        String outputFileName = generateOutputFileName(originalFileName, encoded.format());
+        outputStore.write(outputFileName, output -> output.write(encoded.data()));
+
+        ProcessingResultCache.CachedResult result = new ProcessingResultCache.CachedResult(
+                outputFileName, encoded.originalWidth(), encoded.originalHeight(),
+                encoded.width(), encoded.height(), encoded.data().length);
+        resultCache.put(cacheKey, result);
+        return result;
+    }
+
+    /**
+     * Formatos de saída possíveis: o pedido, os negociados pelo header {@code Accept} ou,
+     * se nenhum, o do original
+     */
+    public List<ImageFormat> outputFormats(byte[] data, String originalFileName, ResizeRequest request,
+                                           String accept) throws IOException {
+        if (formatNegotiator.isNegotiated(request)) {
+            ImageMetadata header = imageProbe.probe(new ByteArrayInputStream(data));
+            List<ImageFormat> candidates = formatNegotiator.candidates(request, accept, header);
+            if (!candidates.isEmpty()) {
+                return candidates;
+            }
+        }
+        return List.of(determineOutputFormat(originalFileName, request.getOutputFormat()));
+    }
+
+    /**
+     * Processa uma vez e codifica em memória em cada formato candidato, devolvendo o menor
+     * resultado. As codificações rodam dentro da tarefa agendada, que ainda segura a
+     * memória dos pixels.
+     */
+    public EncodedImage renderSmallest(byte[] data, List<ImageFormat> candidates, ResizeRequest request) throws IOException {
+        return renderImage(data, candidates.get(0), request, processed -> {
+            // Imagens em faixas são calculadas durante a codificação: uma só passada
+            List<ImageFormat> formats = processed.image() instanceof BufferedImage ? candidates : candidates.subList(0, 1);
+            EncodedImage smallest = formatNegotiator.encodeSmallest(formats, format -> encodeToBytes(processed, format));
+            log.info("Smallest of {}: {} ({} bytes)", formats, smallest.format(), smallest.data().length);
+            return smallest;
+        });
+    }
+
+    private EncodedImage encodeToBytes(ProcessedImage processed, ImageFormat format) throws IOException {
+        ProcessedImage target = new ProcessedImage(processed.image(), processed.originalWidth(),
+                processed.originalHeight(), format, processed.encoding());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writeImage(target, output);
+        return new EncodedImage(format, output.toByteArray(), processed.originalWidth(), processed.originalHeight(),
+                processed.width(), processed.height());
+    }
+
+    /**
+     * Metadados de uma imagem enviada, lidos só do cabeçalho
+     */
+    public ImageMetadata probeImage(MultipartFile file) throws IOException {
+        ImageMetadata metadata;
+        try (InputStream stream = file.getInputStream()) {
+            metadata = imageProbe.probe(stream);
         }
+        metadata.setFileName(file.getOriginalFilename());
+        metadata.setFileSize(file.getSize());
+        return metadata;
     }
 
     /**
-     * Recorta imagem
+     * Metadados de uma imagem processada, lidos só do cabeçalho
      */
-    private BufferedImage cropImage(BufferedImage image, ResizeRequest request) {
-        int x = request.getCropX();
-        int y = request.getCropY();
-        int width = Math.min(request.getCropWidth(), image.getWidth() - x);
-        int height = Math.min(request.getCropHeight(), image.getHeight() - y);
+    public ImageMetadata getProcessedImageInfo(String fileName) throws IOException {
+        try (InputStream stream = getProcessedFile(fileName).getInputStream()) {
+            return imageProbe.probe(stream);
+        }
+    }
+
+    /**
+     * Lê o conteúdo do arquivo enviado
+     */
+    public byte[] readUpload(MultipartFile file) throws IOException {
+        try (InputStream stream = file.getInputStream()) {
+            return receiveUpload(stream, file.getSize()).data();
+        }
+    }
+
+    /**
+     * Lê um upload (parte multipart ou corpo da requisição) à medida que chega, calculando o
+     * hash e conferindo as dimensões pelo cabeçalho antes do fim do corpo
+     */
+    public UploadReader.Upload receiveUpload(InputStream body, long contentLength) throws IOException {
+        UploadReader.Upload upload = metrics.record(ImageMetrics.Stage.UPLOAD, Tags.empty(),
+                () -> uploadReader.read(body, contentLength));
+        metrics.recordUploadBytes(upload.data().length);
+        return upload;
+    }
+
+    /**
+     * Decodifica e transforma a imagem sem gravar em disco, para ser codificada depois com
+     * {@link #writeImage(ReservedImage, OutputStream)}. A memória estimada continua reservada
+     * no agendador até {@link #release(ReservedImage)}.
+     */
+    public ReservedImage renderReserved(byte[] data, ImageFormat outputFormat, ResizeRequest request)
+            throws IOException {
+        // Lê apenas a região e a resolução necessárias
+        try (DecodePlan plan = decodePlanner.plan(data, request)) {
+            Tags tags = ImageMetrics.requestTags(plan, outputFormat, request);
+            boolean tiled = tiledProcessor.accepts(plan);
+            ProcessingScheduler.Admission admission = scheduler.admit(estimatedBytes(plan, tiled));
+            try {
+                ProcessedImage image = metrics.record(ImageMetrics.Stage.PROCESS, tags, () ->
+                        scheduler.execute(admission, () -> metrics.recordAllocation(tags, () -> tiled
+                                ? renderTiled(plan, outputFormat, request)
+                                : render(plan, outputFormat, request))));
+                return new ReservedImage(image, admission);
+            } catch (IOException | RuntimeException e) {
+                admission.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Decodifica, transforma e entrega a imagem para {@code action} dentro da mesma tarefa
+     * agendada; os pixels são devolvidos quando {@code action} termina
+     */
+    public <T> T renderImage(byte[] data, ImageFormat outputFormat, ResizeRequest request,
+                             ProcessedImageAction<T> action) throws IOException {
+        try (DecodePlan plan = decodePlanner.plan(data, request)) {
+            Tags tags = ImageMetrics.requestTags(plan, outputFormat, request);
+            boolean tiled = tiledProcessor.accepts(plan);
+            long estimatedBytes = estimatedBytes(plan, tiled);
+            return metrics.record(ImageMetrics.Stage.PROCESS, tags, () ->
+                    scheduler.execute(estimatedBytes, () -> metrics.recordAllocation(tags, () -> {
+                        ProcessedImage image = tiled
+                                ? renderTiled(plan, outputFormat, request)
+                                : render(plan, outputFormat, request);
+                        try {
+                            return action.apply(image);
+                        } finally {
+                            release(image);
+                        }
+                    })));
+        }
+    }
+
+    /**
+     * Memória reservada no agendador: os pixels decodificados (ou as faixas) e, com desfoque
+     * ou nitidez, os quadros de trabalho dos filtros no tamanho já redimensionado
+     */
+    private long estimatedBytes(DecodePlan plan, boolean tiled) {
+        if (tiled) {
+            return tiledProcessor.getEstimatedBytes();
+        }
+        ResizeRequest effective = plan.getEffectiveRequest();
+        if (!ImageTransformPipeline.hasFilter(effective)) {
+            return plan.getEstimatedBytes();
+        }
+        int width = plan.getDecodedWidth();
+        int height = plan.getDecodedHeight();
+        if (ImageTransformPipeline.hasResize(effective)) {
+            int[] target = ImageTransformPipeline.targetSize(effective, width, height);
+            RenditionPlanner.Size size = new RenditionPlanner.Size(target[0], target[1],
+                    Boolean.TRUE.equals(effective.getKeepAspectRatio())).fittedTo(width, height);
+            width = Math.max(1, size.width());
+            height = Math.max(1, size.height());
+        }
+        return plan.getEstimatedBytes() + ImageFilters.scratchBytes(effective, width, height);
+    }
+
+    private ProcessedImage render(DecodePlan plan, ImageFormat outputFormat, ResizeRequest request) throws IOException {
+        EncodeOptions encoding = EncodeOptions.from(request);
+        BufferedImage decodedImage = metrics.record(ImageMetrics.Stage.DECODE, ImageMetrics.sourceTags(plan),
+                () -> plan.decode(bufferPool));
+        metrics.recordDecodedBytes(plan);
         
-        return image.getSubimage(x, y, width, height);
+        // Processa imagem
+        BufferedImage processedImage;
+        try {
+            processedImage = metrics.record(ImageMetrics.Stage.TRANSFORM,
+                    ImageMetrics.transformTags(plan, request),
+                    () -> applyTransformations(decodedImage, plan.getEffectiveRequest()));
+        } catch (IOException | RuntimeException e) {
+            bufferPool.release(decodedImage);
+            throw e;
+        }
+        // Sem transformações (ou só crop) o resultado ainda usa os pixels decodificados
+        if (!PixelBufferPool.sharesBuffer(processedImage, decodedImage)) {
+            bufferPool.release(decodedImage);
+        }
+        return new ProcessedImage(processedImage, plan.getSourceWidth(), plan.getSourceHeight(),
+                outputFormat, encoding);
     }
 
     /**
-     * Rotaciona imagem
+     * Decodifica e redimensiona em faixas para um arquivo temporário; rotação, espelhamentos
+     * e grayscale são aplicados faixa a faixa durante a codificação
      */
-    private BufferedImage rotateImage(BufferedImage image, int degrees) {
-        Scalr.Rotation rotation;
-        switch (degrees) {
-            case 90:
-                rotation = Scalr.Rotation.CW_90;
-                break;
-            case 180:
-                rotation = Scalr.Rotation.CW_180;
-                break;
-            case 270:
-                rotation = Scalr.Rotation.CW_270;
-                break;
-            default:
-                return image;
+    private ProcessedImage renderTiled(DecodePlan plan, ImageFormat outputFormat, ResizeRequest request) throws IOException {
+        return new ProcessedImage(tiledProcessor.render(plan, outputFormat), plan.getSourceWidth(),
+                plan.getSourceHeight(), outputFormat, EncodeOptions.from(request));
+    }
+
+    /**
+     * Devolve ao pool os pixels de uma imagem já codificada (ou apaga o arquivo temporário
+     * de uma imagem processada em faixas)
+     */
+    public void release(ProcessedImage processed) {
+        if (processed.image() instanceof BufferedImage image) {
+            bufferPool.release(image);
+        } else if (processed.image() instanceof Closeable closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                log.warn("Failed to release processed image", e);
+            }
         }
-        return Scalr.rotate(image, rotation);
     }
 
     /**
-     * Converte para preto e branco
+     * Codifica uma imagem de {@link #renderReserved} ocupando um worker do agendador, como
+     * se ainda estivesse na tarefa agendada
      */
-    private BufferedImage convertToGrayscale(BufferedImage image) {
-        BufferedImage grayscale = new BufferedImage(
-                image.getWidth(), image.getHeight(), BufferedImage.TYPE_BYTE_GRAY);
-        Graphics2D g = grayscale.createGraphics();
-        g.drawImage(image, 0, 0, null);
-        g.dispose();
-        return grayscale;
+    public void writeImage(ReservedImage reserved, OutputStream output) throws IOException {
+        try (ProcessingScheduler.Worker worker = scheduler.occupyWorker()) {
+            writeImage(reserved.processed(), output);
+        }
     }
 
     /**
-     * Salva imagem com qualidade especificada
+     * Devolve os pixels e a reserva de memória de uma imagem de {@link #renderReserved}
      */
-    private void saveImage(BufferedImage image, File output, ImageFormat format, Integer quality) throws IOException {
-        if (format == ImageFormat.JPG || format == ImageFormat.JPEG) {
-            // JPEG com controle de qualidade
-            float jpegQuality = quality != null ? quality / 100f : 0.85f;
-            Thumbnails.of(image)
-                    .scale(1.0)
-                    .outputQuality(jpegQuality)
-                    .outputFormat(format.getExtension())
-                    .toFile(output);
-        } else {
-            // Outros formatos
-            ImageIO.write(image, format.getExtension(), output);
+    public void release(ReservedImage reserved) {
+        try {
+            release(reserved.processed());
+        } finally {
+            reserved.admission().close();
         }
     }
 
+    /**
+     * Codifica a imagem processada no stream informado
+     */
+    public void writeImage(ProcessedImage processed, OutputStream output) throws IOException {
+        metrics.record(ImageMetrics.Stage.ENCODE, ImageMetrics.outputTags(processed), () -> {
+            encoder.encode(processed.image(), processed.format(), processed.encoding(), output);
+            return null;
+        });
+    }
+
+    public ProcessingResultCache.CacheStats getCacheStats() {
+        return resultCache.stats();
+    }
+
+    public ProcessingScheduler.SchedulerStats getSchedulerStats() {
+        return scheduler.stats();
+    }
+
+    public PixelBufferPool.PoolStats getBufferPoolStats() {
+        return bufferPool.stats();
+    }
+
+    private ImageResponse buildResponse(String originalFileName, long originalSize,
+                                        ProcessingResultCache.CachedResult result) {
+        return ImageResponse.builder()
+                .success(true)
+                .message("Image processed successfully")
+                .originalFileName(originalFileName)
+                .originalWidth(result.originalWidth())
+                .originalHeight(result.originalHeight())
+                .originalSizeBytes(originalSize)
+                .processedFileName(result.processedFileName())
+                .processedWidth(result.processedWidth())
+                .processedHeight(result.processedHeight())
+                .processedSizeBytes(result.processedSizeBytes())
+                .compressionRatio(calculateCompressionRatio(originalSize, result.processedSizeBytes()))
+                .downloadUrl("/download/" + result.processedFileName())
+                .build();
+    }
+
+    private ImageResponse errorResponse(Exception e) {
+        return ImageResponse.builder()
+                .success(false)
+                .message("Error processing image")
+                .errorDetails(e.getMessage())
+                .build();
+    }
+
+    /**
+     * Aplica todas as transformações à imagem
+     */
+    private BufferedImage applyTransformations(BufferedImage image, ResizeRequest request) throws IOException {
+        return transformPipeline.apply(image, request);
+    }
+
     /**
      * Retorna arquivo processado para download
      */
-    public File getProcessedFile(String fileName) throws IOException {
-        Path filePath = Paths.get(OUTPUT_DIR + fileName);
-        if (!Files.exists(filePath)) {
-            throw new IOException("File not found: " + fileName);
-        }
-        return filePath.toFile();
+    public Resource getProcessedFile(String fileName) throws IOException {
+        return findProcessedFile(fileName)
+                .orElseThrow(() -> new IOException("File not found: " + fileName));
+    }
+
+    /**
+     * Arquivo processado, se existir
+     */
+    public Optional<Resource> findProcessedFile(String fileName) throws IOException {
+        return outputStore.read(fileName);
+    }
+
+    /**
+     * Resultado já processado para a chave informada, se o arquivo ainda existir
+     */
+    public ProcessingResultCache.CachedResult lookupCached(String cacheKey) {
+        return resultCache.lookup(cacheKey, outputStore);
+    }
+
+    public boolean hasProcessedFile(String fileName) {
+        return outputStore.contains(fileName);
+    }
+
+    public OutputStore.StoreStats getOutputStoreStats() {
+        return outputStore.stats();
     }
 
     /**
      * Determina formato de saída
      */
-    private ImageFormat determineOutputFormat(String originalFileName, String requestedFormat) {
+    public ImageFormat determineOutputFormat(String originalFileName, String requestedFormat) {
         if (requestedFormat != null && !requestedFormat.isEmpty()) {
             return ImageFormat.fromExtension(requestedFormat);
         }
@@ -263,17 +619,10 @@ public class ImageProcessingService {
     }
 
     /**
-     * Cria diretório de saída
+     * O que fazer com a imagem processada antes de os pixels serem devolvidos
      */
-    private void createOutputDirectory() {
-        try {
-            Path outputPath = Paths.get(OUTPUT_DIR);
-            if (!Files.exists(outputPath)) {
-                Files.createDirectories(outputPath);
-                log.info("Output directory created: {}", OUTPUT_DIR);
-            }
-        } catch (IOException e) {
-            log.error("Failed to create output directory", e);
-        }
+    @FunctionalInterface
+    public interface ProcessedImageAction<T> {
+        T apply(ProcessedImage image) throws IOException;
     }
 }
@@ -0,0 +1,323 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ResizeRequest;
+import net.coobird.thumbnailator.Thumbnails;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+
+/**
+ * Pipeline de transformações aplicado a uma imagem decodificada.
+ *
+ * O crop é uma visão sobre os pixels da origem (sem cópia), o resize gera no máximo
+ * um quadro intermediário, desfoque e nitidez ({@link ImageFilters}) rodam sobre a imagem
+ * já redimensionada, e rotação, espelhamentos e grayscale são executados juntos numa
+ * única passada que grava direto no quadro final.
+ *
+ * O resize usa o {@link SeparableResampler} (bicúbico ou Lanczos) com o parâmetro
+ * {@code resampler}, dividido em faixas paralelas nas imagens grandes
+ * ({@link ParallelResampler}). Sem o parâmetro vale {@code image.resize.default-resampler}:
+ * no {@code auto}, o Thumbnailator abaixo do limite de megapixels do resize paralelo e o
+ * bicúbico em faixas acima dele, para que o resize padrão de uma imagem grande não fique
+ * num núcleo só. Os laços de pixels usam os
+ * {@link PixelKernels} vetoriais, exceto com {@code simd=false}.
+ */
+@Component
+public class ImageTransformPipeline {
+
+    /**
+     * Linhas do destino geradas por bloco na rotação de 90/270
+     */
+    private static final int TRANSPOSE_BLOCK = 32;
+
+    private static final String AUTO_RESAMPLER = "auto";
+
+    private final PixelBufferPool bufferPool;
+    private final ParallelResampler parallelResampler;
+    private final ImageFilters imageFilters;
+    private final boolean autoResampler;
+    private final SeparableResampler.Filter defaultFilter;
+
+    public ImageTransformPipeline(PixelBufferPool bufferPool, ParallelResampler parallelResampler,
+                                  ImageFilters imageFilters,
+                                  @Value("${image.resize.default-resampler:auto}") String defaultResampler) {
+        this.bufferPool = bufferPool;
+        this.parallelResampler = parallelResampler;
+        this.imageFilters = imageFilters;
+        this.autoResampler = AUTO_RESAMPLER.equalsIgnoreCase(defaultResampler);
+        this.defaultFilter = autoResampler ? null : SeparableResampler.Filter.fromName(defaultResampler);
+    }
+
+    /**
+     * Aplica todas as transformações da requisição
+     */
+    public BufferedImage apply(BufferedImage image, ResizeRequest request) throws IOException {
+        BufferedImage cropped = crop(image, request);
+        BufferedImage resized = resize(cropped, request);
+        if (resized == cropped) {
+            return finish(resized, request);
+        }
+        // O quadro intermediário do resize volta ao pool assim que a última passada termina
+        BufferedImage result;
+        try {
+            result = finish(resized, request);
+        } catch (RuntimeException e) {
+            bufferPool.release(resized);
+            throw e;
+        }
+        if (!PixelBufferPool.sharesBuffer(result, resized)) {
+            bufferPool.release(resized);
+        }
+        return result;
+    }
+
+    /**
+     * Recorta imagem (visão sobre o raster original)
+     */
+    public BufferedImage crop(BufferedImage image, ResizeRequest request) {
+        Rectangle bounds = cropBounds(request, image.getWidth(), image.getHeight());
+        if (bounds == null) {
+            return image;
+        }
+        return image.getSubimage(bounds.x, bounds.y, bounds.width, bounds.height);
+    }
+
+    /**
+     * Redimensiona imagem
+     */
+    public BufferedImage resize(BufferedImage image, ResizeRequest request) throws IOException {
+        if (!hasResize(request)) {
+            return image;
+        }
+        int[] target = targetSize(request, image.getWidth(), image.getHeight());
+        return resize(image, target[0], target[1], Boolean.TRUE.equals(request.getKeepAspectRatio()),
+                resampler(request.getResampler(), image), PixelKernels.forRequest(request));
+    }
+
+    public BufferedImage resize(BufferedImage image, int targetWidth, int targetHeight,
+                                boolean keepAspectRatio) throws IOException {
+        return resize(image, targetWidth, targetHeight, keepAspectRatio, resampler(null, image),
+                PixelKernels.preferred());
+    }
+
+    /**
+     * Filtro do resize de {@code source}: o do parâmetro {@code resampler} ou, sem ele, o
+     * padrão; null é o Thumbnailator
+     */
+    SeparableResampler.Filter resampler(String resampler, BufferedImage source) {
+        if (StringUtils.hasText(resampler)) {
+            return SeparableResampler.Filter.fromName(resampler);
+        }
+        if (autoResampler) {
+            return parallelResampler.isParallel(source) ? SeparableResampler.Filter.BICUBIC : null;
+        }
+        return defaultFilter;
+    }
+
+    /**
+     * Redimensiona pelo Thumbnailator ou, com um filtro, pelo {@link SeparableResampler}
+     * (o quadro gerado vem do {@link PixelBufferPool})
+     */
+    BufferedImage resize(BufferedImage image, int targetWidth, int targetHeight, boolean keepAspectRatio,
+                         SeparableResampler.Filter filter, PixelKernels kernels) throws IOException {
+        if (filter != null) {
+            RenditionPlanner.Size size = new RenditionPlanner.Size(targetWidth, targetHeight, keepAspectRatio)
+                    .fittedTo(image.getWidth(), image.getHeight());
+            return parallelResampler.resize(image, Math.max(1, size.width()), Math.max(1, size.height()),
+                    filter, kernels);
+        }
+        if (keepAspectRatio) {
+            return Thumbnails.of(image)
+                    .size(targetWidth, targetHeight)
+                    .asBufferedImage();
+        } else {
+            return Thumbnails.of(image)
+                    .forceSize(targetWidth, targetHeight)
+                    .asBufferedImage();
+        }
+    }
+
+    /**
+     * Desfoque e nitidez e depois rotação, espelhamentos e grayscale numa única passada. O
+     * quadro gerado vem do {@link PixelBufferPool} e deve ser devolvido depois de codificado.
+     */
+    public BufferedImage finish(BufferedImage image, ResizeRequest request) {
+        BufferedImage filtered = imageFilters.apply(image, request);
+        if (filtered == image) {
+            return reorient(image, request);
+        }
+        BufferedImage result;
+        try {
+            result = reorient(filtered, request);
+        } catch (RuntimeException e) {
+            bufferPool.release(filtered);
+            throw e;
+        }
+        if (!PixelBufferPool.sharesBuffer(result, filtered)) {
+            bufferPool.release(filtered);
+        }
+        return result;
+    }
+
+    /**
+     * Rotação, espelhamentos e grayscale numa única passada
+     */
+    private BufferedImage reorient(BufferedImage image, ResizeRequest request) {
+        Orientation orientation = orientation(request, image.getWidth(), image.getHeight());
+        boolean grayscale = Boolean.TRUE.equals(request.getGrayscale());
+        if (orientation.isIdentity() && !grayscale) {
+            return image;
+        }
+
+        int width = orientation.getWidth();
+        int height = orientation.getHeight();
+        int type = grayscale ? BufferedImage.TYPE_BYTE_GRAY
+                : image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage result = bufferPool.createImageForOverwrite(width, height, type);
+
+        PixelKernels kernels = PixelKernels.forRequest(request);
+        byte[] grayPixels = grayscale ? ((DataBufferByte) result.getRaster().getDataBuffer()).getData() : null;
+        int[] rgbPixels = grayscale ? null : ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        if (orientation.isTransposed()) {
+            finishTransposed(image, orientation, kernels, rgbPixels, grayPixels);
+        } else {
+            finishRows(image, orientation, kernels, rgbPixels, grayPixels);
+        }
+        return result;
+    }
+
+    /**
+     * Sem rotação de 90/270: cada linha do destino é uma linha da origem, talvez invertida
+     */
+    private void finishRows(BufferedImage image, Orientation orientation, PixelKernels kernels,
+                            int[] rgbPixels, byte[] grayPixels) {
+        int width = orientation.getWidth();
+        boolean reversed = orientation.sourceStep() < 0;
+        int[] line = new int[width];
+        int[] flipped = reversed && grayPixels != null ? new int[width] : null;
+        for (int dy = 0; dy < orientation.getHeight(); dy++) {
+            int sy = orientation.sourceY(0, dy);
+            int offset = dy * width;
+            if (grayPixels == null && !reversed) {
+                RasterRows.read(image, 0, sy, width, rgbPixels, offset, kernels);
+                continue;
+            }
+            RasterRows.read(image, 0, sy, width, line, 0, kernels);
+            if (grayPixels == null) {
+                kernels.reverse(line, 0, width, rgbPixels, offset);
+            } else if (reversed) {
+                kernels.reverse(line, 0, width, flipped, 0);
+                kernels.luminance(flipped, 0, width, grayPixels, offset);
+            } else {
+                kernels.luminance(line, 0, width, grayPixels, offset);
+            }
+        }
+    }
+
+    /**
+     * Rotação de 90/270: as linhas do destino são colunas da origem. O destino é gerado em
+     * blocos de {@link #TRANSPOSE_BLOCK} linhas, lendo trechos curtos de cada linha da
+     * origem, para que leitura e escrita fiquem sequenciais na memória.
+     */
+    private void finishTransposed(BufferedImage image, Orientation orientation, PixelKernels kernels,
+                                  int[] rgbPixels, byte[] grayPixels) {
+        int width = orientation.getWidth();
+        int height = orientation.getHeight();
+        int[] segment = new int[TRANSPOSE_BLOCK];
+        byte[] graySegment = new byte[TRANSPOSE_BLOCK];
+        for (int top = 0; top < height; top += TRANSPOSE_BLOCK) {
+            int rows = Math.min(TRANSPOSE_BLOCK, height - top);
+            // Cada linha do destino vem de uma coluna da origem; o bloco cobre colunas vizinhas
+            int firstColumn = Math.min(orientation.sourceX(0, top), orientation.sourceX(0, top + rows - 1));
+            for (int dx = 0; dx < width; dx++) {
+                RasterRows.read(image, firstColumn, orientation.sourceY(dx, top), rows, segment, 0, kernels);
+                if (grayPixels != null) {
+                    kernels.luminance(segment, 0, rows, graySegment, 0);
+                }
+                for (int dy = top; dy < top + rows; dy++) {
+                    int index = orientation.sourceX(dx, dy) - firstColumn;
+                    if (grayPixels != null) {
+                        grayPixels[dy * width + dx] = graySegment[index];
+                    } else {
+                        rgbPixels[dy * width + dx] = segment[index];
+                    }
+                }
+            }
+        }
+    }
+
+    static boolean hasResize(ResizeRequest request) {
+        return request.getWidth() != null || request.getHeight() != null || request.getPercentage() != null;
+    }
+
+    static boolean hasFilter(ResizeRequest request) {
+        return request.getBlur() != null || request.getSharpen() != null;
+    }
+
+    /**
+     * Dimensões finais do resize, relativas à imagem original (já recortada)
+     */
+    static int[] targetSize(ResizeRequest request, int width, int height) {
+        if (request.getPercentage() != null) {
+            double scale = request.getPercentage() / 100.0;
+            return new int[] {(int) (width * scale), (int) (height * scale)};
+        }
+        return new int[] {
+                request.getWidth() != null ? request.getWidth() : width,
+                request.getHeight() != null ? request.getHeight() : height
+        };
+    }
+
+    /**
+     * Área de crop limitada aos limites da imagem, ou null se não houver crop
+     */
+    static Rectangle cropBounds(ResizeRequest request, int imageWidth, int imageHeight) {
+        if (request.getCropX() == null || request.getCropWidth() == null) {
+            return null;
+        }
+        int x = request.getCropX();
+        int y = request.getCropY() != null ? request.getCropY() : 0;
+        if (x < 0 || y < 0 || x >= imageWidth || y >= imageHeight) {
+            throw new ImageProcessingException("Crop area is outside the image bounds");
+        }
+        int width = Math.min(request.getCropWidth(), imageWidth - x);
+        int height = request.getCropHeight() != null
+                ? Math.min(request.getCropHeight(), imageHeight - y)
+                : imageHeight - y;
+        if (width <= 0 || height <= 0) {
+            throw new ImageProcessingException("Crop area must have positive dimensions");
+        }
+        return new Rectangle(x, y, width, height);
+    }
+
+    static Orientation orientation(ResizeRequest request, int width, int height) {
+        Orientation orientation = new Orientation(width, height);
+        if (request.getRotation() != null) {
+            orientation.rotate(request.getRotation());
+        }
+        if (Boolean.TRUE.equals(request.getFlipHorizontal())) {
+            orientation.flipHorizontal();
+        }
+        if (Boolean.TRUE.equals(request.getFlipVertical())) {
+            orientation.flipVertical();
+        }
+        return orientation;
+    }
+
+    /**
+     * Luminância Rec. 601 em ponto fixo
+     */
+    static int luminance(int argb) {
+        int r = (argb >> 16) & 0xFF;
+        int g = (argb >> 8) & 0xFF;
+        int b = argb & 0xFF;
+        return (r * 77 + g * 150 + b * 29 + 128) >> 8;
+    }
+}
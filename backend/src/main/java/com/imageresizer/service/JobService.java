@@ -0,0 +1,373 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ProcessingRejectedException;
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ImageJob;
+import com.imageresizer.model.ImageMetadata;
+import com.imageresizer.model.ImageResponse;
+import com.imageresizer.model.JobState;
+import com.imageresizer.model.ResizeRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+/**
+ * Jobs assíncronos de processamento.
+ *
+ * O id do job é o hash da imagem com os parâmetros normalizados (a mesma chave do
+ * {@link ProcessingResultCache}): reenviar o mesmo pedido devolve o job existente em vez de
+ * processar de novo; só volta para a fila um job que falhou ou cujo resultado já foi
+ * apagado. Os jobs ficam no
+ * {@link JobStore}; ao subir, os que estavam na fila ou em execução são retomados.
+ * Um pool pequeno de workers drena a fila pelo {@link ImageProcessingService}, sujeito ao
+ * mesmo controle de admissão do {@code /process}: se o agendador recusar, o job volta para
+ * o fim da fila depois do Retry-After, sem prender o worker nesse meio tempo. Jobs
+ * terminados há mais de {@code ttl-hours} são apagados da memória e do disco por uma
+ * varredura periódica.
+ */
+@Slf4j
+@Service
+public class JobService {
+
+    /**
+     * Caracteres do hash usados como id (128 bits)
+     */
+    private static final int ID_LENGTH = 32;
+
+    private final JobStore store;
+    private final ImageProcessingService imageProcessingService;
+    private final ProcessingResultCache resultCache;
+    private final ImageProbe imageProbe;
+    private final int workers;
+    private final int maxQueued;
+    private final int maxWaitSeconds;
+    private final int retryAfterSeconds;
+    private final Duration ttl;
+
+    private final ConcurrentHashMap<String, ImageJob> jobs = new ConcurrentHashMap<>();
+    private final BlockingQueue<String> queue = new LinkedBlockingQueue<>();
+    private final ConcurrentHashMap<String, CompletableFuture<ImageJob>> completions = new ConcurrentHashMap<>();
+    private ExecutorService executor;
+    private ScheduledExecutorService retries;
+
+    public JobService(JobStore store,
+                      ImageProcessingService imageProcessingService,
+                      ProcessingResultCache resultCache,
+                      ImageProbe imageProbe,
+                      @Value("${image.jobs.workers:2}") int workers,
+                      @Value("${image.jobs.max-queued:1000}") int maxQueued,
+                      @Value("${image.jobs.max-wait-seconds:30}") int maxWaitSeconds,
+                      @Value("${image.jobs.ttl-hours:24}") long ttlHours,
+                      @Value("${image.processing.retry-after-seconds:5}") int retryAfterSeconds) {
+        this.store = store;
+        this.imageProcessingService = imageProcessingService;
+        this.resultCache = resultCache;
+        this.imageProbe = imageProbe;
+        this.workers = Math.max(1, workers);
+        this.maxQueued = maxQueued;
+        this.maxWaitSeconds = maxWaitSeconds;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * Carrega os jobs gravados, recoloca na fila os pendentes e inicia os workers
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        List<ImageJob> pending = new ArrayList<>();
+        for (ImageJob job : store.loadAll()) {
+            jobs.put(job.getId(), job);
+            if (!job.getState().isFinished()) {
+                pending.add(job);
+            }
+        }
+        pending.sort(Comparator.comparing(ImageJob::getCreatedAt));
+        for (ImageJob job : pending) {
+            // Em execução quando o processo parou: recomeça do zero
+            if (job.getState() == JobState.RUNNING) {
+                update(job.getId(), j -> j.toBuilder().state(JobState.QUEUED).build());
+            }
+            queue.add(job.getId());
+        }
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "image-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            executor.execute(this::drain);
+        }
+        retries = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-job-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Job service: {} workers, {} jobs stored, {} resumed", workers, jobs.size(), pending.size());
+    }
+
+    /**
+     * Enfileira o processamento da imagem, ou devolve o job já existente para a mesma
+     * imagem e parâmetros. O cabeçalho é validado antes, para recusar na hora arquivos que
+     * não são imagens ou passam do limite de pixels.
+     */
+    public ImageJob submit(byte[] data, String originalFileName, ResizeRequest request) throws IOException {
+        ImageMetadata metadata = imageProbe.probe(new ByteArrayInputStream(data));
+        imageProbe.checkPixels(metadata.getWidth(), metadata.getHeight());
+        ImageFormat outputFormat = imageProcessingService.determineOutputFormat(originalFileName,
+                request.getOutputFormat());
+        String id = resultCache.key(data, request, outputFormat).substring(0, ID_LENGTH);
+
+        // Reserva o id com o job QUEUED (envios repetidos já o recebem) e só depois grava,
+        // fora do lock do mapa; o job entra na fila quando está no disco
+        ImageJob[] replaced = new ImageJob[1];
+        boolean[] created = new boolean[1];
+        ImageJob job = jobs.compute(id, (key, existing) -> {
+            if (existing != null && !isRetryable(existing)) {
+                log.info("Job {} already {}, not resubmitting", id, existing.getState());
+                return existing;
+            }
+            if (queue.size() >= maxQueued) {
+                throw new ProcessingRejectedException("Job queue is full", HttpStatus.TOO_MANY_REQUESTS,
+                        retryAfterSeconds);
+            }
+            Instant now = Instant.now();
+            replaced[0] = existing;
+            created[0] = true;
+            return ImageJob.builder()
+                    .id(id)
+                    .state(JobState.QUEUED)
+                    .originalFileName(originalFileName)
+                    .request(request)
+                    .attempts(existing != null ? existing.getAttempts() : 0)
+                    .createdAt(existing != null ? existing.getCreatedAt() : now)
+                    .updatedAt(now)
+                    .build();
+        });
+        if (!created[0]) {
+            return job;
+        }
+        try {
+            // A entrada precisa estar no disco antes do registro que a referencia
+            store.saveInput(id, data);
+            store.save(job);
+        } catch (IOException | RuntimeException e) {
+            if (replaced[0] != null) {
+                jobs.replace(id, job, replaced[0]);
+            } else {
+                jobs.remove(id, job);
+            }
+            throw e;
+        }
+        queue.add(id);
+        log.info("Job {} queued: {}", id, originalFileName);
+        return job;
+    }
+
+    /**
+     * Jobs que falharam, ou cujo resultado já não está mais em disco, podem ser reenviados
+     */
+    private boolean isRetryable(ImageJob job) {
+        return switch (job.getState()) {
+            case FAILED -> true;
+            case COMPLETED -> !imageProcessingService.hasProcessedFile(job.getResult().getProcessedFileName());
+            default -> false;
+        };
+    }
+
+    public Optional<ImageJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Estado do job assim que ele terminar ou depois de {@code waitSeconds} (limitado a
+     * {@code image.jobs.max-wait-seconds}), o que vier primeiro; vazio se o job não existe
+     */
+    public CompletableFuture<Optional<ImageJob>> await(String id, int waitSeconds) {
+        ImageJob job = jobs.get(id);
+        int wait = Math.min(waitSeconds, maxWaitSeconds);
+        if (job == null || job.getState().isFinished() || wait <= 0) {
+            return CompletableFuture.completedFuture(Optional.ofNullable(job));
+        }
+        CompletableFuture<ImageJob> completion = completions.computeIfAbsent(id, key -> new CompletableFuture<>());
+        // O job pode ter terminado entre a leitura acima e o registro da espera
+        ImageJob current = jobs.get(id);
+        if (current.getState().isFinished()) {
+            completions.remove(id, completion);
+            completion.complete(current);
+        }
+        return completion.copy()
+                .completeOnTimeout(null, wait, TimeUnit.SECONDS)
+                .thenApply(finished -> Optional.ofNullable(finished != null ? finished : jobs.get(id)));
+    }
+
+    private void drain() {
+        while (!Thread.currentThread().isInterrupted()) {
+            String id;
+            try {
+                id = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                run(id);
+            } catch (Exception e) {
+                log.error("Job {} could not be updated", id, e);
+            }
+        }
+    }
+
+    private void run(String id) throws IOException {
+        ImageJob job = update(id, j -> j.toBuilder()
+                .state(JobState.RUNNING)
+                .attempts(j.getAttempts() + 1)
+                .updatedAt(Instant.now())
+                .build());
+        if (job == null) {
+            log.info("Job {} no longer exists, skipping", id);
+            return;
+        }
+        ImageResponse response;
+        try {
+            byte[] data = store.readInput(id);
+            response = imageProcessingService.processImage(data, job.getOriginalFileName(), job.getRequest());
+        } catch (ProcessingRejectedException e) {
+            // Sem capacidade agora: volta para o fim da fila depois do Retry-After, sem
+            // segurar o worker, que segue com os próximos da fila
+            log.info("Job {} postponed: {}", id, e.getMessage());
+            if (update(id, j -> j.toBuilder().state(JobState.QUEUED).updatedAt(Instant.now()).build()) != null) {
+                retries.schedule(() -> queue.add(id), e.getRetryAfterSeconds(), TimeUnit.SECONDS);
+            }
+            return;
+        } catch (IOException e) {
+            log.error("Job {} input is missing", id, e);
+            response = ImageResponse.builder()
+                    .success(false)
+                    .message("Error processing image")
+                    .errorDetails(e.getMessage())
+                    .build();
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            // Desligando: o job continua RUNNING e é retomado na próxima subida
+            return;
+        }
+
+        JobState state = response.isSuccess() ? JobState.COMPLETED : JobState.FAILED;
+        ImageResponse result = response;
+        ImageJob finished = update(id, j -> j.toBuilder()
+                .state(state)
+                .result(result)
+                .updatedAt(Instant.now())
+                .build());
+        if (finished == null) {
+            log.info("Job {} was removed while running, discarding result", id);
+            return;
+        }
+        store.deleteInput(id);
+        log.info("Job {} {}", id, state);
+
+        CompletableFuture<ImageJob> completion = completions.remove(id);
+        if (completion != null) {
+            completion.complete(finished);
+        }
+    }
+
+    /**
+     * Atualiza o job em memória e no disco; {@code null} se o job não existe mais (apagado
+     * pela varredura)
+     */
+    private ImageJob update(String id, UnaryOperator<ImageJob> change) throws IOException {
+        try {
+            return jobs.computeIfPresent(id, (key, job) -> {
+                ImageJob updated = change.apply(job);
+                try {
+                    store.save(updated);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return updated;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Apaga os jobs terminados (concluídos ou com falha) há mais de {@code ttl-hours}; o
+     * resultado em si segue o TTL do {@link OutputStore}
+     */
+    @Scheduled(fixedDelayString = "${image.jobs.sweep-interval-seconds:300}", timeUnit = TimeUnit.SECONDS)
+    public void sweep() {
+        if (ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        Instant cutoff = Instant.now().minus(ttl);
+        int removed = 0;
+        for (ImageJob job : jobs.values()) {
+            if (!job.getState().isFinished() || !job.getUpdatedAt().isBefore(cutoff)) {
+                continue;
+            }
+            boolean[] deleted = new boolean[1];
+            // Só apaga se o job não foi reenviado nesse meio tempo; os arquivos somem dentro
+            // do lock, antes que um novo envio do mesmo id grave os seus
+            jobs.computeIfPresent(job.getId(), (id, current) -> {
+                if (current != job) {
+                    return current;
+                }
+                try {
+                    store.delete(id);
+                } catch (IOException e) {
+                    log.warn("Could not delete expired job {}: {}", id, e.getMessage());
+                    return current;
+                }
+                deleted[0] = true;
+                return null;
+            });
+            if (deleted[0]) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info("Job sweep: {} expired, {} jobs left", removed, jobs.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Jobs interrompidos continuam RUNNING no disco e são retomados na próxima subida
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (retries != null) {
+            // Jobs adiados já estão QUEUED no disco e voltam para a fila na próxima subida
+            retries.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.imageresizer.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.imageresizer.model.ImageJob;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Armazenamento dos jobs assíncronos em arquivos locais, sem broker externo.
+ *
+ * Cada job tem um {@code <id>.json} com o estado e, enquanto não termina, um
+ * {@code <id>.input} com a imagem enviada. As gravações vão para um arquivo temporário,
+ * sincronizado com o disco antes de substituir o anterior (rename atômico): após uma
+ * queda, cada arquivo tem a versão antiga ou a nova inteira.
+ */
+@Slf4j
+@Component
+public class JobStore {
+
+    private static final String RECORD_SUFFIX = ".json";
+    private static final String INPUT_SUFFIX = ".input";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+    public JobStore(@Value("${image.jobs.directory:jobs/}") String directory, ObjectMapper objectMapper) throws IOException {
+        this.directory = Paths.get(directory);
+        this.objectMapper = objectMapper;
+        Files.createDirectories(this.directory);
+    }
+
+    /**
+     * Todos os jobs gravados; registros ilegíveis são ignorados
+     */
+    public List<ImageJob> loadAll() throws IOException {
+        List<ImageJob> jobs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + RECORD_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    jobs.add(objectMapper.readValue(file.toFile(), ImageJob.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable job record {}: {}", file, e.getMessage());
+                }
+            }
+        }
+        return jobs;
+    }
+
+    public void save(ImageJob job) throws IOException {
+        write(directory.resolve(job.getId() + RECORD_SUFFIX), objectMapper.writeValueAsBytes(job));
+    }
+
+    public void saveInput(String id, byte[] data) throws IOException {
+        write(directory.resolve(id + INPUT_SUFFIX), data);
+    }
+
+    public byte[] readInput(String id) throws IOException {
+        return Files.readAllBytes(directory.resolve(id + INPUT_SUFFIX));
+    }
+
+    public void deleteInput(String id) throws IOException {
+        Files.deleteIfExists(directory.resolve(id + INPUT_SUFFIX));
+    }
+
+    /**
+     * Apaga o registro do job e a entrada, se ainda existir
+     */
+    public void delete(String id) throws IOException {
+        deleteInput(id);
+        Files.deleteIfExists(directory.resolve(id + RECORD_SUFFIX));
+    }
+
+    private void write(Path target, byte[] data) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + TEMP_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
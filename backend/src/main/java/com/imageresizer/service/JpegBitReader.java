@@ -0,0 +1,103 @@
+package com.imageresizer.service;
+
+import java.io.IOException;
+
+/**
+ * Leitura bit a bit dos dados entrópicos de um scan JPEG.
+ *
+ * Remove o byte de enchimento de cada {@code 0xFF 0x00} e para no primeiro marcador:
+ * dali em diante entrega zeros, como a libjpeg, e a posição fica no marcador.
+ */
+final class JpegBitReader {
+
+    private final byte[] data;
+    private final int end;
+    private int position;
+    private long buffer;
+    private int bits;
+    private boolean atMarker;
+
+    JpegBitReader(byte[] data, int position, int end) {
+        this.data = data;
+        this.position = position;
+        this.end = end;
+    }
+
+    /**
+     * Próximos {@code count} bits (até 16), sem consumir
+     */
+    int peek(int count) {
+        if (bits < count) {
+            fill();
+        }
+        return (int) (buffer >>> (bits - count)) & ((1 << count) - 1);
+    }
+
+    void skip(int count) {
+        bits -= count;
+    }
+
+    /**
+     * Lê {@code count} bits e aplica a extensão de sinal da categoria (F.2.2.1)
+     */
+    int receiveExtend(int count) {
+        if (count == 0) {
+            return 0;
+        }
+        int value = peek(count);
+        bits -= count;
+        return value < (1 << (count - 1)) ? value - (1 << count) + 1 : value;
+    }
+
+    /**
+     * Descarta os bits restantes e consome o marcador RSTn seguinte
+     */
+    void restart() throws IOException {
+        buffer = 0;
+        bits = 0;
+        atMarker = false;
+        while (position + 1 < end) {
+            if ((data[position] & 0xFF) == 0xFF) {
+                int marker = data[position + 1] & 0xFF;
+                if (marker >= 0xD0 && marker <= 0xD7) {
+                    position += 2;
+                    return;
+                }
+                if (marker != 0x00 && marker != 0xFF) {
+                    throw new IOException("Missing restart marker");
+                }
+            }
+            position++;
+        }
+        throw new IOException("Missing restart marker");
+    }
+
+    /**
+     * Posição do primeiro byte ainda não lido (o marcador que encerrou o scan)
+     */
+    int position() {
+        return position;
+    }
+
+    private void fill() {
+        while (bits <= 56) {
+            int value = 0;
+            if (!atMarker && position < end) {
+                value = data[position] & 0xFF;
+                if (value == 0xFF) {
+                    int next = position + 1 < end ? data[position + 1] & 0xFF : -1;
+                    if (next == 0x00) {
+                        position += 2;
+                    } else {
+                        atMarker = true;
+                        value = 0;
+                    }
+                } else {
+                    position++;
+                }
+            }
+            buffer = (buffer << 8) | value;
+            bits += 8;
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.imageresizer.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * Grava {@link JpegCoefficients} como JPEG sequencial, sem requantizar.
+ *
+ * As tabelas de Huffman são recalculadas para os coeficientes rearranjados (uma passada
+ * de contagem e outra de escrita): as da origem podem não ter códigos para os símbolos que
+ * a transposição cria. A primeira componente usa o par de tabelas 0 e as demais o par 1.
+ * Um único scan, intercalado quando há mais de uma componente, sem restart.
+ */
+final class JpegCoefficientWriter {
+
+    private JpegCoefficientWriter() {
+    }
+
+    static byte[] write(JpegCoefficients image) throws IOException {
+        int tableSets = image.components.length > 1 ? 2 : 1;
+        long[][] dcFrequencies = new long[tableSets][256];
+        long[][] acFrequencies = new long[tableSets][256];
+        encodeScan(image, new Statistics(dcFrequencies, acFrequencies));
+
+        JpegHuffmanTable[] dc = new JpegHuffmanTable[tableSets];
+        JpegHuffmanTable[] ac = new JpegHuffmanTable[tableSets];
+        for (int t = 0; t < tableSets; t++) {
+            dc[t] = JpegHuffmanTable.optimal(dcFrequencies[t]);
+            ac[t] = JpegHuffmanTable.optimal(acFrequencies[t]);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(estimatedSize(image));
+        output.write(0xFF);
+        output.write(0xD8);
+        for (byte[] segment : image.segments) {
+            output.write(segment);
+        }
+        boolean extended = writeQuantTables(image, output);
+        writeFrame(image, extended, output);
+        for (int t = 0; t < tableSets; t++) {
+            writeHuffmanTable(output, 0, t, dc[t]);
+            writeHuffmanTable(output, 1, t, ac[t]);
+        }
+        writeScanHeader(image, output);
+        BitWriter bits = new BitWriter(output, dc, ac);
+        encodeScan(image, bits);
+        bits.flush();
+        output.write(0xFF);
+        output.write(0xD9);
+        return output.toByteArray();
+    }
+
+    /**
+     * Percorre os blocos na ordem do scan, com a predição DC de cada componente
+     */
+    private static void encodeScan(JpegCoefficients image, Sink sink) throws IOException {
+        JpegCoefficients.Component[] components = image.components;
+        int[] predictors = new int[components.length];
+        if (components.length == 1) {
+            JpegCoefficients.Component component = components[0];
+            int blocksWide = JpegCoefficients.ceilDiv(image.width, 8);
+            int blocksHigh = JpegCoefficients.ceilDiv(image.height, 8);
+            for (int by = 0; by < blocksHigh; by++) {
+                for (int bx = 0; bx < blocksWide; bx++) {
+                    predictors[0] = encodeBlock(component.coefficients, component.offset(bx, by),
+                            predictors[0], 0, sink);
+                }
+            }
+            return;
+        }
+        int mcusX = JpegCoefficients.ceilDiv(image.width, image.mcuWidth());
+        int mcusY = JpegCoefficients.ceilDiv(image.height, image.mcuHeight());
+        for (int my = 0; my < mcusY; my++) {
+            for (int mx = 0; mx < mcusX; mx++) {
+                for (int i = 0; i < components.length; i++) {
+                    JpegCoefficients.Component component = components[i];
+                    int table = i == 0 ? 0 : 1;
+                    for (int by = 0; by < component.v; by++) {
+                        for (int bx = 0; bx < component.h; bx++) {
+                            predictors[i] = encodeBlock(component.coefficients,
+                                    component.offset(mx * component.h + bx, my * component.v + by),
+                                    predictors[i], table, sink);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Codifica um bloco (F.1.2) e devolve o novo preditor DC
+     */
+    private static int encodeBlock(short[] coefficients, int offset, int predictor, int table, Sink sink)
+            throws IOException {
+        int dc = coefficients[offset];
+        int diff = dc - predictor;
+        int size = magnitude(diff);
+        sink.dc(table, size);
+        sink.bits(diff < 0 ? diff - 1 : diff, size);
+
+        int run = 0;
+        for (int k = 1; k < 64; k++) {
+            int value = coefficients[offset + JpegCoefficients.ZIGZAG[k]];
+            if (value == 0) {
+                run++;
+                continue;
+            }
+            while (run > 15) {
+                sink.ac(table, 0xF0);
+                run -= 16;
+            }
+            size = magnitude(value);
+            sink.ac(table, (run << 4) | size);
+            sink.bits(value < 0 ? value - 1 : value, size);
+            run = 0;
+        }
+        if (run > 0) {
+            sink.ac(table, 0x00);
+        }
+        return dc;
+    }
+
+    private static int magnitude(int value) {
+        return value == 0 ? 0 : 32 - Integer.numberOfLeadingZeros(Math.abs(value));
+    }
+
+    /**
+     * DQT; devolve true se alguma tabela precisa de 16 bits (aí o frame é SOF1)
+     */
+    private static boolean writeQuantTables(JpegCoefficients image, ByteArrayOutputStream output) {
+        boolean extended = false;
+        boolean[] used = new boolean[image.quantTables.length];
+        for (JpegCoefficients.Component component : image.components) {
+            used[component.quantTable] = true;
+        }
+        for (int t = 0; t < image.quantTables.length; t++) {
+            if (!used[t]) {
+                continue;
+            }
+            int[] table = image.quantTables[t];
+            boolean wide = false;
+            for (int value : table) {
+                wide |= value > 255;
+            }
+            extended |= wide;
+            writeMarker(output, 0xDB, 1 + (wide ? 128 : 64));
+            output.write((wide ? 0x10 : 0x00) | t);
+            for (int k = 0; k < 64; k++) {
+                int value = table[JpegCoefficients.ZIGZAG[k]];
+                if (wide) {
+                    output.write(value >> 8);
+                }
+                output.write(value);
+            }
+        }
+        return extended;
+    }
+
+    private static void writeFrame(JpegCoefficients image, boolean extended, ByteArrayOutputStream output) {
+        writeMarker(output, extended ? 0xC1 : 0xC0, 6 + image.components.length * 3);
+        output.write(8);
+        writeShort(output, image.height);
+        writeShort(output, image.width);
+        output.write(image.components.length);
+        for (JpegCoefficients.Component component : image.components) {
+            output.write(component.id);
+            output.write((component.h << 4) | component.v);
+            output.write(component.quantTable);
+        }
+    }
+
+    private static void writeHuffmanTable(ByteArrayOutputStream output, int tableClass, int id, JpegHuffmanTable table) {
+        writeMarker(output, 0xC4, 1 + 16 + table.symbols.length);
+        output.write((tableClass << 4) | id);
+        for (int length = 1; length <= 16; length++) {
+            output.write(table.counts[length]);
+        }
+        for (int symbol : table.symbols) {
+            output.write(symbol);
+        }
+    }
+
+    private static void writeScanHeader(JpegCoefficients image, ByteArrayOutputStream output) {
+        writeMarker(output, 0xDA, 1 + image.components.length * 2 + 3);
+        output.write(image.components.length);
+        for (int i = 0; i < image.components.length; i++) {
+            int table = i == 0 ? 0 : 1;
+            output.write(image.components[i].id);
+            output.write((table << 4) | table);
+        }
+        output.write(0);
+        output.write(63);
+        output.write(0);
+    }
+
+    /**
+     * Marcador com o tamanho do conteúdo (sem os 2 bytes do próprio tamanho)
+     */
+    private static void writeMarker(ByteArrayOutputStream output, int marker, int contentLength) {
+        output.write(0xFF);
+        output.write(marker);
+        writeShort(output, contentLength + 2);
+    }
+
+    private static void writeShort(ByteArrayOutputStream output, int value) {
+        output.write(value >> 8);
+        output.write(value);
+    }
+
+    private static int estimatedSize(JpegCoefficients image) {
+        return Math.max(1024, image.width * image.height / 4);
+    }
+
+    /**
+     * Destino dos símbolos de um bloco: contagem ou escrita
+     */
+    private interface Sink {
+        void dc(int table, int symbol) throws IOException;
+
+        void ac(int table, int symbol) throws IOException;
+
+        void bits(int value, int count) throws IOException;
+    }
+
+    private record Statistics(long[][] dc, long[][] ac) implements Sink {
+
+        @Override
+        public void dc(int table, int symbol) {
+            dc[table][symbol]++;
+        }
+
+        @Override
+        public void ac(int table, int symbol) {
+            ac[table][symbol]++;
+        }
+
+        @Override
+        public void bits(int value, int count) {
+        }
+    }
+
+    /**
+     * Escrita dos códigos, com um {@code 0x00} depois de cada {@code 0xFF}
+     */
+    private static final class BitWriter implements Sink {
+
+        private final ByteArrayOutputStream output;
+        private final JpegHuffmanTable[] dc;
+        private final JpegHuffmanTable[] ac;
+        private long buffer;
+        private int count;
+
+        BitWriter(ByteArrayOutputStream output, JpegHuffmanTable[] dc, JpegHuffmanTable[] ac) {
+            this.output = output;
+            this.dc = dc;
+            this.ac = ac;
+        }
+
+        @Override
+        public void dc(int table, int symbol) {
+            bits(dc[table].code(symbol), dc[table].size(symbol));
+        }
+
+        @Override
+        public void ac(int table, int symbol) {
+            bits(ac[table].code(symbol), ac[table].size(symbol));
+        }
+
+        @Override
+        public void bits(int value, int size) {
+            if (size == 0) {
+                return;
+            }
+            buffer = (buffer << size) | (value & ((1L << size) - 1));
+            count += size;
+            while (count >= 8) {
+                int b = (int) (buffer >>> (count - 8)) & 0xFF;
+                output.write(b);
+                if (b == 0xFF) {
+                    output.write(0);
+                }
+                count -= 8;
+            }
+        }
+
+        /**
+         * Completa o último byte com bits 1
+         */
+        void flush() {
+            if (count > 0) {
+                bits((1 << (8 - count)) - 1, 8 - count);
+            }
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ResizeRequest;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coeficientes DCT quantizados de um JPEG, por componente e por bloco 8x8, sem IDCT.
+ *
+ * Lê JPEG sequencial com Huffman (SOF0/SOF1) de 8 bits, com um ou vários scans e
+ * intervalos de restart. Progressivo, aritmético, 12 bits e hierárquico não são lidos:
+ * {@link #read} devolve null e o chamador usa o caminho por pixels.
+ *
+ * Crop e reorientação rearranjam blocos inteiros e trocam sinais/posições dos coeficientes
+ * dentro de cada bloco, portanto são exatos: nenhum coeficiente é requantizado. Os
+ * coeficientes ficam na ordem natural (linha * 8 + coluna).
+ */
+final class JpegCoefficients {
+
+    /**
+     * Índice na ordem natural do k-ésimo coeficiente em zigue-zague
+     */
+    static final int[] ZIGZAG = {
+            0, 1, 8, 16, 9, 2, 3, 10,
+            17, 24, 32, 25, 18, 11, 4, 5,
+            12, 19, 26, 33, 40, 48, 41, 34,
+            27, 20, 13, 6, 7, 14, 21, 28,
+            35, 42, 49, 56, 57, 50, 43, 36,
+            29, 22, 15, 23, 30, 37, 44, 51,
+            58, 59, 52, 45, 38, 31, 39, 46,
+            53, 60, 61, 54, 47, 55, 62, 63
+    };
+
+    final int width;
+    final int height;
+    final Component[] components;
+    /**
+     * Tabelas de quantização (até 4), na ordem natural
+     */
+    final int[][] quantTables;
+    /**
+     * Segmentos copiados para a saída (JFIF, perfil ICC e Adobe), com marcador e tamanho
+     */
+    final List<byte[]> segments;
+
+    JpegCoefficients(int width, int height, Component[] components, int[][] quantTables, List<byte[]> segments) {
+        this.width = width;
+        this.height = height;
+        this.components = components;
+        this.quantTables = quantTables;
+        this.segments = segments;
+    }
+
+    /**
+     * Lê os coeficientes; null se o tipo de JPEG não é suportado
+     */
+    static JpegCoefficients read(byte[] data, ImageProbe probe) throws IOException {
+        try {
+            return new Parser(data, probe).parse();
+        } catch (UnsupportedJpegException e) {
+            return null;
+        }
+    }
+
+    int maxH() {
+        int max = 1;
+        for (Component component : components) {
+            max = Math.max(max, component.h);
+        }
+        return max;
+    }
+
+    int maxV() {
+        int max = 1;
+        for (Component component : components) {
+            max = Math.max(max, component.v);
+        }
+        return max;
+    }
+
+    /**
+     * Largura do MCU em pixels: as operações só são exatas em múltiplos dela
+     */
+    int mcuWidth() {
+        return 8 * maxH();
+    }
+
+    int mcuHeight() {
+        return 8 * maxV();
+    }
+
+    /**
+     * Recorte que começa num canto de MCU; a borda direita e a de baixo podem cortar blocos
+     * (os pixels a mais ficam no preenchimento do último MCU)
+     */
+    JpegCoefficients crop(Rectangle area) {
+        int mcusX = ceilDiv(area.width, mcuWidth());
+        int mcusY = ceilDiv(area.height, mcuHeight());
+        Component[] cropped = new Component[components.length];
+        for (int i = 0; i < components.length; i++) {
+            Component source = components[i];
+            Component target = new Component(source.id, source.h, source.v, source.quantTable,
+                    mcusX * source.h, mcusY * source.v);
+            int offsetX = area.x / mcuWidth() * source.h;
+            int offsetY = area.y / mcuHeight() * source.v;
+            for (int by = 0; by < target.blocksHigh; by++) {
+                int sy = by + offsetY;
+                if (sy >= source.blocksHigh) {
+                    break;
+                }
+                int count = Math.min(target.blocksWide, source.blocksWide - offsetX);
+                System.arraycopy(source.coefficients, source.offset(offsetX, sy),
+                        target.coefficients, target.offset(0, by), count * 64);
+            }
+            cropped[i] = target;
+        }
+        return new JpegCoefficients(area.width, area.height, cropped, quantTables, segments);
+    }
+
+    /**
+     * Rotação e espelhamentos da requisição (na mesma ordem do pipeline por pixels), ou null
+     * se algum espelhamento cairia num MCU incompleto da borda
+     */
+    JpegCoefficients reorient(ResizeRequest request) {
+        Orientation pixels = ImageTransformPipeline.orientation(request, width, height);
+        if (isReflectedX(pixels) && width % mcuWidth() != 0 || isReflectedY(pixels) && height % mcuHeight() != 0) {
+            return null;
+        }
+        boolean transposed = pixels.isTransposed();
+
+        // Posição e sinal de cada coeficiente dentro do bloco
+        Orientation block = ImageTransformPipeline.orientation(request, 8, 8);
+        boolean negateOddX = isReflectedX(block);
+        boolean negateOddY = isReflectedY(block);
+        int[] sourceIndex = new int[64];
+        boolean[] negate = new boolean[64];
+        for (int v = 0; v < 8; v++) {
+            for (int u = 0; u < 8; u++) {
+                int su = transposed ? v : u;
+                int sv = transposed ? u : v;
+                sourceIndex[v * 8 + u] = sv * 8 + su;
+                negate[v * 8 + u] = (negateOddX && (su & 1) == 1) ^ (negateOddY && (sv & 1) == 1);
+            }
+        }
+
+        Component[] oriented = new Component[components.length];
+        for (int i = 0; i < components.length; i++) {
+            Component source = components[i];
+            Orientation grid = ImageTransformPipeline.orientation(request, source.blocksWide, source.blocksHigh);
+            Component target = new Component(source.id,
+                    transposed ? source.v : source.h, transposed ? source.h : source.v,
+                    source.quantTable, grid.getWidth(), grid.getHeight());
+            short[] from = source.coefficients;
+            short[] to = target.coefficients;
+            for (int by = 0; by < target.blocksHigh; by++) {
+                for (int bx = 0; bx < target.blocksWide; bx++) {
+                    int src = source.offset(grid.sourceX(bx, by), grid.sourceY(bx, by));
+                    int dst = target.offset(bx, by);
+                    for (int k = 0; k < 64; k++) {
+                        short value = from[src + sourceIndex[k]];
+                        to[dst + k] = negate[k] ? (short) -value : value;
+                    }
+                }
+            }
+            oriented[i] = target;
+        }
+
+        int[][] tables = quantTables;
+        if (transposed) {
+            tables = new int[quantTables.length][];
+            for (int t = 0; t < quantTables.length; t++) {
+                if (quantTables[t] != null) {
+                    tables[t] = new int[64];
+                    for (int k = 0; k < 64; k++) {
+                        tables[t][k] = quantTables[t][(k % 8) * 8 + k / 8];
+                    }
+                }
+            }
+        }
+        return new JpegCoefficients(pixels.getWidth(), pixels.getHeight(), oriented, tables, segments);
+    }
+
+    /**
+     * Se o eixo x da origem é percorrido ao contrário
+     */
+    private static boolean isReflectedX(Orientation orientation) {
+        return orientation.sourceX(1, 0) + orientation.sourceX(0, 1) - 2 * orientation.sourceX(0, 0) < 0;
+    }
+
+    private static boolean isReflectedY(Orientation orientation) {
+        return orientation.sourceY(1, 0) + orientation.sourceY(0, 1) - 2 * orientation.sourceY(0, 0) < 0;
+    }
+
+    static int ceilDiv(int value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    /**
+     * Componente de cor com a grade de blocos completa (incluindo o preenchimento do
+     * último MCU)
+     */
+    static final class Component {
+        final int id;
+        final int h;
+        final int v;
+        final int quantTable;
+        final int blocksWide;
+        final int blocksHigh;
+        final short[] coefficients;
+
+        Component(int id, int h, int v, int quantTable, int blocksWide, int blocksHigh) {
+            this.id = id;
+            this.h = h;
+            this.v = v;
+            this.quantTable = quantTable;
+            this.blocksWide = blocksWide;
+            this.blocksHigh = blocksHigh;
+            this.coefficients = new short[blocksWide * blocksHigh * 64];
+        }
+
+        int offset(int bx, int by) {
+            return (by * blocksWide + bx) * 64;
+        }
+    }
+
+    private static final class UnsupportedJpegException extends Exception {
+        UnsupportedJpegException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * Leitura dos segmentos e decodificação entrópica dos scans
+     */
+    private static final class Parser {
+
+        private final byte[] data;
+        private final ImageProbe probe;
+        private int position;
+
+        private final int[][] quantTables = new int[4][];
+        private final JpegHuffmanTable[] dcTables = new JpegHuffmanTable[4];
+        private final JpegHuffmanTable[] acTables = new JpegHuffmanTable[4];
+        private final List<byte[]> segments = new ArrayList<>();
+        private int restartInterval;
+
+        private int width;
+        private int height;
+        private Component[] components;
+        private int maxH;
+        private int maxV;
+        private boolean scanned;
+
+        Parser(byte[] data, ImageProbe probe) {
+            this.data = data;
+            this.probe = probe;
+        }
+
+        JpegCoefficients parse() throws IOException, UnsupportedJpegException {
+            if (data.length < 4 || (data[0] & 0xFF) != 0xFF || (data[1] & 0xFF) != 0xD8) {
+                throw new UnsupportedJpegException("Not a JPEG");
+            }
+            position = 2;
+            while (true) {
+                int marker = nextMarker();
+                if (marker < 0 || marker == 0xD9) {
+                    break;
+                }
+                if (marker >= 0xD0 && marker <= 0xD7 || marker == 0x01) {
+                    continue;
+                }
+                int length = u16(position);
+                int start = position + 2;
+                int segmentEnd = position + length;
+                if (length < 2 || segmentEnd > data.length) {
+                    throw new IOException("Truncated JPEG segment");
+                }
+                switch (marker) {
+                    case 0xC0, 0xC1 -> readFrame(start);
+                    case 0xC4 -> readHuffmanTables(start, segmentEnd);
+                    case 0xDB -> readQuantTables(start, segmentEnd);
+                    case 0xDD -> restartInterval = u16(start);
+                    case 0xDA -> {
+                        position = readScan(start);
+                        scanned = true;
+                        continue;
+                    }
+                    case 0xE0, 0xE2, 0xEE -> segments.add(Arrays.copyOfRange(data, position - 2, segmentEnd));
+                    case 0xDC -> throw new UnsupportedJpegException("DNL marker");
+                    default -> {
+                        if (marker >= 0xC2 && marker <= 0xCF) {
+                            // Progressivo, sem perdas, aritmético ou hierárquico
+                            throw new UnsupportedJpegException("Unsupported JPEG process");
+                        }
+                    }
+                }
+                position = segmentEnd;
+            }
+            if (components == null || !scanned) {
+                throw new IOException("JPEG without image data");
+            }
+            return new JpegCoefficients(width, height, components, quantTables, segments);
+        }
+
+        /**
+         * Próximo marcador, pulando bytes soltos e de enchimento; -1 no fim dos dados
+         */
+        private int nextMarker() {
+            while (position + 1 < data.length) {
+                if ((data[position] & 0xFF) == 0xFF) {
+                    int marker = data[position + 1] & 0xFF;
+                    if (marker != 0x00 && marker != 0xFF) {
+                        position += 2;
+                        return marker;
+                    }
+                }
+                position++;
+            }
+            return -1;
+        }
+
+        private void readFrame(int start) throws IOException, UnsupportedJpegException {
+            if (components != null) {
+                throw new IOException("Multiple frames");
+            }
+            if ((data[start] & 0xFF) != 8) {
+                throw new UnsupportedJpegException("Only 8-bit JPEG");
+            }
+            height = u16(start + 1);
+            width = u16(start + 3);
+            int count = data[start + 5] & 0xFF;
+            if (height == 0 || width == 0) {
+                throw new UnsupportedJpegException("Deferred height");
+            }
+            if (count < 1 || count > 4) {
+                throw new UnsupportedJpegException("Unsupported component count");
+            }
+            probe.checkPixels(width, height);
+
+            int[][] factors = new int[count][];
+            for (int i = 0; i < count; i++) {
+                int p = start + 6 + i * 3;
+                int h = (data[p + 1] & 0xFF) >> 4;
+                int v = data[p + 1] & 0x0F;
+                if (h < 1 || h > 4 || v < 1 || v > 4 || (data[p + 2] & 0xFF) > 3) {
+                    throw new IOException("Invalid JPEG component");
+                }
+                // Um só componente não é intercalado: o MCU é um bloco
+                factors[i] = count == 1 ? new int[] {data[p] & 0xFF, 1, 1, data[p + 2] & 0xFF}
+                        : new int[] {data[p] & 0xFF, h, v, data[p + 2] & 0xFF};
+                maxH = Math.max(maxH, factors[i][1]);
+                maxV = Math.max(maxV, factors[i][2]);
+            }
+            int mcusX = ceilDiv(width, 8 * maxH);
+            int mcusY = ceilDiv(height, 8 * maxV);
+            components = new Component[count];
+            for (int i = 0; i < count; i++) {
+                int[] f = factors[i];
+                components[i] = new Component(f[0], f[1], f[2], f[3], mcusX * f[1], mcusY * f[2]);
+            }
+        }
+
+        private void readHuffmanTables(int start, int end) throws IOException {
+            int p = start;
+            while (p < end) {
+                int tableClass = (data[p] & 0xFF) >> 4;
+                int id = data[p] & 0x0F;
+                if (tableClass > 1 || id > 3 || p + 17 > end) {
+                    throw new IOException("Invalid Huffman table");
+                }
+                int[] counts = new int[17];
+                int total = 0;
+                for (int i = 1; i <= 16; i++) {
+                    counts[i] = data[p + i] & 0xFF;
+                    total += counts[i];
+                }
+                p += 17;
+                if (total > 256 || p + total > end) {
+                    throw new IOException("Invalid Huffman table");
+                }
+                int[] symbols = new int[total];
+                for (int i = 0; i < total; i++) {
+                    symbols[i] = data[p + i] & 0xFF;
+                }
+                p += total;
+                JpegHuffmanTable table = new JpegHuffmanTable(counts, symbols);
+                if (tableClass == 0) {
+                    dcTables[id] = table;
+                } else {
+                    acTables[id] = table;
+                }
+            }
+        }
+
+        private void readQuantTables(int start, int end) throws IOException {
+            int p = start;
+            while (p < end) {
+                int precision = (data[p] & 0xFF) >> 4;
+                int id = data[p] & 0x0F;
+                int size = precision == 0 ? 64 : 128;
+                if (precision > 1 || id > 3 || p + 1 + size > end) {
+                    throw new IOException("Invalid quantization table");
+                }
+                p++;
+                int[] table = new int[64];
+                for (int k = 0; k < 64; k++) {
+                    table[ZIGZAG[k]] = precision == 0 ? data[p + k] & 0xFF : u16(p + 2 * k);
+                }
+                quantTables[id] = table;
+                p += size;
+            }
+        }
+
+        /**
+         * Decodifica um scan e devolve a posição do marcador que o encerra
+         */
+        private int readScan(int start) throws IOException, UnsupportedJpegException {
+            if (components == null) {
+                throw new IOException("Scan before frame");
+            }
+            int count = data[start] & 0xFF;
+            if (count < 1 || count > components.length) {
+                throw new IOException("Invalid scan");
+            }
+            Component[] scan = new Component[count];
+            JpegHuffmanTable[] dc = new JpegHuffmanTable[count];
+            JpegHuffmanTable[] ac = new JpegHuffmanTable[count];
+            for (int i = 0; i < count; i++) {
+                int id = data[start + 1 + i * 2] & 0xFF;
+                int tables = data[start + 2 + i * 2] & 0xFF;
+                scan[i] = component(id);
+                dc[i] = dcTables[(tables >> 4) & 3];
+                ac[i] = acTables[tables & 3];
+                if (dc[i] == null || ac[i] == null) {
+                    throw new IOException("Missing Huffman table");
+                }
+            }
+            int p = start + 1 + count * 2;
+            int ss = data[p] & 0xFF;
+            int se = data[p + 1] & 0xFF;
+            int approximation = data[p + 2] & 0xFF;
+            if (ss != 0 || se != 63 || approximation != 0) {
+                throw new UnsupportedJpegException("Not a sequential scan");
+            }
+            for (Component component : scan) {
+                if (quantTables[component.quantTable] == null) {
+                    throw new IOException("Missing quantization table");
+                }
+            }
+
+            JpegBitReader reader = new JpegBitReader(data, p + 3, data.length);
+            int[] predictors = new int[count];
+            int units = 0;
+            if (count == 1) {
+                // Não intercalado: só os blocos com pixels visíveis da componente
+                Component component = scan[0];
+                int blocksWide = ceilDiv(ceilDiv(width * component.h, maxH), 8);
+                int blocksHigh = ceilDiv(ceilDiv(height * component.v, maxV), 8);
+                for (int by = 0; by < blocksHigh; by++) {
+                    for (int bx = 0; bx < blocksWide; bx++) {
+                        units = restartIfDue(reader, units, predictors);
+                        predictors[0] = decodeBlock(reader, dc[0], ac[0], predictors[0],
+                                component.coefficients, component.offset(bx, by));
+                    }
+                }
+            } else {
+                int mcusX = ceilDiv(width, 8 * maxH);
+                int mcusY = ceilDiv(height, 8 * maxV);
+                for (int my = 0; my < mcusY; my++) {
+                    for (int mx = 0; mx < mcusX; mx++) {
+                        units = restartIfDue(reader, units, predictors);
+                        for (int i = 0; i < count; i++) {
+                            Component component = scan[i];
+                            for (int by = 0; by < component.v; by++) {
+                                for (int bx = 0; bx < component.h; bx++) {
+                                    predictors[i] = decodeBlock(reader, dc[i], ac[i], predictors[i],
+                                            component.coefficients,
+                                            component.offset(mx * component.h + bx, my * component.v + by));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            return reader.position();
+        }
+
+        private int restartIfDue(JpegBitReader reader, int units, int[] predictors) throws IOException {
+            if (restartInterval > 0 && units > 0 && units % restartInterval == 0) {
+                reader.restart();
+                Arrays.fill(predictors, 0);
+            }
+            return units + 1;
+        }
+
+        /**
+         * Decodifica um bloco (F.2.2) na ordem natural e devolve o novo preditor DC
+         */
+        private static int decodeBlock(JpegBitReader reader, JpegHuffmanTable dc, JpegHuffmanTable ac,
+                                       int predictor, short[] coefficients, int offset) throws IOException {
+            int size = dc.decode(reader);
+            if (size > 11) {
+                throw new IOException("Invalid DC difference");
+            }
+            int value = predictor + reader.receiveExtend(size);
+            coefficients[offset] = (short) value;
+            for (int k = 1; k < 64; k++) {
+                int symbol = ac.decode(reader);
+                int run = symbol >> 4;
+                int bits = symbol & 0x0F;
+                if (bits == 0) {
+                    if (run != 15) {
+                        break;
+                    }
+                    k += 15;
+                    continue;
+                }
+                k += run;
+                if (k > 63) {
+                    throw new IOException("Invalid AC run length");
+                }
+                coefficients[offset + ZIGZAG[k]] = (short) reader.receiveExtend(bits);
+            }
+            return value;
+        }
+
+        private Component component(int id) throws IOException {
+            for (Component component : components) {
+                if (component.id == id) {
+                    return component;
+                }
+            }
+            throw new IOException("Unknown scan component " + id);
+        }
+
+        private int u16(int offset) throws IOException {
+            if (offset + 1 >= data.length) {
+                throw new IOException("Truncated JPEG");
+            }
+            return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.imageresizer.service;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Tabela de Huffman de um JPEG (ITU T.81, anexo C), para decodificar e codificar.
+ *
+ * Na decodificação, códigos de até {@link #LOOKUP_BITS} bits saem de uma tabela direta;
+ * os mais longos usam {@code maxCode}/{@code valPtr} (anexo F.2.2.3). Na codificação, a
+ * tabela ótima é gerada a partir das frequências dos símbolos (anexo K.2).
+ */
+final class JpegHuffmanTable {
+
+    static final int LOOKUP_BITS = 9;
+
+    /**
+     * Quantidade de códigos por comprimento (índice 1 a 16)
+     */
+    final int[] counts;
+    final int[] symbols;
+
+    // Decodificação
+    private final int[] lookup = new int[1 << LOOKUP_BITS];
+    private final int[] maxCode = new int[18];
+    private final int[] valPtr = new int[17];
+    private final int[] minCode = new int[17];
+
+    // Codificação
+    private final int[] codes = new int[256];
+    private final int[] sizes = new int[256];
+
+    JpegHuffmanTable(int[] counts, int[] symbols) throws IOException {
+        this.counts = counts;
+        this.symbols = symbols;
+        build();
+    }
+
+    /**
+     * Próximo símbolo do fluxo
+     */
+    int decode(JpegBitReader reader) throws IOException {
+        int entry = lookup[reader.peek(LOOKUP_BITS)];
+        if (entry != 0) {
+            reader.skip(entry >> 8);
+            return entry & 0xFF;
+        }
+        for (int length = LOOKUP_BITS + 1; length <= 16; length++) {
+            int code = reader.peek(length);
+            if (code <= maxCode[length]) {
+                reader.skip(length);
+                return symbols[valPtr[length] + code - minCode[length]];
+            }
+        }
+        throw new IOException("Invalid Huffman code");
+    }
+
+    int code(int symbol) {
+        return codes[symbol];
+    }
+
+    /**
+     * Comprimento do código do símbolo; 0 se o símbolo não está na tabela
+     */
+    int size(int symbol) {
+        return sizes[symbol];
+    }
+
+    /**
+     * Tabela ótima para as frequências informadas (256 símbolos), limitada a 16 bits por
+     * código, como o {@code jpeg_gen_optimal_table} da libjpeg
+     */
+    static JpegHuffmanTable optimal(long[] frequencies) throws IOException {
+        long[] freq = Arrays.copyOf(frequencies, 257);
+        // Símbolo reservado: garante que nenhum código seja só de bits 1
+        freq[256] = 1;
+        int[] codeSize = new int[257];
+        int[] others = new int[257];
+        Arrays.fill(others, -1);
+
+        while (true) {
+            int c1 = -1;
+            long v = Long.MAX_VALUE;
+            for (int i = 0; i <= 256; i++) {
+                if (freq[i] != 0 && freq[i] <= v) {
+                    v = freq[i];
+                    c1 = i;
+                }
+            }
+            int c2 = -1;
+            v = Long.MAX_VALUE;
+            for (int i = 0; i <= 256; i++) {
+                if (freq[i] != 0 && freq[i] <= v && i != c1) {
+                    v = freq[i];
+                    c2 = i;
+                }
+            }
+            if (c2 < 0) {
+                break;
+            }
+            freq[c1] += freq[c2];
+            freq[c2] = 0;
+            codeSize[c1]++;
+            while (others[c1] >= 0) {
+                c1 = others[c1];
+                codeSize[c1]++;
+            }
+            others[c1] = c2;
+            codeSize[c2]++;
+            while (others[c2] >= 0) {
+                c2 = others[c2];
+                codeSize[c2]++;
+            }
+        }
+
+        int[] bits = new int[33];
+        for (int i = 0; i <= 256; i++) {
+            if (codeSize[i] > 32) {
+                throw new IOException("Huffman code length overflow");
+            }
+            if (codeSize[i] > 0) {
+                bits[codeSize[i]]++;
+            }
+        }
+        // Encurta os códigos acima de 16 bits (anexo K.3)
+        for (int i = 32; i > 16; i--) {
+            while (bits[i] > 0) {
+                int j = i - 2;
+                while (bits[j] == 0) {
+                    j--;
+                }
+                bits[i] -= 2;
+                bits[i - 1]++;
+                bits[j + 1] += 2;
+                bits[j]--;
+            }
+        }
+        int longest = 16;
+        while (bits[longest] == 0) {
+            longest--;
+        }
+        // Remove o símbolo reservado, que ficou com o código mais longo
+        bits[longest]--;
+
+        int[] counts = new int[17];
+        System.arraycopy(bits, 1, counts, 1, 16);
+        int total = 0;
+        for (int i = 1; i <= 16; i++) {
+            total += counts[i];
+        }
+        int[] symbols = new int[total];
+        int p = 0;
+        for (int length = 1; length <= 32 && p < total; length++) {
+            for (int symbol = 0; symbol < 256; symbol++) {
+                if (codeSize[symbol] == length) {
+                    symbols[p++] = symbol;
+                }
+            }
+        }
+        return new JpegHuffmanTable(counts, symbols);
+    }
+
+    /**
+     * Gera os códigos canônicos a partir das contagens por comprimento (anexo C)
+     */
+    private void build() throws IOException {
+        int code = 0;
+        int k = 0;
+        for (int length = 1; length <= 16; length++) {
+            valPtr[length] = k;
+            minCode[length] = code;
+            for (int i = 0; i < counts[length]; i++) {
+                if (k >= symbols.length) {
+                    throw new IOException("Invalid Huffman table");
+                }
+                int symbol = symbols[k++];
+                codes[symbol] = code;
+                sizes[symbol] = length;
+                if (length <= LOOKUP_BITS) {
+                    int shift = LOOKUP_BITS - length;
+                    int entry = (length << 8) | symbol;
+                    for (int fill = 0; fill < (1 << shift); fill++) {
+                        lookup[(code << shift) | fill] = entry;
+                    }
+                }
+                code++;
+            }
+            maxCode[length] = counts[length] > 0 ? code - 1 : -1;
+            if (code > (1 << length)) {
+                throw new IOException("Invalid Huffman table");
+            }
+            code <<= 1;
+        }
+        maxCode[17] = Integer.MAX_VALUE;
+    }
+}
@@ -0,0 +1,265 @@
+package com.imageresizer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * {@link OutputStore} num diretório local.
+ *
+ * Os arquivos ficam em dois níveis de subdiretórios derivados do hash do nome
+ * ({@code output/ab/cd/nome.ext}, até 65536 diretórios), para que nenhum diretório cresça
+ * sem limite. Arquivos do layout antigo, soltos na raiz, são movidos para o shard ao subir.
+ *
+ * Um índice em memória guarda tamanho e último acesso de cada arquivo (ao subir, o último
+ * acesso é a data de modificação). Uma varredura periódica apaga os arquivos sem acesso há
+ * mais de {@code ttl-hours} e, se o total passar de {@code max-megabytes}, os menos
+ * acessados recentemente até voltar ao limite; entre varreduras o total pode passar um
+ * pouco do limite.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "image.output.store", havingValue = "local", matchIfMissing = true)
+public class LocalOutputStore implements OutputStore {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path root;
+    private final long ttlMillis;
+    private final long maxBytes;
+
+    private final ConcurrentHashMap<String, Entry> index = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+
+    public LocalOutputStore(@Value("${image.output.directory:output/}") String directory,
+                            @Value("${image.output.ttl-hours:168}") long ttlHours,
+                            @Value("${image.output.max-megabytes:10240}") long maxMegabytes) throws IOException {
+        this.root = Paths.get(directory);
+        this.ttlMillis = Duration.ofHours(ttlHours).toMillis();
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+        Files.createDirectories(root);
+        load();
+        log.info("Output store: {} files, {} MB in {} (ttl {}h, max {} MB)", index.size(),
+                totalBytes.get() / (1024 * 1024), root, ttlHours, maxMegabytes);
+    }
+
+    @Override
+    public long write(String fileName, ContentWriter writer) throws IOException {
+        Path target = path(requireValid(fileName));
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), fileName, TEMP_SUFFIX);
+        try {
+            try (OutputStream output = new BufferedOutputStream(Files.newOutputStream(temp))) {
+                writer.writeTo(output);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        long size = Files.size(target);
+        add(fileName, new Entry(target, size, System.currentTimeMillis()));
+        return size;
+    }
+
+    @Override
+    public Optional<Resource> read(String fileName) {
+        Entry entry = isValid(fileName) ? index.get(fileName) : null;
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!Files.exists(entry.path)) {
+            // Apagado por fora
+            remove(fileName, entry);
+            return Optional.empty();
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return Optional.of(new FileSystemResource(entry.path));
+    }
+
+    @Override
+    public boolean contains(String fileName) {
+        return isValid(fileName) && index.containsKey(fileName);
+    }
+
+    @Override
+    public boolean touch(String fileName) {
+        Entry entry = isValid(fileName) ? index.get(fileName) : null;
+        if (entry == null) {
+            return false;
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return true;
+    }
+
+    @Override
+    public StoreStats stats() {
+        return new StoreStats(index.size(), totalBytes.get(), maxBytes, expired.get(), evicted.get());
+    }
+
+    /**
+     * Aplica o TTL e o limite de espaço
+     */
+    @Scheduled(fixedDelayString = "${image.output.sweep-interval-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        int expiredNow = 0;
+        if (ttlMillis > 0) {
+            for (Map.Entry<String, Entry> item : index.entrySet()) {
+                if (now - item.getValue().lastAccess > ttlMillis && delete(item.getKey(), item.getValue())) {
+                    expiredNow++;
+                }
+            }
+            expired.addAndGet(expiredNow);
+        }
+
+        int evictedNow = 0;
+        if (maxBytes > 0 && totalBytes.get() > maxBytes) {
+            List<Map.Entry<String, Entry>> byAccess = new ArrayList<>(index.entrySet());
+            byAccess.sort(Comparator.comparingLong(item -> item.getValue().lastAccess));
+            for (Map.Entry<String, Entry> item : byAccess) {
+                if (totalBytes.get() <= maxBytes) {
+                    break;
+                }
+                if (delete(item.getKey(), item.getValue())) {
+                    evictedNow++;
+                }
+            }
+            evicted.addAndGet(evictedNow);
+        }
+        if (expiredNow > 0 || evictedNow > 0) {
+            log.info("Output store sweep: {} expired, {} evicted, {} files, {} MB", expiredNow, evictedNow,
+                    index.size(), totalBytes.get() / (1024 * 1024));
+        }
+    }
+
+    /**
+     * Monta o índice a partir do disco, movendo para os shards os arquivos soltos na raiz
+     */
+    private void load() throws IOException {
+        int migrated = 0;
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(root, 3)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // Gravação interrompida
+                Files.deleteIfExists(file);
+                continue;
+            }
+            if (!isValid(name)) {
+                continue;
+            }
+            Path target = path(name);
+            if (!file.equals(target)) {
+                Files.createDirectories(target.getParent());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                migrated++;
+            }
+            BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+            add(name, new Entry(target, attributes.size(), attributes.lastModifiedTime().toMillis()));
+        }
+        if (migrated > 0) {
+            log.info("Output store: moved {} files from the flat layout into shards", migrated);
+        }
+    }
+
+    private void add(String fileName, Entry entry) {
+        Entry previous = index.put(fileName, entry);
+        totalBytes.addAndGet(entry.size - (previous != null ? previous.size : 0));
+    }
+
+    private boolean remove(String fileName, Entry entry) {
+        if (index.remove(fileName, entry)) {
+            totalBytes.addAndGet(-entry.size);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean delete(String fileName, Entry entry) {
+        if (!remove(fileName, entry)) {
+            return false;
+        }
+        try {
+            Files.deleteIfExists(entry.path);
+        } catch (IOException e) {
+            log.warn("Failed to delete {}: {}", entry.path, e.getMessage());
+        }
+        return true;
+    }
+
+    /**
+     * {@code root/ab/cd/nome}, com ab e cd tirados do SHA-256 do nome
+     */
+    private Path path(String fileName) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(fileName.getBytes(StandardCharsets.UTF_8));
+            HexFormat hex = HexFormat.of();
+            return root.resolve(hex.toHexDigits(hash[0])).resolve(hex.toHexDigits(hash[1])).resolve(fileName);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Só nomes simples: nada de separadores ou {@code ..} que saiam do diretório
+     */
+    private static boolean isValid(String fileName) {
+        return fileName != null && !fileName.isEmpty() && !fileName.startsWith(".")
+                && fileName.indexOf('/') < 0 && fileName.indexOf('\\') < 0 && fileName.indexOf('\0') < 0;
+    }
+
+    private static String requireValid(String fileName) {
+        if (!isValid(fileName)) {
+            throw new IllegalArgumentException("Invalid file name: " + fileName);
+        }
+        return fileName;
+    }
+
+    /**
+     * Arquivo no índice; o último acesso é atualizado sem lock
+     */
+    private static final class Entry {
+        final Path path;
+        final long size;
+        volatile long lastAccess;
+
+        Entry(Path path, long size, long lastAccess) {
+            this.path = path;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
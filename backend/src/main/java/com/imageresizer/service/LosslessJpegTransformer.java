@@ -0,0 +1,111 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ResizeRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Rotação, espelhamentos e crop de JPEG sem decodificar os pixels (como o {@code jpegtran}).
+ *
+ * Os blocos DCT são rearranjados e o fluxo é reescrito com as mesmas tabelas de
+ * quantização, então não há perda de geração: repetir a operação (ou desfazê-la) devolve
+ * exatamente os mesmos coeficientes. Vale para JPEG de entrada e de saída quando a
+ * requisição só tem rotação, espelhamentos e crop; a qualidade pedida é ignorada, já que
+ * nada é recomprimido.
+ *
+ * Como no {@code jpegtran -perfect}, o crop precisa começar num canto de MCU (8 ou 16
+ * pixels, conforme a subamostragem) e um espelhamento só é feito se a dimensão espelhada
+ * for múltipla do MCU; nos demais casos, e em JPEG progressivo, {@link #transform}
+ * devolve vazio e vale o caminho por pixels. Os metadados EXIF não são copiados (a
+ * orientação neles deixaria de valer); JFIF, perfil ICC e o segmento Adobe são mantidos.
+ */
+@Slf4j
+@Component
+public class LosslessJpegTransformer {
+
+    private final boolean enabled;
+    private final ImageProbe imageProbe;
+
+    public LosslessJpegTransformer(@Value("${image.lossless-jpeg.enabled:true}") boolean enabled,
+                                   ImageProbe imageProbe) {
+        this.enabled = enabled;
+        this.imageProbe = imageProbe;
+    }
+
+    /**
+     * Se a requisição pode ser atendida no domínio DCT: saída JPEG com crop, rotação ou
+     * espelhamento e nenhuma outra operação ou opção de codificação
+     */
+    public boolean accepts(ImageFormat outputFormat, ResizeRequest request) {
+        if (!enabled || (outputFormat != ImageFormat.JPG && outputFormat != ImageFormat.JPEG)) {
+            return false;
+        }
+        if (ImageTransformPipeline.hasResize(request)
+                || ImageTransformPipeline.hasFilter(request)
+                || Boolean.TRUE.equals(request.getGrayscale())
+                || Boolean.TRUE.equals(request.getProgressive())
+                || request.getMaxBytes() != null
+                || StringUtils.hasText(request.getChromaSubsampling())) {
+            return false;
+        }
+        boolean crop = request.getCropX() != null && request.getCropWidth() != null;
+        boolean rotate = request.getRotation() != null && request.getRotation() % 360 != 0;
+        return crop || rotate
+                || Boolean.TRUE.equals(request.getFlipHorizontal())
+                || Boolean.TRUE.equals(request.getFlipVertical());
+    }
+
+    /**
+     * Memória dos coeficientes de uma imagem (pior caso, três componentes sem subamostragem)
+     */
+    public static long estimatedBytes(int width, int height) {
+        return (long) width * height * 3 * Short.BYTES;
+    }
+
+    /**
+     * Aplica a requisição aos coeficientes; vazio se o arquivo não permite a operação exata
+     */
+    public Optional<EncodedImage> transform(byte[] data, ResizeRequest request) throws IOException {
+        JpegCoefficients source;
+        try {
+            source = JpegCoefficients.read(data, imageProbe);
+        } catch (IOException | RuntimeException e) {
+            if (e instanceof ImageProcessingException rejected) {
+                throw rejected;
+            }
+            // Dados corrompidos: o decoder do caminho por pixels dá o erro (ou tolera)
+            log.debug("Lossless JPEG transform skipped, unreadable stream: {}", e.getMessage());
+            return Optional.empty();
+        }
+        if (source == null) {
+            log.debug("Lossless JPEG transform skipped: unsupported JPEG process");
+            return Optional.empty();
+        }
+
+        JpegCoefficients result = source;
+        Rectangle crop = ImageTransformPipeline.cropBounds(request, source.width, source.height);
+        if (crop != null) {
+            if (crop.x % source.mcuWidth() != 0 || crop.y % source.mcuHeight() != 0) {
+                log.debug("Lossless JPEG transform skipped: crop origin {},{} is not on the {}x{} MCU grid",
+                        crop.x, crop.y, source.mcuWidth(), source.mcuHeight());
+                return Optional.empty();
+            }
+            result = result.crop(crop);
+        }
+        result = result.reorient(request);
+        if (result == null) {
+            log.debug("Lossless JPEG transform skipped: flipped dimension is not a multiple of the MCU");
+            return Optional.empty();
+        }
+        return Optional.of(new EncodedImage(ImageFormat.JPG, JpegCoefficientWriter.write(result),
+                source.width, source.height, result.width, result.height));
+    }
+}
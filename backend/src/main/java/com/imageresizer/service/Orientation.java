@@ -0,0 +1,99 @@
+package com.imageresizer.service;
+
+/**
+ * Composição de rotações (90/180/270) e espelhamentos como um único remapeamento de índices.
+ *
+ * Cada operação é acumulada numa transformação afim inteira {@code (x, y) -> (a*x + b*y + c, d*x + e*y + f)}
+ * cuja parte linear é ortogonal, então a inversa (destino -> origem) é apenas a transposta.
+ */
+final class Orientation {
+
+    private int a = 1, b = 0, c = 0;
+    private int d = 0, e = 1, f = 0;
+    private int width;
+    private int height;
+
+    Orientation(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Rotação no sentido horário, em graus (90, 180 ou 270). Outros valores são ignorados.
+     */
+    Orientation rotate(int degrees) {
+        switch (degrees) {
+            case 90 -> then(0, -1, height - 1, 1, 0, 0, true);
+            case 180 -> then(-1, 0, width - 1, 0, -1, height - 1, false);
+            case 270 -> then(0, 1, 0, -1, 0, width - 1, true);
+            default -> { }
+        }
+        return this;
+    }
+
+    Orientation flipHorizontal() {
+        then(-1, 0, width - 1, 0, 1, 0, false);
+        return this;
+    }
+
+    Orientation flipVertical() {
+        then(1, 0, 0, 0, -1, height - 1, false);
+        return this;
+    }
+
+    boolean isIdentity() {
+        return a == 1 && b == 0 && c == 0 && d == 0 && e == 1 && f == 0;
+    }
+
+    /**
+     * Indica se as linhas do destino correspondem a colunas da origem
+     */
+    boolean isTransposed() {
+        return b != 0;
+    }
+
+    int getWidth() {
+        return width;
+    }
+
+    int getHeight() {
+        return height;
+    }
+
+    /**
+     * Coordenada x na origem do pixel (dx, dy) do destino
+     */
+    int sourceX(int dx, int dy) {
+        return a * (dx - c) + d * (dy - f);
+    }
+
+    /**
+     * Coordenada y na origem do pixel (dx, dy) do destino
+     */
+    int sourceY(int dx, int dy) {
+        return b * (dx - c) + e * (dy - f);
+    }
+
+    /**
+     * Deslocamento na linha/coluna de origem a cada pixel avançado no destino
+     */
+    int sourceStep() {
+        return isTransposed() ? b : a;
+    }
+
+    private void then(int pa, int pb, int pc, int pd, int pe, int pf, boolean swapsAxes) {
+        int na = pa * a + pb * d;
+        int nb = pa * b + pb * e;
+        int nc = pa * c + pb * f + pc;
+        int nd = pd * a + pe * d;
+        int ne = pd * b + pe * e;
+        int nf = pd * c + pe * f + pf;
+        a = na; b = nb; c = nc;
+        d = nd; e = ne; f = nf;
+        if (swapsAxes) {
+            int tmp = width;
+            width = height;
+            height = tmp;
+        }
+    }
+}
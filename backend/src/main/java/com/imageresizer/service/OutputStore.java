@@ -0,0 +1,54 @@
+package com.imageresizer.service;
+
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+
+/**
+ * Armazenamento das imagens processadas, endereçadas pelo nome do arquivo (sem diretório).
+ *
+ * A implementação padrão é {@link LocalOutputStore}; outra (segmento mapeado em memória,
+ * bucket compatível com S3) pode substituí-la com {@code image.output.store}. Cada
+ * implementação cuida da própria expiração e do limite de espaço.
+ */
+public interface OutputStore {
+
+    /**
+     * Grava um arquivo novo e devolve o tamanho; o arquivo só fica visível depois de
+     * completamente escrito
+     */
+    long write(String fileName, ContentWriter writer) throws IOException;
+
+    /**
+     * Conteúdo do arquivo, registrando o acesso; vazio se o nome não existe (ou é inválido)
+     */
+    Optional<Resource> read(String fileName) throws IOException;
+
+    /**
+     * Se o arquivo existe, sem registrar acesso
+     */
+    boolean contains(String fileName);
+
+    /**
+     * Registra um acesso sem ler o conteúdo (ex.: acerto no cache de resultados, que ainda
+     * vai servir o arquivo); false se o arquivo não existe
+     */
+    boolean touch(String fileName);
+
+    StoreStats stats();
+
+    /**
+     * Escreve o conteúdo de um arquivo
+     */
+    @FunctionalInterface
+    interface ContentWriter {
+        void writeTo(OutputStream output) throws IOException;
+    }
+
+    /**
+     * Contadores do armazenamento
+     */
+    record StoreStats(long files, long totalBytes, long maxBytes, long expired, long evicted) {}
+}
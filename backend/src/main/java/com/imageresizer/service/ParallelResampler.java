@@ -0,0 +1,161 @@
+package com.imageresizer.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Redimensionamento separável de uma imagem grande em várias threads.
+ *
+ * A saída é dividida em faixas de linhas ({@link SeparableResampler.Job}): a thread que
+ * pediu o resize renderiza a primeira e as demais rodam num {@link ForkJoinPool} próprio.
+ * O número de faixas é limitado por {@code parallelism}, pelo mínimo de
+ * {@code min-band-rows} linhas por faixa e pelos workers livres do
+ * {@link ProcessingScheduler}: cada faixa extra ocupa um worker enquanto roda, então resizes
+ * simultâneos não somam mais threads que o agendador tem, e com o servidor ocupado cada
+ * resize continua numa thread só. Imagens abaixo de {@code threshold-megapixels} (na origem) e resizes
+ * que já rodam dentro de um fork/join (lote) também seguem sequenciais.
+ */
+@Slf4j
+@Component
+public class ParallelResampler {
+
+    private static final long MEGAPIXEL = 1_000_000L;
+
+    private final PixelBufferPool bufferPool;
+    private final ProcessingScheduler scheduler;
+    private final int parallelism;
+    private final int minBandRows;
+    private final long thresholdPixels;
+    private final ForkJoinPool pool;
+
+    public ParallelResampler(PixelBufferPool bufferPool,
+                             ProcessingScheduler scheduler,
+                             @Value("${image.resize.parallel.parallelism:0}") int parallelism,
+                             @Value("${image.resize.parallel.min-band-rows:64}") int minBandRows,
+                             @Value("${image.resize.parallel.threshold-megapixels:4}") int thresholdMegapixels) {
+        this.bufferPool = bufferPool;
+        this.scheduler = scheduler;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.minBandRows = Math.max(1, minBandRows);
+        this.thresholdPixels = thresholdMegapixels * MEGAPIXEL;
+        // A thread que chama renderiza uma das faixas
+        this.pool = new ForkJoinPool(Math.max(1, this.parallelism - 1));
+        log.info("Parallel resize: up to {} bands of at least {} rows, from {} MP",
+                this.parallelism, this.minBandRows, thresholdMegapixels);
+    }
+
+    /**
+     * Mesmo resultado de {@link SeparableResampler#resize}, dividido em faixas quando compensa
+     */
+    public BufferedImage resize(BufferedImage image, int targetWidth, int targetHeight,
+                                SeparableResampler.Filter filter, PixelKernels kernels) throws IOException {
+        SeparableResampler.Job job = new SeparableResampler.Job(image, targetWidth, targetHeight, filter,
+                kernels, bufferPool);
+        int bands = bands((long) image.getWidth() * image.getHeight(), job.rows());
+        List<ProcessingScheduler.Worker> helpers = occupyHelpers(bands - 1);
+        try {
+            return render(job, 1 + helpers.size());
+        } finally {
+            helpers.forEach(ProcessingScheduler.Worker::close);
+        }
+    }
+
+    /**
+     * Ocupa até {@code count} workers livres do agendador, um por faixa extra; cada faixa
+     * só roda no pool com um worker seu
+     */
+    private List<ProcessingScheduler.Worker> occupyHelpers(int count) {
+        List<ProcessingScheduler.Worker> helpers = new ArrayList<>();
+        for (int i = Math.min(count, scheduler.idleWorkers()); i > 0; i--) {
+            ProcessingScheduler.Worker worker = scheduler.tryOccupyWorker();
+            if (worker == null) {
+                break;
+            }
+            helpers.add(worker);
+        }
+        return helpers;
+    }
+
+    private BufferedImage render(SeparableResampler.Job job, int bands) throws IOException {
+        if (bands <= 1) {
+            job.render(0, job.rows());
+            return job.result();
+        }
+        List<ForkJoinTask<?>> forked = new ArrayList<>(bands - 1);
+        for (int band = 1; band < bands; band++) {
+            int fromRow = bandStart(band, bands, job.rows());
+            int toRow = bandStart(band + 1, bands, job.rows());
+            forked.add(pool.submit(ImageMetrics.measured(() -> {
+                try {
+                    job.render(fromRow, toRow);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })));
+        }
+        Exception failure = null;
+        try {
+            job.render(0, bandStart(1, bands, job.rows()));
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        // Todas as faixas precisam terminar antes de o quadro voltar (ou ir para o pool)
+        for (ForkJoinTask<?> task : forked) {
+            try {
+                task.join();
+            } catch (RuntimeException e) {
+                failure = failure != null ? failure : e;
+            }
+        }
+        if (failure != null) {
+            bufferPool.release(job.result());
+            if (failure instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (failure instanceof IOException io) {
+                throw io;
+            }
+            throw (RuntimeException) failure;
+        }
+        return job.result();
+    }
+
+    /**
+     * Se a origem é grande o bastante para o resize em faixas
+     */
+    public boolean isParallel(BufferedImage image) {
+        return parallelism > 1 && (long) image.getWidth() * image.getHeight() >= thresholdPixels;
+    }
+
+    /**
+     * Máximo de faixas para uma origem de {@code sourcePixels} e {@code rows} linhas na
+     * saída; as que passam da primeira só rodam se houver worker livre para elas
+     */
+    int bands(long sourcePixels, int rows) {
+        if (parallelism <= 1 || sourcePixels < thresholdPixels
+                || Thread.currentThread() instanceof ForkJoinWorkerThread) {
+            return 1;
+        }
+        return Math.max(1, Math.min(parallelism, rows / minBandRows));
+    }
+
+    private static int bandStart(int band, int bands, int rows) {
+        return (int) ((long) rows * band / bands);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,290 @@
+package com.imageresizer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.lang.ref.Cleaner;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de buffers de pixels reutilizáveis, separados por classe de tamanho.
+ *
+ * Os quadros grandes (decodificação, saída da passada de rotação/grayscale e a cópia sem
+ * alfa do JPEG) são alocados como {@code byte[]}/{@code int[]} do pool e embrulhados num
+ * {@link BufferedImage} comum, de modo que o Java2D continue usando os loops otimizados.
+ * Os tamanhos são arredondados para quatro classes por potência de dois (desperdício de
+ * no máximo 25%), e buffers menores que {@code min-kilobytes} nem passam pelo pool.
+ *
+ * Quem pega um buffer deve devolvê-lo com {@link #release(BufferedImage)}. Buffers
+ * esquecidos são detectados por um {@link Cleaner} registrado no {@link DataBuffer}:
+ * quando ele deixa de ser alcançável o array volta ao pool e o vazamento é contado.
+ *
+ * Os buffers ficam no heap porque o {@link BufferedImage} precisa de arrays Java; um
+ * {@code DataBuffer} sobre memória off-heap tiraria a imagem dos loops nativos do Java2D.
+ * O pool compensa com heap fixo ({@code -Xms} igual a {@code -Xmx}); com heap elástico os
+ * buffers retidos antecipam ciclos de marcação do G1, por isso ele vem desligado.
+ */
+@Slf4j
+@Component
+public class PixelBufferPool {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final boolean enabled;
+    private final long maxPooledBytes;
+    private final long minBufferBytes;
+
+    private final Map<Integer, ConcurrentLinkedDeque<byte[]>> byteBuffers = new ConcurrentHashMap<>();
+    private final Map<Integer, ConcurrentLinkedDeque<int[]>> intBuffers = new ConcurrentHashMap<>();
+    private final Map<DataBuffer, Lease> leases = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final AtomicLong pooledBytes = new AtomicLong();
+    private final AtomicLong borrowedBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    public PixelBufferPool(
+            @Value("${image.buffer-pool.enabled:false}") boolean enabled,
+            @Value("${image.buffer-pool.max-megabytes:256}") long maxMegabytes,
+            @Value("${image.buffer-pool.min-kilobytes:256}") long minKilobytes) {
+        this.enabled = enabled;
+        this.maxPooledBytes = maxMegabytes * 1024 * 1024;
+        this.minBufferBytes = minKilobytes * 1024;
+    }
+
+    /**
+     * Imagem de um tipo padrão ({@code TYPE_INT_RGB}, {@code TYPE_BYTE_GRAY}...) com pixels zerados
+     */
+    public BufferedImage createImage(int width, int height, int type) {
+        return createImage(width, height, type, true);
+    }
+
+    /**
+     * Como {@link #createImage(int, int, int)}, mas sem zerar os pixels; só para quem vai
+     * sobrescrever todos eles
+     */
+    public BufferedImage createImageForOverwrite(int width, int height, int type) {
+        return createImage(width, height, type, false);
+    }
+
+    /**
+     * Destino para {@code ImageReadParam.setDestination} no layout informado pelo reader,
+     * ou null se o layout não puder ser atendido pelo pool
+     */
+    public BufferedImage createImage(ImageTypeSpecifier type, int width, int height) {
+        return wrap(type.getColorModel(), type.getSampleModel(width, height), true);
+    }
+
+    /**
+     * Devolve ao pool o buffer da imagem (ou de qualquer visão sobre ela, como um
+     * {@code getSubimage}). Imagens que não vieram do pool são ignoradas.
+     */
+    public void release(BufferedImage image) {
+        if (image == null) {
+            return;
+        }
+        Lease lease = leases.remove(image.getRaster().getDataBuffer());
+        if (lease != null) {
+            lease.reclaim.released = true;
+            lease.cleanable.clean();
+        }
+    }
+
+    /**
+     * Se as duas imagens compartilham os mesmos pixels
+     */
+    public static boolean sharesBuffer(BufferedImage a, BufferedImage b) {
+        return a.getRaster().getDataBuffer() == b.getRaster().getDataBuffer();
+    }
+
+    public PoolStats stats() {
+        int buffers = 0;
+        for (ConcurrentLinkedDeque<byte[]> deque : byteBuffers.values()) {
+            buffers += deque.size();
+        }
+        for (ConcurrentLinkedDeque<int[]> deque : intBuffers.values()) {
+            buffers += deque.size();
+        }
+        return new PoolStats(enabled, buffers, pooledBytes.get(), borrowedBytes.get(),
+                hits.get(), misses.get(), discarded.get(), leaks.get());
+    }
+
+    private BufferedImage createImage(int width, int height, int type, boolean clear) {
+        BufferedImage prototype = new BufferedImage(1, 1, type);
+        SampleModel sampleModel = prototype.getSampleModel().createCompatibleSampleModel(width, height);
+        BufferedImage image = wrap(prototype.getColorModel(), sampleModel, clear);
+        return image != null ? image : new BufferedImage(width, height, type);
+    }
+
+    private BufferedImage wrap(ColorModel colorModel, SampleModel sampleModel, boolean clear) {
+        long length = bufferLength(sampleModel);
+        int bytesPerElement = sampleModel.getDataType() == DataBuffer.TYPE_INT ? 4 : 1;
+        if (!enabled || length <= 0 || length > Integer.MAX_VALUE || length * bytesPerElement < minBufferBytes) {
+            return null;
+        }
+        int size = (int) length;
+        DataBuffer dataBuffer;
+        Reclaim reclaim;
+        if (sampleModel.getDataType() == DataBuffer.TYPE_BYTE) {
+            byte[] data = borrowBytes(size, clear);
+            dataBuffer = new DataBufferByte(data, size);
+            reclaim = new Reclaim(this, data, null, (long) data.length);
+        } else if (sampleModel.getDataType() == DataBuffer.TYPE_INT) {
+            int[] data = borrowInts(size, clear);
+            dataBuffer = new DataBufferInt(data, size);
+            reclaim = new Reclaim(this, null, data, (long) data.length * 4);
+        } else {
+            return null;
+        }
+        borrowedBytes.addAndGet(reclaim.bytes);
+        leases.put(dataBuffer, new Lease(CLEANER.register(dataBuffer, reclaim), reclaim));
+
+        WritableRaster raster = Raster.createWritableRaster(sampleModel, dataBuffer, null);
+        return new BufferedImage(colorModel, raster, colorModel.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Elementos necessários para layouts de um único banco; -1 para os demais
+     */
+    private static long bufferLength(SampleModel sampleModel) {
+        int height = sampleModel.getHeight();
+        if (sampleModel instanceof ComponentSampleModel component
+                && Arrays.stream(component.getBankIndices()).allMatch(bank -> bank == 0)) {
+            return (long) component.getScanlineStride() * height;
+        }
+        if (sampleModel instanceof SinglePixelPackedSampleModel packed) {
+            return (long) packed.getScanlineStride() * height;
+        }
+        if (sampleModel instanceof MultiPixelPackedSampleModel packed && packed.getDataBitOffset() == 0) {
+            return (long) packed.getScanlineStride() * height;
+        }
+        return -1;
+    }
+
+    private byte[] borrowBytes(int length, boolean clear) {
+        int sizeClass = sizeClass(length);
+        ConcurrentLinkedDeque<byte[]> deque = byteBuffers.get(sizeClass);
+        byte[] data = deque != null ? deque.pollFirst() : null;
+        if (data == null) {
+            misses.incrementAndGet();
+            return new byte[sizeClass];
+        }
+        hits.incrementAndGet();
+        pooledBytes.addAndGet(-data.length);
+        if (clear) {
+            Arrays.fill(data, (byte) 0);
+        }
+        return data;
+    }
+
+    private int[] borrowInts(int length, boolean clear) {
+        int sizeClass = sizeClass(length);
+        ConcurrentLinkedDeque<int[]> deque = intBuffers.get(sizeClass);
+        int[] data = deque != null ? deque.pollFirst() : null;
+        if (data == null) {
+            misses.incrementAndGet();
+            return new int[sizeClass];
+        }
+        hits.incrementAndGet();
+        pooledBytes.addAndGet(-(long) data.length * 4);
+        if (clear) {
+            Arrays.fill(data, 0);
+        }
+        return data;
+    }
+
+    private void giveBack(Reclaim reclaim) {
+        borrowedBytes.addAndGet(-reclaim.bytes);
+        if (pooledBytes.addAndGet(reclaim.bytes) > maxPooledBytes) {
+            pooledBytes.addAndGet(-reclaim.bytes);
+            discarded.incrementAndGet();
+            return;
+        }
+        if (reclaim.bytesData != null) {
+            byteBuffers.computeIfAbsent(reclaim.bytesData.length, k -> new ConcurrentLinkedDeque<>())
+                    .offerFirst(reclaim.bytesData);
+        } else {
+            intBuffers.computeIfAbsent(reclaim.intData.length, k -> new ConcurrentLinkedDeque<>())
+                    .offerFirst(reclaim.intData);
+        }
+    }
+
+    /**
+     * Arredonda para cima em quatro classes por potência de dois
+     */
+    static int sizeClass(int length) {
+        int highest = Integer.highestOneBit(length);
+        if (highest == length || highest < 4) {
+            return length;
+        }
+        int step = highest >> 2;
+        long rounded = ((long) length + step - 1) / step * step;
+        return rounded <= Integer.MAX_VALUE ? (int) rounded : length;
+    }
+
+    /**
+     * Buffer emprestado e a ação que o devolve
+     */
+    private record Lease(Cleaner.Cleanable cleanable, Reclaim reclaim) {}
+
+    /**
+     * Ação do {@link Cleaner}: não pode referenciar o {@link DataBuffer}, só o array
+     */
+    private static final class Reclaim implements Runnable {
+
+        private final PixelBufferPool pool;
+        private final byte[] bytesData;
+        private final int[] intData;
+        private final long bytes;
+        private volatile boolean released;
+
+        private Reclaim(PixelBufferPool pool, byte[] bytesData, int[] intData, long bytes) {
+            this.pool = pool;
+            this.bytesData = bytesData;
+            this.intData = intData;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void run() {
+            if (!released) {
+                pool.leaks.incrementAndGet();
+                log.warn("Pixel buffer of {} KB was not released before being garbage collected", bytes / 1024);
+            }
+            pool.giveBack(this);
+        }
+    }
+
+    /**
+     * Métricas do pool
+     */
+    public record PoolStats(boolean enabled,
+                            int pooledBuffers,
+                            long pooledBytes,
+                            long borrowedBytes,
+                            long hits,
+                            long misses,
+                            long discarded,
+                            long leaks) {}
+}
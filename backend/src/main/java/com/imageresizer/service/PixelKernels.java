@@ -0,0 +1,108 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ResizeRequest;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Laços internos do processamento de pixels, com uma implementação escalar e outra
+ * vetorial ({@code jdk.incubator.vector}).
+ *
+ * As duas fazem as mesmas operações em float, na mesma ordem, então produzem exatamente
+ * os mesmos pixels. Pixels em float ficam intercalados como {@code [b, g, r, a]} (a ordem
+ * dos bytes de um int ARGB em little-endian), com as cores pré-multiplicadas pelo alfa.
+ */
+interface PixelKernels {
+
+    /**
+     * ARGB -> float {@code [b, g, r, a]}; sem alfa, o canal alfa vale 255
+     */
+    void unpack(int[] argb, int offset, int count, boolean alpha, float[] out);
+
+    /**
+     * Passada horizontal: cada pixel da saída é a soma ponderada dos pixels de entrada
+     * a partir de {@code first[x]}
+     */
+    void horizontal(float[] in, int[] first, int[] count, float[] weights, int taps, float[] out, int width);
+
+    /**
+     * Passada vertical: {@code out[i] = soma de weights[weightOffset + k] * lines[k][i]}
+     * para as {@code n} primeiras linhas
+     */
+    void vertical(float[][] lines, int n, float[] weights, int weightOffset, float[] out, int length);
+
+    /**
+     * Float {@code [b, g, r, a]} -> ARGB, desfazendo a pré-multiplicação quando há alfa
+     */
+    void pack(float[] in, int count, boolean alpha, int[] out, int offset);
+
+    /**
+     * BGR de 3 bytes ({@code TYPE_3BYTE_BGR}) -> ARGB opaco
+     */
+    void bgrToArgb(byte[] bgr, int offset, int count, int[] out, int outOffset);
+
+    /**
+     * Luminância Rec. 601 em ponto fixo, como {@link ImageTransformPipeline#luminance(int)}
+     */
+    void luminance(int[] argb, int offset, int count, byte[] out, int outOffset);
+
+    /**
+     * Cópia em ordem inversa (espelhamento)
+     */
+    void reverse(int[] source, int offset, int count, int[] out, int outOffset);
+
+    /**
+     * Uma linha da média em caixa vertical do {@link ImageFilters}: grava em {@code out} a
+     * média de cada coluna a partir das somas (alfa e verde em {@code agSums}, vermelho e
+     * azul em {@code rbSums}) e troca, nas somas, a linha que sai da janela pela que entra
+     */
+    void boxStep(int[] agSums, int[] rbSums, int count, int scale, int[] added, int addedOffset,
+                 int[] removed, int removedOffset, int[] out, int outOffset);
+
+    /**
+     * Kernels pedidos pela requisição: vetoriais por padrão, escalares com {@code simd=false}
+     * ou quando o módulo {@code jdk.incubator.vector} não foi carregado
+     */
+    static PixelKernels forRequest(ResizeRequest request) {
+        return Boolean.FALSE.equals(request.getSimd()) ? scalar() : preferred();
+    }
+
+    static PixelKernels scalar() {
+        return ScalarPixelKernels.INSTANCE;
+    }
+
+    static PixelKernels preferred() {
+        return Holder.PREFERRED;
+    }
+
+    static boolean isVectorAvailable() {
+        return Holder.PREFERRED != ScalarPixelKernels.INSTANCE;
+    }
+
+    /**
+     * Carrega a implementação vetorial uma única vez
+     */
+    @Slf4j
+    final class Holder {
+
+        private static final PixelKernels PREFERRED = load();
+
+        private Holder() {
+        }
+
+        private static PixelKernels load() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+                log.info("Vector API unavailable (start the JVM with --add-modules jdk.incubator.vector); "
+                        + "using scalar pixel kernels");
+                return ScalarPixelKernels.INSTANCE;
+            }
+            try {
+                PixelKernels kernels = new VectorPixelKernels();
+                log.info("Using vector pixel kernels: {}", kernels);
+                return kernels;
+            } catch (LinkageError | RuntimeException e) {
+                log.warn("Vector pixel kernels failed to load; using scalar kernels", e);
+                return ScalarPixelKernels.INSTANCE;
+            }
+        }
+    }
+}
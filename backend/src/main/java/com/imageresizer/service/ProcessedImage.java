@@ -0,0 +1,24 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ImageFormat;
+
+import java.awt.image.RenderedImage;
+
+/**
+ * Imagem transformada, pronta para ser codificada. Normalmente um {@code BufferedImage};
+ * imagens processadas em faixas são calculadas durante a codificação.
+ */
+public record ProcessedImage(RenderedImage image,
+                             int originalWidth,
+                             int originalHeight,
+                             ImageFormat format,
+                             EncodeOptions encoding) {
+
+    public int width() {
+        return image.getWidth();
+    }
+
+    public int height() {
+        return image.getHeight();
+    }
+}
@@ -0,0 +1,269 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ResizeRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cache de resultados endereçado por conteúdo.
+ *
+ * A chave é o SHA-256 dos bytes enviados junto com a {@link ResizeRequest} normalizada
+ * e o {@link ImageFormat} de saída. O índice fica em memória (LRU limitado por número
+ * de entradas e por bytes de saída) e aponta para os arquivos já gravados em disco.
+ */
+@Component
+public class ProcessingResultCache {
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, CachedResult> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ProcessingResultCache(
+            @Value("${image.cache.enabled:true}") boolean enabled,
+            @Value("${image.cache.max-entries:10000}") int maxEntries,
+            @Value("${image.cache.max-megabytes:512}") long maxMegabytes) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxMegabytes * 1024 * 1024;
+    }
+
+    /**
+     * Calcula a chave do cache para o conteúdo e parâmetros informados
+     */
+    public String key(byte[] data, ResizeRequest request, ImageFormat outputFormat) {
+        MessageDigest digest = sha256();
+        digest.update(data);
+        return finishKey(digest, request, outputFormat);
+    }
+
+    /**
+     * A mesma chave de {@link #key(byte[], ResizeRequest, ImageFormat)} a partir do SHA-256
+     * já calculado sobre os bytes (durante o upload, por {@link UploadReader}); o digest
+     * informado não é alterado
+     */
+    public String key(MessageDigest contentDigest, ResizeRequest request, ImageFormat outputFormat) {
+        try {
+            return finishKey((MessageDigest) contentDigest.clone(), request, outputFormat);
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Digest cannot be cloned", e);
+        }
+    }
+
+    private String finishKey(MessageDigest digest, ResizeRequest request, ImageFormat outputFormat) {
+        digest.update((byte) 0);
+        digest.update(normalize(request, outputFormat).getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Chave do cache para uma origem armazenada, identificada pelo hash do conteúdo
+     * ({@link SourceStore}), sem precisar ler os bytes de novo
+     */
+    public String key(String sourceId, ResizeRequest request, ImageFormat outputFormat) {
+        return key(sourceId, request, List.of(outputFormat));
+    }
+
+    /**
+     * Chave para uma origem armazenada quando o resultado é o menor entre vários formatos
+     * candidatos; com um só candidato é a mesma chave de {@link #key(String, ResizeRequest, ImageFormat)}
+     */
+    public String key(String sourceId, ResizeRequest request, List<ImageFormat> candidates) {
+        MessageDigest digest = sha256();
+        digest.update(sourceId.getBytes(StandardCharsets.UTF_8));
+        for (ImageFormat format : candidates) {
+            digest.update((byte) 0);
+            digest.update(normalize(request, format).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Busca resultado em cache. Entradas cujo arquivo não existe mais no
+     * {@link OutputStore} (expirado ou removido por falta de espaço) são descartadas; um
+     * acerto conta como acesso ao arquivo, para que a expiração e a remoção por espaço
+     * poupem os resultados mais servidos.
+     * A consulta ao armazenamento é feita fora do lock, para não serializar as consultas nem
+     * prender a thread portadora quando a requisição roda numa thread virtual.
+     */
+    public CachedResult lookup(String key, OutputStore outputStore) {
+        if (!enabled) {
+            return null;
+        }
+        CachedResult result;
+        synchronized (this) {
+            result = entries.get(key);
+        }
+        if (result != null && !outputStore.touch(result.processedFileName())) {
+            synchronized (this) {
+                if (entries.get(key) == result) {
+                    remove(key);
+                }
+            }
+            result = null;
+        }
+        synchronized (this) {
+            if (result == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Registra um novo resultado, removendo os menos usados se a capacidade for excedida
+     */
+    public synchronized void put(String key, CachedResult result) {
+        if (!enabled) {
+            return;
+        }
+        CachedResult previous = entries.put(key, result);
+        if (previous != null) {
+            totalBytes -= previous.processedSizeBytes();
+        }
+        totalBytes += result.processedSizeBytes();
+
+        Iterator<Map.Entry<String, CachedResult>> it = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+            Map.Entry<String, CachedResult> eldest = it.next();
+            if (eldest.getKey().equals(key)) {
+                continue;
+            }
+            totalBytes -= eldest.getValue().processedSizeBytes();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), totalBytes);
+    }
+
+    private void remove(String key) {
+        CachedResult removed = entries.remove(key);
+        if (removed != null) {
+            totalBytes -= removed.processedSizeBytes();
+        }
+    }
+
+    /**
+     * Representação canônica dos parâmetros que afetam o resultado
+     */
+    private String normalize(ResizeRequest request, ImageFormat outputFormat) {
+        // jpg e jpeg geram os mesmos bytes: a extensão do original e a negociada dividem a entrada
+        StringBuilder sb = new StringBuilder(outputFormat == ImageFormat.JPEG ? ImageFormat.JPG.name() : outputFormat.name());
+
+        if (request.getPercentage() != null) {
+            sb.append("|p=").append(request.getPercentage());
+        } else if (request.getWidth() != null || request.getHeight() != null) {
+            sb.append("|w=").append(request.getWidth())
+              .append("|h=").append(request.getHeight())
+              .append("|ar=").append(Boolean.TRUE.equals(request.getKeepAspectRatio()));
+        }
+        // simd fica de fora: kernels escalares e vetoriais geram os mesmos pixels
+        // Sem resampler vale o padrão da configuração, fixo enquanto o cache existe
+        if (StringUtils.hasText(request.getResampler()) && ImageTransformPipeline.hasResize(request)) {
+            SeparableResampler.Filter filter = SeparableResampler.Filter.fromName(request.getResampler());
+            sb.append("|rs=").append(filter != null ? filter : SeparableResampler.DEFAULT_RESAMPLER);
+        }
+
+        EncodeOptions encoding = EncodeOptions.from(request);
+        if (outputFormat == ImageFormat.JPG || outputFormat == ImageFormat.JPEG) {
+            sb.append("|q=").append(encoding.effectiveQuality());
+            if (encoding.isProgressive()) {
+                sb.append("|prog");
+            }
+            if (encoding.chromaSubsampling() != null) {
+                sb.append("|cs=").append(encoding.chromaSubsampling());
+            }
+        } else if (outputFormat == ImageFormat.WEBP) {
+            sb.append("|q=").append(encoding.effectiveQuality());
+            if (encoding.isLossless()) {
+                sb.append("|ll");
+            }
+        } else if (outputFormat == ImageFormat.PNG && encoding.compressionLevel() != null) {
+            sb.append("|z=").append(encoding.compressionLevel());
+        }
+        if (encoding.maxBytes() != null) {
+            sb.append("|max=").append(encoding.maxBytes());
+        }
+
+        Integer rotation = request.getRotation();
+        if (rotation != null && (rotation == 90 || rotation == 180 || rotation == 270)) {
+            sb.append("|r=").append(rotation);
+        }
+        if (Boolean.TRUE.equals(request.getFlipHorizontal())) {
+            sb.append("|fh");
+        }
+        if (Boolean.TRUE.equals(request.getFlipVertical())) {
+            sb.append("|fv");
+        }
+        if (Boolean.TRUE.equals(request.getGrayscale())) {
+            sb.append("|g");
+        }
+        if (request.getBlur() != null) {
+            sb.append("|b=").append(request.getBlur());
+        }
+        if (request.getSharpen() != null) {
+            sb.append("|s=").append(request.getSharpen()).append(',').append(request.getSharpenRadius() != null
+                    ? request.getSharpenRadius() : ImageFilters.DEFAULT_SHARPEN_RADIUS);
+        }
+        if (request.getCropX() != null && request.getCropWidth() != null) {
+            sb.append("|c=").append(request.getCropX())
+              .append(',').append(request.getCropY())
+              .append(',').append(request.getCropWidth())
+              .append(',').append(request.getCropHeight());
+        }
+        if (outputFormat == ImageFormat.GIF) {
+            if (request.getMaxFrames() != null) {
+                sb.append("|mf=").append(request.getMaxFrames());
+            }
+            if (request.getMaxFrameRate() != null) {
+                sb.append("|fps=").append(request.getMaxFrameRate());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Resultado previamente processado e salvo em disco
+     */
+    public record CachedResult(String processedFileName,
+                               int originalWidth,
+                               int originalHeight,
+                               int processedWidth,
+                               int processedHeight,
+                               long processedSizeBytes) {}
+
+    /**
+     * Contadores do cache
+     */
+    public record CacheStats(long hits, long misses, long evictions, int entries, long totalBytes) {}
+}
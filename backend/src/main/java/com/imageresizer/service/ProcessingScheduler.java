@@ -0,0 +1,298 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.exception.ProcessingRejectedException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agendador do processamento de pixels.
+ *
+ * Cada tarefa precisa reservar, antes de entrar na fila, a memória estimada dos pixels
+ * decodificados (lida do cabeçalho). A reserva espera no máximo {@code max-wait-ms};
+ * se o orçamento continuar esgotado a requisição é recusada com 503, e se a fila do pool
+ * estiver cheia, com 429. O pool de workers tem o tamanho do número de CPUs e usa threads
+ * de plataforma mesmo quando as requisições rodam em threads virtuais (profile {@code virtual}).
+ *
+ * Trabalho de CPU que roda em outros pools (as variantes de um lote, as codificações de
+ * teste da negociação de formato) ocupa um dos mesmos workers com {@link #occupyWorker()},
+ * então o total de threads processando pixels não passa do número de workers.
+ */
+@Slf4j
+@Component
+public class ProcessingScheduler {
+
+    private static final int KILOBYTE = 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore memoryBudget;
+    private final Semaphore workers;
+    private final int memoryBudgetKb;
+    private final long maxWaitMillis;
+    private final int retryAfterSeconds;
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public ProcessingScheduler(
+            @Value("${image.processing.workers:0}") int workers,
+            @Value("${image.processing.queue-capacity:64}") int queueCapacity,
+            @Value("${image.processing.memory-budget-mb:512}") int memoryBudgetMb,
+            @Value("${image.processing.max-wait-ms:10000}") long maxWaitMillis,
+            @Value("${image.processing.retry-after-seconds:5}") int retryAfterSeconds) {
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), workerThreadFactory());
+        this.workers = new Semaphore(poolSize, true);
+        this.memoryBudgetKb = memoryBudgetMb * KILOBYTE;
+        this.memoryBudget = new Semaphore(memoryBudgetKb, true);
+        this.maxWaitMillis = maxWaitMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        log.info("Processing scheduler: {} workers, queue {}, memory budget {} MB",
+                poolSize, queueCapacity, memoryBudgetMb);
+    }
+
+    /**
+     * Executa a tarefa no pool de workers, reservando a memória estimada enquanto ela roda
+     */
+    public <T> T execute(long estimatedBytes, Callable<T> task) throws IOException {
+        try (Admission admission = admit(estimatedBytes)) {
+            return execute(admission, task);
+        }
+    }
+
+    /**
+     * Executa a tarefa no pool de workers dentro de uma reserva já feita com
+     * {@link #admit(long)}, que continua aberta depois (ex.: até a resposta ser escrita)
+     */
+    public <T> T execute(Admission admission, Callable<T> task) throws IOException {
+        if (admission.released) {
+            throw new IllegalStateException("Admission already released");
+        }
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                try (Worker worker = occupyWorker()) {
+                    recordWait(System.nanoTime() - submittedAt);
+                    return task.call();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new ProcessingRejectedException("Processing queue is full",
+                    HttpStatus.TOO_MANY_REQUESTS, retryAfterSeconds);
+        }
+        return await(future);
+    }
+
+    /**
+     * Reserva memória do orçamento de pixels, esperando no máximo {@code max-wait-ms}.
+     * Imagens maiores que o orçamento inteiro são executadas sozinhas.
+     */
+    public Admission admit(long estimatedBytes) {
+        int permits = (int) Math.min(memoryBudgetKb, Math.max(1, estimatedBytes / KILOBYTE));
+        boolean acquired;
+        try {
+            acquired = memoryBudget.tryAcquire(permits, maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImageProcessingException("Interrupted while waiting for processing capacity", e);
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new ProcessingRejectedException("Processing memory budget exhausted",
+                    HttpStatus.SERVICE_UNAVAILABLE, retryAfterSeconds);
+        }
+        return new Admission(permits);
+    }
+
+    /**
+     * Ocupa um worker para trabalho que roda fora do pool, esperando um ficar livre; deve
+     * ser fechado assim que o trabalho termina (e não pode ser pedido de novo por quem já
+     * ocupa um). Numa thread de {@link ForkJoinPool} a espera é um
+     * {@link ForkJoinPool.ManagedBlocker}, para o pool não ficar sem threads enquanto ela dura.
+     */
+    public Worker occupyWorker() {
+        try {
+            if (Thread.currentThread() instanceof ForkJoinWorkerThread) {
+                ForkJoinPool.managedBlock(new WorkerBlocker());
+            } else {
+                workers.acquire();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImageProcessingException("Interrupted while waiting for a processing worker", e);
+        }
+        return new Worker();
+    }
+
+    /**
+     * Ocupa um worker só se houver um livre agora; null caso contrário
+     */
+    public Worker tryOccupyWorker() {
+        return workers.tryAcquire() ? new Worker() : null;
+    }
+
+    public SchedulerStats stats() {
+        long done = started.get();
+        return new SchedulerStats(
+                executor.getMaximumPoolSize(),
+                executor.getMaximumPoolSize() - workers.availablePermits(),
+                executor.getQueue().size(),
+                memoryBudgetKb / KILOBYTE,
+                (memoryBudgetKb - memoryBudget.availablePermits()) / KILOBYTE,
+                done,
+                rejected.get(),
+                done > 0 ? totalWaitNanos.get() / done / 1_000_000.0 : 0,
+                maxWaitNanos.get() / 1_000_000.0);
+    }
+
+    /**
+     * Workers livres agora, descontadas as tarefas na fila e as que esperam um worker (quem
+     * chama de dentro de um worker já conta como ocupado)
+     */
+    public int idleWorkers() {
+        return Math.max(0, workers.availablePermits() - workers.getQueueLength() - executor.getQueue().size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ImageProcessingException("Interrupted while processing image", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new ImageProcessingException(cause.getMessage(), cause);
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        started.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    private static ThreadFactory workerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "image-worker-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Reserva de memória; deve ser fechada ao fim do processamento
+     */
+    public final class Admission implements AutoCloseable {
+
+        private final int permits;
+        private boolean released;
+
+        private Admission(int permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                memoryBudget.release(permits);
+            }
+        }
+    }
+
+    /**
+     * Espera por um worker que o {@link ForkJoinPool} pode compensar com outra thread
+     */
+    private final class WorkerBlocker implements ForkJoinPool.ManagedBlocker {
+
+        private boolean acquired;
+
+        @Override
+        public boolean block() throws InterruptedException {
+            if (!acquired) {
+                workers.acquire();
+                acquired = true;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            if (!acquired) {
+                acquired = workers.tryAcquire();
+            }
+            return acquired;
+        }
+    }
+
+    /**
+     * Worker ocupado por {@link #occupyWorker()}
+     */
+    public final class Worker implements AutoCloseable {
+
+        private boolean released;
+
+        private Worker() {
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                workers.release();
+            }
+        }
+    }
+
+    /**
+     * Métricas do agendador
+     */
+    public record SchedulerStats(int workers,
+                                 int activeWorkers,
+                                 int queueDepth,
+                                 int memoryBudgetMb,
+                                 int memoryInUseMb,
+                                 long started,
+                                 long rejected,
+                                 double averageWaitMillis,
+                                 double maxWaitMillis) {}
+}
@@ -0,0 +1,57 @@
+package com.imageresizer.service;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+
+/**
+ * Leitura de trechos de linha como ARGB direto do {@link java.awt.image.DataBuffer} nos
+ * layouts mais comuns ({@code TYPE_INT_RGB}, {@code TYPE_INT_ARGB} e {@code TYPE_3BYTE_BGR},
+ * inclusive visões de crop). Os demais passam por {@link BufferedImage#getRGB}, que converte
+ * pixel a pixel pelo {@code ColorModel}.
+ */
+final class RasterRows {
+
+    private static final int[] BGR_BAND_OFFSETS = {2, 1, 0};
+
+    private RasterRows() {
+    }
+
+    /**
+     * Copia {@code count} pixels a partir de {@code (x, y)} para {@code out}
+     */
+    static void read(BufferedImage image, int x, int y, int count, int[] out, int outOffset, PixelKernels kernels) {
+        Raster raster = image.getRaster();
+        int column = x - raster.getSampleModelTranslateX();
+        int row = y - raster.getSampleModelTranslateY();
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB -> {
+                SinglePixelPackedSampleModel sampleModel = (SinglePixelPackedSampleModel) raster.getSampleModel();
+                DataBufferInt data = (DataBufferInt) raster.getDataBuffer();
+                int offset = data.getOffset() + row * sampleModel.getScanlineStride() + column;
+                System.arraycopy(data.getData(), offset, out, outOffset, count);
+                if (image.getType() == BufferedImage.TYPE_INT_RGB) {
+                    for (int i = outOffset; i < outOffset + count; i++) {
+                        out[i] |= 0xFF000000;
+                    }
+                }
+            }
+            case BufferedImage.TYPE_3BYTE_BGR -> {
+                ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+                if (sampleModel.getPixelStride() != 3
+                        || !Arrays.equals(sampleModel.getBandOffsets(), BGR_BAND_OFFSETS)) {
+                    image.getRGB(x, y, count, 1, out, outOffset, count);
+                    return;
+                }
+                DataBufferByte data = (DataBufferByte) raster.getDataBuffer();
+                int offset = data.getOffset() + row * sampleModel.getScanlineStride() + column * 3;
+                kernels.bgrToArgb(data.getData(), offset, count, out, outOffset);
+            }
+            default -> image.getRGB(x, y, count, 1, out, outOffset, count);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ResizeRequest;
+import org.springframework.stereotype.Component;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Gera várias resoluções da mesma imagem a partir de uma única decodificação.
+ *
+ * Os tamanhos pedidos são ordenados do maior para o menor e cada um é derivado da
+ * menor rendição já calculada que ainda seja maior que ele (como numa cadeia de mipmaps).
+ * Assim, só a primeira redução parte da imagem original e as demais trabalham sobre
+ * imagens progressivamente menores.
+ */
+@Component
+public class RenditionPlanner {
+
+    private final ImageTransformPipeline transformPipeline;
+
+    public RenditionPlanner(ImageTransformPipeline transformPipeline) {
+        this.transformPipeline = transformPipeline;
+    }
+
+    /**
+     * Redimensiona a imagem para cada tamanho pedido, devolvendo as rendições na mesma ordem
+     */
+    public List<BufferedImage> render(BufferedImage source, List<Size> targets) throws IOException {
+        return render(source, targets, transformPipeline.resampler(null, source), PixelKernels.preferred());
+    }
+
+    /**
+     * Como {@link #render(BufferedImage, List)}, com o filtro e os kernels pedidos
+     * ({@code resampler} e {@code simd})
+     */
+    public List<BufferedImage> render(BufferedImage source, List<Size> targets, ResizeRequest options)
+            throws IOException {
+        return render(source, targets, transformPipeline.resampler(options.getResampler(), source),
+                PixelKernels.forRequest(options));
+    }
+
+    private List<BufferedImage> render(BufferedImage source, List<Size> targets, SeparableResampler.Filter filter,
+                                       PixelKernels kernels) throws IOException {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < targets.size(); i++) {
+            order.add(i);
+        }
+        List<Size> fitted = new ArrayList<>();
+        for (Size target : targets) {
+            fitted.add(target.fittedTo(source.getWidth(), source.getHeight()));
+        }
+        order.sort(Comparator.comparingLong((Integer i) -> fitted.get(i).area()).reversed());
+
+        List<BufferedImage> renditions = new ArrayList<>(targets.size());
+        for (int i = 0; i < targets.size(); i++) {
+            renditions.add(null);
+        }
+        List<BufferedImage> computed = new ArrayList<>();
+        for (int index : order) {
+            Size target = targets.get(index);
+            BufferedImage base = nearestLarger(source, computed, fitted.get(index));
+            // Derivadas usam as dimensões calculadas a partir da origem, para não acumular arredondamentos
+            Size size = base == source ? target : fitted.get(index);
+            BufferedImage rendition = transformPipeline.resize(base, size.width(), size.height(),
+                    base == source && target.keepAspectRatio(), filter, kernels);
+            renditions.set(index, rendition);
+            computed.add(rendition);
+        }
+        return renditions;
+    }
+
+    /**
+     * Menor rendição já calculada que cobre o tamanho pedido, ou a origem
+     */
+    private BufferedImage nearestLarger(BufferedImage source, List<BufferedImage> computed, Size target) {
+        BufferedImage best = source;
+        for (BufferedImage candidate : computed) {
+            if (candidate.getWidth() >= target.width() && candidate.getHeight() >= target.height()
+                    && (long) candidate.getWidth() * candidate.getHeight() < (long) best.getWidth() * best.getHeight()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Tamanho pedido para uma rendição
+     */
+    public record Size(int width, int height, boolean keepAspectRatio) {
+
+        long area() {
+            return (long) width * height;
+        }
+
+        /**
+         * Dimensões efetivas quando a proporção da origem é mantida
+         */
+        Size fittedTo(int sourceWidth, int sourceHeight) {
+            if (!keepAspectRatio) {
+                return this;
+            }
+            double scale = Math.min(width / (double) sourceWidth, height / (double) sourceHeight);
+            return new Size((int) Math.round(sourceWidth * scale), (int) Math.round(sourceHeight * scale), true);
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ImageMetadata;
+import com.imageresizer.model.ResizeRequest;
+import com.imageresizer.model.SourceResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renditions geradas sob demanda a partir dos originais do {@link SourceStore}.
+ *
+ * A chave de cada rendition (e o ETag) é o hash do original com os parâmetros
+ * normalizados, a mesma normalização do {@link ProcessingResultCache}: URLs equivalentes
+ * caem no mesmo arquivo e o ETag só muda se o resultado mudar. A consulta do ETag não lê
+ * nem processa o original, então um {@code If-None-Match} válido é respondido sem custo.
+ * Sem formato na URL, o formato sai do {@code Accept} ({@link FormatNegotiator}) e entra na
+ * chave, de modo que cada formato negociado tem o próprio ETag.
+ * Pedidos simultâneos da mesma rendition que ainda não está no cache esperam uma única
+ * renderização.
+ */
+@Slf4j
+@Service
+public class RenditionService {
+
+    private final SourceStore sourceStore;
+    private final ImageProcessingService imageProcessingService;
+    private final ProcessingResultCache resultCache;
+    private final ImageProbe imageProbe;
+    private final FormatNegotiator formatNegotiator;
+    private final int maxDimension;
+    private final long maxAgeSeconds;
+
+    private final ConcurrentHashMap<String, CompletableFuture<ProcessingResultCache.CachedResult>> inFlight =
+            new ConcurrentHashMap<>();
+    // Cabeçalho de cada original (transparência, quadros), lido uma vez
+    private final ConcurrentHashMap<String, ImageMetadata> sourceHeaders = new ConcurrentHashMap<>();
+
+    public RenditionService(SourceStore sourceStore,
+                            ImageProcessingService imageProcessingService,
+                            ProcessingResultCache resultCache,
+                            ImageProbe imageProbe,
+                            FormatNegotiator formatNegotiator,
+                            @Value("${image.renditions.max-dimension:4096}") int maxDimension,
+                            @Value("${image.renditions.max-age-seconds:31536000}") long maxAgeSeconds) {
+        this.sourceStore = sourceStore;
+        this.imageProcessingService = imageProcessingService;
+        this.resultCache = resultCache;
+        this.imageProbe = imageProbe;
+        this.formatNegotiator = formatNegotiator;
+        this.maxDimension = maxDimension;
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * Validade no cache HTTP: o conteúdo de uma URL de rendition nunca muda
+     */
+    public long getMaxAgeSeconds() {
+        return maxAgeSeconds;
+    }
+
+    /**
+     * Armazena um original, validado só pelo cabeçalho
+     */
+    public SourceResponse store(byte[] data, String originalFileName) throws IOException {
+        ImageMetadata metadata = imageProbe.probe(new ByteArrayInputStream(data));
+        imageProbe.checkPixels(metadata.getWidth(), metadata.getHeight());
+        String sourceId = sourceStore.save(data, metadata.getFormat());
+        log.info("Source stored: {} -> {}", originalFileName, sourceId);
+        return SourceResponse.builder()
+                .sourceId(sourceId)
+                .originalFileName(originalFileName)
+                .format(metadata.getFormat())
+                .width(metadata.getWidth())
+                .height(metadata.getHeight())
+                .sizeBytes(data.length)
+                .renditionUrl("/r/" + sourceId)
+                .build();
+    }
+
+    /**
+     * Identifica a rendition pedida sem processar nada; vazio se o original não existe
+     */
+    public Optional<Rendition> resolve(String sourceId, ResizeRequest request, String accept) throws IOException {
+        validate(request);
+        Optional<Path> found = sourceStore.find(sourceId);
+        if (found.isEmpty()) {
+            return Optional.empty();
+        }
+        Path source = found.get();
+        boolean negotiated = formatNegotiator.isNegotiated(request);
+        List<ImageFormat> formats = negotiated
+                ? formatNegotiator.candidates(request, accept, header(sourceId, source))
+                : List.of();
+        if (formats.isEmpty()) {
+            formats = List.of(imageProcessingService.determineOutputFormat(source.getFileName().toString(),
+                    request.getOutputFormat()));
+        }
+        String key = resultCache.key(sourceId, request, formats);
+        return Optional.of(new Rendition(source, request, formats, key, negotiated));
+    }
+
+    private ImageMetadata header(String sourceId, Path source) throws IOException {
+        ImageMetadata header = sourceHeaders.get(sourceId);
+        if (header == null) {
+            header = imageProbe.probe(source);
+            sourceHeaders.put(sourceId, header);
+        }
+        return header;
+    }
+
+    /**
+     * Arquivo da rendition, vindo do cache ou renderizado agora
+     */
+    public Resource render(Rendition rendition) throws IOException {
+        ProcessingResultCache.CachedResult result = imageProcessingService.lookupCached(rendition.key());
+        if (result == null) {
+            result = renderOnce(rendition);
+        }
+        return imageProcessingService.getProcessedFile(result.processedFileName());
+    }
+
+    private ProcessingResultCache.CachedResult renderOnce(Rendition rendition) throws IOException {
+        CompletableFuture<ProcessingResultCache.CachedResult> created = new CompletableFuture<>();
+        CompletableFuture<ProcessingResultCache.CachedResult> running = inFlight.putIfAbsent(rendition.key(), created);
+        if (running != null) {
+            return join(running);
+        }
+        try {
+            byte[] data = Files.readAllBytes(rendition.source());
+            ProcessingResultCache.CachedResult result = imageProcessingService.renderToFile(data,
+                    rendition.source().getFileName().toString(), rendition.formats(), rendition.request(),
+                    rendition.key());
+            log.info("Rendition rendered: {} -> {}", rendition.source().getFileName(), result.processedFileName());
+            created.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(rendition.key(), created);
+        }
+    }
+
+    private static ProcessingResultCache.CachedResult join(
+            CompletableFuture<ProcessingResultCache.CachedResult> running) throws IOException {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Limita o tamanho da saída: cada combinação de parâmetros vira um arquivo no cache
+     */
+    private void validate(ResizeRequest request) {
+        if (exceeds(request.getWidth()) || exceeds(request.getHeight())) {
+            throw new ImageProcessingException("Rendition dimensions must be between 1 and " + maxDimension);
+        }
+        if (request.getPercentage() != null && (request.getPercentage() < 1 || request.getPercentage() > 100)) {
+            throw new ImageProcessingException("Rendition percentage must be between 1 and 100");
+        }
+    }
+
+    private boolean exceeds(Integer dimension) {
+        return dimension != null && (dimension < 1 || dimension > maxDimension);
+    }
+
+    /**
+     * Rendition identificada: original, parâmetros, formatos candidatos (um só, salvo na
+     * negociação com {@code trial-encode}), chave do cache e se o formato veio do
+     * {@code Accept}
+     */
+    public record Rendition(Path source, ResizeRequest request, List<ImageFormat> formats, String key,
+                            boolean negotiated) {
+
+        /**
+         * ETag forte: a chave identifica o conteúdo gerado
+         */
+        public String etag() {
+            return "\"" + key + "\"";
+        }
+
+        /**
+         * Se o {@code If-None-Match} do cliente inclui este ETag (comparação fraca, como
+         * manda a RFC 9110 para esse header)
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.imageresizer.service;
+
+/**
+ * Imagem transformada que ainda segura a reserva de memória do {@link ProcessingScheduler}:
+ * numa resposta em streaming a codificação acontece depois da tarefa agendada e os pixels
+ * continuam contando no orçamento até {@link ImageProcessingService#release(ReservedImage)}.
+ */
+public record ReservedImage(ProcessedImage processed, ProcessingScheduler.Admission admission) {
+}
@@ -0,0 +1,250 @@
+package com.imageresizer.service;
+
+import org.w3c.dom.Node;
+
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.metadata.IIOMetadata;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.MultiPixelPackedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Leitura da imagem de um {@link DecodePlan} linha a linha, em ordem, sem que ela exista
+ * inteira em memória.
+ *
+ * JPEG (não progressivo) e PNG (não entrelaçado) são decodificados numa única passada para um destino cujo
+ * {@link DataBuffer} guarda só a linha corrente: esses readers gravam no destino pela API
+ * de {@code WritableRaster}, linha após linha, e quando passam para a próxima a anterior é
+ * convertida para ARGB e entregue. Os demais formatos são lidos em faixas horizontais com
+ * {@code setSourceRegion}, o que é barato nos que têm acesso aleatório (BMP, TIFF); nos
+ * demais cada faixa decodifica de novo o início do arquivo.
+ */
+final class RowStreamReader {
+
+    private static final Set<String> SEQUENTIAL_FORMATS = Set.of("jpeg", "png");
+
+    private static final String PNG_METADATA_FORMAT = "javax_imageio_png_1.0";
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    /**
+     * Valor de {@code process} do marcador SOF em JPEG progressivo
+     */
+    private static final String JPEG_PROGRESSIVE = "2";
+
+    private RowStreamReader() {
+    }
+
+    /**
+     * Recebe linhas ARGB; o array é reaproveitado entre as chamadas
+     */
+    @FunctionalInterface
+    interface RowConsumer {
+        void accept(int[] argb) throws IOException;
+    }
+
+    /**
+     * Entrega as linhas da imagem que {@link DecodePlan#decode()} produziria, de cima para baixo
+     */
+    static void read(DecodePlan plan, long stripBytes, RowConsumer rows) throws IOException {
+        ImageTypeSpecifier type = sequentialType(plan);
+        if (type != null) {
+            readSequential(plan, type, rows);
+        } else {
+            readStrips(plan, stripBytes, rows);
+        }
+    }
+
+    /**
+     * Tipo de destino para a leitura em passada única, ou null se o formato ou o layout não
+     * permitirem
+     */
+    private static ImageTypeSpecifier sequentialType(DecodePlan plan) throws IOException {
+        ImageReader reader = plan.getReader();
+        String format = reader.getFormatName().toLowerCase(Locale.ROOT);
+        if (!SEQUENTIAL_FORMATS.contains(format) || isMultiPass(reader, format)) {
+            return null;
+        }
+        Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+        if (!types.hasNext()) {
+            return null;
+        }
+        ImageTypeSpecifier type = types.next();
+        SampleModel sampleModel = type.getSampleModel(plan.getDecodedWidth(), 1);
+        int stride = scanlineStride(sampleModel);
+        // Os índices do DataBuffer são int: a imagem inteira precisa caber neles
+        return stride > 0 && (long) stride * plan.getDecodedHeight() < Integer.MAX_VALUE ? type : null;
+    }
+
+    /**
+     * PNG entrelaçado e JPEG progressivo gravam a imagem em várias passadas
+     */
+    private static boolean isMultiPass(ImageReader reader, String format) throws IOException {
+        IIOMetadata metadata = reader.getImageMetadata(0);
+        if (format.equals("png")) {
+            Node header = find(metadata.getAsTree(PNG_METADATA_FORMAT), "IHDR");
+            return header == null || !"none".equals(attribute(header, "interlaceMethod"));
+        }
+        Node markers = find(metadata.getAsTree(JPEG_METADATA_FORMAT), "markerSequence");
+        Node frame = markers != null ? find(markers, "sof") : null;
+        return frame == null || JPEG_PROGRESSIVE.equals(attribute(frame, "process"));
+    }
+
+    private static Node find(Node parent, String name) {
+        for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling()) {
+            if (node.getNodeName().equals(name)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    private static String attribute(Node node, String name) {
+        Node attribute = node.getAttributes().getNamedItem(name);
+        return attribute != null ? attribute.getNodeValue() : null;
+    }
+
+    /**
+     * Elementos por linha para layouts de um único banco; -1 para os demais
+     */
+    private static int scanlineStride(SampleModel sampleModel) {
+        if (sampleModel instanceof ComponentSampleModel component
+                && Arrays.stream(component.getBankIndices()).allMatch(bank -> bank == 0)) {
+            return component.getScanlineStride();
+        }
+        if (sampleModel instanceof SinglePixelPackedSampleModel packed) {
+            return packed.getScanlineStride();
+        }
+        if (sampleModel instanceof MultiPixelPackedSampleModel packed && packed.getDataBitOffset() == 0) {
+            return packed.getScanlineStride();
+        }
+        return -1;
+    }
+
+    private static void readSequential(DecodePlan plan, ImageTypeSpecifier type, RowConsumer rows) throws IOException {
+        int width = plan.getDecodedWidth();
+        int height = plan.getDecodedHeight();
+        ColorModel colorModel = type.getColorModel();
+        SampleModel sampleModel = type.getSampleModel(width, height);
+        RowBuffer buffer = new RowBuffer(colorModel, type.getSampleModel(width, 1), height, rows);
+        BufferedImage destination = new BufferedImage(colorModel,
+                Raster.createWritableRaster(sampleModel, buffer, null), colorModel.isAlphaPremultiplied(), null);
+
+        ImageReadParam param = plan.readParam();
+        param.setDestination(destination);
+        try {
+            plan.getReader().read(0, param);
+            buffer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void readStrips(DecodePlan plan, long stripBytes, RowConsumer rows) throws IOException {
+        int width = plan.getDecodedWidth();
+        int height = plan.getDecodedHeight();
+        int rowsPerStrip = (int) Math.max(1, Math.min(height, stripBytes / ((long) width * 8)));
+        int[] argb = new int[width];
+        for (int y = 0; y < height; y += rowsPerStrip) {
+            int stripHeight = Math.min(rowsPerStrip, height - y);
+            BufferedImage strip = plan.decodeRegion(new Rectangle(0, y, width, stripHeight));
+            // Readers que ignoram a região (ex.: WebP) devolvem a imagem inteira de uma vez
+            boolean whole = strip.getHeight() == height && stripHeight < height;
+            for (int row = 0; row < strip.getHeight(); row++) {
+                strip.getRGB(0, row, width, 1, argb, 0, width);
+                rows.accept(argb);
+            }
+            if (whole) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Buffer do destino que guarda só a linha corrente. Os readers gravam as linhas em
+     * ordem; ao tocar a próxima, a anterior é convertida para ARGB e entregue.
+     */
+    private static final class RowBuffer extends DataBuffer {
+
+        private final int stride;
+        private final int height;
+        private final DataBuffer line;
+        private final BufferedImage lineImage;
+        private final int[] argb;
+        private final RowConsumer rows;
+        private int current;
+
+        private RowBuffer(ColorModel colorModel, SampleModel lineModel, int height, RowConsumer rows) {
+            super(lineModel.getDataType(), scanlineStride(lineModel) * height);
+            this.stride = scanlineStride(lineModel);
+            this.height = height;
+            this.line = lineModel.createDataBuffer();
+            this.lineImage = new BufferedImage(colorModel, Raster.createWritableRaster(lineModel, line, null),
+                    colorModel.isAlphaPremultiplied(), null);
+            this.argb = new int[lineModel.getWidth()];
+            this.rows = rows;
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            return line.getElem(offset(i));
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            line.setElem(offset(i), val);
+        }
+
+        private int offset(int i) {
+            int row = i / stride;
+            if (row != current) {
+                moveTo(row);
+            }
+            return i - row * stride;
+        }
+
+        private void moveTo(int row) {
+            if (row < current) {
+                throw new IllegalStateException("Image rows were decoded out of order");
+            }
+            // Linhas puladas pelo reader seguem como estão (não acontece nos formatos aceitos)
+            while (current < row) {
+                deliver();
+                current++;
+            }
+        }
+
+        /**
+         * Entrega a última linha (e qualquer uma que o reader não tenha gravado)
+         */
+        void finish() {
+            while (current < height) {
+                deliver();
+                current++;
+            }
+        }
+
+        private void deliver() {
+            lineImage.getRGB(0, 0, argb.length, 1, argb, 0, argb.length);
+            try {
+                rows.accept(argb);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.imageresizer.service;
+
+/**
+ * Implementação escalar (e de referência) dos {@link PixelKernels}
+ */
+final class ScalarPixelKernels implements PixelKernels {
+
+    static final ScalarPixelKernels INSTANCE = new ScalarPixelKernels();
+
+    private ScalarPixelKernels() {
+    }
+
+    @Override
+    public void unpack(int[] argb, int offset, int count, boolean alpha, float[] out) {
+        unpackRange(argb, offset, count, alpha, out, 0);
+    }
+
+    static void unpackRange(int[] argb, int offset, int count, boolean alpha, float[] out, int outIndex) {
+        for (int i = 0, index = outIndex; i < count; i++, index += 4) {
+            int pixel = argb[offset + i];
+            float a = alpha ? (pixel >>> 24) : 255;
+            float premultiply = a / 255f;
+            out[index] = (pixel & 0xFF) * premultiply;
+            out[index + 1] = ((pixel >> 8) & 0xFF) * premultiply;
+            out[index + 2] = ((pixel >> 16) & 0xFF) * premultiply;
+            out[index + 3] = a;
+        }
+    }
+
+    @Override
+    public void horizontal(float[] in, int[] first, int[] count, float[] weights, int taps, float[] out, int width) {
+        for (int x = 0, index = 0; x < width; x++, index += 4) {
+            int from = first[x] * 4;
+            int weightOffset = x * taps;
+            float b = 0, g = 0, r = 0, a = 0;
+            for (int k = 0, n = count[x]; k < n; k++, from += 4) {
+                float weight = weights[weightOffset + k];
+                b = in[from] * weight + b;
+                g = in[from + 1] * weight + g;
+                r = in[from + 2] * weight + r;
+                a = in[from + 3] * weight + a;
+            }
+            out[index] = b;
+            out[index + 1] = g;
+            out[index + 2] = r;
+            out[index + 3] = a;
+        }
+    }
+
+    @Override
+    public void vertical(float[][] lines, int n, float[] weights, int weightOffset, float[] out, int length) {
+        verticalRange(lines, n, weights, weightOffset, out, 0, length);
+    }
+
+    static void verticalRange(float[][] lines, int n, float[] weights, int weightOffset, float[] out,
+                              int from, int to) {
+        for (int i = from; i < to; i++) {
+            float sum = 0;
+            for (int k = 0; k < n; k++) {
+                sum = lines[k][i] * weights[weightOffset + k] + sum;
+            }
+            out[i] = sum;
+        }
+    }
+
+    @Override
+    public void pack(float[] in, int count, boolean alpha, int[] out, int offset) {
+        packRange(in, 0, count, alpha, out, offset);
+    }
+
+    static void packRange(float[] in, int inIndex, int count, boolean alpha, int[] out, int offset) {
+        for (int i = 0, index = inIndex; i < count; i++, index += 4) {
+            float b = in[index], g = in[index + 1], r = in[index + 2], a = in[index + 3];
+            if (!alpha) {
+                out[offset + i] = 0xFF000000 | clamp(r) << 16 | clamp(g) << 8 | clamp(b);
+                continue;
+            }
+            int alphaByte = clamp(a);
+            if (alphaByte == 0) {
+                out[offset + i] = 0;
+                continue;
+            }
+            float scale = 255f / a;
+            out[offset + i] = alphaByte << 24 | clamp(r * scale) << 16 | clamp(g * scale) << 8 | clamp(b * scale);
+        }
+    }
+
+    @Override
+    public void bgrToArgb(byte[] bgr, int offset, int count, int[] out, int outOffset) {
+        for (int i = 0, index = offset; i < count; i++, index += 3) {
+            out[outOffset + i] = 0xFF000000 | (bgr[index + 2] & 0xFF) << 16 | (bgr[index + 1] & 0xFF) << 8
+                    | (bgr[index] & 0xFF);
+        }
+    }
+
+    @Override
+    public void luminance(int[] argb, int offset, int count, byte[] out, int outOffset) {
+        for (int i = 0; i < count; i++) {
+            out[outOffset + i] = (byte) ImageTransformPipeline.luminance(argb[offset + i]);
+        }
+    }
+
+    @Override
+    public void reverse(int[] source, int offset, int count, int[] out, int outOffset) {
+        for (int i = 0; i < count; i++) {
+            out[outOffset + i] = source[offset + count - 1 - i];
+        }
+    }
+
+    @Override
+    public void boxStep(int[] agSums, int[] rbSums, int count, int scale, int[] added, int addedOffset,
+                        int[] removed, int removedOffset, int[] out, int outOffset) {
+        boxStepRange(agSums, rbSums, 0, count, scale, added, addedOffset, removed, removedOffset, out, outOffset);
+    }
+
+    static void boxStepRange(int[] agSums, int[] rbSums, int from, int count, int scale, int[] added,
+                             int addedOffset, int[] removed, int removedOffset, int[] out, int outOffset) {
+        for (int i = from; i < count; i++) {
+            int ag = agSums[i];
+            int rb = rbSums[i];
+            out[outOffset + i] = ImageFilters.average(ag, rb, scale);
+            int in = added[addedOffset + i];
+            int gone = removed[removedOffset + i];
+            agSums[i] = ag + ((in >>> 8) & ImageFilters.LANES) - ((gone >>> 8) & ImageFilters.LANES);
+            rbSums[i] = rb + (in & ImageFilters.LANES) - (gone & ImageFilters.LANES);
+        }
+    }
+
+    static int clamp(float value) {
+        int rounded = (int) (value + 0.5f);
+        return rounded < 0 ? 0 : Math.min(rounded, 255);
+    }
+
+    @Override
+    public String toString() {
+        return "scalar";
+    }
+}
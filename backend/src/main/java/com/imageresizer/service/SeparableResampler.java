@@ -0,0 +1,302 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Redimensionamento separável (primeiro horizontal, depois vertical) com pesos pré-calculados.
+ *
+ * Cada pixel de saída depende só das amostras dentro do suporte do filtro em torno do seu
+ * centro. Nas reduções o filtro é alargado na mesma proporção, o que também serve de
+ * antialiasing. Os laços internos ficam nos {@link PixelKernels} (escalares ou vetoriais).
+ */
+final class SeparableResampler {
+
+    /**
+     * Valor de {@code resampler} que mantém o redimensionamento pelo Thumbnailator
+     */
+    static final String DEFAULT_RESAMPLER = "thumbnailator";
+
+    private SeparableResampler() {
+    }
+
+    /**
+     * Filtros de reconstrução
+     */
+    enum Filter {
+        /**
+         * Catmull-Rom (bicúbico com a = -0,5)
+         */
+        BICUBIC(2) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x < 1) {
+                    return (1.5 * x - 2.5) * x * x + 1;
+                }
+                if (x < 2) {
+                    return ((-0.5 * x + 2.5) * x - 4) * x + 2;
+                }
+                return 0;
+            }
+        },
+        /**
+         * Lanczos com 3 lobos: mais nítido, com um pouco de ringing nas bordas fortes
+         */
+        LANCZOS(3) {
+            @Override
+            double weight(double x) {
+                x = Math.abs(x);
+                if (x == 0) {
+                    return 1;
+                }
+                if (x >= 3) {
+                    return 0;
+                }
+                double px = Math.PI * x;
+                return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+            }
+        };
+
+        private final double support;
+
+        Filter(double support) {
+            this.support = support;
+        }
+
+        abstract double weight(double x);
+
+        /**
+         * Filtro do parâmetro {@code resampler}, ou null para o padrão
+         * ({@code image.resize.default-resampler})
+         */
+        static Filter fromName(String name) {
+            if (name == null || name.isBlank() || name.equalsIgnoreCase(DEFAULT_RESAMPLER)) {
+                return null;
+            }
+            for (Filter filter : values()) {
+                if (filter.name().equalsIgnoreCase(name)) {
+                    return filter;
+                }
+            }
+            throw new ImageProcessingException("Invalid resampler: " + name + " (use "
+                    + DEFAULT_RESAMPLER + ", bicubic or lanczos)");
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Pesos de um eixo: para cada índice da saída, a primeira amostra da origem usada e os
+     * pesos (já normalizados) das amostras seguintes
+     */
+    static final class Weights {
+
+        private final int sourceSize;
+        private final int[] first;
+        private final int[] count;
+        private final float[] values;
+        private final int taps;
+
+        private Weights(int sourceSize, int[] first, int[] count, float[] values, int taps) {
+            this.sourceSize = sourceSize;
+            this.first = first;
+            this.count = count;
+            this.values = values;
+            this.taps = taps;
+        }
+
+        static Weights of(Filter filter, int sourceSize, int targetSize) {
+            double scale = sourceSize / (double) targetSize;
+            double filterScale = Math.max(1, scale);
+            double support = filter.support * filterScale;
+            int taps = (int) Math.ceil(support) * 2 + 1;
+
+            int[] first = new int[targetSize];
+            int[] count = new int[targetSize];
+            float[] values = new float[targetSize * taps];
+            double[] kernel = new double[taps];
+            for (int i = 0; i < targetSize; i++) {
+                double center = (i + 0.5) * scale;
+                int from = Math.max(0, (int) (center - support + 0.5));
+                int to = Math.min(sourceSize, (int) (center + support + 0.5));
+                double total = 0;
+                for (int j = from; j < to; j++) {
+                    double weight = filter.weight((j + 0.5 - center) / filterScale);
+                    kernel[j - from] = weight;
+                    total += weight;
+                }
+                for (int k = 0; k < to - from; k++) {
+                    values[i * taps + k] = (float) (total != 0 ? kernel[k] / total : 0);
+                }
+                first[i] = from;
+                count[i] = to - from;
+            }
+            return new Weights(sourceSize, first, count, values, taps);
+        }
+
+        int size() {
+            return first.length;
+        }
+    }
+
+    /**
+     * Redimensionamento em fluxo: recebe as linhas ARGB da origem em ordem e entrega cada
+     * linha da saída assim que chegam todas as linhas do seu suporte. Só as últimas linhas
+     * já reduzidas na horizontal ficam em memória (no máximo o número de taps do filtro
+     * vertical). Com alfa, a interpolação é feita sobre cores pré-multiplicadas.
+     */
+    static final class Rows implements RowStreamReader.RowConsumer {
+
+        private final Weights horizontal;
+        private final Weights vertical;
+        private final boolean alpha;
+        private final PixelKernels kernels;
+        private final RowStreamReader.RowConsumer output;
+        private final float[] source;
+        private final float[][] window;
+        private final float[][] lines;
+        private final float[] combined;
+        private final int[] row;
+        private final int lastTargetRow;
+        private int sourceRow;
+        private int targetRow;
+
+        Rows(Weights horizontal, Weights vertical, boolean alpha, PixelKernels kernels,
+             RowStreamReader.RowConsumer output) {
+            this(horizontal, vertical, alpha, kernels, 0, vertical.size(), output);
+        }
+
+        /**
+         * Só as linhas da saída em {@code [fromRow, toRow)}: a primeira linha recebida deve ser
+         * {@link #firstSourceRow(Weights, int)} e a última, {@link #endSourceRow(Weights, int)} - 1
+         */
+        Rows(Weights horizontal, Weights vertical, boolean alpha, PixelKernels kernels,
+             int fromRow, int toRow, RowStreamReader.RowConsumer output) {
+            this.horizontal = horizontal;
+            this.vertical = vertical;
+            this.alpha = alpha;
+            this.kernels = kernels;
+            this.output = output;
+            this.source = new float[horizontal.sourceSize * 4];
+            this.window = new float[vertical.taps][horizontal.size() * 4];
+            this.lines = new float[vertical.taps][];
+            this.combined = new float[horizontal.size() * 4];
+            this.row = new int[horizontal.size()];
+            this.sourceRow = firstSourceRow(vertical, fromRow);
+            this.targetRow = fromRow;
+            this.lastTargetRow = toRow;
+        }
+
+        static int firstSourceRow(Weights vertical, int fromRow) {
+            return vertical.first[fromRow];
+        }
+
+        /**
+         * Fim (exclusivo) das linhas da origem usadas por {@code [0, toRow)}; o início e o fim
+         * do suporte só crescem com a linha da saída
+         */
+        static int endSourceRow(Weights vertical, int toRow) {
+            return vertical.first[toRow - 1] + vertical.count[toRow - 1];
+        }
+
+        @Override
+        public void accept(int[] pixels) throws IOException {
+            // Passada horizontal da linha recebida
+            kernels.unpack(pixels, 0, horizontal.sourceSize, alpha, source);
+            kernels.horizontal(source, horizontal.first, horizontal.count, horizontal.values, horizontal.taps,
+                    window[sourceRow % window.length], horizontal.size());
+            sourceRow++;
+            while (targetRow < lastTargetRow
+                    && vertical.first[targetRow] + vertical.count[targetRow] <= sourceRow) {
+                combineRows(targetRow++);
+                output.accept(row);
+            }
+        }
+
+        /**
+         * Passada vertical de uma linha da saída, sobre as linhas guardadas na janela
+         */
+        private void combineRows(int y) {
+            int from = vertical.first[y];
+            int n = vertical.count[y];
+            for (int k = 0; k < n; k++) {
+                lines[k] = window[(from + k) % window.length];
+            }
+            kernels.vertical(lines, n, vertical.values, y * vertical.taps, combined, combined.length);
+            kernels.pack(combined, row.length, alpha, row, 0);
+        }
+    }
+
+    /**
+     * Redimensiona uma imagem inteira. O quadro gerado ({@code TYPE_INT_ARGB} ou
+     * {@code TYPE_INT_RGB}) vem do {@link PixelBufferPool}.
+     */
+    static BufferedImage resize(BufferedImage image, int targetWidth, int targetHeight, Filter filter,
+                                PixelKernels kernels, PixelBufferPool bufferPool) throws IOException {
+        Job job = new Job(image, targetWidth, targetHeight, filter, kernels, bufferPool);
+        job.render(0, job.rows());
+        return job.result();
+    }
+
+    /**
+     * Redimensionamento de uma imagem inteira que pode ser dividido em faixas de linhas da
+     * saída, renderizadas em qualquer ordem e em threads diferentes. Cada faixa refaz a
+     * passada horizontal das linhas da origem que divide com a vizinha, e cada linha da saída
+     * passa pelas mesmas operações que no redimensionamento inteiro: o resultado é idêntico.
+     */
+    static final class Job {
+
+        private final BufferedImage image;
+        private final Weights horizontal;
+        private final Weights vertical;
+        private final boolean alpha;
+        private final PixelKernels kernels;
+        private final BufferedImage result;
+        private final int[] pixels;
+
+        Job(BufferedImage image, int targetWidth, int targetHeight, Filter filter, PixelKernels kernels,
+            PixelBufferPool bufferPool) {
+            this.image = image;
+            this.horizontal = Weights.of(filter, image.getWidth(), targetWidth);
+            this.vertical = Weights.of(filter, image.getHeight(), targetHeight);
+            this.alpha = image.getColorModel().hasAlpha();
+            this.kernels = kernels;
+            this.result = bufferPool.createImageForOverwrite(targetWidth, targetHeight,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            this.pixels = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+        }
+
+        int rows() {
+            return vertical.size();
+        }
+
+        /**
+         * Renderiza as linhas da saída em {@code [fromRow, toRow)}
+         */
+        void render(int fromRow, int toRow) throws IOException {
+            int width = image.getWidth();
+            int targetWidth = horizontal.size();
+            int[] written = {fromRow};
+            Rows rows = new Rows(horizontal, vertical, alpha, kernels, fromRow, toRow,
+                    row -> System.arraycopy(row, 0, pixels, written[0]++ * targetWidth, targetWidth));
+            int[] line = new int[width];
+            for (int y = Rows.firstSourceRow(vertical, fromRow), end = Rows.endSourceRow(vertical, toRow);
+                 y < end; y++) {
+                RasterRows.read(image, 0, y, width, line, 0, kernels);
+                rows.accept(line);
+            }
+        }
+
+        BufferedImage result() {
+            return result;
+        }
+    }
+}
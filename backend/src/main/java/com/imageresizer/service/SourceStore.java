@@ -0,0 +1,97 @@
+package com.imageresizer.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Originais armazenados para servir renditions sob demanda.
+ *
+ * O id é o SHA-256 do conteúdo (128 bits, em hexadecimal): enviar a mesma imagem de novo
+ * devolve o mesmo id e nada é gravado. Cada original fica em {@code <id>.<formato>}; o
+ * índice id -> arquivo é montado ao subir e mantido em memória, para que a consulta de uma
+ * rendition não precise listar o diretório.
+ */
+@Slf4j
+@Component
+public class SourceStore {
+
+    private static final int ID_LENGTH = 32;
+    private static final Pattern ID_PATTERN = Pattern.compile("[0-9a-f]{" + ID_LENGTH + "}");
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final ConcurrentHashMap<String, Path> index = new ConcurrentHashMap<>();
+
+    public SourceStore(@Value("${image.sources.directory:sources/}") String directory) throws IOException {
+        this.directory = Paths.get(directory);
+        Files.createDirectories(this.directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int dot = name.indexOf('.');
+                if (name.endsWith(TEMP_SUFFIX)) {
+                    // Gravação interrompida
+                    Files.deleteIfExists(file);
+                } else if (dot > 0 && isValidId(name.substring(0, dot))) {
+                    index.put(name.substring(0, dot), file);
+                }
+            }
+        }
+        log.info("Source store: {} originals in {}", index.size(), this.directory);
+    }
+
+    /**
+     * Grava o original (se ainda não existir) e devolve o id
+     */
+    public String save(byte[] data, String format) throws IOException {
+        String id = id(data);
+        if (index.containsKey(id)) {
+            return id;
+        }
+        Path target = directory.resolve(id + "." + format.toLowerCase(Locale.ROOT));
+        // Temporário único: envios simultâneos da mesma imagem não escrevem no mesmo arquivo
+        Path temp = Files.createTempFile(directory, id, TEMP_SUFFIX);
+        Files.write(temp, data);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        index.put(id, target);
+        return id;
+    }
+
+    /**
+     * Arquivo do original; vazio se o id não é válido ou não existe
+     */
+    public Optional<Path> find(String id) {
+        if (!isValidId(id)) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(index.get(id));
+    }
+
+    private static boolean isValidId(String id) {
+        return id != null && ID_PATTERN.matcher(id).matches();
+    }
+
+    private static String id(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            return HexFormat.of().formatHex(hash).substring(0, ID_LENGTH);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
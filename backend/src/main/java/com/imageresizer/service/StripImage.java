@@ -0,0 +1,352 @@
+package com.imageresizer.service;
+
+import java.awt.Image;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Vector;
+
+/**
+ * Saída do processamento em faixas, calculada sob demanda a partir do arquivo temporário
+ * com a imagem já redimensionada (ARGB, linha a linha).
+ *
+ * Cada faixa horizontal da saída lê do arquivo só o retângulo que ela cobre e aplica
+ * rotação, espelhamentos e grayscale. Apenas a última faixa fica em memória, então o
+ * {@link javax.imageio.ImageWriter} consome a imagem sem que ela exista inteira: os writers
+ * de PNG e BMP pedem cada linha com {@link #getData(Rectangle)} e o de JPEG lê o tile
+ * único, cujo {@link DataBuffer} também é resolvido por faixa.
+ */
+final class StripImage implements RenderedImage, Closeable {
+
+    private final Path spool;
+    private final FileChannel channel;
+    private final int spoolWidth;
+    private final Orientation orientation;
+    private final boolean sourceAlpha;
+    private final boolean keepAlpha;
+    private final boolean grayscale;
+    private final int width;
+    private final int height;
+    private final int rowsPerStrip;
+    private final ColorModel colorModel;
+    private final SampleModel sampleModel;
+    private final Raster tile;
+
+    private int stripIndex = -1;
+    private WritableRaster strip;
+    private int stripsRendered;
+
+    /**
+     * @param spool arquivo com {@code orientation} aplicada sobre linhas ARGB de
+     *              {@code spoolWidth} pixels; é apagado no {@link #close()}
+     */
+    StripImage(Path spool, int spoolWidth, Orientation orientation, boolean grayscale,
+               boolean sourceAlpha, boolean keepAlpha, long stripBytes) throws IOException {
+        this.spool = spool;
+        this.channel = FileChannel.open(spool, StandardOpenOption.READ);
+        this.spoolWidth = spoolWidth;
+        this.orientation = orientation;
+        this.sourceAlpha = sourceAlpha;
+        this.keepAlpha = keepAlpha && sourceAlpha && !grayscale;
+        this.grayscale = grayscale;
+        this.width = orientation.getWidth();
+        this.height = orientation.getHeight();
+        // Por linha da saída: a linha (ou coluna) lida do arquivo e a linha gerada
+        long bytesPerRow = (long) (orientation.isTransposed() ? height : width) * 4 + (long) width * 4;
+        this.rowsPerStrip = (int) Math.max(16, Math.min(height, stripBytes / bytesPerRow));
+
+        int type = grayscale ? BufferedImage.TYPE_BYTE_GRAY
+                : this.keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage prototype = new BufferedImage(1, 1, type);
+        this.colorModel = prototype.getColorModel();
+        this.sampleModel = prototype.getSampleModel().createCompatibleSampleModel(width, height);
+        this.tile = Raster.createRaster(sampleModel,
+                new StripDataBuffer(sampleModel.getDataType(), width * height), new Point(0, 0));
+    }
+
+    /**
+     * Faixas calculadas até agora (cada nova codificação recalcula todas)
+     */
+    int getStripsRendered() {
+        return stripsRendered;
+    }
+
+    /**
+     * Pasta do arquivo temporário, também usada pelo cache em disco do encoder
+     */
+    Path getSpoolDirectory() {
+        return spool.toAbsolutePath().getParent();
+    }
+
+    @Override
+    public void close() throws IOException {
+        strip = null;
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    private Raster strip(int index) {
+        if (index != stripIndex) {
+            // Libera a faixa anterior antes de ler a próxima
+            strip = null;
+            try {
+                strip = render(index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            stripIndex = index;
+            stripsRendered++;
+        }
+        return strip;
+    }
+
+    private WritableRaster render(int index) throws IOException {
+        int top = index * rowsPerStrip;
+        int bottom = Math.min(height, top + rowsPerStrip);
+
+        // Retângulo da imagem redimensionada coberto pela faixa
+        int x0 = Integer.MAX_VALUE, x1 = Integer.MIN_VALUE;
+        int y0 = Integer.MAX_VALUE, y1 = Integer.MIN_VALUE;
+        for (int dy : new int[] {top, bottom - 1}) {
+            for (int dx : new int[] {0, width - 1}) {
+                int sx = orientation.sourceX(dx, dy);
+                int sy = orientation.sourceY(dx, dy);
+                x0 = Math.min(x0, sx);
+                x1 = Math.max(x1, sx + 1);
+                y0 = Math.min(y0, sy);
+                y1 = Math.max(y1, sy + 1);
+            }
+        }
+        int[] pixels = readSpool(x0, y0, x1 - x0, y1 - y0);
+
+        WritableRaster raster = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(width, bottom - top), new Point(0, top));
+        byte[] grayPixels = grayscale ? ((DataBufferByte) raster.getDataBuffer()).getData() : null;
+        int[] rgbPixels = grayscale ? null : ((DataBufferInt) raster.getDataBuffer()).getData();
+        int blockWidth = x1 - x0;
+        int pixel = 0;
+        for (int dy = top; dy < bottom; dy++) {
+            for (int dx = 0; dx < width; dx++, pixel++) {
+                int argb = pixels[(orientation.sourceY(dx, dy) - y0) * blockWidth
+                        + orientation.sourceX(dx, dy) - x0];
+                if (grayscale) {
+                    grayPixels[pixel] = (byte) ImageTransformPipeline.luminance(argb);
+                } else if (keepAlpha || !sourceAlpha) {
+                    rgbPixels[pixel] = argb;
+                } else {
+                    rgbPixels[pixel] = overBlack(argb);
+                }
+            }
+        }
+        return raster;
+    }
+
+    /**
+     * Bloco da imagem redimensionada; linhas inteiras são lidas de uma vez
+     */
+    private int[] readSpool(int x, int y, int blockWidth, int blockHeight) throws IOException {
+        int[] pixels = new int[blockWidth * blockHeight];
+        if (blockWidth == spoolWidth) {
+            read(newBuffer(pixels.length), pixels, 0, (long) y * spoolWidth);
+        } else {
+            ByteBuffer buffer = newBuffer(blockWidth);
+            for (int row = 0; row < blockHeight; row++) {
+                read(buffer, pixels, row * blockWidth, (long) (y + row) * spoolWidth + x);
+            }
+        }
+        return pixels;
+    }
+
+    private static ByteBuffer newBuffer(int pixels) {
+        return ByteBuffer.allocate(pixels * 4).order(ByteOrder.nativeOrder());
+    }
+
+    private void read(ByteBuffer buffer, int[] pixels, int offset, long pixelPosition) throws IOException {
+        buffer.clear();
+        long position = pixelPosition * 4;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of spool file");
+            }
+        }
+        buffer.flip();
+        buffer.asIntBuffer().get(pixels, offset, buffer.remaining() / 4);
+    }
+
+    /**
+     * Composição sobre fundo preto, como o encoder faz para JPEG
+     */
+    private static int overBlack(int argb) {
+        int alpha = argb >>> 24;
+        int r = (((argb >> 16) & 0xFF) * alpha + 127) / 255;
+        int g = (((argb >> 8) & 0xFF) * alpha + 127) / 255;
+        int b = ((argb & 0xFF) * alpha + 127) / 255;
+        return r << 16 | g << 8 | b;
+    }
+
+    @Override
+    public Raster getData(Rectangle rect) {
+        Rectangle bounds = rect.intersection(new Rectangle(0, 0, width, height));
+        WritableRaster result = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(rect.width, rect.height), rect.getLocation());
+        if (!bounds.isEmpty()) {
+            for (int index = bounds.y / rowsPerStrip; index <= (bounds.y + bounds.height - 1) / rowsPerStrip; index++) {
+                result.setRect(strip(index));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Raster getData() {
+        return getData(new Rectangle(0, 0, width, height));
+    }
+
+    @Override
+    public WritableRaster copyData(WritableRaster raster) {
+        if (raster == null) {
+            return (WritableRaster) getData();
+        }
+        Rectangle bounds = raster.getBounds().intersection(new Rectangle(0, 0, width, height));
+        if (!bounds.isEmpty()) {
+            for (int index = bounds.y / rowsPerStrip; index <= (bounds.y + bounds.height - 1) / rowsPerStrip; index++) {
+                raster.setRect(strip(index));
+            }
+        }
+        return raster;
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        return tile;
+    }
+
+    @Override
+    public Vector<RenderedImage> getSources() {
+        return null;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return Image.UndefinedProperty;
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return null;
+    }
+
+    @Override
+    public ColorModel getColorModel() {
+        return colorModel;
+    }
+
+    @Override
+    public SampleModel getSampleModel() {
+        return sampleModel;
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getMinX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinY() {
+        return 0;
+    }
+
+    @Override
+    public int getNumXTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getNumYTiles() {
+        return 1;
+    }
+
+    @Override
+    public int getMinTileX() {
+        return 0;
+    }
+
+    @Override
+    public int getMinTileY() {
+        return 0;
+    }
+
+    @Override
+    public int getTileWidth() {
+        return width;
+    }
+
+    @Override
+    public int getTileHeight() {
+        return height;
+    }
+
+    @Override
+    public int getTileGridXOffset() {
+        return 0;
+    }
+
+    @Override
+    public int getTileGridYOffset() {
+        return 0;
+    }
+
+    /**
+     * Buffer do tile único: cada elemento é lido da faixa que contém sua linha
+     */
+    private final class StripDataBuffer extends DataBuffer {
+
+        private StripDataBuffer(int dataType, int size) {
+            super(dataType, size);
+        }
+
+        @Override
+        public int getElem(int bank, int i) {
+            int row = i / width;
+            Raster current = strip(row / rowsPerStrip);
+            int offset = i - current.getMinY() * width;
+            DataBuffer data = current.getDataBuffer();
+            return data.getElem(offset);
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            throw new UnsupportedOperationException("Strip images are read-only");
+        }
+    }
+}
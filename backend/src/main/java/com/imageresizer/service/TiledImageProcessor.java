@@ -0,0 +1,152 @@
+package com.imageresizer.service;
+
+import com.imageresizer.exception.ImageProcessingException;
+import com.imageresizer.model.ImageFormat;
+import com.imageresizer.model.ResizeRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.imageio.ImageTypeSpecifier;
+import java.awt.image.RenderedImage;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Processamento em faixas para imagens grandes demais para decodificar inteiras.
+ *
+ * Quando os pixels decodificados passariam de {@code threshold-megabytes}, a imagem é lida
+ * linha a linha ({@link RowStreamReader}), redimensionada em fluxo (a janela do filtro
+ * vertical cobre a emenda entre faixas) e gravada num arquivo temporário. A saída é um
+ * {@link StripImage}, que aplica rotação, espelhamentos e grayscale por faixa enquanto o
+ * {@code ImageWriter} a consome. O pico de memória fica em torno de {@code strip-megabytes}
+ * independente do tamanho da imagem; o arquivo temporário ocupa 4 bytes por pixel da
+ * imagem redimensionada.
+ *
+ * Desfoque e nitidez precisam da imagem inteira e seguem pelo caminho comum.
+ *
+ * GIF e WebP são codificados a partir de uma cópia inteira da saída, pois os writers
+ * desses formatos não leem a imagem por linhas.
+ */
+@Slf4j
+@Component
+public class TiledImageProcessor {
+
+    private static final long MEGABYTE = 1024 * 1024;
+
+    /**
+     * Folga sobre o tamanho da faixa (janela do filtro e buffers do reader e do writer)
+     */
+    private static final int STRIP_OVERHEAD = 2;
+
+    private final long thresholdBytes;
+    private final long stripBytes;
+    private final Path spoolDirectory;
+
+    public TiledImageProcessor(
+            @Value("${image.tiled.threshold-megabytes:256}") long thresholdMegabytes,
+            @Value("${image.tiled.strip-megabytes:16}") long stripMegabytes,
+            @Value("${image.tiled.spool-directory:${java.io.tmpdir}}") String spoolDirectory) {
+        this.thresholdBytes = thresholdMegabytes * MEGABYTE;
+        this.stripBytes = Math.max(1, stripMegabytes) * MEGABYTE;
+        this.spoolDirectory = Paths.get(spoolDirectory);
+    }
+
+    /**
+     * Se a imagem deve ser processada em faixas (0 desliga)
+     */
+    public boolean accepts(DecodePlan plan) {
+        return thresholdBytes > 0 && plan.getEstimatedBytes() > thresholdBytes
+                && !ImageTransformPipeline.hasFilter(plan.getEffectiveRequest());
+    }
+
+    /**
+     * Memória a reservar no agendador para uma imagem processada em faixas
+     */
+    public long getEstimatedBytes() {
+        return stripBytes * STRIP_OVERHEAD;
+    }
+
+    /**
+     * Decodifica e redimensiona a imagem para o arquivo temporário e devolve a saída. Ela
+     * implementa {@link java.io.Closeable} e deve ser fechada depois de codificada (o que
+     * apaga o arquivo); pode ser codificada depois que o plano for fechado, por uma thread
+     * de cada vez.
+     */
+    public RenderedImage render(DecodePlan plan, ImageFormat outputFormat) throws IOException {
+        ResizeRequest request = plan.getEffectiveRequest();
+        int targetWidth = plan.getDecodedWidth();
+        int targetHeight = plan.getDecodedHeight();
+        if (ImageTransformPipeline.hasResize(request)) {
+            RenditionPlanner.Size size = new RenditionPlanner.Size(request.getWidth(), request.getHeight(),
+                    Boolean.TRUE.equals(request.getKeepAspectRatio()))
+                    .fittedTo(plan.getRegionWidth(), plan.getRegionHeight());
+            targetWidth = Math.max(1, size.width());
+            targetHeight = Math.max(1, size.height());
+        }
+        if ((long) targetWidth * targetHeight >= Integer.MAX_VALUE) {
+            throw new ImageProcessingException("Output image is too large: " + targetWidth + "x" + targetHeight);
+        }
+        boolean alpha = hasAlpha(plan);
+
+        long started = System.nanoTime();
+        Path spool = Files.createTempFile(spoolDirectory, "tiled-", ".argb");
+        try {
+            writeSpool(plan, spool, targetWidth, targetHeight, alpha, request);
+            Orientation orientation = ImageTransformPipeline.orientation(request, targetWidth, targetHeight);
+            StripImage image = new StripImage(spool, targetWidth, orientation,
+                    Boolean.TRUE.equals(request.getGrayscale()), alpha,
+                    outputFormat != ImageFormat.JPG && outputFormat != ImageFormat.JPEG, stripBytes);
+            log.info("Processed {}x{} image in strips in {} ms: {}x{} output",
+                    plan.getSourceWidth(), plan.getSourceHeight(), (System.nanoTime() - started) / 1_000_000,
+                    image.getWidth(), image.getHeight());
+            return image;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spool);
+            throw e;
+        }
+    }
+
+    /**
+     * Grava as linhas redimensionadas (ARGB na ordem nativa de bytes) no arquivo temporário
+     */
+    private void writeSpool(DecodePlan plan, Path spool, int targetWidth, int targetHeight,
+                            boolean alpha, ResizeRequest request) throws IOException {
+        // Sem Thumbnailator aqui: o padrão é o bicúbico
+        SeparableResampler.Filter filter = SeparableResampler.Filter.fromName(request.getResampler());
+        if (filter == null) {
+            filter = SeparableResampler.Filter.BICUBIC;
+        }
+        SeparableResampler.Weights horizontal = SeparableResampler.Weights.of(
+                filter, plan.getDecodedWidth(), targetWidth);
+        SeparableResampler.Weights vertical = SeparableResampler.Weights.of(
+                filter, plan.getDecodedHeight(), targetHeight);
+        try (FileChannel channel = FileChannel.open(spool, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(targetWidth * 4).order(ByteOrder.nativeOrder());
+            SeparableResampler.Rows rows = new SeparableResampler.Rows(horizontal, vertical, alpha,
+                    PixelKernels.forRequest(request), row -> {
+                        buffer.clear();
+                        buffer.asIntBuffer().put(row);
+                        while (buffer.hasRemaining()) {
+                            channel.write(buffer);
+                        }
+                    });
+            RowStreamReader.read(plan, stripBytes, rows);
+            if (channel.size() != (long) targetWidth * targetHeight * 4) {
+                throw new ImageProcessingException("Image decoding ended before the last row");
+            }
+        }
+    }
+
+    private static boolean hasAlpha(DecodePlan plan) throws IOException {
+        Iterator<ImageTypeSpecifier> types = plan.getReader().getImageTypes(0);
+        return types.hasNext() && types.next().getColorModel().hasAlpha();
+    }
+}
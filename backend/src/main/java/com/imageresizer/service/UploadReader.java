@@ -0,0 +1,124 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ImageMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Leitura do corpo de um upload à medida que os bytes chegam.
+ *
+ * <ul>
+ *   <li>Um único buffer, com o tamanho exato quando o {@code Content-Length} é conhecido</li>
+ *   <li>O SHA-256 do conteúdo é calculado durante a leitura, sem uma segunda passada para a
+ *       chave do cache</li>
+ *   <li>Assim que o cabeçalho da imagem chega, as dimensões são conferidas: imagens acima do
+ *       limite de pixels são recusadas sem esperar o resto do corpo</li>
+ *   <li>Corpos acima de {@code spring.servlet.multipart.max-file-size} são recusados (413)</li>
+ * </ul>
+ */
+@Component
+public class UploadReader {
+
+    /**
+     * Quanto do início do corpo é usado para conferir o cabeçalho; cabeçalhos maiores (EXIF
+     * muito grande) são conferidos depois, pelo {@link DecodePlanner}
+     */
+    private static final int HEADER_BYTES = 64 * 1024;
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ImageProbe imageProbe;
+    private final long maxBytes;
+
+    public UploadReader(ImageProbe imageProbe,
+                        @Value("${spring.servlet.multipart.max-file-size:20MB}") DataSize maxSize) {
+        this.imageProbe = imageProbe;
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    /**
+     * Lê o corpo inteiro; {@code contentLength} negativo quando desconhecido (chunked)
+     */
+    public Upload read(InputStream body, long contentLength) throws IOException {
+        if (contentLength > maxBytes) {
+            throw new MaxUploadSizeExceededException(maxBytes);
+        }
+        MessageDigest digest = sha256();
+        InputStream input = new DigestInputStream(body, digest);
+        byte[] buffer = new byte[contentLength >= 0 ? (int) contentLength : CHUNK_SIZE];
+        int size = 0;
+        boolean headerChecked = false;
+        boolean headerAttempted = false;
+        while (true) {
+            if (size == buffer.length) {
+                // Buffer cheio: o corpo acabou, passou do Content-Length ou precisa crescer
+                int next = input.read();
+                if (next < 0) {
+                    break;
+                }
+                if (contentLength >= 0) {
+                    throw new IOException("Request body is longer than its Content-Length");
+                }
+                if (size >= maxBytes) {
+                    throw new MaxUploadSizeExceededException(maxBytes);
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min(maxBytes, (long) buffer.length * 2));
+                buffer[size++] = (byte) next;
+            }
+            int read = input.read(buffer, size, Math.min(CHUNK_SIZE, buffer.length - size));
+            if (read < 0) {
+                break;
+            }
+            size += read;
+            if (!headerAttempted && size >= HEADER_BYTES) {
+                headerAttempted = true;
+                headerChecked = checkHeader(buffer, size);
+            }
+        }
+        if (!headerChecked) {
+            checkHeader(buffer, size);
+        }
+        byte[] data = size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        return new Upload(data, digest);
+    }
+
+    /**
+     * Confere as dimensões com o início do corpo; {@code false} se ainda não dá para ler o
+     * cabeçalho
+     */
+    private boolean checkHeader(byte[] buffer, int size) {
+        ImageMetadata metadata;
+        try {
+            metadata = imageProbe.probe(new ByteArrayInputStream(buffer, 0, size));
+        } catch (IOException | RuntimeException e) {
+            // Cabeçalho incompleto ou formato desconhecido: o decoder decide no final
+            return false;
+        }
+        imageProbe.checkPixels(metadata.getWidth(), metadata.getHeight());
+        return true;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Conteúdo enviado e o digest SHA-256 já calculado sobre ele (não deve ser alterado);
+     * digest nulo quando os bytes não passaram pelo {@link UploadReader}
+     */
+    public record Upload(byte[] data, MessageDigest digest) {}
+}
@@ -0,0 +1,216 @@
+package com.imageresizer.service;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteOrder;
+
+/**
+ * {@link PixelKernels} sobre a Vector API ({@code jdk.incubator.vector}), no maior tamanho
+ * de vetor da CPU. As sobras no fim de cada linha seguem pelo código escalar.
+ *
+ * Um vetor de ints ARGB reinterpretado como bytes já está na ordem {@code [b, g, r, a]}
+ * de cada pixel, então a conversão para float intercalado é só alargar os bytes.
+ *
+ * Todos os vetores têm o mesmo tamanho: no JDK 17, misturar tamanhos do mesmo tipo
+ * (128 e 512 bits, por exemplo) polui o perfil dos métodos da API e o C2 deixa de gerar
+ * instruções vetoriais. A passada horizontal (poucos taps por pixel, em posições que não
+ * são contíguas entre pixels vizinhos) e o {@code pack} (a conversão float -> int não é
+ * intrínseca no JDK 17) ficam com o código escalar, que já sai mais rápido.
+ */
+final class VectorPixelKernels implements PixelKernels {
+
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+    /**
+     * Pixels por vetor de ints (e por vetor de bytes, a 4 bytes por pixel)
+     */
+    private static final int PIXELS = INTS.length();
+
+    /**
+     * Partes de um vetor de bytes alargado para ints (ou floats)
+     */
+    private static final int PARTS = BYTES.length() / FLOATS.length();
+
+    private static final VectorShuffle<Float> ALPHA_BROADCAST = VectorShuffle.fromOp(FLOATS, i -> (i & ~3) + 3);
+    private static final VectorMask<Float> ALPHA_LANES = VectorMask.fromLong(FLOATS, alphaLaneBits(FLOATS.length()));
+    private static final VectorShuffle<Integer> REVERSE = VectorShuffle.fromOp(INTS, i -> PIXELS - 1 - i);
+    private static final VectorShuffle<Byte> BGR_TO_BGRA = VectorShuffle.fromOp(BYTES,
+            i -> (i & 3) == 3 ? 0 : (i >> 2) * 3 + (i & 3));
+    private static final VectorMask<Byte> ALPHA_BYTES = VectorMask.fromLong(BYTES, alphaLaneBits(BYTES.length()));
+    private static final VectorShuffle<Byte>[] LOW_BYTES = lowByteShuffles();
+    private static final VectorMask<Byte>[] PART_BYTES = partMasks();
+
+    VectorPixelKernels() {
+        if (ByteOrder.nativeOrder() != ByteOrder.LITTLE_ENDIAN || FLOATS.length() < 4
+                || FLOATS.vectorBitSize() != BYTES.vectorBitSize()) {
+            throw new IllegalStateException("Unsupported vector shape: " + FLOATS);
+        }
+    }
+
+    /**
+     * Para cada parte, leva o byte baixo de cada int ({@code 4 * lane}) para a posição
+     * {@code parte * PIXELS + lane} do vetor de bytes
+     */
+    @SuppressWarnings("unchecked")
+    private static VectorShuffle<Byte>[] lowByteShuffles() {
+        VectorShuffle<Byte>[] shuffles = new VectorShuffle[PARTS];
+        for (int part = 0; part < PARTS; part++) {
+            int from = part * PIXELS;
+            shuffles[part] = VectorShuffle.fromOp(BYTES, i -> i >= from && i < from + PIXELS ? (i - from) * 4 : 0);
+        }
+        return shuffles;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static VectorMask<Byte>[] partMasks() {
+        VectorMask<Byte>[] masks = new VectorMask[PARTS];
+        for (int part = 0; part < PARTS; part++) {
+            masks[part] = BYTES.indexInRange(-part * PIXELS, PIXELS);
+        }
+        return masks;
+    }
+
+    private static long alphaLaneBits(int lanes) {
+        long bits = 0;
+        for (int i = 3; i < lanes; i += 4) {
+            bits |= 1L << i;
+        }
+        return bits;
+    }
+
+    @Override
+    public void unpack(int[] argb, int offset, int count, boolean alpha, float[] out) {
+        FloatVector opaque = FloatVector.broadcast(FLOATS, 255f);
+        int i = 0;
+        for (; i + PIXELS <= count; i += PIXELS) {
+            ByteVector bytes = IntVector.fromArray(INTS, argb, offset + i).reinterpretAsBytes();
+            for (int part = 0; part < PARTS; part++) {
+                FloatVector values = (FloatVector) ((IntVector) bytes.convertShape(VectorOperators.B2I, INTS, part))
+                        .and(0xFF)
+                        .convert(VectorOperators.I2F, 0);
+                FloatVector a = alpha ? values.rearrange(ALPHA_BROADCAST) : opaque;
+                values.mul(a.div(255f))
+                        .blend(a, ALPHA_LANES)
+                        .intoArray(out, i * 4 + part * FLOATS.length());
+            }
+        }
+        ScalarPixelKernels.unpackRange(argb, offset + i, count - i, alpha, out, i * 4);
+    }
+
+    @Override
+    public void horizontal(float[] in, int[] first, int[] count, float[] weights, int taps, float[] out, int width) {
+        ScalarPixelKernels.INSTANCE.horizontal(in, first, count, weights, taps, out, width);
+    }
+
+    @Override
+    public void vertical(float[][] lines, int n, float[] weights, int weightOffset, float[] out, int length) {
+        FloatVector zero = FloatVector.zero(FLOATS);
+        int i = 0;
+        for (int bound = FLOATS.loopBound(length); i < bound; i += FLOATS.length()) {
+            FloatVector sum = zero;
+            for (int k = 0; k < n; k++) {
+                sum = FloatVector.fromArray(FLOATS, lines[k], i).mul(weights[weightOffset + k]).add(sum);
+            }
+            sum.intoArray(out, i);
+        }
+        ScalarPixelKernels.verticalRange(lines, n, weights, weightOffset, out, i, length);
+    }
+
+    @Override
+    public void pack(float[] in, int count, boolean alpha, int[] out, int offset) {
+        ScalarPixelKernels.INSTANCE.pack(in, count, alpha, out, offset);
+    }
+
+    @Override
+    public void bgrToArgb(byte[] bgr, int offset, int count, int[] out, int outOffset) {
+        int i = 0;
+        // Cada vetor lê 4 bytes por pixel, mas só usa 3: o último vetor não pode passar do array
+        for (; i + PIXELS <= count && offset + i * 3 + BYTES.length() <= bgr.length; i += PIXELS) {
+            ByteVector.fromArray(BYTES, bgr, offset + i * 3)
+                    .rearrange(BGR_TO_BGRA)
+                    .blend((byte) 0xFF, ALPHA_BYTES)
+                    .reinterpretAsInts()
+                    .intoArray(out, outOffset + i);
+        }
+        ScalarPixelKernels.INSTANCE.bgrToArgb(bgr, offset + i * 3, count - i, out, outOffset + i);
+    }
+
+    @Override
+    public void luminance(int[] argb, int offset, int count, byte[] out, int outOffset) {
+        int i = 0;
+        for (; i + BYTES.length() <= count; i += BYTES.length()) {
+            ByteVector packed = ByteVector.zero(BYTES);
+            for (int part = 0; part < PARTS; part++) {
+                IntVector pixels = IntVector.fromArray(INTS, argb, offset + i + part * PIXELS);
+                IntVector r = pixels.lanewise(VectorOperators.LSHR, 16).and(0xFF);
+                IntVector g = pixels.lanewise(VectorOperators.LSHR, 8).and(0xFF);
+                IntVector b = pixels.and(0xFF);
+                IntVector luminance = r.mul(77).add(g.mul(150)).add(b.mul(29)).add(128)
+                        .lanewise(VectorOperators.LSHR, 8);
+                // O byte baixo de cada int vai para a sua posição no vetor de bytes
+                packed = packed.blend(luminance.reinterpretAsBytes().rearrange(LOW_BYTES[part]), PART_BYTES[part]);
+            }
+            packed.intoArray(out, outOffset + i);
+        }
+        ScalarPixelKernels.INSTANCE.luminance(argb, offset + i, count - i, out, outOffset + i);
+    }
+
+    @Override
+    public void reverse(int[] source, int offset, int count, int[] out, int outOffset) {
+        int i = 0;
+        for (; i + PIXELS <= count; i += PIXELS) {
+            IntVector.fromArray(INTS, source, offset + count - i - PIXELS)
+                    .rearrange(REVERSE)
+                    .intoArray(out, outOffset + i);
+        }
+        ScalarPixelKernels.INSTANCE.reverse(source, offset, count - i, out, outOffset + i);
+    }
+
+    @Override
+    public void boxStep(int[] agSums, int[] rbSums, int count, int scale, int[] added, int addedOffset,
+                        int[] removed, int removedOffset, int[] out, int outOffset) {
+        int i = 0;
+        for (int bound = INTS.loopBound(count); i < bound; i += PIXELS) {
+            IntVector ag = IntVector.fromArray(INTS, agSums, i);
+            IntVector rb = IntVector.fromArray(INTS, rbSums, i);
+            average(ag, 16, scale).lanewise(VectorOperators.LSHL, 24)
+                    .or(average(rb, 16, scale).lanewise(VectorOperators.LSHL, 16))
+                    .or(average(ag, 0, scale).lanewise(VectorOperators.LSHL, 8))
+                    .or(average(rb, 0, scale))
+                    .intoArray(out, outOffset + i);
+            IntVector in = IntVector.fromArray(INTS, added, addedOffset + i);
+            IntVector gone = IntVector.fromArray(INTS, removed, removedOffset + i);
+            ag.add(in.lanewise(VectorOperators.LSHR, 8).and(ImageFilters.LANES))
+                    .sub(gone.lanewise(VectorOperators.LSHR, 8).and(ImageFilters.LANES))
+                    .intoArray(agSums, i);
+            rb.add(in.and(ImageFilters.LANES))
+                    .sub(gone.and(ImageFilters.LANES))
+                    .intoArray(rbSums, i);
+        }
+        ScalarPixelKernels.boxStepRange(agSums, rbSums, i, count, scale, added, addedOffset, removed,
+                removedOffset, out, outOffset);
+    }
+
+    /**
+     * Média de uma das somas de 16 bits, como {@link ImageFilters#average}
+     */
+    private static IntVector average(IntVector sums, int shift, int scale) {
+        return sums.lanewise(VectorOperators.LSHR, shift).and(0xFFFF)
+                .mul(scale)
+                .add(ImageFilters.HALF)
+                .lanewise(VectorOperators.LSHR, ImageFilters.SCALE_BITS);
+    }
+
+    @Override
+    public String toString() {
+        return "vector (" + FLOATS.vectorBitSize() + " bits)";
+    }
+}
@@ -0,0 +1,239 @@
+package com.imageresizer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Médias em caixa exatas, kernels escalares e vetoriais com os mesmos pixels e cores
+ * pré-multiplicadas que voltam ao original
+ */
+class ImageFiltersTest {
+
+    private static final int MAX_RADIUS = 100;
+
+    private PixelBufferPool bufferPool;
+    private ProcessingScheduler scheduler;
+    private ImageFilters filters;
+
+    @BeforeEach
+    void setUp() {
+        bufferPool = new PixelBufferPool(false, 0, 0);
+        scheduler = new ProcessingScheduler(4, 16, 256, 1000, 1);
+        filters = new ImageFilters(bufferPool, scheduler, 1, 64, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        filters.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void averageRoundsEveryWindowSumExactly() {
+        for (int radius = 0; radius <= MAX_RADIUS; radius++) {
+            int window = 2 * radius + 1;
+            int scale = (int) Math.round((double) (1 << ImageFilters.SCALE_BITS) / window);
+            for (int sum = 0; sum <= 255 * window; sum++) {
+                int expected = (2 * sum + window) / (2 * window);
+                int average = ImageFilters.average(sum << 16 | sum, sum << 16 | sum, scale);
+                assertEquals(expected * 0x01010101, average, "radius " + radius + ", sum " + sum);
+            }
+        }
+    }
+
+    @Test
+    void horizontalMatchesReferenceMean() {
+        int width = 157;
+        int height = 3;
+        int[] in = noise(width * height, 1);
+        int[] out = new int[in.length];
+        for (int radius = 0; radius <= MAX_RADIUS; radius++) {
+            ImageFilters.horizontal(in, out, width, 0, height, radius);
+            assertArrayEquals(referenceHorizontal(in, width, height, radius), out, "radius " + radius);
+        }
+    }
+
+    @Test
+    void verticalIsTheSameWithScalarAndVectorKernels() {
+        assumeTrue(PixelKernels.isVectorAvailable());
+        // Colunas que não fecham um vetor inteiro, para passar pelo resto escalar
+        int width = 83;
+        int height = 211;
+        int[] in = noise(width * height, 2);
+        int[] scalar = new int[in.length];
+        int[] vector = new int[in.length];
+        for (int radius = 0; radius <= MAX_RADIUS; radius++) {
+            ImageFilters.vertical(in, scalar, width, height, 0, width, radius, PixelKernels.scalar());
+            ImageFilters.vertical(in, vector, width, height, 5, width, radius, PixelKernels.preferred());
+            ImageFilters.vertical(in, vector, width, height, 0, 5, radius, PixelKernels.preferred());
+            assertArrayEquals(scalar, vector, "radius " + radius);
+            assertArrayEquals(transpose(referenceHorizontal(transpose(in, width, height), height, width, radius),
+                    height, width), scalar, "radius " + radius);
+        }
+    }
+
+    @Test
+    void boxStepIsTheSameWithScalarAndVectorKernels() {
+        assumeTrue(PixelKernels.isVectorAvailable());
+        Random random = new Random(3);
+        for (int radius = 0; radius <= MAX_RADIUS; radius++) {
+            int window = 2 * radius + 1;
+            int scale = (int) Math.round((double) (1 << ImageFilters.SCALE_BITS) / window);
+            for (int count : new int[] {1, 7, 64, 131}) {
+                int[] agSums = new int[count];
+                int[] rbSums = new int[count];
+                int[] added = noise(count + 3, random.nextLong());
+                int[] removed = noise(count + 5, random.nextLong());
+                for (int i = 0; i < count; i++) {
+                    // Somas válidas: a janela ainda contém o pixel que sai
+                    int gone = removed[i + 5];
+                    agSums[i] = channelSum(random, window - 1) << 16 | channelSum(random, window - 1);
+                    rbSums[i] = channelSum(random, window - 1) << 16 | channelSum(random, window - 1);
+                    agSums[i] += (gone >>> 8) & ImageFilters.LANES;
+                    rbSums[i] += gone & ImageFilters.LANES;
+                }
+                int[] agScalar = agSums.clone();
+                int[] rbScalar = rbSums.clone();
+                int[] outScalar = new int[count + 2];
+                int[] outVector = new int[count + 2];
+                PixelKernels.scalar().boxStep(agScalar, rbScalar, count, scale, added, 3, removed, 5, outScalar, 2);
+                PixelKernels.preferred().boxStep(agSums, rbSums, count, scale, added, 3, removed, 5, outVector, 2);
+                assertArrayEquals(outScalar, outVector, "radius " + radius + ", count " + count);
+                assertArrayEquals(agScalar, agSums, "radius " + radius + ", count " + count);
+                assertArrayEquals(rbScalar, rbSums, "radius " + radius + ", count " + count);
+            }
+        }
+    }
+
+    @Test
+    void premultipliedAlphaRoundTripsWithinQuantization() {
+        // Sigma pequeno: as caixas têm raio 0 e sobra só a ida e a volta da pré-multiplicação
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_ARGB);
+        for (int a = 0; a < 256; a++) {
+            for (int c = 0; c < 256; c++) {
+                image.setRGB(c, a, a << 24 | c << 16 | (255 - c) << 8 | (c * 7 & 0xFF));
+            }
+        }
+        BufferedImage result = filters.blur(image, 0.1);
+        for (int a = 0; a < 256; a++) {
+            for (int c = 0; c < 256; c++) {
+                int expected = image.getRGB(c, a);
+                int actual = result.getRGB(c, a);
+                assertEquals(a, actual >>> 24);
+                if (a == 0) {
+                    assertEquals(0, actual);
+                    continue;
+                }
+                double tolerance = 127.5 / a + 0.5;
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int difference = Math.abs((expected >> shift & 0xFF) - (actual >> shift & 0xFF));
+                    assertTrue(difference <= tolerance, "alpha " + a + ", value " + (expected >> shift & 0xFF)
+                            + " came back as " + (actual >> shift & 0xFF));
+                    if (a == 255) {
+                        assertEquals(0, difference);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void transparentPixelsDoNotBleedIntoTheBlur() {
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                // Metade vermelha opaca, metade transparente com um verde que não deve aparecer
+                image.setRGB(x, y, x < 32 ? 0xFFFF0000 : 0x0000FF00);
+            }
+        }
+        BufferedImage result = filters.blur(image, 4);
+        for (int y = 0; y < 64; y++) {
+            for (int x = 0; x < 64; x++) {
+                int p = result.getRGB(x, y);
+                if (p >>> 24 != 0) {
+                    assertEquals(255, p >> 16 & 0xFF, "red at " + x + "," + y);
+                    assertEquals(0, p & 0xFFFF, "green/blue at " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void bandsMatchSequentialFilter() {
+        ImageFilters banded = new ImageFilters(bufferPool, scheduler, 4, 8, 0);
+        try {
+            BufferedImage image = new BufferedImage(301, 257, BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(0, 0, 301, 257, noise(301 * 257, 4), 0, 301);
+            for (double sigma : new double[] {0.8, 3, 12}) {
+                assertArrayEquals(pixels(filters.blur(image, sigma)), pixels(banded.blur(image, sigma)));
+                assertArrayEquals(pixels(filters.sharpen(image, 1.5, sigma)),
+                        pixels(banded.sharpen(image, 1.5, sigma)));
+            }
+        } finally {
+            banded.shutdown();
+        }
+    }
+
+    /**
+     * Média de cada canal na janela de {@code 2 * radius + 1} pixels da linha, com as bordas
+     * repetidas, arredondada
+     */
+    private static int[] referenceHorizontal(int[] in, int width, int height, int radius) {
+        int window = 2 * radius + 1;
+        int[] out = new int[in.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int pixel = 0;
+                for (int shift = 0; shift < 32; shift += 8) {
+                    int sum = 0;
+                    for (int i = x - radius; i <= x + radius; i++) {
+                        sum += in[y * width + Math.max(0, Math.min(width - 1, i))] >>> shift & 0xFF;
+                    }
+                    pixel |= (2 * sum + window) / (2 * window) << shift;
+                }
+                out[y * width + x] = pixel;
+            }
+        }
+        return out;
+    }
+
+    private static int[] transpose(int[] in, int width, int height) {
+        int[] out = new int[in.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                out[x * height + y] = in[y * width + x];
+            }
+        }
+        return out;
+    }
+
+    private static int channelSum(Random random, int pixels) {
+        int sum = 0;
+        for (int i = 0; i < pixels; i++) {
+            sum += random.nextInt(256);
+        }
+        return sum;
+    }
+
+    private static int[] noise(int length, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[length];
+        for (int i = 0; i < length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}
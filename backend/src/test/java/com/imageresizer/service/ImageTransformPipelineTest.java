@@ -0,0 +1,185 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ResizeRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.image.AffineTransformOp;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A passada única de rotação, espelhamentos e grayscale tem que gerar os mesmos pixels que
+ * as operações feitas uma a uma com {@link AffineTransformOp}
+ */
+class ImageTransformPipelineTest {
+
+    private static final int[] ROTATIONS = {0, 90, 180, 270};
+
+    private PixelBufferPool bufferPool;
+    private ProcessingScheduler scheduler;
+    private ParallelResampler parallelResampler;
+    private ImageFilters filters;
+    private ImageTransformPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        bufferPool = new PixelBufferPool(false, 0, 0);
+        scheduler = new ProcessingScheduler(4, 16, 256, 1000, 1);
+        parallelResampler = new ParallelResampler(bufferPool, scheduler, 1, 64, 0);
+        filters = new ImageFilters(bufferPool, scheduler, 1, 64, 0);
+        pipeline = new ImageTransformPipeline(bufferPool, parallelResampler, filters, "auto");
+    }
+
+    @AfterEach
+    void tearDown() {
+        filters.shutdown();
+        parallelResampler.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void orientationMapsEveryPixelLikeAffineTransform() throws Exception {
+        for (int[] size : new int[][] {{1, 1}, {1, 7}, {13, 1}, {5, 9}, {70, 33}}) {
+            for (int rotation : ROTATIONS) {
+                for (int flips = 0; flips < 4; flips++) {
+                    boolean flipH = (flips & 1) != 0;
+                    boolean flipV = (flips & 2) != 0;
+                    Orientation orientation = ImageTransformPipeline.orientation(request(rotation, flipH, flipV,
+                            false, true), size[0], size[1]);
+                    AffineTransform transform = reference(rotation, flipH, flipV, size[0], size[1]);
+                    AffineTransform inverse = transform.createInverse();
+                    boolean transposed = rotation == 90 || rotation == 270;
+                    String label = size[0] + "x" + size[1] + " " + label(rotation, flipH, flipV);
+                    assertEquals(transposed ? size[1] : size[0], orientation.getWidth(), label);
+                    assertEquals(transposed ? size[0] : size[1], orientation.getHeight(), label);
+                    assertEquals(transposed, orientation.isTransposed(), label);
+                    // 180 graus com os dois espelhamentos também volta à identidade
+                    assertEquals(transform.isIdentity(), orientation.isIdentity(), label);
+                    for (int dy = 0; dy < orientation.getHeight(); dy++) {
+                        for (int dx = 0; dx < orientation.getWidth(); dx++) {
+                            // Centro do pixel do destino levado de volta à origem
+                            Point2D source = inverse.transform(new Point2D.Double(dx + 0.5, dy + 0.5), null);
+                            assertEquals((int) Math.floor(source.getX()), orientation.sourceX(dx, dy), label);
+                            assertEquals((int) Math.floor(source.getY()), orientation.sourceY(dx, dy), label);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void fusedPassMatchesAffineTransformOp() {
+        // Dimensões que não fecham um bloco da transposição nem um vetor inteiro
+        for (boolean alpha : new boolean[] {false, true}) {
+            BufferedImage image = noise(77, 45, alpha);
+            for (int rotation : ROTATIONS) {
+                for (int flips = 0; flips < 4; flips++) {
+                    boolean flipH = (flips & 1) != 0;
+                    boolean flipV = (flips & 2) != 0;
+                    BufferedImage expected = transformed(image, reference(rotation, flipH, flipV,
+                            image.getWidth(), image.getHeight()));
+                    for (boolean grayscale : new boolean[] {false, true}) {
+                        for (boolean simd : new boolean[] {false, true}) {
+                            String label = label(rotation, flipH, flipV) + " gray=" + grayscale
+                                    + " alpha=" + alpha + " simd=" + simd;
+                            BufferedImage result = pipeline.finish(image,
+                                    request(rotation, flipH, flipV, grayscale, simd));
+                            assertEquals(expected.getWidth(), result.getWidth(), label);
+                            assertEquals(expected.getHeight(), result.getHeight(), label);
+                            if (grayscale) {
+                                assertEquals(BufferedImage.TYPE_BYTE_GRAY, result.getType(), label);
+                                assertArrayEquals(luminance(expected), gray(result), label);
+                            } else {
+                                assertArrayEquals(pixels(expected), pixels(result), label);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Rotação no sentido horário e depois os espelhamentos, na mesma ordem do pipeline,
+     * deixando o destino em coordenadas positivas
+     */
+    private static AffineTransform reference(int rotation, boolean flipH, boolean flipV, int width, int height) {
+        boolean transposed = rotation == 90 || rotation == 270;
+        int rotatedWidth = transposed ? height : width;
+        int rotatedHeight = transposed ? width : height;
+        AffineTransform transform = new AffineTransform();
+        transform.translate(rotatedWidth / 2.0, rotatedHeight / 2.0);
+        transform.quadrantRotate(rotation / 90);
+        transform.translate(-width / 2.0, -height / 2.0);
+        if (flipH) {
+            transform.preConcatenate(new AffineTransform(-1, 0, 0, 1, rotatedWidth, 0));
+        }
+        if (flipV) {
+            transform.preConcatenate(new AffineTransform(1, 0, 0, -1, 0, rotatedHeight));
+        }
+        return transform;
+    }
+
+    private static BufferedImage transformed(BufferedImage image, AffineTransform transform) {
+        boolean transposed = Math.abs(transform.getShearX()) > 0;
+        BufferedImage target = new BufferedImage(transposed ? image.getHeight() : image.getWidth(),
+                transposed ? image.getWidth() : image.getHeight(), image.getType());
+        return new AffineTransformOp(transform, AffineTransformOp.TYPE_NEAREST_NEIGHBOR).filter(image, target);
+    }
+
+    private static ResizeRequest request(int rotation, boolean flipH, boolean flipV, boolean grayscale,
+                                         boolean simd) {
+        return ResizeRequest.builder()
+                .rotation(rotation == 0 ? null : rotation)
+                .flipHorizontal(flipH)
+                .flipVertical(flipV)
+                .grayscale(grayscale)
+                .simd(simd)
+                .build();
+    }
+
+    private static String label(int rotation, boolean flipH, boolean flipV) {
+        return "rotation=" + rotation + " flipH=" + flipH + " flipV=" + flipV;
+    }
+
+    private static BufferedImage noise(int width, int height, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static int[] luminance(BufferedImage image) {
+        int[] pixels = pixels(image);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = ImageTransformPipeline.luminance(pixels[i]);
+        }
+        return pixels;
+    }
+
+    /**
+     * Amostras cruas do raster; o getRGB de uma imagem cinza passaria pela conversão de cor
+     */
+    private static int[] gray(BufferedImage image) {
+        Raster raster = image.getRaster();
+        return raster.getSamples(0, 0, image.getWidth(), image.getHeight(), 0, (int[]) null);
+    }
+}
@@ -0,0 +1,611 @@
+package com.imageresizer.service;
+
+import com.imageresizer.model.ResizeRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Transformações no domínio DCT contra os coeficientes originais e contra o caminho por
+ * pixels, nas subamostragens e estruturas de arquivo que o leitor aceita, e os casos em que
+ * ele precisa recusar
+ */
+class LosslessJpegTransformerTest {
+
+    private static final String JPEG_METADATA_FORMAT = "javax_imageio_jpeg_image_1.0";
+
+    private static final int WIDTH = 96;
+    private static final int HEIGHT = 64;
+
+    private ImageProbe probe;
+    private LosslessJpegTransformer transformer;
+    private PixelBufferPool bufferPool;
+    private ProcessingScheduler scheduler;
+    private ParallelResampler parallelResampler;
+    private ImageFilters filters;
+    private ImageTransformPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        probe = new ImageProbe(250_000_000L);
+        transformer = new LosslessJpegTransformer(true, probe);
+        bufferPool = new PixelBufferPool(false, 0, 0);
+        scheduler = new ProcessingScheduler(1, 16, 256, 1000, 1);
+        parallelResampler = new ParallelResampler(bufferPool, scheduler, 1, 64, 0);
+        filters = new ImageFilters(bufferPool, scheduler, 1, 64, 0);
+        pipeline = new ImageTransformPipeline(bufferPool, parallelResampler, filters, "thumbnailator");
+    }
+
+    @AfterEach
+    void tearDown() {
+        filters.shutdown();
+        parallelResampler.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void fourQuarterTurnsGiveBackTheSameCoefficients() throws IOException {
+        for (int[] sampling : new int[][] {{2, 2}, {2, 1}, {1, 1}}) {
+            byte[] original = Jpegs.builder(WIDTH, HEIGHT).sampling(sampling).encode();
+            byte[] data = original;
+            for (int i = 0; i < 4; i++) {
+                data = transform(data, ResizeRequest.builder().rotation(90).build());
+            }
+            assertSameCoefficients(original, data);
+
+            byte[] flippedTwice = transform(transform(original, ResizeRequest.builder().flipHorizontal(true)
+                    .flipVertical(true).build()), ResizeRequest.builder().rotation(180).build());
+            assertSameCoefficients(original, flippedTwice);
+        }
+    }
+
+    @Test
+    void matchesThePixelPath() throws IOException {
+        List<ResizeRequest> requests = List.of(
+                ResizeRequest.builder().rotation(90).build(),
+                ResizeRequest.builder().rotation(180).build(),
+                ResizeRequest.builder().rotation(270).build(),
+                ResizeRequest.builder().flipHorizontal(true).build(),
+                ResizeRequest.builder().flipVertical(true).build(),
+                ResizeRequest.builder().rotation(90).flipHorizontal(true).build(),
+                ResizeRequest.builder().cropX(16).cropY(16).cropWidth(48).cropHeight(40).build(),
+                ResizeRequest.builder().cropX(32).cropY(0).cropWidth(53).cropHeight(37).build(),
+                ResizeRequest.builder().cropX(16).cropY(32).cropWidth(64).cropHeight(32).rotation(270).build());
+        for (int[] sampling : new int[][] {{2, 2}, {2, 1}, {1, 1}}) {
+            byte[] data = Jpegs.builder(WIDTH, HEIGHT).sampling(sampling).encode();
+            BufferedImage decoded = Jpegs.samples(data);
+            for (ResizeRequest request : requests) {
+                BufferedImage expected = pipeline.apply(decoded, request);
+                BufferedImage actual = Jpegs.samples(transform(data, request));
+                // Croma subamostrado: o decoder interpola com filtro diferente na horizontal e na
+                // vertical e não vê além da borda do recorte
+                int chromaTolerance = sampling[0] * sampling[1] == 1 ? 1 : 4;
+                assertSamplesMatch(expected, actual, chromaTolerance,
+                        sampling[0] + "x" + sampling[1] + " " + request);
+            }
+        }
+    }
+
+    @Test
+    void readsRestartIntervals() throws IOException {
+        for (int[] sampling : new int[][] {{2, 2}, {1, 1}}) {
+            byte[] plain = Jpegs.builder(WIDTH, HEIGHT).sampling(sampling).encode();
+            // Intervalos que dividem e que não dividem a linha de MCUs
+            for (int interval : new int[] {1, 3, 6, 7}) {
+                byte[] restarts = Jpegs.builder(WIDTH, HEIGHT).sampling(sampling).restartInterval(interval).encode();
+                assertTrue(Jpegs.count(restarts, 0xD0) > 0, "no RST0 written");
+                assertSameCoefficients(plain, restarts);
+
+                ResizeRequest request = ResizeRequest.builder().rotation(90).build();
+                assertSameCoefficients(transform(plain, request), transform(restarts, request));
+            }
+        }
+    }
+
+    @Test
+    void readsOneScanPerComponent() throws IOException {
+        for (int[] sampling : new int[][] {{2, 2}, {2, 1}, {1, 1}}) {
+            // Tamanho com MCUs incompletos: o scan de uma componente só tem os blocos visíveis
+            for (int[] size : new int[][] {{WIDTH, HEIGHT}, {WIDTH + 5, HEIGHT + 3}}) {
+                for (int interval : new int[] {0, 4}) {
+                    String message = sampling[0] + "x" + sampling[1] + " " + size[0] + "x" + size[1]
+                            + " restart " + interval;
+                    byte[][] planes = Jpegs.planes(size[0], size[1], sampling, interval);
+                    byte[] separate = Jpegs.splice(planes, size[0], size[1], sampling);
+                    assertEquals(3, Jpegs.count(separate, 0xDA), message);
+                    assertEquals(interval > 0, Jpegs.count(separate, 0xD0) > 0, message);
+                    assertTrue(Jpegs.segments(separate).stream().anyMatch(segment -> (segment[1] & 0xFF) == 0xC0),
+                            message);
+
+                    JpegCoefficients image = JpegCoefficients.read(separate, probe);
+                    assertNotNull(image, message);
+                    for (int i = 0; i < planes.length; i++) {
+                        JpegCoefficients plane = JpegCoefficients.read(planes[i], probe);
+                        assertSameBlocks(plane.components[0], image.components[i],
+                                JpegCoefficients.ceilDiv(plane.width, 8), JpegCoefficients.ceilDiv(plane.height, 8),
+                                message + ", component " + i);
+                    }
+                }
+            }
+
+            byte[] separate = Jpegs.splice(Jpegs.planes(WIDTH, HEIGHT, sampling, 4), WIDTH, HEIGHT, sampling);
+            byte[] rotated = separate;
+            for (int i = 0; i < 4; i++) {
+                rotated = transform(rotated, ResizeRequest.builder().rotation(90).build());
+            }
+            assertSameCoefficients(separate, rotated);
+            ResizeRequest request = ResizeRequest.builder().rotation(270).flipVertical(true)
+                    .cropX(16).cropY(16).cropWidth(64).cropHeight(40).build();
+            assertSamplesMatch(pipeline.apply(Jpegs.samples(separate), request),
+                    Jpegs.samples(transform(separate, request)), sampling[0] * sampling[1] == 1 ? 1 : 4,
+                    sampling[0] + "x" + sampling[1] + " " + request);
+        }
+    }
+
+    @Test
+    void keepsCmykAndAdobeTransform() throws IOException {
+        byte[] data = Jpegs.builder(WIDTH, HEIGHT).cmyk().encode();
+        JpegCoefficients source = JpegCoefficients.read(data, probe);
+        assertNotNull(source);
+        assertEquals(4, source.components.length);
+
+        byte[] rotated = data;
+        for (int i = 0; i < 4; i++) {
+            rotated = transform(rotated, ResizeRequest.builder().rotation(90).build());
+        }
+        assertSameCoefficients(data, rotated);
+
+        byte[] flipped = transform(data, ResizeRequest.builder().flipVertical(true).build());
+        assertEquals(1, Jpegs.count(flipped, 0xEE), "Adobe segment");
+        Raster expected = Jpegs.readRaster(data);
+        Raster actual = Jpegs.readRaster(flipped);
+        int[] expectedPixel = new int[4];
+        int[] actualPixel = new int[4];
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                expected.getPixel(x, HEIGHT - 1 - y, expectedPixel);
+                actual.getPixel(x, y, actualPixel);
+                for (int band = 0; band < 4; band++) {
+                    assertTrue(Math.abs(expectedPixel[band] - actualPixel[band]) <= 1,
+                            "band " + band + " at " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    @Test
+    void fallsBackWhenTheExactTransformIsNotPossible() throws IOException {
+        byte[] progressive = Jpegs.builder(WIDTH, HEIGHT).sampling(new int[] {2, 2}).progressive().encode();
+        assertTrue(transformer.transform(progressive, ResizeRequest.builder().rotation(90).build()).isEmpty());
+
+        byte[] subsampled = Jpegs.builder(WIDTH, HEIGHT).sampling(new int[] {2, 2}).encode();
+        // Origem do crop fora da grade de 16x16
+        assertTrue(transformer.transform(subsampled, ResizeRequest.builder()
+                .cropX(8).cropY(0).cropWidth(32).cropHeight(32).build()).isEmpty());
+        assertTrue(transformer.transform(subsampled, ResizeRequest.builder()
+                .cropX(0).cropY(24).cropWidth(32).cropHeight(32).build()).isEmpty());
+        // No 4:4:4 o MCU tem 8 pixels e a mesma origem serve
+        byte[] full = Jpegs.builder(WIDTH, HEIGHT).sampling(new int[] {1, 1}).encode();
+        assertTrue(transformer.transform(full, ResizeRequest.builder()
+                .cropX(8).cropY(24).cropWidth(32).cropHeight(32).build()).isPresent());
+
+        // Eixo espelhado que não é múltiplo do MCU
+        byte[] ragged = Jpegs.builder(WIDTH + 8, HEIGHT + 4).sampling(new int[] {2, 2}).encode();
+        assertTrue(transformer.transform(ragged, ResizeRequest.builder().flipHorizontal(true).build()).isEmpty());
+        assertTrue(transformer.transform(ragged, ResizeRequest.builder().flipVertical(true).build()).isEmpty());
+        assertTrue(transformer.transform(ragged, ResizeRequest.builder().rotation(90).build()).isEmpty());
+        // Rotação de 90 espelha só o eixo vertical da origem, que aqui é múltiplo do MCU
+        byte[] wide = Jpegs.builder(WIDTH + 8, HEIGHT).sampling(new int[] {2, 2}).encode();
+        assertTrue(transformer.transform(wide, ResizeRequest.builder().rotation(90).build()).isPresent());
+        assertTrue(transformer.transform(wide, ResizeRequest.builder().flipVertical(true).build()).isPresent());
+        assertTrue(transformer.transform(wide, ResizeRequest.builder().flipHorizontal(true).build()).isEmpty());
+    }
+
+    private byte[] transform(byte[] data, ResizeRequest request) throws IOException {
+        Optional<EncodedImage> result = transformer.transform(data, request);
+        assertTrue(result.isPresent(), "lossless transform refused " + request);
+        return result.get().data();
+    }
+
+    private void assertSameCoefficients(byte[] expectedData, byte[] actualData) throws IOException {
+        JpegCoefficients expected = JpegCoefficients.read(expectedData, probe);
+        JpegCoefficients actual = JpegCoefficients.read(actualData, probe);
+        assertNotNull(expected);
+        assertNotNull(actual);
+        assertEquals(expected.width, actual.width);
+        assertEquals(expected.height, actual.height);
+        assertEquals(expected.components.length, actual.components.length);
+        for (int i = 0; i < expected.components.length; i++) {
+            JpegCoefficients.Component e = expected.components[i];
+            JpegCoefficients.Component a = actual.components[i];
+            assertEquals(e.h, a.h);
+            assertEquals(e.v, a.v);
+            assertEquals(e.blocksWide, a.blocksWide);
+            assertEquals(e.blocksHigh, a.blocksHigh);
+            // Só os blocos com pixels visíveis; o preenchimento do último MCU pode variar
+            assertSameBlocks(e, a,
+                    JpegCoefficients.ceilDiv(JpegCoefficients.ceilDiv(expected.width * e.h, expected.maxH()), 8),
+                    JpegCoefficients.ceilDiv(JpegCoefficients.ceilDiv(expected.height * e.v, expected.maxV()), 8),
+                    "component " + i);
+            assertArrayEquals(expected.quantTables[e.quantTable], actual.quantTables[a.quantTable]);
+        }
+    }
+
+    private static void assertSameBlocks(JpegCoefficients.Component expected, JpegCoefficients.Component actual,
+                                         int blocksWide, int blocksHigh, String message) {
+        for (int by = 0; by < blocksHigh; by++) {
+            for (int bx = 0; bx < blocksWide; bx++) {
+                int e = expected.offset(bx, by);
+                int a = actual.offset(bx, by);
+                for (int k = 0; k < 64; k++) {
+                    if (expected.coefficients[e + k] != actual.coefficients[a + k]) {
+                        throw new AssertionError(message + ": block " + bx + "," + by + ", coefficient " + k
+                                + " is " + actual.coefficients[a + k] + ", expected " + expected.coefficients[e + k]);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Luma a no máximo um nível do esperado; croma dentro da tolerância
+     */
+    private static void assertSamplesMatch(BufferedImage expected, BufferedImage actual, int chromaTolerance,
+                                           String message) {
+        assertEquals(expected.getWidth(), actual.getWidth(), message);
+        assertEquals(expected.getHeight(), actual.getHeight(), message);
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int difference = Math.abs((e >> shift & 0xFF) - (a >> shift & 0xFF));
+                    int tolerance = shift == 16 ? 1 : chromaTolerance;
+                    if (difference > tolerance) {
+                        throw new AssertionError(message + ": sample " + (2 - shift / 8) + " at " + x + "," + y
+                                + " differs by " + difference);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Arquivos de teste gerados pelo writer do JDK, com a estrutura ajustada pelos metadados
+     */
+    private static final class Jpegs {
+
+        private final int width;
+        private final int height;
+        private int[] sampling = {2, 2};
+        private int restartInterval;
+        private boolean progressive;
+        private boolean cmyk;
+
+        private Jpegs(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        static Jpegs builder(int width, int height) {
+            return new Jpegs(width, height);
+        }
+
+        Jpegs sampling(int[] factors) {
+            this.sampling = factors;
+            return this;
+        }
+
+        Jpegs restartInterval(int interval) {
+            this.restartInterval = interval;
+            return this;
+        }
+
+        Jpegs progressive() {
+            this.progressive = true;
+            return this;
+        }
+
+        Jpegs cmyk() {
+            this.cmyk = true;
+            return this;
+        }
+
+        byte[] encode() throws IOException {
+            return encode(image(width, height));
+        }
+
+        byte[] encode(BufferedImage image) throws IOException {
+            ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+            try {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(0.9f);
+                if (progressive) {
+                    param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                }
+                IIOMetadata metadata = writer.getDefaultImageMetadata(
+                        ImageTypeSpecifier.createFromRenderedImage(image), param);
+                IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(JPEG_METADATA_FORMAT);
+                adjust(root);
+                metadata.setFromTree(JPEG_METADATA_FORMAT, root);
+
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+                    writer.setOutput(stream);
+                    if (cmyk) {
+                        writer.write(null, new IIOImage(cmykRaster(image), null, metadata), param);
+                    } else {
+                        writer.write(null, new IIOImage(image, null, metadata), param);
+                    }
+                }
+                return output.toByteArray();
+            } finally {
+                writer.dispose();
+            }
+        }
+
+        private void adjust(IIOMetadataNode root) {
+            IIOMetadataNode markers = (IIOMetadataNode) root.getElementsByTagName("markerSequence").item(0);
+            IIOMetadataNode frame = (IIOMetadataNode) root.getElementsByTagName("sof").item(0);
+            NodeList components = frame.getElementsByTagName("componentSpec");
+            for (int i = 0; i < components.getLength(); i++) {
+                IIOMetadataNode component = (IIOMetadataNode) components.item(i);
+                component.setAttribute("HsamplingFactor", String.valueOf(i == 0 ? sampling[0] : 1));
+                component.setAttribute("VsamplingFactor", String.valueOf(i == 0 ? sampling[1] : 1));
+            }
+            if (cmyk) {
+                // Quarta componente e segmento Adobe sem transformação de cor (CMYK puro)
+                IIOMetadataNode black = new IIOMetadataNode("componentSpec");
+                black.setAttribute("componentId", "4");
+                black.setAttribute("HsamplingFactor", "1");
+                black.setAttribute("VsamplingFactor", "1");
+                black.setAttribute("QtableSelector", "1");
+                frame.appendChild(black);
+                frame.setAttribute("numFrameComponents", "4");
+                Node jfif = root.getElementsByTagName("JPEGvariety").item(0);
+                root.replaceChild(new IIOMetadataNode("JPEGvariety"), jfif);
+                removeAll(markers, "sos");
+                IIOMetadataNode scan = new IIOMetadataNode("sos");
+                scan.setAttribute("numScanComponents", "4");
+                scan.setAttribute("startSpectralSelection", "0");
+                scan.setAttribute("endSpectralSelection", "63");
+                scan.setAttribute("approxHigh", "0");
+                scan.setAttribute("approxLow", "0");
+                for (int i = 1; i <= 4; i++) {
+                    scan.appendChild(scanComponent(i, i == 1 ? 0 : 1));
+                }
+                markers.appendChild(scan);
+                IIOMetadataNode adobe = new IIOMetadataNode("app14Adobe");
+                adobe.setAttribute("transform", "0");
+                markers.insertBefore(adobe, markers.getFirstChild());
+            }
+            if (restartInterval > 0) {
+                IIOMetadataNode dri = new IIOMetadataNode("dri");
+                dri.setAttribute("interval", String.valueOf(restartInterval));
+                markers.insertBefore(dri, frame);
+            }
+        }
+
+        private static IIOMetadataNode scanComponent(int id, int table) {
+            IIOMetadataNode component = new IIOMetadataNode("scanComponentSpec");
+            component.setAttribute("componentSelector", String.valueOf(id));
+            component.setAttribute("dcHuffTable", String.valueOf(table));
+            component.setAttribute("acHuffTable", String.valueOf(table));
+            return component;
+        }
+
+        private static void removeAll(IIOMetadataNode parent, String name) {
+            Node child = parent.getFirstChild();
+            while (child != null) {
+                Node next = child.getNextSibling();
+                if (name.equals(child.getNodeName())) {
+                    parent.removeChild(child);
+                }
+                child = next;
+            }
+        }
+
+        /**
+         * Gradientes suaves com textura, para ter coeficientes AC em todos os blocos
+         */
+        private static BufferedImage image(int width, int height) {
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int r = 16 + x * 200 / width + (x * 7 + y * 13) % 23;
+                    int g = 16 + y * 200 / height + (x * 5 ^ y * 3) % 19;
+                    int b = 16 + (x + y) * 200 / (width + height) + x * y % 17;
+                    image.setRGB(x, y, r << 16 | g << 8 | b);
+                }
+            }
+            return image;
+        }
+
+        private static Raster cmykRaster(BufferedImage image) {
+            WritableRaster raster = Raster.createInterleavedRaster(DataBuffer.TYPE_BYTE,
+                    image.getWidth(), image.getHeight(), 4, null);
+            for (int y = 0; y < image.getHeight(); y++) {
+                for (int x = 0; x < image.getWidth(); x++) {
+                    int rgb = image.getRGB(x, y);
+                    raster.setPixel(x, y, new int[] {255 - (rgb >> 16 & 0xFF), 255 - (rgb >> 8 & 0xFF),
+                            255 - (rgb & 0xFF), (x * 3 + y) & 0xFF});
+                }
+            }
+            return raster;
+        }
+
+        /**
+         * Y, Cb e Cr da imagem de teste, cada um num JPEG em tons de cinza já no tamanho da
+         * sua subamostragem, todos com as mesmas tabelas
+         */
+        static byte[][] planes(int width, int height, int[] sampling, int restartInterval) throws IOException {
+            BufferedImage image = image(width, height);
+            byte[][] planes = new byte[3][];
+            for (int c = 0; c < 3; c++) {
+                int h = c == 0 ? 1 : sampling[0];
+                int v = c == 0 ? 1 : sampling[1];
+                BufferedImage plane = new BufferedImage(JpegCoefficients.ceilDiv(width, h),
+                        JpegCoefficients.ceilDiv(height, v), BufferedImage.TYPE_BYTE_GRAY);
+                WritableRaster raster = plane.getRaster();
+                for (int y = 0; y < plane.getHeight(); y++) {
+                    for (int x = 0; x < plane.getWidth(); x++) {
+                        double sum = 0;
+                        int count = 0;
+                        for (int sy = y * v; sy < Math.min(height, (y + 1) * v); sy++) {
+                            for (int sx = x * h; sx < Math.min(width, (x + 1) * h); sx++) {
+                                int rgb = image.getRGB(sx, sy);
+                                sum += ycc(rgb >> 16 & 0xFF, rgb >> 8 & 0xFF, rgb & 0xFF)[c];
+                                count++;
+                            }
+                        }
+                        raster.setSample(x, y, 0, (int) Math.round(sum / count));
+                    }
+                }
+                planes[c] = builder(plane.getWidth(), plane.getHeight()).sampling(new int[] {1, 1})
+                        .restartInterval(restartInterval).encode(plane);
+            }
+            return planes;
+        }
+
+        /**
+         * Um quadro baseline com um scan por componente, usando como scan de cada uma os
+         * dados entrópicos do JPEG do seu plano
+         */
+        static byte[] splice(byte[][] planes, int width, int height, int[] sampling) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            output.write(0xFF);
+            output.write(0xD8);
+            List<byte[]> luma = segments(planes[0]);
+            for (byte[] segment : luma) {
+                int marker = segment[1] & 0xFF;
+                if (marker == 0xE0 || marker == 0xDB) {
+                    output.writeBytes(segment);
+                }
+            }
+            output.writeBytes(new byte[] {(byte) 0xFF, (byte) 0xC0, 0, 17, 8,
+                    (byte) (height >> 8), (byte) height, (byte) (width >> 8), (byte) width, 3,
+                    1, (byte) (sampling[0] << 4 | sampling[1]), 0, 2, 0x11, 0, 3, 0x11, 0});
+            for (byte[] segment : luma) {
+                int marker = segment[1] & 0xFF;
+                if (marker == 0xC4 || marker == 0xDD) {
+                    output.writeBytes(segment);
+                }
+            }
+            for (int c = 0; c < planes.length; c++) {
+                for (byte[] segment : segments(planes[c])) {
+                    if ((segment[1] & 0xFF) == 0xDA) {
+                        byte[] scan = segment.clone();
+                        scan[5] = (byte) (c + 1);
+                        output.writeBytes(scan);
+                    }
+                }
+            }
+            output.write(0xFF);
+            output.write(0xD9);
+            return output.toByteArray();
+        }
+
+        /**
+         * Segmentos do arquivo com o marcador; o de cada scan inclui os dados entrópicos
+         */
+        static List<byte[]> segments(byte[] data) {
+            List<byte[]> segments = new ArrayList<>();
+            int p = 2;
+            while (p + 3 < data.length && (data[p + 1] & 0xFF) != 0xD9) {
+                int end = p + 2 + ((data[p + 2] & 0xFF) << 8 | data[p + 3] & 0xFF);
+                if ((data[p + 1] & 0xFF) == 0xDA) {
+                    while (end + 1 < data.length && !isMarker(data[end], data[end + 1])) {
+                        end++;
+                    }
+                }
+                segments.add(Arrays.copyOfRange(data, p, end));
+                p = end;
+            }
+            return segments;
+        }
+
+        private static boolean isMarker(byte first, byte second) {
+            int marker = second & 0xFF;
+            return (first & 0xFF) == 0xFF && marker != 0 && (marker < 0xD0 || marker > 0xD7);
+        }
+
+        /**
+         * Conversão JFIF de RGB para YCbCr
+         */
+        private static double[] ycc(int r, int g, int b) {
+            return new double[] {
+                    0.299 * r + 0.587 * g + 0.114 * b,
+                    128 - 0.168736 * r - 0.331264 * g + 0.5 * b,
+                    128 + 0.5 * r - 0.418688 * g - 0.081312 * b};
+        }
+
+        /**
+         * Amostras decodificadas sem conversão de cor, empacotadas como RGB para passar pelo
+         * pipeline (Y, Cb e Cr nos lugares de R, G e B)
+         */
+        static BufferedImage samples(byte[] data) throws IOException {
+            Raster raster = readRaster(data);
+            BufferedImage image = new BufferedImage(raster.getWidth(), raster.getHeight(), BufferedImage.TYPE_INT_RGB);
+            for (int y = 0; y < raster.getHeight(); y++) {
+                for (int x = 0; x < raster.getWidth(); x++) {
+                    image.setRGB(x, y, raster.getSample(x, y, 0) << 16 | raster.getSample(x, y, 1) << 8
+                            | raster.getSample(x, y, 2));
+                }
+            }
+            return image;
+        }
+
+        static Raster readRaster(byte[] data) throws IOException {
+            ImageReader reader = ImageIO.getImageReadersByFormatName("jpeg").next();
+            try (ImageInputStream stream = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+                reader.setInput(stream);
+                return reader.readRaster(0, null);
+            } finally {
+                reader.dispose();
+            }
+        }
+
+        /**
+         * Quantos marcadores {@code 0xFF marker} há no arquivo
+         */
+        static int count(byte[] data, int marker) {
+            int count = 0;
+            for (int i = 0; i + 1 < data.length; i++) {
+                if ((data[i] & 0xFF) == 0xFF && (data[i + 1] & 0xFF) == marker) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+}
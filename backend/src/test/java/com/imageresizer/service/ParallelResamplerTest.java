@@ -0,0 +1,121 @@
+package com.imageresizer.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * O resize em faixas tem que gerar exatamente os mesmos pixels do sequencial
+ */
+class ParallelResamplerTest {
+
+    private PixelBufferPool bufferPool;
+    private ProcessingScheduler scheduler;
+    private ParallelResampler parallelResampler;
+
+    @BeforeEach
+    void setUp() {
+        bufferPool = new PixelBufferPool(false, 0, 0);
+        scheduler = new ProcessingScheduler(4, 16, 256, 1000, 1);
+        // Sem limite de megapixels e com faixas curtas, para dividir até imagens pequenas
+        parallelResampler = new ParallelResampler(bufferPool, scheduler, 4, 8, 0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        parallelResampler.shutdown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    void bandsAreByteIdenticalToSequential() throws IOException {
+        for (boolean alpha : new boolean[] {false, true}) {
+            BufferedImage image = noise(613, 419, alpha);
+            for (SeparableResampler.Filter filter : SeparableResampler.Filter.values()) {
+                for (int[] target : new int[][] {{300, 205}, {97, 301}, {1024, 700}}) {
+                    assertTrue(parallelResampler.bands((long) image.getWidth() * image.getHeight(), target[1]) > 1);
+                    for (PixelKernels kernels : new PixelKernels[] {PixelKernels.scalar(), PixelKernels.preferred()}) {
+                        BufferedImage sequential = SeparableResampler.resize(image, target[0], target[1], filter,
+                                kernels, bufferPool);
+                        BufferedImage parallel = parallelResampler.resize(image, target[0], target[1], filter,
+                                kernels);
+                        assertEquals(0, scheduler.stats().activeWorkers(), "helpers not released");
+                        assertEquals(sequential.getType(), parallel.getType());
+                        assertArrayEquals(pixels(sequential), pixels(parallel),
+                                filter + " " + target[0] + "x" + target[1] + " alpha=" + alpha);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void busySchedulerKeepsTheResizeOnOneThread() throws IOException {
+        BufferedImage image = noise(613, 419, false);
+        BufferedImage sequential = SeparableResampler.resize(image, 300, 205, SeparableResampler.Filter.LANCZOS,
+                PixelKernels.scalar(), bufferPool);
+        List<ProcessingScheduler.Worker> occupied = new ArrayList<>();
+        try {
+            // Todos os workers ocupados: nenhuma faixa extra pode rodar
+            for (ProcessingScheduler.Worker worker; (worker = scheduler.tryOccupyWorker()) != null; ) {
+                occupied.add(worker);
+            }
+            assertEquals(0, scheduler.idleWorkers());
+            BufferedImage parallel = parallelResampler.resize(image, 300, 205, SeparableResampler.Filter.LANCZOS,
+                    PixelKernels.scalar());
+            assertArrayEquals(pixels(sequential), pixels(parallel));
+            assertEquals(occupied.size(), scheduler.stats().activeWorkers());
+        } finally {
+            occupied.forEach(ProcessingScheduler.Worker::close);
+        }
+    }
+
+    @Test
+    void autoDefaultUsesBandsOnlyAboveThreshold() {
+        ParallelResampler thresholded = new ParallelResampler(bufferPool, scheduler, 4, 8, 1);
+        ImageFilters filters = new ImageFilters(bufferPool, scheduler, 1, 64, 0);
+        try {
+            ImageTransformPipeline auto = new ImageTransformPipeline(bufferPool, thresholded, filters, "auto");
+            BufferedImage small = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+            BufferedImage large = new BufferedImage(1600, 1200, BufferedImage.TYPE_INT_RGB);
+
+            assertNull(auto.resampler(null, small));
+            assertEquals(SeparableResampler.Filter.BICUBIC, auto.resampler(null, large));
+            assertNull(auto.resampler("thumbnailator", large));
+            assertEquals(SeparableResampler.Filter.LANCZOS, auto.resampler("lanczos", small));
+
+            ImageTransformPipeline fixed = new ImageTransformPipeline(bufferPool, thresholded, filters, "lanczos");
+            assertEquals(SeparableResampler.Filter.LANCZOS, fixed.resampler(null, small));
+        } finally {
+            filters.shutdown();
+            thresholded.shutdown();
+        }
+    }
+
+    private static BufferedImage noise(int width, int height, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(width * 31L + height);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, random.nextInt());
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+}